@@ -0,0 +1,50 @@
+package io.github.mewore.tsw.controllers;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.github.mewore.tsw.config.ConfigConstants;
+import io.github.mewore.tsw.config.security.AuthorityRoles;
+import io.github.mewore.tsw.events.PublisherMonitor;
+import io.github.mewore.tsw.models.OpenSubscriptionModel;
+import io.github.mewore.tsw.services.util.MetricsSource;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping(ConfigConstants.API_ROOT + "/metrics")
+@ResponseBody
+public class MetricsController {
+
+    private final List<MetricsSource> metricsSources;
+
+    private final PublisherMonitor publisherMonitor;
+
+    @GetMapping(produces = PrometheusTextWriter.CONTENT_TYPE)
+    String getMetrics() {
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        for (final MetricsSource source : metricsSources) {
+            source.writeMetrics(writer);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * List the subscriptions which have been open for a while and may have been leaked, along with where they have
+     * been created.
+     */
+    @Secured({AuthorityRoles.MANAGE_HOSTS})
+    @GetMapping(path = "/subscriptions")
+    List<OpenSubscriptionModel> getOpenSubscriptions(
+            @RequestParam(name = "minAgeSeconds", defaultValue = "600") final long minAgeSeconds) {
+        return publisherMonitor.getOpenSubscriptions(Duration.ofSeconds(minAgeSeconds));
+    }
+}
@@ -1,16 +1,28 @@
 package io.github.mewore.tsw.controllers;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.transaction.Transactional;
 import javax.validation.Valid;
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -21,9 +33,16 @@ import io.github.mewore.tsw.exceptions.NotFoundException;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceDetailsViewModel;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventSearchFilter;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceLogFileModel;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceUpdateModel;
-import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventCache;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventStore;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventSearchService;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceLogService;
 import io.github.mewore.tsw.services.terraria.TerrariaInstanceService;
+import io.github.mewore.tsw.services.util.FileService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
@@ -33,20 +52,172 @@ import lombok.RequiredArgsConstructor;
 @ResponseBody
 class TerrariaInstanceController {
 
+    private static final int MAX_EVENT_PAGE_SIZE = 1000;
+
+    private static final String LOG_CONTENT_TYPE = "text/plain;charset=UTF-8";
+
+    private static final String GZIP_ENCODING = "gzip";
+
+    private static final String COMPRESSED_EXTENSION = ".gz";
+
+    // The request attributes with which Tomcat can be asked to send a file by itself
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
     private final TerrariaInstanceService terrariaInstanceService;
 
-    private final TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+    private final TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    private final TerrariaInstanceEventSearchService terrariaInstanceEventSearchService;
+
+    private final TerrariaInstanceEventCache terrariaInstanceEventCache;
+
+    private final TerrariaInstanceLogService terrariaInstanceLogService;
+
+    private final FileService fileService;
 
     @Transactional
     @GetMapping(path = "/{instanceId}")
     TerrariaInstanceDetailsViewModel getInstanceDetails(@PathVariable("instanceId") final long instanceId)
             throws NotFoundException {
         final TerrariaInstanceEntity instance = terrariaInstanceService.getInstance(instanceId);
-        final List<TerrariaInstanceEventEntity> events =
-                terrariaInstanceEventRepository.findTop100ByInstanceOrderByIdDesc(
-                instance);
-        Collections.reverse(events);
-        return new TerrariaInstanceDetailsViewModel(instance, events);
+        return new TerrariaInstanceDetailsViewModel(instance, terrariaInstanceEventCache.getRecentEvents(instance));
+    }
+
+    /**
+     * Get a page of the events of an instance. The pages go from the newest events to the oldest ones: the ID of the
+     * first (oldest) event in a page is the {@code before} of the next page.
+     *
+     * @param instanceId The ID of the instance.
+     * @param before     The ID before which to look for events, or {@code null} to get the newest ones.
+     * @param limit      The largest number of events to get.
+     * @param type       The type that the events should be of, or {@code null} to get events of any type.
+     * @return The events, from the oldest to the newest.
+     */
+    @Transactional
+    @GetMapping(path = "/{instanceId}/events")
+    List<TerrariaInstanceEventEntity> getInstanceEvents(@PathVariable("instanceId") final long instanceId,
+            @RequestParam(name = "before", required = false) final @Nullable Long before,
+            @RequestParam(name = "limit", defaultValue = "100") final int limit,
+            @RequestParam(name = "type", required = false) final @Nullable TerrariaInstanceEventType type)
+            throws NotFoundException, InvalidRequestException {
+        validateEventPageLimit(limit);
+        final TerrariaInstanceEntity instance = terrariaInstanceService.getInstance(instanceId);
+        return terrariaInstanceEventStore.getEvents(instance, before, limit, type);
+    }
+
+    /**
+     * Search the events of an instance for some text, regardless of its case. The pages of the found events go from
+     * the newest to the oldest ones, just like the ones of {@link #getInstanceEvents}.
+     *
+     * @param instanceId The ID of the instance.
+     * @param query      The text to look for in the content of the events.
+     * @param types      The types that the events should be of, or {@code null} to get events of any type.
+     * @param from       The (inclusive) time from which to look for events, or {@code null} to look from the start.
+     * @param to         The (exclusive) time until which to look for events, or {@code null} to look until the end.
+     * @param before     The ID before which to look for events, or {@code null} to get the newest ones.
+     * @param limit      The largest number of events to get.
+     * @return The found events, from the oldest to the newest.
+     */
+    @Transactional
+    @GetMapping(path = "/{instanceId}/events/search")
+    List<TerrariaInstanceEventEntity> searchInstanceEvents(@PathVariable("instanceId") final long instanceId,
+            @RequestParam(name = "query") final String query,
+            @RequestParam(name = "type", required = false) final @Nullable Set<TerrariaInstanceEventType> types,
+            @RequestParam(name = "from", required = false) final @Nullable Instant from,
+            @RequestParam(name = "to", required = false) final @Nullable Instant to,
+            @RequestParam(name = "before", required = false) final @Nullable Long before,
+            @RequestParam(name = "limit", defaultValue = "100") final int limit)
+            throws NotFoundException, InvalidRequestException, InterruptedException {
+        validateEventPageLimit(limit);
+        final TerrariaInstanceEntity instance = terrariaInstanceService.getInstance(instanceId);
+        return terrariaInstanceEventSearchService.search(instance, query,
+                TerrariaInstanceEventSearchFilter.builder().types(types).from(from).to(to).build(), before, limit);
+    }
+
+    @Secured({AuthorityRoles.MANAGE_TERRARIA})
+    @GetMapping(path = "/{instanceId}/logs")
+    List<TerrariaInstanceLogFileModel> getInstanceLogs(@PathVariable("instanceId") final long instanceId)
+            throws NotFoundException {
+        return terrariaInstanceLogService.getLogFiles(terrariaInstanceService.getInstance(instanceId));
+    }
+
+    /**
+     * Download a raw (unredacted) log file of an instance. A single byte range can be requested with the
+     * {@code Range} header, e.g. to resume a download or to get only the end of the log. Compressed log files are sent
+     * as they are, with {@code Content-Encoding: gzip}, so the ranges are of the compressed bytes.
+     * <p>
+     * When the servlet container supports it, the file is sent with {@code sendfile} so that its content does not
+     * need to be copied into the application at all.
+     */
+    @Secured({AuthorityRoles.MANAGE_TERRARIA})
+    @GetMapping(path = "/{instanceId}/logs/{logName:.+}")
+    void downloadInstanceLog(@PathVariable("instanceId") final long instanceId,
+            @PathVariable("logName") final String logName,
+            @RequestHeader(name = HttpHeaders.RANGE, required = false) final @Nullable String rangeHeader,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) final @Nullable String acceptEncoding,
+            final HttpServletRequest request,
+            final HttpServletResponse response) throws NotFoundException, IOException {
+        final TerrariaInstanceEntity instance = terrariaInstanceService.getInstance(instanceId);
+        final File file = terrariaInstanceLogService.getLogFile(instance, logName);
+        final boolean compressed = TerrariaInstanceLogService.isCompressed(file);
+        final String downloadName = compressed
+                ? file.getName().substring(0, file.getName().length() - COMPRESSED_EXTENSION.length())
+                : file.getName();
+        response.setContentType(LOG_CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=\"" + downloadName + "\"");
+
+        if (compressed && (acceptEncoding == null || !acceptEncoding.contains(GZIP_ENCODING))) {
+            // The client cannot decompress the file itself, so it cannot get ranges of it either
+            try (final InputStream inputStream = fileService.readCompressedFileInStream(file)) {
+                inputStream.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        if (compressed) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // The current log file may still be growing, so only the bytes that are already there are sent
+        final long length = file.length();
+        long start = 0;
+        long end = length - 1;
+        if (rangeHeader != null) {
+            try {
+                final List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // Multiple ranges are not supported, so the whole file is sent instead
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    if (start >= length || start > end) {
+                        throw new IllegalArgumentException("Unsatisfiable range: " + rangeHeader);
+                    }
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE,
+                            String.format("bytes %d-%d/%d", start, end, length));
+                }
+            } catch (final IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+        }
+
+        final long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (count > 0 && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, start + count);
+        } else {
+            fileService.transferTo(file, start, count, response.getOutputStream());
+        }
     }
 
     @Secured({AuthorityRoles.MANAGE_TERRARIA})
@@ -56,4 +227,11 @@ class TerrariaInstanceController {
             throws NotFoundException, InvalidRequestException {
         return terrariaInstanceService.updateInstance(instanceId, model);
     }
+
+    private static void validateEventPageLimit(final int limit) throws InvalidRequestException {
+        if (limit < 1 || limit > MAX_EVENT_PAGE_SIZE) {
+            throw new InvalidRequestException(
+                    String.format("The limit must be between 1 and %d; got %d", MAX_EVENT_PAGE_SIZE, limit));
+        }
+    }
 }
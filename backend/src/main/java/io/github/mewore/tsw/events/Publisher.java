@@ -1,5 +1,6 @@
 package io.github.mewore.tsw.events;
 
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -11,12 +12,26 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  */
 public interface Publisher<T, V> {
 
+    /**
+     * @param newName The name which identifies this publisher in its metrics.
+     */
+    void setName(final String newName);
+
     /**
      * @param newTopicToValueMapper The function used to map a topic to a value that will be used as a fallback if no
      *                              matching values have been encountered by a topic-specific subscription.
      */
     void setTopicToValueMapper(final @Nullable Function<T, V> newTopicToValueMapper);
 
+    /**
+     * @param newDispatchExecutor The executor that sends the published values to the subscriptions, so that the
+     *                            thread which publishes them does not have to wait for the subscriptions to accept
+     *                            them. It should run its tasks one by one in order for the values to arrive in the
+     *                            order in which they have been published. If it is {@code null}, the values are sent
+     *                            by the thread which publishes them.
+     */
+    void setDispatchExecutor(final @Nullable Executor newDispatchExecutor);
+
     /**
      * Publish a value to a specific topic, causing all generic subscriptions and all subscriptions for the specified
      * topic to receive the value.
@@ -26,20 +41,41 @@ public interface Publisher<T, V> {
      */
     void publish(final T topic, final V value);
 
+    /**
+     * Subscribe to all topics. New values are skipped while too many of them are waiting to be taken.
+     *
+     * @return The resulting subscription.
+     */
+    default Subscription<V> subscribe() {
+        return subscribe(SubscriptionOverflowPolicy.DROP_NEWEST);
+    }
+
     /**
      * Subscribe to all topics.
      *
+     * @param overflowPolicy What to do with the values that are received faster than they are taken.
      * @return The resulting subscription.
      */
-    Subscription<V> subscribe();
+    Subscription<V> subscribe(final SubscriptionOverflowPolicy overflowPolicy);
 
     /**
-     * Subscribe to a specific topic.
+     * Subscribe to a specific topic. New values are skipped while too many of them are waiting to be taken.
      *
      * @param topic The topic to subscribe to.
      * @return The resulting subscription.
      */
-    Subscription<V> subscribe(final T topic);
+    default Subscription<V> subscribe(final T topic) {
+        return subscribe(topic, SubscriptionOverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Subscribe to a specific topic.
+     *
+     * @param topic          The topic to subscribe to.
+     * @param overflowPolicy What to do with the values that are received faster than they are taken.
+     * @return The resulting subscription.
+     */
+    Subscription<V> subscribe(final T topic, final SubscriptionOverflowPolicy overflowPolicy);
 
     /**
      * Subscribe to all topic events that occur from now on. A topic is considered created when a subscription is
@@ -0,0 +1,73 @@
+package io.github.mewore.tsw.events;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.mewore.tsw.models.OpenSubscriptionModel;
+import io.github.mewore.tsw.services.util.MetricsSource;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+
+/**
+ * Keeps track of all {@link QueuePublisher} beans in order to expose the metrics of them and their subscriptions.
+ */
+@Component
+public class PublisherMonitor implements MetricsSource {
+
+    private final List<QueuePublisher<?, ?>> publishers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Whether to remember where each subscription has been created so that leaked subscriptions can be tracked down.
+     * This walks the stack every time that a subscription is created, so it is meant only for debugging.
+     *
+     * @param creationSiteCaptured Whether to remember the creation sites.
+     */
+    @Value("${tsw.events.capture-subscription-creation-sites:false}")
+    void setCreationSiteCaptured(final boolean creationSiteCaptured) {
+        QueueSubscription.setCreationSiteCaptured(creationSiteCaptured);
+    }
+
+    void register(final QueuePublisher<?, ?> publisher) {
+        publishers.add(publisher);
+    }
+
+    @Override
+    public void writeMetrics(final PrometheusTextWriter writer) {
+        for (final QueuePublisher<?, ?> publisher : publishers) {
+            publisher.writeMetrics(writer);
+        }
+    }
+
+    /**
+     * Find the subscriptions that have been open for a long time. Most subscriptions are meant to be closed soon after
+     * they have been created, so these are likely to have been leaked, although some are meant to stay open for as
+     * long as the application runs.
+     *
+     * @param minAge The shortest time that a subscription should have been open for in order to be included.
+     * @return The subscriptions that have been open for at least {@code minAge}, oldest first.
+     */
+    public List<OpenSubscriptionModel> getOpenSubscriptions(final Duration minAge) {
+        final Instant createdBefore = Instant.now().minus(minAge);
+        return publishers.stream()
+                .flatMap(publisher -> publisher.getOpenSubscriptions()
+                        .stream()
+                        .filter(subscription -> !subscription.getCreatedAt().isAfter(createdBefore))
+                        .map(subscription -> OpenSubscriptionModel.builder()
+                                .publisher(publisher.getName())
+                                .description(subscription.getDescription())
+                                .overflowPolicy(subscription.getOverflowPolicy())
+                                .createdAt(subscription.getCreatedAt())
+                                .creationSite(subscription.getCreationSite())
+                                .size(subscription.size())
+                                .droppedValueCount(subscription.getDroppedValueCount())
+                                .build()))
+                .sorted(Comparator.comparing(OpenSubscriptionModel::getCreatedAt))
+                .collect(Collectors.toUnmodifiableList());
+    }
+}
@@ -1,23 +1,36 @@
 package io.github.mewore.tsw.events;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
 /**
- * A fragile implementation of {@link Publisher}, which hopes that its {@code currentId} atomic ID and usage of maps
- * saves it from any nasty race conditions.
+ * An implementation of {@link Publisher} which keeps its subscriptions in immutable arrays. Subscribing and
+ * unsubscribing replace an array with a new one atomically, so publishing a value only has to read the current arrays
+ * without any locking or allocation.
+ * <p>
+ * The topic events of a topic are sent while its array is being replaced, so they are always in the same order as the
+ * changes of its subscriptions and a topic is never created or deleted twice in a row.
  *
  * @param <T> The topic type.
  * @param <V> The notification value type.
@@ -27,82 +40,192 @@ import lombok.Setter;
 @Component
 public class QueuePublisher<T extends @NonNull Object, V extends @NonNull Object> implements Publisher<T, V> {
 
-    private final AtomicLong currentId = new AtomicLong();
+    private static final ManagedSubscription<?>[] NO_SUBSCRIPTIONS = new ManagedSubscription<?>[0];
 
-    private final ConcurrentMap<T, ConcurrentMap<Long, ManagedSubscription<V>>> subscriptionsByTopic =
-            new ConcurrentHashMap<>();
+    private final ConcurrentMap<T, ManagedSubscription<?>[]> subscriptionsByTopic = new ConcurrentHashMap<>();
 
-    private final ConcurrentMap<Long, ManagedSubscription<V>> genericSubscriptions = new ConcurrentHashMap<>();
+    private final AtomicReference<ManagedSubscription<?>[]> genericSubscriptions =
+            new AtomicReference<>(NO_SUBSCRIPTIONS);
 
-    private final ConcurrentMap<Long, ManagedSubscription<PublisherTopicEvent<T>>> topicEventSubscriptions =
-            new ConcurrentHashMap<>();
+    private final AtomicReference<ManagedSubscription<?>[]> topicEventSubscriptions =
+            new AtomicReference<>(NO_SUBSCRIPTIONS);
+
+    @Getter
+    @Setter
+    private volatile String name = "unnamed";
+
+    private final LongAdder publishedValueCount = new LongAdder();
+
+    private final SubscriptionStatistics statistics = new SubscriptionStatistics();
 
     @Setter
     private volatile @Nullable Function<T, V> topicToValueMapper;
 
+    @Setter
+    private volatile @Nullable Executor dispatchExecutor;
+
+    private static ManagedSubscription<?>[] withSubscription(final ManagedSubscription<?> @Nullable [] subscriptions,
+            final ManagedSubscription<?> subscription) {
+        if (subscriptions == null) {
+            return new ManagedSubscription<?>[]{subscription};
+        }
+        final ManagedSubscription<?>[] result = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        result[subscriptions.length] = subscription;
+        return result;
+    }
+
+    private static ManagedSubscription<?> @Nullable [] withoutSubscription(
+            final ManagedSubscription<?> @Nullable [] subscriptions, final ManagedSubscription<?> subscription) {
+        if (subscriptions == null) {
+            return null;
+        }
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i] == subscription) {
+                if (subscriptions.length == 1) {
+                    return null;
+                }
+                final ManagedSubscription<?>[] result = new ManagedSubscription<?>[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, result, 0, i);
+                System.arraycopy(subscriptions, i + 1, result, i, subscriptions.length - i - 1);
+                return result;
+            }
+        }
+        return subscriptions;
+    }
+
+    private static ManagedSubscription<?>[] orEmpty(final ManagedSubscription<?> @Nullable [] subscriptions) {
+        return subscriptions == null ? NO_SUBSCRIPTIONS : subscriptions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <U> void notifySubscriptions(final ManagedSubscription<?> @Nullable [] subscriptions,
+            final U value) {
+        if (subscriptions != null) {
+            for (final ManagedSubscription<?> subscription : subscriptions) {
+                ((ManagedSubscription<U>) subscription).accept(value);
+            }
+        }
+    }
+
+    @Autowired
+    void registerIn(final PublisherMonitor monitor) {
+        monitor.register(this);
+    }
+
     @Override
     public void publish(final T topic, final V value) {
-        notifySubscriptions(subscriptionsByTopic.get(topic), value);
-        notifySubscriptions(genericSubscriptions, value);
+        publishedValueCount.increment();
+        final ManagedSubscription<?> @Nullable [] topicSubscriptions = subscriptionsByTopic.get(topic);
+        final ManagedSubscription<?>[] currentGenericSubscriptions = genericSubscriptions.get();
+        final @Nullable Executor currentDispatchExecutor = dispatchExecutor;
+        if (currentDispatchExecutor == null) {
+            notifySubscriptions(topicSubscriptions, value);
+            notifySubscriptions(currentGenericSubscriptions, value);
+            return;
+        }
+        if (topicSubscriptions != null || currentGenericSubscriptions.length > 0) {
+            currentDispatchExecutor.execute(() -> {
+                notifySubscriptions(topicSubscriptions, value);
+                notifySubscriptions(currentGenericSubscriptions, value);
+            });
+        }
     }
 
     @Override
-    public Subscription<V> subscribe() {
-        final long id = currentId.incrementAndGet();
-        final ManagedSubscription<V> subscription = new QueueSubscription<>(() -> genericSubscriptions.remove(id),
+    public Subscription<V> subscribe(final SubscriptionOverflowPolicy overflowPolicy) {
+        final AtomicReference<@Nullable ManagedSubscription<V>> subscriptionReference = new AtomicReference<>();
+        final ManagedSubscription<V> subscription = new QueueSubscription<>(overflowPolicy, statistics,
+                () -> genericSubscriptions.updateAndGet(
+                        subscriptions -> orEmpty(withoutSubscription(subscriptions, subscriptionReference.get()))),
                 LogManager.getLogger("Subscription(GENERIC)"), null);
-
-        genericSubscriptions.put(id, subscription);
+        subscriptionReference.set(subscription);
+        genericSubscriptions.updateAndGet(subscriptions -> withSubscription(subscriptions, subscription));
         return subscription;
     }
 
     @Override
-    public Subscription<V> subscribe(final T topic) {
-        final long id = currentId.incrementAndGet();
+    public Subscription<V> subscribe(final T topic, final SubscriptionOverflowPolicy overflowPolicy) {
         final var currentTopicToValue = topicToValueMapper;
-        final ManagedSubscription<V> subscription = new QueueSubscription<>(() -> {
-            final @Nullable ConcurrentMap<Long, ManagedSubscription<V>> map = subscriptionsByTopic.get(topic);
-            if (map == null) {
-                return;
-            }
-            map.remove(id);
-            if (map.isEmpty()) {
-                subscriptionsByTopic.remove(topic, new ConcurrentHashMap<Long, ManagedSubscription<V>>());
-            }
-            notifySubscriptions(topicEventSubscriptions,
-                    new PublisherTopicEvent<>(PublisherTopicEvent.Type.TOPIC_DELETED, topic));
-        }, LogManager.getLogger("Subscription(" + topic + ")"),
+        final AtomicReference<@Nullable ManagedSubscription<V>> subscriptionReference = new AtomicReference<>();
+        final ManagedSubscription<V> subscription = new QueueSubscription<>(overflowPolicy, statistics,
+                () -> subscriptionsByTopic.computeIfPresent(topic, (key, subscriptions) -> {
+                    final ManagedSubscription<?> @Nullable [] result =
+                            withoutSubscription(subscriptions, subscriptionReference.get());
+                    if (result == null) {
+                        notifySubscriptions(topicEventSubscriptions.get(),
+                                new PublisherTopicEvent<>(PublisherTopicEvent.Type.TOPIC_DELETED, topic));
+                    }
+                    return result;
+                }), LogManager.getLogger("Subscription(" + topic + ")"),
                 currentTopicToValue == null ? null : () -> currentTopicToValue.apply(topic));
+        subscriptionReference.set(subscription);
 
-        subscriptionsByTopic.compute(topic, (key, subscriptionMap) -> {
-            if (subscriptionMap == null || subscriptionMap.isEmpty()) {
-                notifySubscriptions(topicEventSubscriptions,
+        subscriptionsByTopic.compute(topic, (key, subscriptions) -> {
+            if (subscriptions == null) {
+                notifySubscriptions(topicEventSubscriptions.get(),
                         new PublisherTopicEvent<>(PublisherTopicEvent.Type.TOPIC_CREATED, topic));
             }
-            final ConcurrentMap<Long, ManagedSubscription<V>> result =
-                    subscriptionMap == null ? new ConcurrentHashMap<>(1) : subscriptionMap;
-            result.put(id, subscription);
-            return result;
+            return withSubscription(subscriptions, subscription);
         });
 
         return subscription;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The subscription keeps all topic events because skipping any of them would leave the subscriber with the wrong
+     * idea of which topics exist.
+     */
     @Override
     public Subscription<PublisherTopicEvent<T>> subscribeToTopicEvents() {
-        final long id = currentId.incrementAndGet();
+        final AtomicReference<@Nullable ManagedSubscription<PublisherTopicEvent<T>>> subscriptionReference =
+                new AtomicReference<>();
         final ManagedSubscription<PublisherTopicEvent<T>> subscription = new QueueSubscription<>(
-                () -> topicEventSubscriptions.remove(id), LogManager.getLogger("Subscription(TOPIC_EVENTS)"), null);
-        topicEventSubscriptions.put(id, subscription);
+                SubscriptionOverflowPolicy.UNBOUNDED, () -> topicEventSubscriptions.updateAndGet(
+                subscriptions -> orEmpty(withoutSubscription(subscriptions, subscriptionReference.get()))),
+                LogManager.getLogger("Subscription(TOPIC_EVENTS)"), null);
+        subscriptionReference.set(subscription);
+        topicEventSubscriptions.updateAndGet(subscriptions -> withSubscription(subscriptions, subscription));
         return subscription;
     }
 
-    private <U> void notifySubscriptions(final @Nullable ConcurrentMap<Long, ManagedSubscription<U>> subscriptionMap,
-            final U value) {
-        if (subscriptionMap != null) {
-            for (final ManagedSubscription<U> subscription : subscriptionMap.values()) {
-                subscription.accept(value);
+    void writeMetrics(final PrometheusTextWriter writer) {
+        final String[] labels = {"publisher", name};
+        writer.counter("tsw_publisher_published_values_total", "The number of values that have been published.",
+                publishedValueCount.sum(), labels);
+        writer.counter("tsw_publisher_delivered_values_total",
+                "The number of values that have been put in open subscriptions.",
+                statistics.getDeliveredValueCount().sum(), labels);
+        writer.counter("tsw_publisher_dropped_values_total",
+                "The number of values that subscriptions have dropped because of an overflow.",
+                statistics.getDroppedValueCount().sum(), labels);
+        writer.durations("tsw_publisher_queue_residence_seconds",
+                "The time from sending a value to a subscription until it has been taken from it.",
+                statistics.getResidenceTime(), labels);
+        writer.gauge("tsw_publisher_generic_subscriptions", "The number of open subscriptions to all topics.",
+                genericSubscriptions.get().length, labels);
+        for (final Map.Entry<T, ManagedSubscription<?>[]> entry : subscriptionsByTopic.entrySet()) {
+            writer.gauge("tsw_publisher_topic_subscriptions", "The number of open subscriptions to a topic.",
+                    entry.getValue().length, "publisher", name, "topic", entry.getKey().toString());
+        }
+    }
+
+    /**
+     * @return All subscriptions of this publisher which have not been closed yet.
+     */
+    List<QueueSubscription<?>> getOpenSubscriptions() {
+        final List<QueueSubscription<?>> result = new ArrayList<>();
+        final List<ManagedSubscription<?>[]> subscriptionArrays = new ArrayList<>(subscriptionsByTopic.values());
+        subscriptionArrays.add(genericSubscriptions.get());
+        subscriptionArrays.add(topicEventSubscriptions.get());
+        for (final ManagedSubscription<?>[] subscriptions : subscriptionArrays) {
+            for (final ManagedSubscription<?> subscription : subscriptions) {
+                if (subscription instanceof QueueSubscription<?>) {
+                    result.add((QueueSubscription<?>) subscription);
+                }
             }
         }
+        return result;
     }
 }
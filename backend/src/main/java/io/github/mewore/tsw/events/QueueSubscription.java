@@ -3,27 +3,56 @@ package io.github.mewore.tsw.events;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
-@RequiredArgsConstructor
 class QueueSubscription<T extends @NonNull Object> extends SubscriptionBase<T> implements ManagedSubscription<T> {
 
     private static final int QUEUE_CAPACITY = 10;
 
+    /**
+     * The size of an unbounded queue at which a warning is logged.
+     */
+    private static final int UNBOUNDED_QUEUE_WARNING_SIZE = 1000;
+
+    /**
+     * The longest time that a publisher waits for room in a full queue.
+     */
+    private static final Duration BLOCK_TIMEOUT = Duration.ofSeconds(1);
+
+    private static final String EVENTS_PACKAGE_PREFIX = QueueSubscription.class.getPackageName() + ".";
+
+    /**
+     * The number of stack frames outside of this package to remember as the place where a subscription was created.
+     */
+    private static final int CREATION_SITE_FRAME_COUNT = 3;
+
+    /**
+     * Whether to remember where each subscription has been created.
+     */
+    private static volatile boolean creationSiteCaptured = false;
+
     @Getter
-    private final BlockingQueue<T> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final SubscriptionOverflowPolicy overflowPolicy;
+
+    private final SubscriptionStatistics statistics;
+
+    /**
+     * The values of the subscription. A conflating subscription holds at most one value.
+     */
+    private final TimestampedQueue<T> queue;
 
     private final Runnable onClosed;
 
@@ -36,6 +65,75 @@ class QueueSubscription<T extends @NonNull Object> extends SubscriptionBase<T> i
 
     private final AtomicBoolean opened = new AtomicBoolean(true);
 
+    /**
+     * The number of values that have been skipped or removed because of an overflow.
+     */
+    private final LongAdder droppedValueCount = new LongAdder();
+
+    /**
+     * The largest number of values that have been waiting to be taken at once.
+     */
+    private final AtomicInteger maxSize = new AtomicInteger();
+
+    @Getter
+    private final Instant createdAt = Instant.now();
+
+    /**
+     * The innermost stack frames outside of this package at the time this subscription was created, or an empty list
+     * if capturing them has not been enabled.
+     */
+    @Getter
+    private final List<String> creationSite = creationSiteCaptured ? findCreationSite() : List.of();
+
+    QueueSubscription(final Runnable onClosed, final Logger logger, final @Nullable Supplier<T> valueSupplier) {
+        this(SubscriptionOverflowPolicy.DROP_NEWEST, onClosed, logger, valueSupplier);
+    }
+
+    QueueSubscription(final SubscriptionOverflowPolicy overflowPolicy, final Runnable onClosed, final Logger logger,
+            final @Nullable Supplier<T> valueSupplier) {
+        this(overflowPolicy, new SubscriptionStatistics(), onClosed, logger, valueSupplier);
+    }
+
+    QueueSubscription(final SubscriptionOverflowPolicy overflowPolicy, final SubscriptionStatistics statistics,
+            final Runnable onClosed, final Logger logger, final @Nullable Supplier<T> valueSupplier) {
+        this.overflowPolicy = overflowPolicy;
+        this.statistics = statistics;
+        this.onClosed = onClosed;
+        this.logger = logger;
+        this.valueSupplier = valueSupplier;
+        final int capacity;
+        switch (overflowPolicy) {
+            case UNBOUNDED:
+                capacity = Integer.MAX_VALUE;
+                break;
+            case CONFLATE:
+                capacity = 1;
+                break;
+            default:
+                capacity = QUEUE_CAPACITY;
+        }
+        queue = new TimestampedQueue<>(capacity, statistics.getResidenceTime());
+    }
+
+    /**
+     * Enable or disable remembering where each new subscription has been created. Walking the stack is too expensive
+     * to do for every subscription, so this is only meant for looking for leaked subscriptions.
+     *
+     * @param captured Whether to remember the creation sites.
+     */
+    static void setCreationSiteCaptured(final boolean captured) {
+        creationSiteCaptured = captured;
+    }
+
+    private static List<String> findCreationSite() {
+        return StackWalker.getInstance()
+                .walk(frames -> frames.filter(frame -> !frame.getClassName().startsWith(EVENTS_PACKAGE_PREFIX))
+                        .limit(CREATION_SITE_FRAME_COUNT)
+                        .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" +
+                                frame.getLineNumber())
+                        .collect(Collectors.toUnmodifiableList()));
+    }
+
     @Override
     public T take() throws InterruptedException {
         if (!opened.get()) {
@@ -48,8 +146,7 @@ class QueueSubscription<T extends @NonNull Object> extends SubscriptionBase<T> i
     public @Nullable T waitFor(final Predicate<T> predicate, final Duration timeout) throws InterruptedException {
         final Instant deadline = Instant.now().plus(timeout);
         while (true) {
-            final @Nullable T result = opened.get() ? queue.poll(Instant.now().until(deadline, ChronoUnit.MILLIS),
-                    TimeUnit.MILLISECONDS) : null;
+            final @Nullable T result = opened.get() ? poll(Instant.now().until(deadline, ChronoUnit.MILLIS)) : null;
             if (result == null) {
                 break;
             }
@@ -64,6 +161,10 @@ class QueueSubscription<T extends @NonNull Object> extends SubscriptionBase<T> i
         return predicate.test(result) ? result : null;
     }
 
+    private @Nullable T poll(final long timeoutMillis) throws InterruptedException {
+        return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void close() {
         if (opened.compareAndSet(true, false)) {
@@ -78,9 +179,101 @@ class QueueSubscription<T extends @NonNull Object> extends SubscriptionBase<T> i
     }
 
     @Override
-    public void accept(final T value) {
-        if (opened.get() && !queue.offer(value)) {
-            logger.warn("The subscription blocking queue for has been overfilled! Skipping the next value.");
+    public void accept(final T newValue) {
+        if (!opened.get()) {
+            return;
+        }
+        if (overflowPolicy == SubscriptionOverflowPolicy.CONFLATE ? conflate(newValue) : enqueue(newValue)) {
+            statistics.getDeliveredValueCount().increment();
+        }
+        maxSize.accumulateAndGet(size(), Math::max);
+    }
+
+    /**
+     * @return Whether the value has been added to the queue.
+     */
+    private boolean enqueue(final T value) {
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                if (!queue.offer(value)) {
+                    onValueDropped("Skipping the new value.");
+                    return false;
+                }
+                return true;
+            case DROP_OLDEST:
+                if (queue.offerReplacingOldest(value)) {
+                    onValueDropped("Removing the oldest value.");
+                }
+                return true;
+            case BLOCK:
+                try {
+                    if (!queue.offer(value, BLOCK_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                        onValueDropped("Skipping the new value after waiting for " + BLOCK_TIMEOUT + ".");
+                        return false;
+                    }
+                    return true;
+                } catch (final InterruptedException e) {
+                    onValueDropped("Skipping the new value because of an interruption.");
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case UNBOUNDED:
+                queue.offer(value);
+                if (queue.size() == UNBOUNDED_QUEUE_WARNING_SIZE) {
+                    logger.warn("The unbounded subscription queue has reached {} values!",
+                            UNBOUNDED_QUEUE_WARNING_SIZE);
+                }
+                return true;
+            default:
+                throw new IllegalStateException("Cannot enqueue a value with the " + overflowPolicy + " policy");
+        }
+    }
+
+    /**
+     * Replace the value of a conflating subscription.
+     *
+     * @return Always {@code true} because the new value always takes the place of the old one.
+     */
+    private boolean conflate(final T value) {
+        if (queue.offerReplacingOldest(value)) {
+            droppedValueCount.increment();
+            statistics.getDroppedValueCount().increment();
         }
+        return true;
+    }
+
+    private void onValueDropped(final String action) {
+        droppedValueCount.increment();
+        statistics.getDroppedValueCount().increment();
+        logger.warn("The subscription queue has been overfilled! {}", action);
+    }
+
+    /**
+     * @return The number of values that are waiting to be taken.
+     */
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return The largest number of values that have been waiting to be taken at once.
+     */
+    int getMaxSize() {
+        return maxSize.get();
+    }
+
+    /**
+     * @return The number of values that have been skipped or removed because of an overflow. In a conflating
+     * subscription, these are the values that have been replaced before they could be taken.
+     */
+    long getDroppedValueCount() {
+        return droppedValueCount.sum();
+    }
+
+    /**
+     * @return A description of what this subscription is for, e.g. its topic.
+     */
+    String getDescription() {
+        return logger.getName();
     }
 }
@@ -0,0 +1,35 @@
+package io.github.mewore.tsw.events;
+
+/**
+ * What a subscription does with the values that it receives faster than they are taken from it.
+ */
+public enum SubscriptionOverflowPolicy {
+
+    /**
+     * Keep a bounded queue of values and skip the new values while it is full.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Keep a bounded queue of values and remove the oldest one from it to make room for a new value while it is full.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Keep a bounded queue of values and make the publisher wait for room in it while it is full. If there is still no
+     * room after a while, the new value is skipped.
+     */
+    BLOCK,
+
+    /**
+     * Keep all values, no matter how many of them there are. A warning is logged when the queue grows too large and the
+     * largest size it has reached is kept track of.
+     */
+    UNBOUNDED,
+
+    /**
+     * Keep only the latest value, which replaces any value that has not been taken yet. Meant for subscriptions to a
+     * single topic whose values are snapshots of an entity, where only its current state matters.
+     */
+    CONFLATE
+}
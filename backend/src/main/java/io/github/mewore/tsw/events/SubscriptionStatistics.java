@@ -0,0 +1,30 @@
+package io.github.mewore.tsw.events;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.mewore.tsw.services.util.DurationStatistics;
+import lombok.Getter;
+
+/**
+ * Statistics of the values received by a group of subscriptions, e.g. all subscriptions of a publisher. They are kept
+ * even after the subscriptions have been closed.
+ */
+@Getter
+class SubscriptionStatistics {
+
+    /**
+     * The number of values that have been put in an open subscription. The ones which have been skipped because of an
+     * overflow are not included, unlike the ones which have been removed or replaced later on to make room for others.
+     */
+    private final LongAdder deliveredValueCount = new LongAdder();
+
+    /**
+     * The number of values that have been skipped or removed because of an overflow.
+     */
+    private final LongAdder droppedValueCount = new LongAdder();
+
+    /**
+     * The time from putting a value in a queue of a subscription until it has been taken from it.
+     */
+    private final DurationStatistics residenceTime = new DurationStatistics();
+}
@@ -0,0 +1,179 @@
+package io.github.mewore.tsw.events;
+
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import io.github.mewore.tsw.services.util.DurationStatistics;
+
+/**
+ * A FIFO queue which measures how long each value waits in it. The times at which the values have been added are kept
+ * in a primitive ring parallel to the values, so adding a value allocates nothing unless an unbounded queue has to
+ * grow.
+ *
+ * @param <T> The type of the values.
+ */
+class TimestampedQueue<T extends @NonNull Object> {
+
+    private static final int INITIAL_UNBOUNDED_CAPACITY = 16;
+
+    private final int capacity;
+
+    private final DurationStatistics residenceTime;
+
+    private @Nullable Object[] values;
+
+    private long[] queuedAtNanos;
+
+    /**
+     * The index of the oldest value.
+     */
+    private int head;
+
+    private int size;
+
+    /**
+     * @param capacity      The largest number of values that the queue can hold, or {@link Integer#MAX_VALUE} if it
+     *                      is unbounded.
+     * @param residenceTime Where to record how long each taken value has waited in the queue.
+     */
+    TimestampedQueue(final int capacity, final DurationStatistics residenceTime) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive but it is " + capacity);
+        }
+        this.capacity = capacity;
+        this.residenceTime = residenceTime;
+        final int initialCapacity = Math.min(capacity, INITIAL_UNBOUNDED_CAPACITY);
+        values = new Object[initialCapacity];
+        queuedAtNanos = new long[initialCapacity];
+    }
+
+    /**
+     * Add a value if there is room for it.
+     *
+     * @param value The value to add.
+     * @return Whether the value has been added.
+     */
+    synchronized boolean offer(final T value) {
+        if (size == capacity) {
+            return false;
+        }
+        add(value);
+        return true;
+    }
+
+    /**
+     * Add a value, waiting for room for it if necessary.
+     *
+     * @param value   The value to add.
+     * @param timeout The longest time to wait for.
+     * @param unit    The unit of the timeout.
+     * @return Whether the value has been added.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    synchronized boolean offer(final T value, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        while (size == capacity) {
+            final long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+        add(value);
+        return true;
+    }
+
+    /**
+     * Add a value, removing the oldest one if there is no room for it.
+     *
+     * @param value The value to add.
+     * @return Whether a value has been removed.
+     */
+    synchronized boolean offerReplacingOldest(final T value) {
+        final boolean full = size == capacity;
+        if (full) {
+            removeHead();
+        }
+        add(value);
+        return full;
+    }
+
+    /**
+     * Take the oldest value, waiting for one if necessary.
+     *
+     * @return The oldest value.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    synchronized T take() throws InterruptedException {
+        while (size == 0) {
+            wait();
+        }
+        return takeHead();
+    }
+
+    /**
+     * Take the oldest value, waiting for one for a limited time if necessary.
+     *
+     * @param timeout The longest time to wait for.
+     * @param unit    The unit of the timeout.
+     * @return The oldest value, or {@code null} if there has been none until the timeout.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    synchronized @Nullable T poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        while (size == 0) {
+            final long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+        return takeHead();
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void add(final T value) {
+        if (size == values.length) {
+            grow();
+        }
+        final int index = (head + size) % values.length;
+        values[index] = value;
+        queuedAtNanos[index] = System.nanoTime();
+        size++;
+        notifyAll();
+    }
+
+    private void grow() {
+        final int newLength = (int) Math.min((long) capacity, values.length * 2L);
+        final @Nullable Object[] newValues = new Object[newLength];
+        final long[] newQueuedAtNanos = new long[newLength];
+        for (int i = 0; i < size; i++) {
+            final int index = (head + i) % values.length;
+            newValues[i] = values[index];
+            newQueuedAtNanos[i] = queuedAtNanos[index];
+        }
+        values = newValues;
+        queuedAtNanos = newQueuedAtNanos;
+        head = 0;
+    }
+
+    private T takeHead() {
+        residenceTime.record(System.nanoTime() - queuedAtNanos[head]);
+        return removeHead();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeHead() {
+        final T value = (T) values[head];
+        values[head] = null;
+        head = (head + 1) % values.length;
+        size--;
+        notifyAll();
+        return value;
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.mewore.tsw.models;
+
+import java.time.Instant;
+import java.util.List;
+
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A subscription to a publisher which has not been closed yet.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@Getter
+public class OpenSubscriptionModel {
+
+    private final String publisher;
+
+    /**
+     * What the subscription is for, e.g. {@code Subscription(<topic>)}.
+     */
+    private final String description;
+
+    private final SubscriptionOverflowPolicy overflowPolicy;
+
+    private final Instant createdAt;
+
+    /**
+     * The stack frames (innermost first) of the code which created the subscription, or none if capturing them is
+     * disabled.
+     */
+    private final List<String> creationSite;
+
+    /**
+     * The number of values that are waiting to be taken from the subscription.
+     */
+    private final int size;
+
+    private final long droppedValueCount;
+}
@@ -6,12 +6,15 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 import java.io.File;
 import java.io.Serializable;
 import java.nio.file.Path;
@@ -61,7 +64,9 @@ public class TerrariaInstanceEntity implements Serializable {
 
     @Setter(AccessLevel.NONE)
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "terraria_instance_id_seq")
+    @SequenceGenerator(name = "terraria_instance_id_seq", sequenceName = "terraria_instance_id_seq",
+            allocationSize = 10)
     private Long id;
 
     @Builder.Default
@@ -122,6 +127,39 @@ public class TerrariaInstanceEntity implements Serializable {
     @ColumnDefault("0")
     private @NonNull Long nextOutputBytePosition = 0L;
 
+    /**
+     * The name of the charset that the output of this instance is encoded in.
+     */
+    @Builder.Default
+    @Column(nullable = false)
+    @ColumnDefault("'UTF-8'")
+    private @NonNull String outputCharset = "UTF-8";
+
+    /**
+     * The longest time that the output of this instance may stay unsaved while more of it is expected to arrive.
+     */
+    @Builder.Default
+    @Column(nullable = false)
+    @ColumnDefault("100")
+    private @PositiveOrZero @NonNull Integer outputFlushIntervalMillis = 100;
+
+    /**
+     * The number of unsaved output bytes after which the output of this instance is saved right away.
+     */
+    @Builder.Default
+    @Column(nullable = false)
+    @ColumnDefault("65536")
+    private @PositiveOrZero @NonNull Integer outputFlushBytes = 65536;
+
+    /**
+     * The time within which repetitions of an output line of this instance are collapsed into a single event. Zero
+     * means that they are never collapsed.
+     */
+    @Builder.Default
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private @PositiveOrZero @NonNull Integer outputRepeatWindowMillis = 0;
+
     @Builder.Default
     @JsonIgnore
     @Column(nullable = false)
@@ -0,0 +1,72 @@
+package io.github.mewore.tsw.models.terraria;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.Instant;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.Setter;
+
+/**
+ * Consecutive output events of an instance, packed together and compressed.
+ * <p>
+ * The content of the events is concatenated (as UTF-8) and deflated, while the ID, timestamp and end offset of each
+ * event in the concatenated content are kept uncompressed in the event index so that only as much of the content as
+ * is needed has to be inflated.
+ */
+@NoArgsConstructor(access = AccessLevel.PACKAGE)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@Getter
+@Entity
+@Table(name = "terraria_instance_event_chunk", indexes = {
+        @Index(name = "terraria_instance_event_chunk_instance_id_first_event_id_idx",
+                columnList = "instance_id, first_event_id")})
+@Immutable
+public class TerrariaInstanceEventChunkEntity {
+
+    @Setter(AccessLevel.NONE)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "terraria_instance_event_chunk_id_seq")
+    @SequenceGenerator(name = "terraria_instance_event_chunk_id_seq",
+            sequenceName = "terraria_instance_event_chunk_id_seq", allocationSize = 10)
+    private Long id;
+
+    @ManyToOne(optional = false)
+    private @NonNull TerrariaInstanceEntity instance;
+
+    @Column(name = "first_event_id", nullable = false)
+    private long firstEventId;
+
+    @Column(nullable = false)
+    private long lastEventId;
+
+    @Column(nullable = false)
+    private @NonNull Instant lastTimestamp;
+
+    @Column(nullable = false)
+    private int eventCount;
+
+    @Column(nullable = false)
+    private int contentSize;
+
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] eventIndex;
+
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] compressedContent;
+}
@@ -5,8 +5,11 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.io.Serializable;
 import java.time.Instant;
@@ -28,7 +31,9 @@ import lombok.Setter;
 @Builder
 @Getter
 @Entity
-@Table(name = "terraria_instance_event")
+@Table(name = "terraria_instance_event", indexes = {
+        @Index(name = "terraria_instance_event_instance_id_id_idx", columnList = "instance_id, id"),
+        @Index(name = "terraria_instance_event_instance_id_type_id_idx", columnList = "instance_id, type, id")})
 @Immutable
 public class TerrariaInstanceEventEntity implements Serializable {
 
@@ -36,7 +41,9 @@ public class TerrariaInstanceEventEntity implements Serializable {
 
     @Setter(AccessLevel.NONE)
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "terraria_instance_event_id_seq")
+    @SequenceGenerator(name = "terraria_instance_event_id_seq", sequenceName = "terraria_instance_event_id_seq",
+            allocationSize = 100)
     private Long id;
 
     @Column(nullable = false)
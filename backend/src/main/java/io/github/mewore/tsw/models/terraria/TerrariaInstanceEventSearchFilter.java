@@ -0,0 +1,35 @@
+package io.github.mewore.tsw.models.terraria;
+
+import java.time.Instant;
+import java.util.Set;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * What the events found by a search have to match, apart from the query.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@Getter
+public class TerrariaInstanceEventSearchFilter {
+
+    /**
+     * The types that the events should be of, or {@code null} for any type.
+     */
+    private final @Nullable Set<TerrariaInstanceEventType> types;
+
+    /**
+     * The (inclusive) time from which to look for events, or {@code null} to look from the start.
+     */
+    private final @Nullable Instant from;
+
+    /**
+     * The (exclusive) time until which to look for events, or {@code null} to look until the end.
+     */
+    private final @Nullable Instant to;
+}
@@ -5,6 +5,7 @@ public enum TerrariaInstanceEventType {
     OUTPUT,
     DETAILED_OUTPUT,
     IMPORTANT_OUTPUT,
+    OUTPUT_SKIPPED,
     INPUT,
     INVALID_INSTANCE,
     ERROR,
@@ -0,0 +1,36 @@
+package io.github.mewore.tsw.models.terraria;
+
+import java.time.Instant;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A log file with the console output of an instance, either the current one or an archived one.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@Getter
+public class TerrariaInstanceLogFileModel {
+
+    private final String name;
+
+    /**
+     * The size of the file in bytes. If it is compressed, this is the compressed size.
+     */
+    private final long size;
+
+    private final Instant lastModified;
+
+    /**
+     * Whether the file is compressed with gzip.
+     */
+    private final boolean compressed;
+
+    /**
+     * Whether this is the file which the instance is currently writing its output to.
+     */
+    private final boolean current;
+}
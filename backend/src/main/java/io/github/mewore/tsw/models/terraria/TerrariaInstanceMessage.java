@@ -31,9 +31,18 @@ public class TerrariaInstanceMessage {
 
     private final @NonNull Map<Integer, String> options;
 
+    /**
+     * The number of events that have been deleted so far if the instance is being deleted.
+     */
+    private final @Nullable Long deletedEventCount;
+
     public TerrariaInstanceMessage(final TerrariaInstanceEntity instance) {
+        this(instance, null);
+    }
+
+    public TerrariaInstanceMessage(final TerrariaInstanceEntity instance, final @Nullable Long deletedEventCount) {
         this(instance.getTerrariaVersion(), instance.getModLoaderVersion(), instance.getModLoaderReleaseUrl(),
                 instance.getModLoaderArchiveUrl(), instance.getState(), instance.getPendingAction(),
-                instance.getCurrentAction(), instance.getOptions());
+                instance.getCurrentAction(), instance.getOptions(), deletedEventCount);
     }
 }
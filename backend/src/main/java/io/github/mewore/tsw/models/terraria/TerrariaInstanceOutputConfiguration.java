@@ -0,0 +1,31 @@
+package io.github.mewore.tsw.models.terraria;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.PositiveOrZero;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * How the output of an instance is decoded and saved. The charset takes effect the next time that the output of the
+ * instance starts being tracked, while the limits take effect right away.
+ */
+@RequiredArgsConstructor
+@Getter
+public class TerrariaInstanceOutputConfiguration {
+
+    public static final int MAX_FLUSH_INTERVAL_MILLIS = 60_000;
+
+    public static final int MAX_FLUSH_BYTES = 16 * 1024 * 1024;
+
+    public static final int MAX_REPEAT_WINDOW_MILLIS = 3_600_000;
+
+    private final @NotBlank String charset;
+
+    private final @PositiveOrZero @Max(MAX_FLUSH_INTERVAL_MILLIS) int flushIntervalMillis;
+
+    private final @PositiveOrZero @Max(MAX_FLUSH_BYTES) int flushBytes;
+
+    private final @PositiveOrZero @Max(MAX_REPEAT_WINDOW_MILLIS) int repeatWindowMillis;
+}
@@ -120,7 +120,12 @@ public enum TerrariaInstanceState {
     /**
      * The instance has encountered an unknown exception. Its real state is unknown, and it may be impossible to use.
      */
-    BROKEN(false, RECREATE, DELETE);
+    BROKEN(false, RECREATE, DELETE),
+
+    /**
+     * The events of the instance are being deleted in the background, after which the instance itself is deleted.
+     */
+    DELETING(false);
 
     /**
      * Whether the instance is expected/assumed to be running as a process while it is in this state.
@@ -34,4 +34,7 @@ public class TerrariaInstanceUpdateModel {
 
     @Nullable
     private @Valid WorldCreationConfiguration worldCreationConfiguration;
+
+    @Nullable
+    private @Valid TerrariaInstanceOutputConfiguration outputConfiguration;
 }
@@ -6,8 +6,10 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.Positive;
@@ -44,7 +46,8 @@ public class TerrariaWorldEntity implements Serializable {
 
     @Setter(AccessLevel.NONE)
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "terraria_world_id_seq")
+    @SequenceGenerator(name = "terraria_world_id_seq", sequenceName = "terraria_world_id_seq", allocationSize = 10)
     private Long id;
 
     @JsonIgnore
@@ -0,0 +1,36 @@
+package io.github.mewore.tsw.repositories.terraria;
+
+import javax.transaction.Transactional;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+
+@Transactional
+public interface TerrariaInstanceEventChunkRepository extends JpaRepository<TerrariaInstanceEventChunkEntity, Long> {
+
+    Optional<TerrariaInstanceEventChunkEntity> findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+            final TerrariaInstanceEntity instance, final long firstEventId);
+
+    @Query("SELECT chunk FROM TerrariaInstanceEventChunkEntity chunk WHERE chunk.instance = :instance " +
+            "AND chunk.firstEventId < :before AND chunk.lastTimestamp >= :from ORDER BY chunk.firstEventId DESC")
+    List<TerrariaInstanceEventChunkEntity> findSearchCandidates(
+            @Param("instance") final TerrariaInstanceEntity instance, @Param("before") final long before,
+            @Param("from") final Instant from, final Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM TerrariaInstanceEventChunkEntity chunk WHERE chunk.instance.id = :instanceId")
+    int deleteByInstanceId(@Param("instanceId") final long instanceId);
+
+    @Modifying
+    @Query("DELETE FROM TerrariaInstanceEventChunkEntity chunk WHERE chunk.lastTimestamp < :timestamp")
+    int deleteByLastTimestampBefore(@Param("timestamp") final Instant timestamp);
+}
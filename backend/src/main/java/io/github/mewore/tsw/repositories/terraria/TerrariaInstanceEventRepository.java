@@ -1,17 +1,79 @@
 package io.github.mewore.tsw.repositories.terraria;
 
 import javax.transaction.Transactional;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
 
 @Transactional
 public interface TerrariaInstanceEventRepository extends JpaRepository<TerrariaInstanceEventEntity, Long> {
 
-    long deleteByInstance(final TerrariaInstanceEntity instance);
+    /**
+     * Delete some of the events of an instance with a single statement, without loading them.
+     *
+     * @param instanceId The ID of the instance.
+     * @param limit      The largest number of events to delete.
+     * @return The number of deleted events.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM terraria_instance_event WHERE id IN "
+            + "(SELECT id FROM terraria_instance_event WHERE instance_id = :instanceId LIMIT :limit)",
+            nativeQuery = true)
+    int deleteBatchByInstanceId(@Param("instanceId") final long instanceId, @Param("limit") final int limit);
 
-    List<TerrariaInstanceEventEntity> findTop100ByInstanceOrderByIdDesc(final TerrariaInstanceEntity instance);
+    List<TerrariaInstanceEventEntity> findByInstanceOrderByIdDesc(final TerrariaInstanceEntity instance,
+            final Pageable pageable);
+
+    List<TerrariaInstanceEventEntity> findByInstanceAndIdLessThanOrderByIdDesc(final TerrariaInstanceEntity instance,
+            final long id, final Pageable pageable);
+
+    List<TerrariaInstanceEventEntity> findByInstanceAndTypeOrderByIdDesc(final TerrariaInstanceEntity instance,
+            final TerrariaInstanceEventType type, final Pageable pageable);
+
+    List<TerrariaInstanceEventEntity> findByInstanceAndTypeAndIdLessThanOrderByIdDesc(
+            final TerrariaInstanceEntity instance, final TerrariaInstanceEventType type, final long id,
+            final Pageable pageable);
+
+    List<TerrariaInstanceEventEntity> findByInstanceAndTypeAndIdGreaterThanAndTimestampBeforeOrderByIdAsc(
+            final TerrariaInstanceEntity instance, final TerrariaInstanceEventType type, final long id,
+            final Instant timestamp, final Pageable pageable);
+
+    /**
+     * Find the events of an instance whose content matches a pattern. In PostgreSQL, the lowercase content is indexed
+     * with trigrams so that any substring can be looked up quickly.
+     *
+     * @param instance The instance.
+     * @param pattern  A lowercase {@code LIKE} pattern with {@code \} as the escape character.
+     * @param types    The types that the events should be of.
+     * @param from     The (inclusive) time from which to look for events.
+     * @param to       The (exclusive) time until which to look for events.
+     * @param before   The ID before which to look for events.
+     * @param pageable The page of events to get.
+     * @return The matching events, from the newest to the oldest.
+     */
+    @Query("SELECT event FROM TerrariaInstanceEventEntity event WHERE event.instance = :instance " +
+            "AND event.id < :before AND event.timestamp >= :from AND event.timestamp < :to " +
+            "AND event.type IN :types AND LOWER(event.content) LIKE :pattern ESCAPE '\\' ORDER BY event.id DESC")
+    List<TerrariaInstanceEventEntity> searchByContent(@Param("instance") final TerrariaInstanceEntity instance,
+            @Param("pattern") final String pattern, @Param("types") final Collection<TerrariaInstanceEventType> types,
+            @Param("from") final Instant from, @Param("to") final Instant to, @Param("before") final long before,
+            final Pageable pageable);
+
+    @Query("SELECT event.id FROM TerrariaInstanceEventEntity event WHERE event.timestamp < :timestamp " +
+            "ORDER BY event.id")
+    List<Long> findIdsByTimestampBefore(@Param("timestamp") final Instant timestamp, final Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM TerrariaInstanceEventEntity event WHERE event.id IN :ids")
+    int deleteByIdIn(@Param("ids") final Collection<Long> ids);
 }
@@ -6,6 +6,9 @@ import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.world.TerrariaWorldEntity;
@@ -20,4 +23,9 @@ public interface TerrariaInstanceRepository extends JpaRepository<TerrariaInstan
     Optional<TerrariaInstanceEntity> findTopByHostUuidAndPendingActionNotNull(final UUID hostUuid);
 
     boolean existsByWorld(final TerrariaWorldEntity world);
+
+    @Modifying
+    @Query("UPDATE TerrariaInstanceEntity instance SET instance.nextOutputBytePosition = :position "
+            + "WHERE instance.id = :id")
+    int updateNextOutputBytePosition(@Param("id") final long id, @Param("position") final long position);
 }
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import io.github.mewore.tsw.events.Subscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 
 public interface DatabaseNotificationService {
 
@@ -47,7 +48,18 @@ public interface DatabaseNotificationService {
      * @param channel The channel to listen for notifications from.
      * @return The subscription for the channel.
      */
-    Subscription<String> subscribeRaw(final String channel);
+    default Subscription<String> subscribeRaw(final String channel) {
+        return subscribeRaw(channel, SubscriptionOverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Listen for notifications coming from the database.
+     *
+     * @param channel        The channel to listen for notifications from.
+     * @param overflowPolicy What to do with the notifications that are received faster than they are taken.
+     * @return The subscription for the channel.
+     */
+    Subscription<String> subscribeRaw(final String channel, final SubscriptionOverflowPolicy overflowPolicy);
 
     /**
      * Listen for notifications coming from the database. Automatically deserialize the content from JSON.
@@ -57,5 +69,19 @@ public interface DatabaseNotificationService {
      * @param typeReference The type reference for the serialization.
      * @return The subscription for the channel.
      */
-    <T> Subscription<T> subscribe(final String channel, final TypeReference<T> typeReference);
+    default <T> Subscription<T> subscribe(final String channel, final TypeReference<T> typeReference) {
+        return subscribe(channel, typeReference, SubscriptionOverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Listen for notifications coming from the database. Automatically deserialize the content from JSON.
+     *
+     * @param <T>            The content type.
+     * @param channel        The channel to listen for notifications from.
+     * @param typeReference  The type reference for the serialization.
+     * @param overflowPolicy What to do with the notifications that are received faster than they are taken.
+     * @return The subscription for the channel.
+     */
+    <T> Subscription<T> subscribe(final String channel, final TypeReference<T> typeReference,
+            final SubscriptionOverflowPolicy overflowPolicy);
 }
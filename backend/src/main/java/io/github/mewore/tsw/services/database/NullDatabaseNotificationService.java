@@ -6,6 +6,7 @@ import org.springframework.stereotype.Service;
 
 import io.github.mewore.tsw.events.NullSubscription;
 import io.github.mewore.tsw.events.Subscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 
 @Service
 class NullDatabaseNotificationService implements DatabaseNotificationService {
@@ -23,12 +24,14 @@ class NullDatabaseNotificationService implements DatabaseNotificationService {
     }
 
     @Override
-    public Subscription<String> subscribeRaw(final String channel) {
+    public Subscription<String> subscribeRaw(final String channel,
+            final SubscriptionOverflowPolicy overflowPolicy) {
         return new NullSubscription<>();
     }
 
     @Override
-    public <T> Subscription<T> subscribe(final String channel, final TypeReference<T> typeReference) {
+    public <T> Subscription<T> subscribe(final String channel, final TypeReference<T> typeReference,
+            final SubscriptionOverflowPolicy overflowPolicy) {
         return new NullSubscription<>();
     }
 }
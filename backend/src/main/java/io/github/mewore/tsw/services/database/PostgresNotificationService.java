@@ -23,6 +23,7 @@ import org.springframework.stereotype.Service;
 import io.github.mewore.tsw.events.Publisher;
 import io.github.mewore.tsw.events.PublisherTopicEvent;
 import io.github.mewore.tsw.events.Subscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 import io.github.mewore.tsw.services.util.async.LifecycleThreadPool;
 import lombok.RequiredArgsConstructor;
 
@@ -49,6 +50,7 @@ class PostgresNotificationService implements DatabaseNotificationService {
 
     @PostConstruct
     void setUp() {
+        publisher.setName("database-notifications");
         postgresConnection.onConnect(
                 newConnection -> newConnection.addNotificationListener(new PostgresNotificationPublisher(publisher)));
 
@@ -80,7 +82,7 @@ class PostgresNotificationService implements DatabaseNotificationService {
     @Override
     public void sendRaw(final String channel, final String content) throws SQLException {
         try (final Statement statement = postgresConnection.getOrConnect().createStatement()) {
-            logger.info("Sending notification to " + channel + ": " + PREFIX + content);
+            logger.debug("Sending notification to " + channel + ": " + PREFIX + content);
             statement.execute("NOTIFY " + channel + ", '" + PREFIX + content + "'");
         }
     }
@@ -102,13 +104,15 @@ class PostgresNotificationService implements DatabaseNotificationService {
     }
 
     @Override
-    public Subscription<String> subscribeRaw(final String channel) {
-        return publisher.subscribe(channel);
+    public Subscription<String> subscribeRaw(final String channel,
+            final SubscriptionOverflowPolicy overflowPolicy) {
+        return publisher.subscribe(channel, overflowPolicy);
     }
 
     @Override
-    public <T> Subscription<T> subscribe(final String channel, final TypeReference<T> typeReference) {
-        return subscribeRaw(channel).map(raw -> {
+    public <T> Subscription<T> subscribe(final String channel, final TypeReference<T> typeReference,
+            final SubscriptionOverflowPolicy overflowPolicy) {
+        return subscribeRaw(channel, overflowPolicy).map(raw -> {
             try {
                 return JSON_READER.readValue(JSON_READER.createParser(raw), typeReference);
             } catch (final IOException e) {
@@ -150,7 +154,7 @@ class PostgresNotificationService implements DatabaseNotificationService {
                 logger.debug("Received notification from self: " + payload);
                 return;
             }
-            logger.info("Received PostgreSQL notification from process {} on channel {}: {}", processId, channelName,
+            logger.debug("Received PostgreSQL notification from process {} on channel {}: {}", processId, channelName,
                     payload);
             publisher.publish(channelName, payload.substring(PREFIX.length()));
         }
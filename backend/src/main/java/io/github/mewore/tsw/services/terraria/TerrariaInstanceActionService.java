@@ -7,6 +7,8 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -60,6 +62,9 @@ public class TerrariaInstanceActionService {
         for (final TerrariaInstanceEntity instance : allLocalInstances) {
             if (instance.getState().isActive() && instance.getOutputFile().exists()) {
                 terrariaInstanceOutputService.trackInstance(instance);
+            } else if (instance.getState() == TerrariaInstanceState.DELETING) {
+                logger.info("Resuming the deletion of instance {}", instance.getUuid());
+                terrariaInstanceService.deleteInstanceInBackground(instance);
             }
         }
 
@@ -108,10 +113,10 @@ public class TerrariaInstanceActionService {
         try {
             instance.startAction();
             instance = terrariaInstanceService.saveInstance(instance);
-            final TerrariaInstanceEntity newInstance = applyAction(instance, action);
+            final @Nullable TerrariaInstanceEntity newInstance = awaitAction(applyAction(instance, action));
             if (newInstance == null) {
-                logger.info("Updated Terraria instance {}: [{}] -[{}]-> [DELETED]", instance.getUuid(), originalState,
-                        action);
+                logger.info("Updated Terraria instance {}: [{}] -[{}]-> [{}]", instance.getUuid(), originalState,
+                        action, TerrariaInstanceState.DELETING);
                 return;
             }
             instance = newInstance;
@@ -135,13 +140,39 @@ public class TerrariaInstanceActionService {
         }
     }
 
+    /**
+     * Wait for an action to be applied. The actions are applied one at a time, so this is the only place where the
+     * thread that applies them waits for an instance to reach a state; the steps of the action run in worker threads.
+     *
+     * @param actionFuture The future of the instance after the action, or of {@code null} if it has been deleted.
+     * @return The instance after the action, or {@code null} if it has been deleted.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private @Nullable TerrariaInstanceEntity awaitAction(
+            final CompletableFuture<@Nullable TerrariaInstanceEntity> actionFuture) throws InterruptedException {
+        try {
+            return actionFuture.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            // Cannot handle these exceptions in any meaningful way
+            throw new RuntimeException(cause);
+        }
+    }
+
     @SuppressWarnings("OverlyComplexMethod")
-    private @Nullable TerrariaInstanceEntity applyAction(final TerrariaInstanceEntity instance,
+    private CompletableFuture<@Nullable TerrariaInstanceEntity> applyAction(final TerrariaInstanceEntity instance,
             final TerrariaInstanceAction action) throws InvalidInstanceException, InterruptedException {
         try {
             switch (action) {
                 case SET_UP: {
-                    return terrariaInstancePreparationService.setUpInstance(instance);
+                    return CompletableFuture.completedFuture(
+                            terrariaInstancePreparationService.setUpInstance(instance));
                 }
                 case BOOT_UP: {
                     return terrariaInstanceExecutionService.bootUpInstance(instance);
@@ -168,11 +199,12 @@ public class TerrariaInstanceActionService {
                     return terrariaInstanceExecutionService.terminateInstance(instance);
                 }
                 case RECREATE: {
-                    return terrariaInstanceExecutionService.recreateInstance(instance);
+                    return CompletableFuture.completedFuture(
+                            terrariaInstanceExecutionService.recreateInstance(instance));
                 }
                 case DELETE: {
                     terrariaInstanceExecutionService.deleteInstance(instance);
-                    return null;
+                    return CompletableFuture.completedFuture(null);
                 }
                 default: {
                     throw new UnsupportedOperationException("Cannot handle action [" + action + "]");
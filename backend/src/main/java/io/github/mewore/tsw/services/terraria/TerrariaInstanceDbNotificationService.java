@@ -1,19 +1,25 @@
 package io.github.mewore.tsw.services.terraria;
 
 import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import io.github.mewore.tsw.events.Subscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 import io.github.mewore.tsw.events.TerrariaInstanceApplicationEvent;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
 import io.github.mewore.tsw.services.database.DatabaseNotificationService;
+import io.github.mewore.tsw.services.util.AsyncService;
 import io.github.mewore.tsw.services.util.async.LifecycleThreadPool;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +32,8 @@ public class TerrariaInstanceDbNotificationService {
 
     private static final String UPDATE_CHANNEL_NAME = "terraria_instance_updates";
 
+    private static final String EVENT_CREATION_CHANNEL_NAME = "terraria_instance_event_creations";
+
     private final Logger logger = LogManager.getLogger(getClass());
 
     private final DatabaseNotificationService databaseNotificationService;
@@ -36,6 +44,24 @@ public class TerrariaInstanceDbNotificationService {
 
     private final LifecycleThreadPool lifecycleThreadPool;
 
+    private final TerrariaInstanceEventCache terrariaInstanceEventCache;
+
+    private final TerrariaInstanceEventSearchIndex terrariaInstanceEventSearchIndex;
+
+    private final AsyncService asyncService;
+
+    /**
+     * The instances for which a notification for new events is about to be sent.
+     */
+    private final Set<Long> instanceIdsWithPendingEventNotification = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The delay before sending a notification for new events of an instance. The events of the instance that are
+     * saved in the meantime are covered by the same notification, so at most one is sent per instance per interval.
+     */
+    @Value("${tsw.terraria.event-notification-interval-ms:1000}")
+    private long eventNotificationIntervalMs = 1000;
+
     @PostConstruct
     void setUp() {
         final Subscription<Long> subscriptionForCreation = databaseNotificationService.subscribe(CREATION_CHANNEL_NAME,
@@ -49,8 +75,14 @@ public class TerrariaInstanceDbNotificationService {
                 new TypeReference<>() {
                 });
 
+        // Skipping any of these notifications would leave the cached events of an instance outdated
+        final Subscription<Long> subscriptionForEventCreation = databaseNotificationService.subscribe(
+                EVENT_CREATION_CHANNEL_NAME, new TypeReference<>() {
+                }, SubscriptionOverflowPolicy.UNBOUNDED);
+
         lifecycleThreadPool.run(() -> waitForInstanceNotification(subscriptionForCreation, true),
-                () -> waitForInstanceNotification(subscriptionForUpdates, false));
+                () -> waitForInstanceNotification(subscriptionForUpdates, false),
+                () -> waitForInstanceEventNotification(subscriptionForEventCreation));
     }
 
     public void instanceCreated(final @NonNull TerrariaInstanceEntity instance) {
@@ -61,6 +93,18 @@ public class TerrariaInstanceDbNotificationService {
         databaseNotificationService.trySend(UPDATE_CHANNEL_NAME, instance.getId());
     }
 
+    public void instanceEventsCreated(final long instanceId) {
+        if (instanceIdsWithPendingEventNotification.add(instanceId)) {
+            asyncService.scheduleInThread(() -> sendInstanceEventNotification(instanceId),
+                    Duration.ofMillis(eventNotificationIntervalMs));
+        }
+    }
+
+    private void sendInstanceEventNotification(final long instanceId) {
+        instanceIdsWithPendingEventNotification.remove(instanceId);
+        databaseNotificationService.trySend(EVENT_CREATION_CHANNEL_NAME, instanceId);
+    }
+
     private void waitForInstanceNotification(final Subscription<Long> notificationSubscription, final boolean created)
             throws InterruptedException {
         final Long instanceId = notificationSubscription.take();
@@ -71,4 +115,12 @@ public class TerrariaInstanceDbNotificationService {
                                 new TerrariaInstanceApplicationEvent(instance, created)),
                         () -> logger.warn("There is no instance with ID {}", instanceId));
     }
+
+    private void waitForInstanceEventNotification(final Subscription<Long> notificationSubscription)
+            throws InterruptedException {
+        final Long instanceId = notificationSubscription.take();
+        logger.debug("Received a notification for new events of the Terraria instance with ID {}", instanceId);
+        terrariaInstanceEventCache.invalidate(instanceId);
+        terrariaInstanceEventSearchIndex.invalidate(instanceId);
+    }
 }
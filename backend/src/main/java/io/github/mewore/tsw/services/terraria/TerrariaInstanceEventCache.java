@@ -0,0 +1,263 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.services.util.MetricsSource;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the most recent events of the instances that have been viewed lately in memory so that viewing an instance
+ * does not query the database every time.
+ * <p>
+ * The events of an instance are loaded from the database the first time they are requested; after that, the events
+ * that are saved on this node are appended to them, while the events that are saved on other nodes make them be
+ * loaded again. The total size of the cached events is limited; when the limit is exceeded, the events of the
+ * instances which have not been viewed for the longest time are dropped.
+ */
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventCache implements MetricsSource {
+
+    /**
+     * A rough estimate of the memory taken by an event and its reference in the cache, without its content.
+     */
+    private static final long EVENT_OVERHEAD_BYTES = 128;
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    private final Map<Long, RecentEvents> recentEventsByInstanceId = new HashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * The number of the most recent events to keep for each instance.
+     */
+    @Value("${tsw.terraria.event-cache.events-per-instance:100}")
+    private int eventsPerInstance = 100;
+
+    /**
+     * The estimated number of bytes that the cached events of all instances can take up.
+     */
+    @Value("${tsw.terraria.event-cache.max-bytes:16777216}")
+    private long maxBytes = 16L * 1024 * 1024;
+
+    private long totalBytes = 0;
+
+    private long viewCount = 0;
+
+    /**
+     * Get the most recent events of an instance, loading them from the database if they are not cached.
+     *
+     * @param instance The instance.
+     * @return The most recent events of the instance, from the oldest to the newest.
+     */
+    public List<TerrariaInstanceEventEntity> getRecentEvents(final TerrariaInstanceEntity instance) {
+        final long instanceId = instance.getId();
+        final @Nullable RecentEvents loadingEvents;
+        synchronized (this) {
+            final @Nullable RecentEvents cachedEvents = recentEventsByInstanceId.get(instanceId);
+            if (cachedEvents != null && !cachedEvents.loading) {
+                hitCount.increment();
+                cachedEvents.lastViewed = ++viewCount;
+                return cachedEvents.toList();
+            }
+            missCount.increment();
+            if (cachedEvents == null) {
+                // The events that are saved while loading are collected in the meantime
+                loadingEvents = new RecentEvents(eventsPerInstance, ++viewCount);
+                recentEventsByInstanceId.put(instanceId, loadingEvents);
+            } else {
+                // Someone else is already loading them
+                loadingEvents = null;
+            }
+        }
+
+        final List<TerrariaInstanceEventEntity> loadedEvents;
+        try {
+            loadedEvents = new ArrayList<>(
+                    terrariaInstanceEventStore.getEvents(instance, null, eventsPerInstance, null));
+        } catch (final RuntimeException e) {
+            if (loadingEvents != null) {
+                synchronized (this) {
+                    recentEventsByInstanceId.remove(instanceId, loadingEvents);
+                    totalBytes -= loadingEvents.bytes;
+                }
+            }
+            throw e;
+        }
+        if (loadingEvents == null) {
+            return loadedEvents;
+        }
+
+        synchronized (this) {
+            if (recentEventsByInstanceId.get(instanceId) != loadingEvents) {
+                // Invalidated or evicted while loading
+                return loadedEvents;
+            }
+            final long previousBytes = loadingEvents.bytes;
+            loadingEvents.finishLoading(loadedEvents);
+            totalBytes += loadingEvents.bytes - previousBytes;
+            final List<TerrariaInstanceEventEntity> result = loadingEvents.toList();
+            evictIfNecessary();
+            return result;
+        }
+    }
+
+    /**
+     * Add saved events to the cached events of their instances. The events of instances whose events are not cached
+     * are ignored.
+     *
+     * @param events The events, which have to have IDs.
+     */
+    public synchronized void append(final Collection<TerrariaInstanceEventEntity> events) {
+        for (final TerrariaInstanceEventEntity event : events) {
+            final @Nullable RecentEvents recentEvents = recentEventsByInstanceId.get(event.getInstance().getId());
+            if (recentEvents != null) {
+                final long previousBytes = recentEvents.bytes;
+                recentEvents.add(event);
+                totalBytes += recentEvents.bytes - previousBytes;
+            }
+        }
+        evictIfNecessary();
+    }
+
+    /**
+     * Drop the cached events of an instance so that they are loaded from the database the next time.
+     *
+     * @param instanceId The ID of the instance.
+     */
+    public synchronized void invalidate(final long instanceId) {
+        final @Nullable RecentEvents recentEvents = recentEventsByInstanceId.remove(instanceId);
+        if (recentEvents != null) {
+            logger.debug("Dropping the cached events of instance {}", instanceId);
+            totalBytes -= recentEvents.bytes;
+        }
+    }
+
+    @Override
+    public void writeMetrics(final PrometheusTextWriter writer) {
+        final int instanceCount;
+        final long currentTotalBytes;
+        synchronized (this) {
+            instanceCount = recentEventsByInstanceId.size();
+            currentTotalBytes = totalBytes;
+        }
+        writer.gauge("tsw_instance_event_cache_instances", "The number of instances whose recent events are cached.",
+                instanceCount);
+        writer.gauge("tsw_instance_event_cache_bytes", "The estimated size of the cached instance events in bytes.",
+                currentTotalBytes);
+        writer.counter("tsw_instance_event_cache_hits_total", "The number of times the recent events of an instance "
+                + "have been found in the cache.", hitCount.sum());
+        writer.counter("tsw_instance_event_cache_misses_total", "The number of times the recent events of an "
+                + "instance have been loaded from the database.", missCount.sum());
+        writer.counter("tsw_instance_event_cache_evictions_total", "The number of times the cached events of an "
+                + "instance have been dropped to stay within the size limit.", evictionCount.sum());
+    }
+
+    private void evictIfNecessary() {
+        while (totalBytes > maxBytes && !recentEventsByInstanceId.isEmpty()) {
+            final Map.Entry<Long, RecentEvents> leastRecentlyViewed = recentEventsByInstanceId.entrySet()
+                    .stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastViewed))
+                    .orElseThrow();
+            logger.debug("Evicting the cached events of instance {}", leastRecentlyViewed.getKey());
+            recentEventsByInstanceId.remove(leastRecentlyViewed.getKey());
+            totalBytes -= leastRecentlyViewed.getValue().bytes;
+            evictionCount.increment();
+        }
+    }
+
+    private static long estimateSize(final TerrariaInstanceEventEntity event) {
+        return EVENT_OVERHEAD_BYTES + 2L * event.getContent().length();
+    }
+
+    /**
+     * A ring buffer of the most recent events of an instance.
+     */
+    private static class RecentEvents {
+
+        private final TerrariaInstanceEventEntity[] events;
+
+        private int nextIndex = 0;
+
+        private int size = 0;
+
+        private long bytes = 0;
+
+        private long lastViewed;
+
+        private boolean loading = true;
+
+        private RecentEvents(final int capacity, final long lastViewed) {
+            events = new TerrariaInstanceEventEntity[capacity];
+            this.lastViewed = lastViewed;
+        }
+
+        private void add(final TerrariaInstanceEventEntity event) {
+            final @Nullable TerrariaInstanceEventEntity overwrittenEvent = events[nextIndex];
+            if (overwrittenEvent != null) {
+                bytes -= estimateSize(overwrittenEvent);
+            }
+            events[nextIndex] = event;
+            bytes += estimateSize(event);
+            nextIndex = (nextIndex + 1) % events.length;
+            size = Math.min(size + 1, events.length);
+        }
+
+        /**
+         * Put the loaded events before the ones that have been added while loading.
+         *
+         * @param loadedEvents The loaded events, from the oldest to the newest.
+         */
+        private void finishLoading(final List<TerrariaInstanceEventEntity> loadedEvents) {
+            final List<TerrariaInstanceEventEntity> addedEvents = toList();
+            Arrays.fill(events, null);
+            nextIndex = 0;
+            size = 0;
+            bytes = 0;
+            loadedEvents.forEach(this::add);
+            addedEvents.forEach(this::add);
+            loading = false;
+        }
+
+        /**
+         * @return The events ordered by their IDs, without duplicates.
+         */
+        private List<TerrariaInstanceEventEntity> toList() {
+            final List<TerrariaInstanceEventEntity> sortedEvents = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                sortedEvents.add(events[Math.floorMod(nextIndex - size + i, events.length)]);
+            }
+            sortedEvents.sort(Comparator.comparing(TerrariaInstanceEventEntity::getId));
+            final List<TerrariaInstanceEventEntity> result = new ArrayList<>(sortedEvents.size());
+            for (final TerrariaInstanceEventEntity event : sortedEvents) {
+                if (result.isEmpty() || !result.get(result.size() - 1).getId().equals(event.getId())) {
+                    result.add(event);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+
+/**
+ * Packs output events into chunks and unpacks them back.
+ * <p>
+ * The event index of a chunk contains the ID, timestamp (as epoch seconds and nanoseconds) and the end offset of the
+ * content of each of its events in order, taking up {@link #INDEX_ENTRY_SIZE} bytes per event.
+ */
+final class TerrariaInstanceEventChunkCodec {
+
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private TerrariaInstanceEventChunkCodec() {
+    }
+
+    /**
+     * @param events Output events of the same instance, ordered by their IDs. There has to be at least one.
+     * @return A chunk containing the events.
+     */
+    static TerrariaInstanceEventChunkEntity pack(final List<TerrariaInstanceEventEntity> events) {
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("Cannot pack an empty list of events");
+        }
+        final ByteBuffer eventIndex = ByteBuffer.allocate(events.size() * INDEX_ENTRY_SIZE);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (final TerrariaInstanceEventEntity event : events) {
+            final byte[] eventContent = event.getContent().getBytes(StandardCharsets.UTF_8);
+            content.writeBytes(eventContent);
+            eventIndex.putLong(event.getId())
+                    .putLong(event.getTimestamp().getEpochSecond())
+                    .putInt(event.getTimestamp().getNano())
+                    .putInt(content.size());
+        }
+
+        final Deflater deflater = new Deflater();
+        final ByteArrayOutputStream compressedContent = new ByteArrayOutputStream();
+        try {
+            deflater.setInput(content.toByteArray());
+            deflater.finish();
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                compressedContent.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        final TerrariaInstanceEventEntity lastEvent = events.get(events.size() - 1);
+        return TerrariaInstanceEventChunkEntity.builder()
+                .instance(events.get(0).getInstance())
+                .firstEventId(events.get(0).getId())
+                .lastEventId(lastEvent.getId())
+                .lastTimestamp(lastEvent.getTimestamp())
+                .eventCount(events.size())
+                .contentSize(content.size())
+                .eventIndex(eventIndex.array())
+                .compressedContent(compressedContent.toByteArray())
+                .build();
+    }
+
+    /**
+     * Unpack the events of a chunk which are before a certain event. Only the content of these events is inflated.
+     *
+     * @param chunk    The chunk.
+     * @param beforeId The ID before which to get events.
+     * @return The events with an ID lower than {@code beforeId}, from the oldest to the newest.
+     */
+    static List<TerrariaInstanceEventEntity> unpackBefore(final TerrariaInstanceEventChunkEntity chunk,
+            final long beforeId) {
+        final ByteBuffer eventIndex = ByteBuffer.wrap(chunk.getEventIndex());
+        final long[] ids = new long[chunk.getEventCount()];
+        final Instant[] timestamps = new Instant[chunk.getEventCount()];
+        final int[] contentEnds = new int[chunk.getEventCount()];
+        int eventCount = 0;
+        while (eventCount < ids.length) {
+            final long id = eventIndex.getLong();
+            if (id >= beforeId) {
+                break;
+            }
+            ids[eventCount] = id;
+            final long epochSecond = eventIndex.getLong();
+            timestamps[eventCount] = Instant.ofEpochSecond(epochSecond, eventIndex.getInt());
+            contentEnds[eventCount] = eventIndex.getInt();
+            eventCount++;
+        }
+        if (eventCount == 0) {
+            return new ArrayList<>();
+        }
+
+        final byte[] content = inflate(chunk, contentEnds[eventCount - 1]);
+        final List<TerrariaInstanceEventEntity> result = new ArrayList<>(eventCount);
+        int contentStart = 0;
+        for (int i = 0; i < eventCount; i++) {
+            result.add(TerrariaInstanceEventEntity.builder()
+                    .id(ids[i])
+                    .instance(chunk.getInstance())
+                    .type(TerrariaInstanceEventType.OUTPUT)
+                    .timestamp(timestamps[i])
+                    .content(new String(Arrays.copyOfRange(content, contentStart, contentEnds[i]),
+                            StandardCharsets.UTF_8))
+                    .build());
+            contentStart = contentEnds[i];
+        }
+        return result;
+    }
+
+    /**
+     * @param chunk  The chunk.
+     * @param length The number of bytes to inflate from the start of the content of the chunk.
+     * @return The inflated bytes.
+     */
+    private static byte[] inflate(final TerrariaInstanceEventChunkEntity chunk, final int length) {
+        final byte[] result = new byte[length];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(chunk.getCompressedContent());
+            int offset = 0;
+            while (offset < length) {
+                final int inflatedByteCount = inflater.inflate(result, offset, length - offset);
+                if (inflatedByteCount == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("The content of event chunk " + chunk.getId() + " is shorter than "
+                            + length + " bytes");
+                }
+                offset += inflatedByteCount;
+            }
+        } catch (final DataFormatException e) {
+            throw new IllegalStateException("The content of event chunk " + chunk.getId() + " is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+}
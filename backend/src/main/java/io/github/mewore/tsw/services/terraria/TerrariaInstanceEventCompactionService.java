@@ -0,0 +1,178 @@
+package io.github.mewore.tsw.services.terraria;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Packs the old output events of instances into compressed chunks, which take up several times less space than the
+ * events themselves. The events are packed in the order of their IDs, into chunks of about 64 KB of content.
+ * <p>
+ * Only the events after the last chunk of an instance are packed so that the chunks of an instance never overlap. For
+ * the same reason, the events that are not enough for a complete chunk are left for a later run, unless even the
+ * newest of them is so old that no more events are likely to join them soon.
+ */
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventCompactionService {
+
+    private static final Duration COMPACTION_INITIAL_DELAY = Duration.ofMinutes(2);
+
+    private static final Duration COMPACTION_INTERVAL = Duration.ofMinutes(10);
+
+    private static final int EVENT_PAGE_SIZE = 1000;
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final TerrariaInstanceRepository terrariaInstanceRepository;
+
+    private final TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+
+    private final TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    private final TerrariaInstanceService terrariaInstanceService;
+
+    private final AsyncService asyncService;
+
+    /**
+     * Whether to pack the old output events into chunks.
+     */
+    @Value("${tsw.terraria.event-compression.enabled:false}")
+    private boolean enabled = false;
+
+    /**
+     * The size of the content of the events (in UTF-8) after which a chunk is complete.
+     */
+    @Value("${tsw.terraria.event-compression.chunk-bytes:65536}")
+    private int chunkBytes = 65536;
+
+    /**
+     * How old an output event has to be in order to be packed.
+     */
+    @Value("${tsw.terraria.event-compression.min-age-minutes:60}")
+    private long minAgeMinutes = 60;
+
+    /**
+     * How old the newest of the events that are not enough for a complete chunk has to be in order to pack them anyway.
+     */
+    @Value("${tsw.terraria.event-compression.partial-chunk-max-age-minutes:1440}")
+    private long partialChunkMaxAgeMinutes = 1440;
+
+    private @Nullable Future<?> compactionFuture;
+
+    @PostConstruct
+    void setUp() {
+        if (enabled) {
+            compactionFuture = asyncService.scheduleAtFixedRate(this::tryCompact, COMPACTION_INITIAL_DELAY,
+                    COMPACTION_INTERVAL);
+        }
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        final @Nullable Future<?> currentCompactionFuture = compactionFuture;
+        if (currentCompactionFuture != null) {
+            currentCompactionFuture.cancel(false);
+        }
+    }
+
+    private void tryCompact() {
+        try {
+            compact(Instant.now());
+        } catch (final RuntimeException e) {
+            // Letting the exception through would cancel the scheduled compaction
+            logger.error("Failed to compact the instance events", e);
+        }
+    }
+
+    /**
+     * Pack the output events which are old enough into chunks.
+     *
+     * @param now The current time.
+     */
+    void compact(final Instant now) {
+        final Instant packedBefore = now.minus(Duration.ofMinutes(minAgeMinutes));
+        final Instant partialChunkPackedBefore = now.minus(Duration.ofMinutes(partialChunkMaxAgeMinutes));
+        for (final TerrariaInstanceEntity instance : terrariaInstanceRepository.findAll()) {
+            if (instance.getState() != TerrariaInstanceState.DELETING) {
+                compactInstance(instance, packedBefore, partialChunkPackedBefore);
+            }
+        }
+    }
+
+    private void compactInstance(final TerrariaInstanceEntity instance, final Instant packedBefore,
+            final Instant partialChunkPackedBefore) {
+        final List<TerrariaInstanceEventEntity> chunkEvents = new ArrayList<>();
+        int chunkContentBytes = 0;
+        int packedEventCount = 0;
+        long lastEventId = terrariaInstanceEventChunkRepository
+                .findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(instance, Long.MAX_VALUE)
+                .map(TerrariaInstanceEventChunkEntity::getLastEventId)
+                .orElse(0L);
+        List<TerrariaInstanceEventEntity> events;
+        do {
+            events = terrariaInstanceEventRepository
+                    .findByInstanceAndTypeAndIdGreaterThanAndTimestampBeforeOrderByIdAsc(instance,
+                            TerrariaInstanceEventType.OUTPUT, lastEventId, packedBefore,
+                            PageRequest.of(0, EVENT_PAGE_SIZE));
+            for (final TerrariaInstanceEventEntity event : events) {
+                chunkEvents.add(event);
+                chunkContentBytes += event.getContent().getBytes(StandardCharsets.UTF_8).length;
+                lastEventId = event.getId();
+                if (chunkContentBytes >= chunkBytes) {
+                    packedEventCount += pack(chunkEvents);
+                    chunkContentBytes = 0;
+                }
+            }
+        } while (events.size() == EVENT_PAGE_SIZE);
+
+        if (!chunkEvents.isEmpty()) {
+            if (chunkEvents.get(chunkEvents.size() - 1).getTimestamp().isBefore(partialChunkPackedBefore)) {
+                packedEventCount += pack(chunkEvents);
+            } else {
+                logger.debug("Leaving {} output events of instance {} for a later chunk", chunkEvents.size(),
+                        instance.getUuid());
+            }
+        }
+        if (packedEventCount > 0) {
+            logger.info("Packed {} output events of instance {}", packedEventCount, instance.getUuid());
+        }
+    }
+
+    /**
+     * Pack events into a chunk and clear the list of events.
+     *
+     * @return The number of packed events.
+     */
+    private int pack(final List<TerrariaInstanceEventEntity> events) {
+        final int eventCount = events.size();
+        terrariaInstanceService.saveEventChunk(TerrariaInstanceEventChunkCodec.pack(events),
+                events.stream().map(TerrariaInstanceEventEntity::getId).collect(Collectors.toUnmodifiableList()));
+        events.clear();
+        return eventCount;
+    }
+}
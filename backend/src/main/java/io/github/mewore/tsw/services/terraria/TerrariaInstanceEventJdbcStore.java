@@ -0,0 +1,208 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the events of instances in the database. When reading them, both the ones that are saved as they are and the
+ * ones that have been packed into chunks (see {@link TerrariaInstanceEventCompactionService}) are taken into account.
+ */
+@ConditionalOnProperty(name = "tsw.terraria.event-store.type", havingValue = "JDBC", matchIfMissing = true)
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventJdbcStore implements TerrariaInstanceEventStore {
+
+    private static final int EXPIRED_EVENT_DELETION_BATCH_SIZE = 1000;
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+
+    private final TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    @Override
+    public List<TerrariaInstanceEventEntity> saveAll(final List<TerrariaInstanceEventEntity> events) {
+        return terrariaInstanceEventRepository.saveAll(events);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The chunks are loaded one at a time and only the ones whose events are in the page are unpacked.
+     */
+    @Override
+    public List<TerrariaInstanceEventEntity> getEvents(final TerrariaInstanceEntity instance,
+            final @Nullable Long before, final int limit, final @Nullable TerrariaInstanceEventType type) {
+        final List<TerrariaInstanceEventEntity> unpackedEvents = findUnpackedEvents(instance, before, limit, type);
+        if (type != null && type != TerrariaInstanceEventType.OUTPUT) {
+            Collections.reverse(unpackedEvents);
+            return unpackedEvents;
+        }
+
+        // Merge the newest events of both sources until the page is full
+        final List<TerrariaInstanceEventEntity> result = new ArrayList<>(limit);
+        final Deque<TerrariaInstanceEventEntity> chunkEvents = new ArrayDeque<>();
+        long chunkBefore = before == null ? Long.MAX_VALUE : before;
+        @Nullable TerrariaInstanceEventChunkEntity nextChunk = findChunkBefore(instance, chunkBefore);
+        int unpackedEventIndex = 0;
+        while (result.size() < limit) {
+            final @Nullable TerrariaInstanceEventEntity unpackedEvent = unpackedEventIndex < unpackedEvents.size()
+                    ? unpackedEvents.get(unpackedEventIndex)
+                    : null;
+            if (chunkEvents.isEmpty() && nextChunk != null && (unpackedEvent == null ||
+                    Math.min(nextChunk.getLastEventId(), chunkBefore - 1) > unpackedEvent.getId())) {
+                final List<TerrariaInstanceEventEntity> unpackedChunk =
+                        TerrariaInstanceEventChunkCodec.unpackBefore(nextChunk, chunkBefore);
+                Collections.reverse(unpackedChunk);
+                chunkEvents.addAll(unpackedChunk);
+                chunkBefore = nextChunk.getFirstEventId();
+                nextChunk = findChunkBefore(instance, chunkBefore);
+                continue;
+            }
+
+            final @Nullable TerrariaInstanceEventEntity chunkEvent = chunkEvents.peekFirst();
+            if (unpackedEvent != null && (chunkEvent == null || unpackedEvent.getId() > chunkEvent.getId())) {
+                result.add(unpackedEvent);
+                unpackedEventIndex++;
+            } else if (chunkEvent != null) {
+                result.add(chunkEvents.removeFirst());
+            } else {
+                break;
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public List<TerrariaInstanceEventEntity> getEventsByIds(final TerrariaInstanceEntity instance,
+            final Collection<Long> ids) {
+        final List<TerrariaInstanceEventEntity> result = new ArrayList<>(
+                terrariaInstanceEventRepository.findAllById(ids));
+        final Set<Long> missingIds = new HashSet<>(ids);
+        result.forEach(event -> missingIds.remove(event.getId()));
+
+        // The events that are not saved as they are may have been packed into chunks
+        final List<Long> sortedMissingIds = new ArrayList<>(missingIds);
+        sortedMissingIds.sort(Comparator.reverseOrder());
+        @Nullable TerrariaInstanceEventChunkEntity chunk = null;
+        @Nullable Map<Long, TerrariaInstanceEventEntity> chunkEventsById = null;
+        for (final long id : sortedMissingIds) {
+            if (chunk == null || id < chunk.getFirstEventId()) {
+                chunk = findChunkBefore(instance, id + 1);
+                chunkEventsById = null;
+                if (chunk == null) {
+                    break;
+                }
+            }
+            if (id > chunk.getLastEventId()) {
+                continue;
+            }
+            if (chunkEventsById == null) {
+                // The IDs go from the largest to the smallest, so the rest of the events in the chunk are not needed
+                chunkEventsById = TerrariaInstanceEventChunkCodec.unpackBefore(chunk, id + 1)
+                        .stream()
+                        .collect(Collectors.toMap(TerrariaInstanceEventEntity::getId, Function.identity()));
+            }
+            final @Nullable TerrariaInstanceEventEntity event = chunkEventsById.get(id);
+            if (event != null) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each batch is deleted in a transaction of its own so that neither the events nor the locks on them pile up. The
+     * chunks of the instance are deleted once there are no other events left.
+     */
+    @Override
+    public int deleteEventBatch(final TerrariaInstanceEntity instance, final int maxCount) {
+        final int deletedEventCount = terrariaInstanceEventRepository.deleteBatchByInstanceId(instance.getId(),
+                maxCount);
+        if (deletedEventCount == 0) {
+            final int deletedChunkCount = terrariaInstanceEventChunkRepository.deleteByInstanceId(instance.getId());
+            if (deletedChunkCount > 0) {
+                logger.info("Deleted {} event chunks of instance {}", deletedChunkCount, instance.getUuid());
+            }
+        }
+        return deletedEventCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The events are deleted in batches by their IDs. The chunks are deleted only if all of their events are expired.
+     */
+    @Override
+    public long deleteEventsBefore(final Instant expiryTime) {
+        long deletedEventCount = 0;
+        List<Long> expiredEventIds;
+        while (!(expiredEventIds = terrariaInstanceEventRepository.findIdsByTimestampBefore(expiryTime,
+                PageRequest.of(0, EXPIRED_EVENT_DELETION_BATCH_SIZE))).isEmpty()) {
+            deletedEventCount += terrariaInstanceEventRepository.deleteByIdIn(expiredEventIds);
+        }
+        final int deletedChunkCount = terrariaInstanceEventChunkRepository.deleteByLastTimestampBefore(expiryTime);
+        if (deletedChunkCount > 0) {
+            logger.info("Deleted {} instance event chunks from before {}", deletedChunkCount, expiryTime);
+        }
+        return deletedEventCount;
+    }
+
+    @Override
+    public boolean isInDatabase() {
+        return true;
+    }
+
+    private @Nullable TerrariaInstanceEventChunkEntity findChunkBefore(final TerrariaInstanceEntity instance,
+            final long before) {
+        return terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                instance, before).orElse(null);
+    }
+
+    private List<TerrariaInstanceEventEntity> findUnpackedEvents(final TerrariaInstanceEntity instance,
+            final @Nullable Long before, final int limit, final @Nullable TerrariaInstanceEventType type) {
+        final Pageable page = PageRequest.of(0, limit);
+        final List<TerrariaInstanceEventEntity> events;
+        if (type == null) {
+            events = before == null
+                    ? terrariaInstanceEventRepository.findByInstanceOrderByIdDesc(instance, page)
+                    : terrariaInstanceEventRepository.findByInstanceAndIdLessThanOrderByIdDesc(instance, before, page);
+        } else {
+            events = before == null
+                    ? terrariaInstanceEventRepository.findByInstanceAndTypeOrderByIdDesc(instance, type, page)
+                    : terrariaInstanceEventRepository.findByInstanceAndTypeAndIdLessThanOrderByIdDesc(instance, type,
+                    before, page);
+        }
+        return new ArrayList<>(events);
+    }
+}
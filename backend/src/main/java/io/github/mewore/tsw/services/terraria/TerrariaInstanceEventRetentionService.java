@@ -0,0 +1,413 @@
+package io.github.mewore.tsw.services.terraria;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the table of instance events from growing forever.
+ * <p>
+ * In PostgreSQL, the events are partitioned by month (see the V1.10 migration). The partitions of the upcoming months
+ * are created ahead of time because there is no default partition to save the other events in, and the partitions
+ * whose events are all older than the retention period are detached and dropped as a whole, optionally after being
+ * exported to a gzipped CSV file. With other databases (or without the
+ * migrations, e.g. with the {@code local-h2} profile), or if the events are not kept in the database at all, the
+ * expired events are deleted by the {@link TerrariaInstanceEventStore} instead.
+ */
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventRetentionService {
+
+    private static final Duration MAINTENANCE_INITIAL_DELAY = Duration.ofMinutes(1);
+
+    private static final Duration MAINTENANCE_INTERVAL = Duration.ofHours(1);
+
+    private static final String PARTITIONED_TABLE_NAME = "terraria_instance_event_partitioned";
+
+    private static final String PARTITION_NAME_PREFIX = "terraria_instance_event_";
+
+    private static final DateTimeFormatter PARTITION_SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+
+    private static final DateTimeFormatter BOUND_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Pattern RANGE_BOUND_PATTERN = Pattern.compile("FOR VALUES FROM \\((.+)\\) TO \\((.+)\\)");
+
+    /**
+     * Makes sure that only one node maintains the partitions at a time.
+     */
+    private static final long ADVISORY_LOCK_KEY = 0x747377_6576656e74L;
+
+    private static final int ARCHIVE_FETCH_SIZE = 1000;
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AsyncService asyncService;
+
+    private final TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    private final TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    /**
+     * The number of days to keep the events for, or 0 to keep them forever.
+     */
+    @Value("${tsw.terraria.event-retention-days:0}")
+    private int retentionDays = 0;
+
+    /**
+     * The number of monthly partitions to create in advance, after the one of the current month. There is no default
+     * partition, so events can only be saved until the end of the last one; this is the margin for the maintenance
+     * failing or the clock of the node being ahead.
+     */
+    @Value("${tsw.terraria.event-partitions-ahead:2}")
+    private int partitionsAhead = 2;
+
+    /**
+     * The directory to export expired partitions to before dropping them, or empty to drop them without exporting.
+     */
+    @Value("${tsw.terraria.event-archive-directory:}")
+    private String archiveDirectory = "";
+
+    private @Nullable Future<?> maintenanceFuture;
+
+    @PostConstruct
+    void setUp() {
+        maintenanceFuture = asyncService.scheduleAtFixedRate(this::tryMaintain, MAINTENANCE_INITIAL_DELAY,
+                MAINTENANCE_INTERVAL);
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        final @Nullable Future<?> currentMaintenanceFuture = maintenanceFuture;
+        if (currentMaintenanceFuture != null) {
+            currentMaintenanceFuture.cancel(false);
+        }
+    }
+
+    private void tryMaintain() {
+        try {
+            maintain(LocalDateTime.now(ZoneOffset.UTC));
+        } catch (final RuntimeException e) {
+            // Letting the exception through would cancel the scheduled maintenance
+            logger.error("Failed to maintain the instance event table", e);
+        }
+    }
+
+    /**
+     * Create the upcoming partitions and get rid of the expired events.
+     *
+     * @param now The current time in UTC.
+     */
+    void maintain(final LocalDateTime now) {
+        final boolean partitioned = Boolean.TRUE.equals(jdbcTemplate.execute(
+                (ConnectionCallback<Boolean>) connection -> maintainPartitions(connection, now)));
+        if (retentionDays <= 0) {
+            return;
+        }
+        final Instant expiryTime = now.minusDays(retentionDays).toInstant(ZoneOffset.UTC);
+        if (partitioned && terrariaInstanceEventStore.isInDatabase()) {
+            // The chunks are not partitioned (and not archived) regardless of the database
+            final int deletedChunkCount = terrariaInstanceEventChunkRepository.deleteByLastTimestampBefore(
+                    expiryTime);
+            if (deletedChunkCount > 0) {
+                logger.info("Deleted {} instance event chunks from before {}", deletedChunkCount, expiryTime);
+            }
+            return;
+        }
+        final long deletedEventCount = terrariaInstanceEventStore.deleteEventsBefore(expiryTime);
+        if (deletedEventCount > 0) {
+            logger.info("Deleted {} instance events from before {}", deletedEventCount, expiryTime);
+        }
+    }
+
+    /**
+     * @return Whether the events are partitioned.
+     */
+    private boolean maintainPartitions(final Connection connection, final LocalDateTime now) throws SQLException {
+        if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()) || !isPartitioned(connection)) {
+            return false;
+        }
+        if (!tryLock(connection)) {
+            logger.debug("The instance event partitions are being maintained by another node");
+            return true;
+        }
+        try {
+            final List<EventPartition> partitions = getPartitions(connection);
+            // The expired partitions are dropped first, and each step is allowed to fail on its own, so that nothing
+            // can keep the events from expiring
+            if (retentionDays > 0) {
+                for (final EventPartition partition : getExpiredPartitions(partitions,
+                        now.minusDays(retentionDays))) {
+                    try {
+                        dropPartition(connection, partition);
+                    } catch (final SQLException e) {
+                        logger.error("Failed to drop instance event partition " + partition.getName(), e);
+                    }
+                }
+            }
+            for (final EventPartition partition : getMissingPartitions(partitions, now, partitionsAhead)) {
+                try {
+                    createPartition(connection, partition);
+                } catch (final SQLException e) {
+                    logger.error("Failed to create instance event partition " + partition.getName(), e);
+                }
+            }
+        } finally {
+            unlock(connection);
+        }
+        return true;
+    }
+
+    private void createPartition(final Connection connection, final EventPartition partition) throws SQLException {
+        logger.info("Creating instance event partition {}", partition.getName());
+        execute(connection, String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')", partition.getName(),
+                PARTITIONED_TABLE_NAME, BOUND_FORMATTER.format(partition.getStart()),
+                BOUND_FORMATTER.format(partition.getEnd())));
+    }
+
+    private void dropPartition(final Connection connection, final EventPartition partition) throws SQLException {
+        if (!archiveDirectory.isEmpty()) {
+            try {
+                archivePartition(connection, partition);
+            } catch (final IOException e) {
+                logger.error("Failed to archive instance event partition " + partition.getName() +
+                        "; it will not be dropped", e);
+                return;
+            }
+        }
+        logger.info("Dropping expired instance event partition {}", partition.getName());
+        execute(connection, String.format("ALTER TABLE %s DETACH PARTITION %s", PARTITIONED_TABLE_NAME,
+                partition.getName()));
+        execute(connection, "DROP TABLE " + partition.getName());
+    }
+
+    private void archivePartition(final Connection connection, final EventPartition partition)
+            throws SQLException, IOException {
+        final Path directory = Path.of(archiveDirectory);
+        Files.createDirectories(directory);
+        final Path archive = directory.resolve(partition.getName() + ".csv.gz");
+        final Path temporaryArchive = directory.resolve(partition.getName() + ".csv.gz.tmp");
+        logger.info("Archiving instance event partition {} into {}", partition.getName(), archive);
+
+        final boolean autoCommit = connection.getAutoCommit();
+        // Without a transaction, the driver would fetch all of the rows at once
+        connection.setAutoCommit(false);
+        try {
+            writeArchive(connection, partition, temporaryArchive);
+            connection.commit();
+            Files.move(temporaryArchive, archive, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final SQLException | IOException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (final SQLException rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            try {
+                Files.deleteIfExists(temporaryArchive);
+            } catch (final IOException deletionException) {
+                e.addSuppressed(deletionException);
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void writeArchive(final Connection connection, final EventPartition partition,
+            final Path temporaryArchive) throws SQLException, IOException {
+        try (final Statement statement = connection.createStatement();
+             final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                     new GZIPOutputStream(Files.newOutputStream(temporaryArchive)), StandardCharsets.UTF_8))) {
+            statement.setFetchSize(ARCHIVE_FETCH_SIZE);
+            writer.write("id,instance_id,type,timestamp,content\n");
+            try (final ResultSet resultSet = statement.executeQuery(String.format(
+                    "SELECT id, instance_id, type, \"timestamp\", content FROM %s ORDER BY id",
+                    partition.getName()))) {
+                while (resultSet.next()) {
+                    writer.write(resultSet.getLong(1) + "," + resultSet.getLong(2) + "," + resultSet.getString(3) +
+                            "," + resultSet.getString(4) + ",\"" + resultSet.getString(5).replace("\"", "\"\"") +
+                            "\"\n");
+                }
+            }
+        }
+    }
+
+    private static boolean isPartitioned(final Connection connection) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM pg_partitioned_table JOIN pg_class ON pg_class.oid = pg_partitioned_table.partrelid " +
+                        "WHERE pg_class.relname = ?")) {
+            statement.setString(1, PARTITIONED_TABLE_NAME);
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private static List<EventPartition> getPartitions(final Connection connection) throws SQLException {
+        final List<EventPartition> result = new ArrayList<>();
+        try (final PreparedStatement statement = connection.prepareStatement(
+                "SELECT child.relname, pg_get_expr(child.relpartbound, child.oid) FROM pg_inherits " +
+                        "JOIN pg_class parent ON parent.oid = pg_inherits.inhparent " +
+                        "JOIN pg_class child ON child.oid = pg_inherits.inhrelid WHERE parent.relname = ?")) {
+            statement.setString(1, PARTITIONED_TABLE_NAME);
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    final @Nullable EventPartition partition = parsePartition(resultSet.getString(1),
+                            resultSet.getString(2));
+                    if (partition != null) {
+                        result.add(partition);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param name  The name of the partition.
+     * @param bound The bound of the partition as returned by {@code pg_get_expr}.
+     * @return The partition, or {@code null} if it is the default partition (or its bound cannot be parsed).
+     */
+    static @Nullable EventPartition parsePartition(final String name, final String bound) {
+        final Matcher matcher = RANGE_BOUND_PATTERN.matcher(bound);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new EventPartition(name, parseBoundValue(matcher.group(1)), parseBoundValue(matcher.group(2)));
+    }
+
+    private static @Nullable LocalDateTime parseBoundValue(final String value) {
+        if (value.equals("MINVALUE") || value.equals("MAXVALUE")) {
+            return null;
+        }
+        // e.g. '2021-08-01 00:00:00' or '2021-08-01 00:00:00'::timestamp without time zone
+        final String literal = value.substring(value.indexOf('\'') + 1, value.lastIndexOf('\''));
+        return LocalDateTime.parse(literal.replace(' ', 'T'));
+    }
+
+    /**
+     * @return The monthly partitions from the current month up to {@code monthsAhead} months after it which do not
+     * exist yet and do not overlap with any existing partition.
+     */
+    static List<EventPartition> getMissingPartitions(final List<EventPartition> existingPartitions,
+            final LocalDateTime now, final int monthsAhead) {
+        final LocalDateTime currentMonth = now.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        final List<EventPartition> result = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            final LocalDateTime start = currentMonth.plusMonths(i);
+            final EventPartition partition = new EventPartition(
+                    PARTITION_NAME_PREFIX + PARTITION_SUFFIX_FORMATTER.format(start), start, start.plusMonths(1));
+            if (existingPartitions.stream().noneMatch(partition::overlaps)) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The partitions whose events are all older than the expiry time.
+     */
+    static List<EventPartition> getExpiredPartitions(final List<EventPartition> existingPartitions,
+            final LocalDateTime expiryTime) {
+        final List<EventPartition> result = new ArrayList<>();
+        for (final EventPartition partition : existingPartitions) {
+            final @Nullable LocalDateTime end = partition.getEnd();
+            if (end != null && !end.isAfter(expiryTime)) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    private static boolean tryLock(final Connection connection) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(final Connection connection) {
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            statement.execute();
+        } catch (final SQLException | DataAccessException e) {
+            logger.error("Failed to release the lock of the instance event partitions", e);
+        }
+    }
+
+    private static void execute(final Connection connection, final String sql) throws SQLException {
+        try (final Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * A range partition of the instance events.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    @Getter
+    static class EventPartition {
+
+        private final String name;
+
+        /**
+         * The (inclusive) start of the partition, or {@code null} if it is unbounded.
+         */
+        private final @Nullable LocalDateTime start;
+
+        /**
+         * The (exclusive) end of the partition, or {@code null} if it is unbounded.
+         */
+        private final @Nullable LocalDateTime end;
+
+        private boolean overlaps(final EventPartition other) {
+            final boolean startsBeforeOtherEnds = start == null || other.end == null || start.isBefore(other.end);
+            final boolean endsAfterOtherStarts = end == null || other.start == null || end.isAfter(other.start);
+            return startsBeforeOtherEnds && endsAfterOtherStarts;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventSearchFilter;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.services.util.MetricsSource;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An in-memory inverted index of the content of the events of instances, for when the database cannot search it
+ * efficiently by itself.
+ * <p>
+ * The content of each event is split into lowercase tokens (runs of letters and digits). For each token, the index
+ * keeps the positions of the events which contain it, and for each event it keeps only its ID, timestamp and type;
+ * the content itself stays in the database. The index of an instance is built the first time the instance is searched
+ * and then kept up to date with the events that are saved on this node.
+ * <p>
+ * The index only narrows down the events which may contain a query: each query token has to be contained in a token of
+ * the event, so the candidates have to be checked against the whole query afterwards.
+ */
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventSearchIndex implements MetricsSource {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private static final TerrariaInstanceEventType[] EVENT_TYPES = TerrariaInstanceEventType.values();
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    private final Map<Long, InstanceIndex> indexByInstanceId = new HashMap<>();
+
+    /**
+     * Split text into lowercase tokens.
+     *
+     * @param text The text.
+     * @return The runs of letters and digits in the text, in lowercase.
+     */
+    static List<String> tokenize(final String text) {
+        final List<String> result = new ArrayList<>();
+        int tokenStart = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean isTokenCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isTokenCharacter && tokenStart < 0) {
+                tokenStart = i;
+            } else if (!isTokenCharacter && tokenStart >= 0) {
+                result.add(text.substring(tokenStart, i).toLowerCase(Locale.ROOT));
+                tokenStart = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the events of an instance which may contain a query, building the index of the instance if necessary.
+     *
+     * @param instance The instance.
+     * @param query    The query.
+     * @param filter   The filter that the events have to match.
+     * @param before   The ID before which to look for events.
+     * @param maxCount The largest number of events to find.
+     * @return The IDs of the found events, from the newest to the oldest.
+     * @throws InterruptedException If interrupted while waiting for the index of the instance to be built.
+     */
+    public List<Long> findCandidates(final TerrariaInstanceEntity instance, final String query,
+            final TerrariaInstanceEventSearchFilter filter, final long before, final int maxCount)
+            throws InterruptedException {
+        final InstanceIndex index = getIndex(instance);
+        synchronized (index) {
+            while (index.loading) {
+                index.wait();
+            }
+            if (index.failed) {
+                throw new IllegalStateException("Failed to index the events of instance " + instance.getUuid());
+            }
+            return index.findCandidates(tokenize(query), filter, before, maxCount);
+        }
+    }
+
+    /**
+     * Add saved events to the indices of their instances. The events of instances which are not indexed are ignored.
+     *
+     * @param events The events, which have to have IDs.
+     */
+    public void append(final Collection<TerrariaInstanceEventEntity> events) {
+        for (final TerrariaInstanceEventEntity event : events) {
+            final @Nullable InstanceIndex index;
+            synchronized (this) {
+                index = indexByInstanceId.get(event.getInstance().getId());
+            }
+            if (index != null) {
+                synchronized (index) {
+                    if (index.loading) {
+                        index.pendingEvents.add(event);
+                    } else {
+                        index.add(event);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the index of an instance so that it is built anew the next time the instance is searched.
+     *
+     * @param instanceId The ID of the instance.
+     */
+    public synchronized void invalidate(final long instanceId) {
+        if (indexByInstanceId.remove(instanceId) != null) {
+            logger.debug("Dropping the search index of instance {}", instanceId);
+        }
+    }
+
+    @Override
+    public void writeMetrics(final PrometheusTextWriter writer) {
+        final List<InstanceIndex> indices;
+        synchronized (this) {
+            indices = new ArrayList<>(indexByInstanceId.values());
+        }
+        long eventCount = 0;
+        long tokenCount = 0;
+        for (final InstanceIndex index : indices) {
+            synchronized (index) {
+                eventCount += index.size;
+                tokenCount += index.positionsByToken.size();
+            }
+        }
+        writer.gauge("tsw_instance_event_search_index_instances", "The number of instances whose events are indexed "
+                + "in memory.", indices.size());
+        writer.gauge("tsw_instance_event_search_index_events", "The number of events indexed in memory.", eventCount);
+        writer.gauge("tsw_instance_event_search_index_tokens", "The number of distinct tokens indexed in memory.",
+                tokenCount);
+    }
+
+    private InstanceIndex getIndex(final TerrariaInstanceEntity instance) {
+        final InstanceIndex index;
+        synchronized (this) {
+            final @Nullable InstanceIndex existingIndex = indexByInstanceId.get(instance.getId());
+            if (existingIndex != null) {
+                return existingIndex;
+            }
+            index = new InstanceIndex();
+            indexByInstanceId.put(instance.getId(), index);
+        }
+
+        try {
+            load(instance, index);
+        } catch (final RuntimeException e) {
+            synchronized (this) {
+                indexByInstanceId.remove(instance.getId(), index);
+            }
+            synchronized (index) {
+                index.loading = false;
+                index.failed = true;
+                index.notifyAll();
+            }
+            throw e;
+        }
+        return index;
+    }
+
+    /**
+     * Index all of the events of an instance, from the newest to the oldest, and then put them in the right order.
+     */
+    private void load(final TerrariaInstanceEntity instance, final InstanceIndex index) {
+        final long startNanos = System.nanoTime();
+        @Nullable Long before = null;
+        long newestLoadedId = 0;
+        List<TerrariaInstanceEventEntity> page;
+        do {
+            page = terrariaInstanceEventStore.getEvents(instance, before, LOAD_PAGE_SIZE, null);
+            synchronized (index) {
+                for (int i = page.size() - 1; i >= 0; i--) {
+                    index.add(page.get(i));
+                }
+            }
+            if (!page.isEmpty()) {
+                if (before == null) {
+                    newestLoadedId = page.get(page.size() - 1).getId();
+                }
+                before = page.get(0).getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        synchronized (index) {
+            index.reverse();
+            for (final TerrariaInstanceEventEntity event : index.pendingEvents) {
+                if (event.getId() > newestLoadedId) {
+                    index.add(event);
+                }
+            }
+            index.pendingEvents.clear();
+            index.loading = false;
+            index.notifyAll();
+            logger.info("Indexed {} events ({} distinct tokens) of instance {} in {} ms", index.size,
+                    index.positionsByToken.size(), instance.getUuid(), (System.nanoTime() - startNanos) / 1000000);
+        }
+    }
+
+    /**
+     * The indexed events of an instance. The positions of the events are ordered by their IDs (except while loading,
+     * when they are in reverse order).
+     */
+    private static class InstanceIndex {
+
+        private final Map<String, IntList> positionsByToken = new HashMap<>();
+
+        private final List<TerrariaInstanceEventEntity> pendingEvents = new ArrayList<>();
+
+        private long[] ids = new long[16];
+
+        private long[] timestamps = new long[16];
+
+        private byte[] types = new byte[16];
+
+        private int size = 0;
+
+        private boolean loading = true;
+
+        private boolean failed = false;
+
+        private void add(final TerrariaInstanceEventEntity event) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+            }
+            ids[size] = event.getId();
+            timestamps[size] = event.getTimestamp().toEpochMilli();
+            types[size] = (byte) event.getType().ordinal();
+            for (final String token : tokenize(event.getContent())) {
+                final IntList positions = positionsByToken.computeIfAbsent(token, key -> new IntList());
+                // An event may contain the same token more than once
+                if (positions.size == 0 || positions.values[positions.size - 1] != size) {
+                    positions.add(size);
+                }
+            }
+            size++;
+        }
+
+        private void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                final long id = ids[i];
+                ids[i] = ids[j];
+                ids[j] = id;
+                final long timestamp = timestamps[i];
+                timestamps[i] = timestamps[j];
+                timestamps[j] = timestamp;
+                final byte type = types[i];
+                types[i] = types[j];
+                types[j] = type;
+            }
+            for (final IntList positions : positionsByToken.values()) {
+                positions.reverseAndMirror(size);
+            }
+        }
+
+        private List<Long> findCandidates(final List<String> queryTokens, final TerrariaInstanceEventSearchFilter filter,
+                final long before, final int maxCount) {
+            final BitSet candidates = new BitSet(size);
+            candidates.set(0, size);
+            for (final String queryToken : queryTokens) {
+                final BitSet tokenCandidates = new BitSet(size);
+                for (final Map.Entry<String, IntList> entry : positionsByToken.entrySet()) {
+                    if (entry.getKey().contains(queryToken)) {
+                        final IntList positions = entry.getValue();
+                        for (int i = 0; i < positions.size; i++) {
+                            tokenCandidates.set(positions.values[i]);
+                        }
+                    }
+                }
+                candidates.and(tokenCandidates);
+            }
+
+            final @Nullable Set<TerrariaInstanceEventType> types = filter.getTypes();
+            final @Nullable Instant from = filter.getFrom();
+            final @Nullable Instant to = filter.getTo();
+            final List<Long> result = new ArrayList<>();
+            for (int position = candidates.previousSetBit(size - 1);
+                 position >= 0 && result.size() < maxCount;
+                 position = candidates.previousSetBit(position - 1)) {
+                if (ids[position] < before &&
+                        (types == null || types.contains(EVENT_TYPES[this.types[position]])) &&
+                        (from == null || timestamps[position] >= from.toEpochMilli()) &&
+                        (to == null || timestamps[position] < to.toEpochMilli())) {
+                    result.add(ids[position]);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class IntList {
+
+        private int[] values = new int[4];
+
+        private int size = 0;
+
+        private void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Turn each value into {@code mirror - 1 - value} and reverse the order of the values.
+         */
+        private void reverseAndMirror(final int mirror) {
+            for (int i = 0, j = size - 1; i <= j; i++, j--) {
+                final int value = values[i];
+                values[i] = mirror - 1 - values[j];
+                values[j] = mirror - 1 - value;
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.exceptions.InvalidRequestException;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventSearchFilter;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Searches the content of the events of instances for a substring, ignoring the case.
+ * <p>
+ * In PostgreSQL, the search is done by the database with the help of a trigram index (see the V1.12 migration). The
+ * output events which have been packed into chunks cannot be indexed, so the chunks which may contain events of the
+ * page are unpacked and searched one by one, from the newest to the oldest. With other databases, the
+ * search is done with {@link TerrariaInstanceEventSearchIndex}, which covers all events but is kept in memory and only
+ * knows about the events saved by other nodes after it has been rebuilt. If the events are not kept in the database
+ * at all, they are always searched in memory.
+ */
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventSearchService {
+
+    static final int MIN_QUERY_LENGTH = 3;
+
+    private static final int MIN_CANDIDATE_BATCH_SIZE = 100;
+
+    private static final int CHUNK_BATCH_SIZE = 10;
+
+    private static final Instant MIN_TIMESTAMP = Instant.EPOCH;
+
+    private static final Instant MAX_TIMESTAMP = Instant.parse("9999-12-31T23:59:59Z");
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+
+    private final TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    private final TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    private final TerrariaInstanceEventSearchIndex terrariaInstanceEventSearchIndex;
+
+    /**
+     * Where to search the events: in the database ({@code DATABASE}), in memory ({@code MEMORY}) or in the database
+     * if it is PostgreSQL and in memory otherwise ({@code AUTO}). Ignored if the events are not in the database.
+     */
+    @Value("${tsw.terraria.event-search.mode:AUTO}")
+    private SearchMode mode = SearchMode.AUTO;
+
+    private volatile @Nullable Boolean searchingInMemory;
+
+    private static String escapeLikePattern(final String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Get a page of the events of an instance that contain a query. The pages go from the newest events to the oldest
+     * ones, just like the pages of the event history.
+     *
+     * @param instance The instance.
+     * @param query    The text to look for in the content of the events, regardless of its case.
+     * @param filter   What else the events have to match.
+     * @param before   The ID before which to look for events, or {@code null} to get the newest ones.
+     * @param limit    The largest number of events to get.
+     * @return The found events, from the oldest to the newest.
+     * @throws InvalidRequestException If the query is too short.
+     * @throws InterruptedException    If interrupted while waiting for the events of the instance to be indexed.
+     */
+    public List<TerrariaInstanceEventEntity> search(final TerrariaInstanceEntity instance, final String query,
+            final TerrariaInstanceEventSearchFilter filter, final @Nullable Long before, final int limit)
+            throws InvalidRequestException, InterruptedException {
+        if (query.length() < MIN_QUERY_LENGTH) {
+            throw new InvalidRequestException(
+                    String.format("The query must be at least %d characters long", MIN_QUERY_LENGTH));
+        }
+        final List<TerrariaInstanceEventEntity> result = isSearchingInMemory()
+                ? searchInMemory(instance, query, filter, before == null ? Long.MAX_VALUE : before, limit)
+                : searchInDatabase(instance, query, filter, before == null ? Long.MAX_VALUE : before, limit);
+        Collections.reverse(result);
+        return result;
+    }
+
+    private boolean isSearchingInMemory() {
+        @Nullable Boolean result = searchingInMemory;
+        if (result == null) {
+            if (!terrariaInstanceEventStore.isInDatabase()) {
+                // There is nothing to search for in the database
+                result = true;
+            } else if (mode == SearchMode.AUTO) {
+                final @Nullable String databaseProductName = jdbcTemplate.execute(
+                        (ConnectionCallback<String>) connection -> connection.getMetaData()
+                                .getDatabaseProductName());
+                result = !"PostgreSQL".equals(databaseProductName);
+            } else {
+                result = mode == SearchMode.MEMORY;
+            }
+            logger.info("Searching the instance events {}", result ? "in memory" : "in the database");
+            searchingInMemory = result;
+        }
+        return result;
+    }
+
+    private List<TerrariaInstanceEventEntity> searchInDatabase(final TerrariaInstanceEntity instance,
+            final String query, final TerrariaInstanceEventSearchFilter filter, final long before, final int limit) {
+        final @Nullable Set<TerrariaInstanceEventType> types = filter.getTypes();
+        final @Nullable Instant from = filter.getFrom();
+        final @Nullable Instant to = filter.getTo();
+        final Instant actualFrom = from == null ? MIN_TIMESTAMP : from;
+        final Instant actualTo = to == null ? MAX_TIMESTAMP : to;
+        final String lowercaseQuery = query.toLowerCase(Locale.ROOT);
+        final List<TerrariaInstanceEventEntity> result = new ArrayList<>(
+                terrariaInstanceEventRepository.searchByContent(instance,
+                        "%" + escapeLikePattern(lowercaseQuery) + "%",
+                        types == null ? EnumSet.allOf(TerrariaInstanceEventType.class) : types, actualFrom, actualTo,
+                        before, PageRequest.of(0, limit)));
+        if (types != null && !types.contains(TerrariaInstanceEventType.OUTPUT)) {
+            return result;
+        }
+
+        // The chunks do not overlap, so once a chunk ends before the oldest event in a full page, so do the rest
+        long chunksBefore = before;
+        while (true) {
+            final List<TerrariaInstanceEventChunkEntity> chunks = terrariaInstanceEventChunkRepository
+                    .findSearchCandidates(instance, chunksBefore, actualFrom, PageRequest.of(0, CHUNK_BATCH_SIZE));
+            for (final TerrariaInstanceEventChunkEntity chunk : chunks) {
+                if (result.size() >= limit && chunk.getLastEventId() < result.get(limit - 1).getId()) {
+                    return result;
+                }
+                for (final TerrariaInstanceEventEntity event : TerrariaInstanceEventChunkCodec.unpackBefore(chunk,
+                        before)) {
+                    if (!event.getTimestamp().isBefore(actualFrom) && event.getTimestamp().isBefore(actualTo) &&
+                            event.getContent().toLowerCase(Locale.ROOT).contains(lowercaseQuery)) {
+                        result.add(event);
+                    }
+                }
+                result.sort(Comparator.comparing(TerrariaInstanceEventEntity::getId).reversed());
+                if (result.size() > limit) {
+                    result.subList(limit, result.size()).clear();
+                }
+            }
+            if (chunks.size() < CHUNK_BATCH_SIZE) {
+                return result;
+            }
+            chunksBefore = chunks.get(chunks.size() - 1).getFirstEventId();
+        }
+    }
+
+    private List<TerrariaInstanceEventEntity> searchInMemory(final TerrariaInstanceEntity instance, final String query,
+            final TerrariaInstanceEventSearchFilter filter, final long before, final int limit)
+            throws InterruptedException {
+        final String lowercaseQuery = query.toLowerCase(Locale.ROOT);
+        final int candidateBatchSize = Math.max(limit, MIN_CANDIDATE_BATCH_SIZE);
+        final List<TerrariaInstanceEventEntity> result = new ArrayList<>(limit);
+        long candidatesBefore = before;
+        while (result.size() < limit) {
+            final List<Long> candidateIds = terrariaInstanceEventSearchIndex.findCandidates(instance, query, filter,
+                    candidatesBefore, candidateBatchSize);
+            if (candidateIds.isEmpty()) {
+                break;
+            }
+            final List<TerrariaInstanceEventEntity> candidates = terrariaInstanceEventStore.getEventsByIds(
+                    instance, candidateIds);
+            candidates.sort(Comparator.comparing(TerrariaInstanceEventEntity::getId).reversed());
+            for (final TerrariaInstanceEventEntity candidate : candidates) {
+                if (result.size() < limit && candidate.getContent().toLowerCase(Locale.ROOT).contains(lowercaseQuery)) {
+                    result.add(candidate);
+                }
+            }
+            if (candidateIds.size() < candidateBatchSize) {
+                break;
+            }
+            candidatesBefore = Collections.min(candidateIds);
+        }
+        return result;
+    }
+
+    enum SearchMode {
+        AUTO,
+        DATABASE,
+        MEMORY,
+    }
+}
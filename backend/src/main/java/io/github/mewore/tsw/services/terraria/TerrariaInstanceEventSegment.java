@@ -0,0 +1,494 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import lombok.Getter;
+
+/**
+ * A memory-mapped file with consecutive events of an instance. Each event is saved as a record:
+ * <ol>
+ *     <li>the size of the rest of the record (int)</li>
+ *     <li>the ID (long)</li>
+ *     <li>the timestamp as epoch seconds (long) and nanoseconds (int)</li>
+ *     <li>the ordinal of the type (byte)</li>
+ *     <li>the content in UTF-8</li>
+ *     <li>the CRC32 of everything after the size except itself (int)</li>
+ * </ol>
+ * An open segment ({@code <first ID>.segment}) is mapped with some spare space after its records, which is filled
+ * with zeroes; the events are appended to it until it is full. Then it is sealed: it is truncated to the size of its
+ * records and renamed to {@code <first ID>-<last ID>.segment}. A sealed segment is never modified.
+ * <p>
+ * For each segment, a sparse index with the ID, timestamp and position of one record in every
+ * {@link #INDEX_INTERVAL_BYTES} bytes is kept in memory so that finding an event only requires reading the records
+ * around it. The index of a sealed segment is built by reading all of its records the first time it is needed.
+ */
+final class TerrariaInstanceEventSegment {
+
+    private static final String EXTENSION = ".segment";
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("(\\d+)(?:-(\\d+))?" + Pattern.quote(EXTENSION));
+
+    private static final int INDEX_INTERVAL_BYTES = 4096;
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + 1;
+
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+
+    private static final TerrariaInstanceEventType[] EVENT_TYPES = TerrariaInstanceEventType.values();
+
+    @Getter
+    private final long firstId;
+
+    private Path file;
+
+    private boolean sealed;
+
+    /**
+     * Only the records until {@link #size} are valid; in an open segment, the rest is zeroes.
+     */
+    private @Nullable MappedByteBuffer buffer;
+
+    private int size;
+
+    private boolean loaded;
+
+    private boolean synced = true;
+
+    private long lastId;
+
+    private int eventCount;
+
+    private @Nullable Instant firstTimestamp;
+
+    private @Nullable Instant lastTimestamp;
+
+    private long[] indexIds = new long[0];
+
+    private long[] indexEpochSeconds = new long[0];
+
+    private int[] indexPositions = new int[0];
+
+    private int indexSize = 0;
+
+    private TerrariaInstanceEventSegment(final Path file, final long firstId, final long lastId, final boolean sealed) {
+        this.file = file;
+        this.firstId = firstId;
+        this.lastId = lastId;
+        this.sealed = sealed;
+    }
+
+    /**
+     * Create an empty open segment.
+     *
+     * @param directory The directory of the segment.
+     * @param firstId   The ID of the first event that is going to be appended to it.
+     * @param capacity  The number of bytes that can be appended to the segment.
+     * @return The segment.
+     * @throws IOException If creating the file fails.
+     */
+    static TerrariaInstanceEventSegment create(final Path directory, final long firstId, final int capacity)
+            throws IOException {
+        final TerrariaInstanceEventSegment segment = new TerrariaInstanceEventSegment(
+                directory.resolve(firstId + EXTENSION), firstId, firstId - 1, false);
+        segment.buffer = map(segment.file, capacity, true);
+        segment.loaded = true;
+        return segment;
+    }
+
+    /**
+     * Find out which segment a file is, without reading it.
+     *
+     * @param file The file.
+     * @return The segment, or {@code null} if the file is not a segment.
+     */
+    static @Nullable TerrariaInstanceEventSegment fromFile(final Path file) {
+        final Matcher matcher = NAME_PATTERN.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        final long firstId = Long.parseLong(matcher.group(1));
+        final @Nullable String lastId = matcher.group(2);
+        return lastId == null
+                ? new TerrariaInstanceEventSegment(file, firstId, firstId - 1, false)
+                : new TerrariaInstanceEventSegment(file, firstId, Long.parseLong(lastId), true);
+    }
+
+    static String getSealedName(final long firstId, final long lastId) {
+        return firstId + "-" + lastId + EXTENSION;
+    }
+
+    private static MappedByteBuffer map(final Path file, final int size, final boolean writable) throws IOException {
+        try (final FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    static int getRecordSize(final TerrariaInstanceEventEntity event) {
+        return HEADER_SIZE + event.getContent().getBytes(StandardCharsets.UTF_8).length + CHECKSUM_SIZE;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * @return The ID of the last event, or {@code firstId - 1} if the segment is empty.
+     */
+    long getLastId() {
+        return lastId;
+    }
+
+    int getSize() {
+        ensureLoaded();
+        return size;
+    }
+
+    int getEventCount() {
+        ensureLoaded();
+        return eventCount;
+    }
+
+    @Nullable Instant getFirstTimestamp() {
+        ensureLoaded();
+        return firstTimestamp;
+    }
+
+    @Nullable Instant getLastTimestamp() {
+        ensureLoaded();
+        return lastTimestamp;
+    }
+
+    /**
+     * Open the segment as the one to append to, dropping any records after the last valid one (e.g. ones that were
+     * only partly written before a crash).
+     *
+     * @param capacity The number of bytes that the segment should be able to hold.
+     * @throws IOException If reading or truncating the file fails.
+     */
+    void openForAppending(final int capacity) throws IOException {
+        loadRecords(map(file, (int) Files.size(file), false));
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+        buffer = map(file, Math.max(capacity, size), true);
+    }
+
+    /**
+     * Append an event to the open segment.
+     *
+     * @param event The event, which already has an ID larger than the ones in the segment.
+     * @return Whether the event has been appended; {@code false} if there is not enough space left.
+     */
+    boolean append(final TerrariaInstanceEventEntity event) {
+        final MappedByteBuffer currentBuffer = getBuffer();
+        final byte[] content = event.getContent().getBytes(StandardCharsets.UTF_8);
+        final int recordSize = HEADER_SIZE + content.length + CHECKSUM_SIZE;
+        if (sealed || size + recordSize > currentBuffer.capacity()) {
+            return false;
+        }
+        final ByteBuffer record = currentBuffer.duplicate();
+        record.position(size);
+        record.putInt(recordSize - Integer.BYTES)
+                .putLong(event.getId())
+                .putLong(event.getTimestamp().getEpochSecond())
+                .putInt(event.getTimestamp().getNano())
+                .put((byte) event.getType().ordinal())
+                .put(content);
+        final CRC32 checksum = new CRC32();
+        checksum.update(currentBuffer.duplicate().position(size + Integer.BYTES).limit(record.position()));
+        record.putInt((int) checksum.getValue());
+        onRecord(size, event.getId(), event.getTimestamp(), recordSize);
+        synced = false;
+        return true;
+    }
+
+    /**
+     * Write the appended events to the disk.
+     */
+    void sync() {
+        if (!synced) {
+            getBuffer().force();
+            synced = true;
+        }
+    }
+
+    /**
+     * Seal the open segment so that nothing more is appended to it.
+     *
+     * @throws IOException If truncating or renaming the file fails.
+     */
+    void seal() throws IOException {
+        sync();
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+        final Path sealedFile = file.resolveSibling(getSealedName(firstId, lastId));
+        Files.move(file, sealedFile, StandardCopyOption.ATOMIC_MOVE);
+        file = sealedFile;
+        sealed = true;
+        // The part of the old mapping after the end of the file must not be touched anymore
+        buffer = size == 0 ? null : map(file, size, false);
+    }
+
+    /**
+     * Get the newest events before some ID.
+     *
+     * @param instance The instance that the events belong to.
+     * @param before   The ID before which to look for events.
+     * @param limit    The largest number of events to get.
+     * @param type     The type that the events should be of, or {@code null} for any type.
+     * @param target   The list to add the events to, from the newest to the oldest.
+     */
+    void collectBefore(final TerrariaInstanceEntity instance, final long before, final int limit,
+            final @Nullable TerrariaInstanceEventType type, final List<TerrariaInstanceEventEntity> target) {
+        ensureLoaded();
+        int blockEnd = size;
+        for (int block = findBlock(before - 1); block >= 0 && target.size() < limit; block--) {
+            final List<TerrariaInstanceEventEntity> blockEvents = new ArrayList<>();
+            int position = indexPositions[block];
+            while (position < blockEnd) {
+                final TerrariaInstanceEventEntity event = readRecord(instance, position);
+                if (event.getId() < before && (type == null || event.getType() == type)) {
+                    blockEvents.add(event);
+                }
+                position += Integer.BYTES + getBuffer().getInt(position);
+            }
+            for (int i = blockEvents.size() - 1; i >= 0 && target.size() < limit; i--) {
+                target.add(blockEvents.get(i));
+            }
+            if (target.size() >= limit) {
+                return;
+            }
+            blockEnd = indexPositions[block];
+        }
+    }
+
+    /**
+     * Find an event by its ID.
+     *
+     * @param instance The instance that the event belongs to.
+     * @param id       The ID of the event.
+     * @return The event, or {@code null} if it is not in this segment.
+     */
+    @Nullable TerrariaInstanceEventEntity find(final TerrariaInstanceEntity instance, final long id) {
+        ensureLoaded();
+        final int block = findBlock(id);
+        if (block < 0 || id > lastId) {
+            return null;
+        }
+        final int blockEnd = block + 1 < indexSize ? indexPositions[block + 1] : size;
+        for (int position = indexPositions[block]; position < blockEnd;
+             position += Integer.BYTES + getBuffer().getInt(position)) {
+            final long recordId = getBuffer().getLong(position + Integer.BYTES);
+            if (recordId == id) {
+                return readRecord(instance, position);
+            }
+            if (recordId > id) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the position of the first record which is not older than a specific time.
+     *
+     * @param time The time.
+     * @return The position of the record, or the size of the segment if all of its records are older.
+     */
+    int findFirstPositionNotBefore(final Instant time) {
+        ensureLoaded();
+        // The timestamps are only roughly in order, so the index can only be used to skip the older blocks
+        int block = 0;
+        while (block + 1 < indexSize && indexEpochSeconds[block + 1] < time.getEpochSecond()) {
+            block++;
+        }
+        for (int position = block < indexSize ? indexPositions[block] : size; position < size;
+             position += Integer.BYTES + getBuffer().getInt(position)) {
+            final Instant timestamp = readTimestamp(position);
+            if (!timestamp.isBefore(time)) {
+                return position;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the ID of the record at a specific position.
+     */
+    long getIdAt(final int position) {
+        return getBuffer().getLong(position + Integer.BYTES);
+    }
+
+    /**
+     * Count the records from a specific position until the end.
+     */
+    int countEventsFrom(final int position) {
+        ensureLoaded();
+        int result = 0;
+        for (int current = position; current < size; current += Integer.BYTES + getBuffer().getInt(current)) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Write the records of the sealed segment starting from a specific position to a channel.
+     *
+     * @param position The position of the first record to write.
+     * @param target   The channel.
+     * @throws IOException If writing fails.
+     */
+    void transferTo(final int position, final FileChannel target) throws IOException {
+        ensureLoaded();
+        final ByteBuffer records = getBuffer().duplicate().position(position).limit(size);
+        while (records.hasRemaining()) {
+            target.write(records);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        try {
+            final int fileSize = (int) Files.size(file);
+            final @Nullable MappedByteBuffer sealedBuffer = fileSize == 0 ? null : map(file, fileSize, false);
+            loadRecords(sealedBuffer);
+            buffer = sealedBuffer;
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to read the event segment " + file, e);
+        }
+    }
+
+    /**
+     * Read the valid records in a buffer to find out the size of the segment and to build its sparse index.
+     */
+    private void loadRecords(final @Nullable ByteBuffer source) {
+        buffer = null;
+        size = 0;
+        eventCount = 0;
+        indexSize = 0;
+        lastId = firstId - 1;
+        firstTimestamp = null;
+        lastTimestamp = null;
+        if (source != null) {
+            final CRC32 checksum = new CRC32();
+            int position = 0;
+            while (position + HEADER_SIZE + CHECKSUM_SIZE <= source.capacity()) {
+                final int recordSize = source.getInt(position) + Integer.BYTES;
+                if (recordSize < HEADER_SIZE + CHECKSUM_SIZE || position + recordSize > source.capacity()) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(source.duplicate()
+                        .position(position + Integer.BYTES)
+                        .limit(position + recordSize - CHECKSUM_SIZE));
+                final long id = source.getLong(position + Integer.BYTES);
+                if ((int) checksum.getValue() != source.getInt(position + recordSize - CHECKSUM_SIZE) ||
+                        id <= lastId) {
+                    break;
+                }
+                onRecord(position, id, Instant.ofEpochSecond(source.getLong(position + Integer.BYTES + Long.BYTES),
+                        source.getInt(position + Integer.BYTES + Long.BYTES + Long.BYTES)), recordSize);
+                position += recordSize;
+            }
+        }
+        loaded = true;
+    }
+
+    private void onRecord(final int position, final long id, final Instant timestamp, final int recordSize) {
+        if (indexSize == 0 || position - indexPositions[indexSize - 1] >= INDEX_INTERVAL_BYTES) {
+            if (indexSize == indexIds.length) {
+                final int newLength = Math.max(16, indexSize * 2);
+                indexIds = Arrays.copyOf(indexIds, newLength);
+                indexEpochSeconds = Arrays.copyOf(indexEpochSeconds, newLength);
+                indexPositions = Arrays.copyOf(indexPositions, newLength);
+            }
+            indexIds[indexSize] = id;
+            indexEpochSeconds[indexSize] = timestamp.getEpochSecond();
+            indexPositions[indexSize] = position;
+            indexSize++;
+        }
+        if (firstTimestamp == null) {
+            firstTimestamp = timestamp;
+        }
+        lastTimestamp = timestamp;
+        lastId = id;
+        eventCount++;
+        size = position + recordSize;
+    }
+
+    /**
+     * @return The index of the last block whose first ID is not larger than the specified one, or -1 if there is none.
+     */
+    private int findBlock(final long id) {
+        int low = 0;
+        int high = indexSize - 1;
+        int result = -1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (indexIds[middle] <= id) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    private Instant readTimestamp(final int position) {
+        return Instant.ofEpochSecond(getBuffer().getLong(position + Integer.BYTES + Long.BYTES),
+                getBuffer().getInt(position + Integer.BYTES + Long.BYTES + Long.BYTES));
+    }
+
+    private TerrariaInstanceEventEntity readRecord(final TerrariaInstanceEntity instance, final int position) {
+        final MappedByteBuffer currentBuffer = getBuffer();
+        final int recordSize = currentBuffer.getInt(position) + Integer.BYTES;
+        final byte[] content = new byte[recordSize - HEADER_SIZE - CHECKSUM_SIZE];
+        currentBuffer.duplicate().position(position + HEADER_SIZE).get(content);
+        return TerrariaInstanceEventEntity.builder()
+                .id(currentBuffer.getLong(position + Integer.BYTES))
+                .timestamp(readTimestamp(position))
+                .type(EVENT_TYPES[currentBuffer.get(position + HEADER_SIZE - 1)])
+                .content(new String(content, StandardCharsets.UTF_8))
+                .instance(instance)
+                .build();
+    }
+
+    private MappedByteBuffer getBuffer() {
+        final @Nullable MappedByteBuffer currentBuffer = buffer;
+        if (currentBuffer == null) {
+            throw new IllegalStateException("The event segment " + file + " has no records");
+        }
+        return currentBuffer;
+    }
+}
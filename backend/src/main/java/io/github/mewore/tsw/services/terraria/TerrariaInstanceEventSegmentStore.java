@@ -0,0 +1,580 @@
+package io.github.mewore.tsw.services.terraria;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.services.util.AsyncService;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the events of instances in append-only segment files (see {@link TerrariaInstanceEventSegment}) on the local
+ * disk, with a directory for each instance. This avoids the overhead of the database for the output of instances,
+ * but the events can only be seen by this node, so it is only suitable for a single node. The events are also not
+ * part of the database transactions, so they are not rolled back with them.
+ * <p>
+ * The appended events are written to the disk in batches every {@code tsw.terraria.event-store.sync-interval-millis}
+ * milliseconds (or immediately if it is 0), so up to that much of the newest events can be lost if the host crashes.
+ * A partly written event at the end of a segment is dropped when the store starts.
+ * <p>
+ * Segments are never modified after they have been sealed. To change them (e.g. to merge small segments or to drop
+ * expired events), a new segment is written next to them and then they are deleted. If this is interrupted, any
+ * segment whose events are all in another segment as well is deleted when the store starts.
+ */
+@ConditionalOnProperty(name = "tsw.terraria.event-store.type", havingValue = "SEGMENT_FILE")
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventSegmentStore implements TerrariaInstanceEventStore {
+
+    private static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".tsw-events");
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private static final Duration COMPACTION_INITIAL_DELAY = Duration.ofMinutes(5);
+
+    private static final Duration COMPACTION_INTERVAL = Duration.ofMinutes(30);
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final AsyncService asyncService;
+
+    /**
+     * The directory to keep the segments in, or empty to keep them in {@code ~/.tsw-events}.
+     */
+    @Value("${tsw.terraria.event-store.directory:}")
+    private String directory = "";
+
+    /**
+     * The size of a segment after which a new one is started.
+     */
+    @Value("${tsw.terraria.event-store.segment-bytes:16777216}")
+    private int segmentBytes = 16 * 1024 * 1024;
+
+    /**
+     * How often to write the appended events to the disk, or 0 to write them as soon as they are appended.
+     */
+    @Value("${tsw.terraria.event-store.sync-interval-millis:1000}")
+    private long syncIntervalMillis = 1000;
+
+    private final Map<Long, InstanceLog> logsByInstanceId = new HashMap<>();
+
+    private final AtomicLong lastId = new AtomicLong();
+
+    /**
+     * Makes sure that the segments are not merged and trimmed at the same time.
+     */
+    private final Object maintenanceLock = new Object();
+
+    private @Nullable Path root;
+
+    private @Nullable Future<?> syncFuture;
+
+    private @Nullable Future<?> compactionFuture;
+
+    @PostConstruct
+    void setUp() throws IOException {
+        final Path currentRoot = directory.isEmpty() ? DEFAULT_DIRECTORY : Path.of(directory);
+        Files.createDirectories(currentRoot);
+        root = currentRoot;
+        try (final DirectoryStream<Path> instanceDirectories = Files.newDirectoryStream(currentRoot,
+                path -> Files.isDirectory(path) && path.getFileName().toString().matches("\\d+"))) {
+            for (final Path instanceDirectory : instanceDirectories) {
+                final InstanceLog log = new InstanceLog(instanceDirectory);
+                log.open();
+                logsByInstanceId.put(Long.parseLong(instanceDirectory.getFileName().toString()), log);
+                lastId.accumulateAndGet(log.getLastId(), Math::max);
+            }
+        }
+        logger.info("Loaded the event segments of {} instances from {}; the last event ID is {}",
+                logsByInstanceId.size(), currentRoot, lastId.get());
+
+        if (syncIntervalMillis > 0) {
+            syncFuture = asyncService.scheduleAtFixedRate(this::trySync, Duration.ofMillis(syncIntervalMillis),
+                    Duration.ofMillis(syncIntervalMillis));
+        }
+        compactionFuture = asyncService.scheduleAtFixedRate(this::tryCompact, COMPACTION_INITIAL_DELAY,
+                COMPACTION_INTERVAL);
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        final @Nullable Future<?> currentSyncFuture = syncFuture;
+        if (currentSyncFuture != null) {
+            currentSyncFuture.cancel(false);
+        }
+        final @Nullable Future<?> currentCompactionFuture = compactionFuture;
+        if (currentCompactionFuture != null) {
+            currentCompactionFuture.cancel(false);
+        }
+        sync();
+    }
+
+    private void trySync() {
+        try {
+            sync();
+        } catch (final RuntimeException e) {
+            // Letting the exception through would cancel the scheduled syncing
+            logger.error("Failed to write the instance event segments to the disk", e);
+        }
+    }
+
+    private void tryCompact() {
+        try {
+            compact();
+        } catch (final RuntimeException e) {
+            logger.error("Failed to compact the instance event segments", e);
+        }
+    }
+
+    /**
+     * Write all appended events to the disk.
+     */
+    void sync() {
+        for (final InstanceLog log : getLogs()) {
+            log.sync();
+        }
+    }
+
+    /**
+     * Merge adjacent sealed segments of each instance as long as the merged segments are not larger than a normal one.
+     */
+    void compact() {
+        synchronized (maintenanceLock) {
+            for (final InstanceLog log : getLogs()) {
+                try {
+                    log.compact();
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Failed to compact the event segments in " + log.directory, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The IDs are unique among all instances, like the ones generated by the database.
+     */
+    @Override
+    public List<TerrariaInstanceEventEntity> saveAll(final List<TerrariaInstanceEventEntity> events) {
+        final Map<Long, List<Integer>> eventIndicesByInstanceId = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            eventIndicesByInstanceId.computeIfAbsent(events.get(i).getInstance().getId(), id -> new ArrayList<>())
+                    .add(i);
+        }
+        final TerrariaInstanceEventEntity[] result = new TerrariaInstanceEventEntity[events.size()];
+        for (final Map.Entry<Long, List<Integer>> entry : eventIndicesByInstanceId.entrySet()) {
+            final InstanceLog log = getOrCreateLog(entry.getKey());
+            try {
+                log.append(events, entry.getValue(), result);
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Failed to append events to " + log.directory, e);
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    @Override
+    public List<TerrariaInstanceEventEntity> getEvents(final TerrariaInstanceEntity instance,
+            final @Nullable Long before, final int limit, final @Nullable TerrariaInstanceEventType type) {
+        final @Nullable InstanceLog log = getLog(instance.getId());
+        return log == null ? new ArrayList<>() : log.getEvents(instance, before == null ? Long.MAX_VALUE : before,
+                limit, type);
+    }
+
+    @Override
+    public List<TerrariaInstanceEventEntity> getEventsByIds(final TerrariaInstanceEntity instance,
+            final Collection<Long> ids) {
+        final @Nullable InstanceLog log = getLog(instance.getId());
+        return log == null ? new ArrayList<>() : log.getEventsByIds(instance, ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A whole segment is deleted at a time, regardless of the maximum count.
+     */
+    @Override
+    public int deleteEventBatch(final TerrariaInstanceEntity instance, final int maxCount) {
+        final @Nullable InstanceLog log = getLog(instance.getId());
+        if (log == null) {
+            return 0;
+        }
+        try {
+            final int deletedEventCount = log.deleteOldestSegment();
+            if (deletedEventCount == 0) {
+                synchronized (logsByInstanceId) {
+                    logsByInstanceId.remove(instance.getId());
+                }
+                Files.deleteIfExists(log.directory);
+            }
+            return deletedEventCount;
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to delete the event segments in " + log.directory, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Since the events are appended in roughly the order of their timestamps, the events are only deleted from the
+     * start of each instance log until the first one that has not expired. If some of the events in the segment that
+     * is being appended to have expired, it is sealed so that it can be trimmed.
+     */
+    @Override
+    public long deleteEventsBefore(final Instant expiryTime) {
+        long deletedEventCount = 0;
+        synchronized (maintenanceLock) {
+            for (final InstanceLog log : getLogs()) {
+                try {
+                    deletedEventCount += log.deleteEventsBefore(expiryTime);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Failed to delete the expired event segments in " + log.directory,
+                            e);
+                }
+            }
+        }
+        return deletedEventCount;
+    }
+
+    @Override
+    public boolean isInDatabase() {
+        return false;
+    }
+
+    private List<InstanceLog> getLogs() {
+        synchronized (logsByInstanceId) {
+            return new ArrayList<>(logsByInstanceId.values());
+        }
+    }
+
+    private @Nullable InstanceLog getLog(final long instanceId) {
+        synchronized (logsByInstanceId) {
+            return logsByInstanceId.get(instanceId);
+        }
+    }
+
+    private InstanceLog getOrCreateLog(final long instanceId) {
+        final @Nullable Path currentRoot = root;
+        if (currentRoot == null) {
+            throw new IllegalStateException("The event segment store has not been set up");
+        }
+        synchronized (logsByInstanceId) {
+            return logsByInstanceId.computeIfAbsent(instanceId,
+                    id -> new InstanceLog(currentRoot.resolve(String.valueOf(id))));
+        }
+    }
+
+    /**
+     * The segments of one instance, from the oldest to the newest. Only the newest one can be open.
+     */
+    private class InstanceLog {
+
+        private final Path directory;
+
+        private final List<TerrariaInstanceEventSegment> segments = new ArrayList<>();
+
+        private InstanceLog(final Path directory) {
+            this.directory = directory;
+        }
+
+        private synchronized void open() throws IOException {
+            final List<TerrariaInstanceEventSegment> foundSegments = new ArrayList<>();
+            try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (final Path file : files) {
+                    if (file.getFileName().toString().endsWith(TEMPORARY_EXTENSION)) {
+                        // Left over from an interrupted compaction or trimming
+                        Files.delete(file);
+                        continue;
+                    }
+                    final @Nullable TerrariaInstanceEventSegment segment = TerrariaInstanceEventSegment.fromFile(file);
+                    if (segment != null) {
+                        foundSegments.add(segment);
+                    }
+                }
+            }
+            // The wider segment comes first so that any segment covered by it can be found right after it
+            foundSegments.sort(Comparator.comparingLong(TerrariaInstanceEventSegment::getFirstId)
+                    .thenComparing(Comparator.comparingLong(TerrariaInstanceEventSegment::getLastId).reversed()));
+            for (final TerrariaInstanceEventSegment segment : foundSegments) {
+                @Nullable TerrariaInstanceEventSegment previous = getNewestSegment();
+                if (previous != null && !previous.isSealed()) {
+                    // The sealing of the previous segment was interrupted
+                    previous.openForAppending(0);
+                    if (previous.getEventCount() == 0) {
+                        segments.remove(previous);
+                        Files.delete(previous.getFile());
+                    } else {
+                        previous.seal();
+                    }
+                    previous = getNewestSegment();
+                }
+                if (previous != null && segment.getFirstId() <= previous.getLastId()) {
+                    logger.info("Deleting the event segment {} because its events are in {}", segment.getFile(),
+                            previous.getFile());
+                    Files.delete(segment.getFile());
+                    continue;
+                }
+                segments.add(segment);
+            }
+            final @Nullable TerrariaInstanceEventSegment newest = getNewestSegment();
+            if (newest != null && !newest.isSealed()) {
+                newest.openForAppending(segmentBytes);
+            }
+        }
+
+        private synchronized long getLastId() {
+            final @Nullable TerrariaInstanceEventSegment newest = getNewestSegment();
+            return newest == null ? 0 : newest.getLastId();
+        }
+
+        private synchronized void append(final List<TerrariaInstanceEventEntity> events,
+                final List<Integer> eventIndices, final TerrariaInstanceEventEntity[] result) throws IOException {
+            if (segments.isEmpty()) {
+                Files.createDirectories(directory);
+            }
+            for (final int eventIndex : eventIndices) {
+                final TerrariaInstanceEventEntity event = events.get(eventIndex);
+                // The ID is generated while holding the lock so that the IDs in the log are in order
+                final TerrariaInstanceEventEntity savedEvent = TerrariaInstanceEventEntity.builder()
+                        .id(lastId.incrementAndGet())
+                        .type(event.getType())
+                        .timestamp(event.getTimestamp())
+                        .content(event.getContent())
+                        .instance(event.getInstance())
+                        .build();
+                @Nullable TerrariaInstanceEventSegment segment = getNewestSegment();
+                if (segment == null || !segment.append(savedEvent)) {
+                    if (segment != null && !segment.isSealed()) {
+                        segment.seal();
+                    }
+                    segment = TerrariaInstanceEventSegment.create(directory, savedEvent.getId(),
+                            Math.max(segmentBytes, TerrariaInstanceEventSegment.getRecordSize(savedEvent)));
+                    segments.add(segment);
+                    if (!segment.append(savedEvent)) {
+                        throw new IllegalStateException("Failed to append an event to a new segment");
+                    }
+                }
+                result[eventIndex] = savedEvent;
+            }
+            if (syncIntervalMillis <= 0) {
+                sync();
+            }
+        }
+
+        private synchronized void sync() {
+            final @Nullable TerrariaInstanceEventSegment newest = getNewestSegment();
+            if (newest != null && !newest.isSealed()) {
+                newest.sync();
+            }
+        }
+
+        private synchronized List<TerrariaInstanceEventEntity> getEvents(final TerrariaInstanceEntity instance,
+                final long before, final int limit, final @Nullable TerrariaInstanceEventType type) {
+            final List<TerrariaInstanceEventEntity> result = new ArrayList<>(limit);
+            for (int i = segments.size() - 1; i >= 0 && result.size() < limit; i--) {
+                final TerrariaInstanceEventSegment segment = segments.get(i);
+                if (segment.getFirstId() < before && segment.getLastId() >= segment.getFirstId()) {
+                    segment.collectBefore(instance, before, limit, type, result);
+                }
+            }
+            // The events have been collected from the newest to the oldest
+            final List<TerrariaInstanceEventEntity> reversedResult = new ArrayList<>(result.size());
+            for (int i = result.size() - 1; i >= 0; i--) {
+                reversedResult.add(result.get(i));
+            }
+            return reversedResult;
+        }
+
+        private synchronized List<TerrariaInstanceEventEntity> getEventsByIds(final TerrariaInstanceEntity instance,
+                final Collection<Long> ids) {
+            final List<TerrariaInstanceEventEntity> result = new ArrayList<>(ids.size());
+            for (final long id : ids) {
+                final @Nullable TerrariaInstanceEventSegment segment = findSegment(id);
+                final @Nullable TerrariaInstanceEventEntity event = segment == null
+                        ? null
+                        : segment.find(instance, id);
+                if (event != null) {
+                    result.add(event);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return The number of deleted events, or 0 if there are no segments left.
+         */
+        private synchronized int deleteOldestSegment() throws IOException {
+            while (!segments.isEmpty()) {
+                final TerrariaInstanceEventSegment segment = segments.remove(0);
+                final int eventCount = segment.getEventCount();
+                Files.delete(segment.getFile());
+                if (eventCount > 0) {
+                    return eventCount;
+                }
+            }
+            return 0;
+        }
+
+        private long deleteEventsBefore(final Instant expiryTime) throws IOException {
+            long deletedEventCount = 0;
+            while (true) {
+                final @Nullable TerrariaInstanceEventSegment oldest;
+                synchronized (this) {
+                    oldest = segments.isEmpty() ? null : segments.get(0);
+                    if (oldest == null) {
+                        return deletedEventCount;
+                    }
+                    final @Nullable Instant lastTimestamp = oldest.getLastTimestamp();
+                    if (lastTimestamp == null || lastTimestamp.isBefore(expiryTime)) {
+                        if (!oldest.isSealed()) {
+                            oldest.seal();
+                        }
+                        deletedEventCount += oldest.getEventCount();
+                        segments.remove(0);
+                        Files.delete(oldest.getFile());
+                        continue;
+                    }
+                    final @Nullable Instant firstTimestamp = oldest.getFirstTimestamp();
+                    if (firstTimestamp == null || !firstTimestamp.isBefore(expiryTime)) {
+                        return deletedEventCount;
+                    }
+                    if (!oldest.isSealed()) {
+                        // Only sealed segments can be trimmed; the next events are going to be appended to a new one
+                        oldest.seal();
+                    }
+                }
+                // The sealed segment does not change, so it can be copied without holding the lock
+                final int position = oldest.findFirstPositionNotBefore(expiryTime);
+                if (position > 0) {
+                    final int expiredEventCount = oldest.getEventCount() - oldest.countEventsFrom(position);
+                    final Path trimmedFile = directory.resolve(TerrariaInstanceEventSegment.getSealedName(
+                            oldest.getIdAt(position), oldest.getLastId()));
+                    writeSegment(trimmedFile, List.of(oldest), position);
+                    replaceSegments(List.of(oldest), trimmedFile);
+                    deletedEventCount += expiredEventCount;
+                }
+                return deletedEventCount;
+            }
+        }
+
+        private void compact() throws IOException {
+            final List<List<TerrariaInstanceEventSegment>> runs = new ArrayList<>();
+            synchronized (this) {
+                List<TerrariaInstanceEventSegment> run = new ArrayList<>();
+                long runSize = 0;
+                for (final TerrariaInstanceEventSegment segment : segments) {
+                    if (!segment.isSealed() || segment.getEventCount() == 0) {
+                        break;
+                    }
+                    if (runSize + segment.getSize() > segmentBytes) {
+                        if (run.size() > 1) {
+                            runs.add(run);
+                        }
+                        run = new ArrayList<>();
+                        runSize = 0;
+                    }
+                    run.add(segment);
+                    runSize += segment.getSize();
+                }
+                if (run.size() > 1) {
+                    runs.add(run);
+                }
+            }
+            for (final List<TerrariaInstanceEventSegment> run : runs) {
+                final Path mergedFile = directory.resolve(TerrariaInstanceEventSegment.getSealedName(
+                        run.get(0).getFirstId(), run.get(run.size() - 1).getLastId()));
+                writeSegment(mergedFile, run, 0);
+                replaceSegments(run, mergedFile);
+                logger.info("Merged {} event segments into {}", run.size(), mergedFile);
+            }
+        }
+
+        /**
+         * Write the records of sealed segments (starting from a position in the first one) to a new segment file,
+         * which only appears under its name once it has been written completely.
+         */
+        private void writeSegment(final Path file, final List<TerrariaInstanceEventSegment> sources,
+                final int firstPosition) throws IOException {
+            final Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_EXTENSION);
+            try (final FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                for (int i = 0; i < sources.size(); i++) {
+                    sources.get(i).transferTo(i == 0 ? firstPosition : 0, channel);
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private synchronized void replaceSegments(final List<TerrariaInstanceEventSegment> oldSegments,
+                final Path newFile) throws IOException {
+            final @Nullable TerrariaInstanceEventSegment newSegment = TerrariaInstanceEventSegment.fromFile(newFile);
+            if (newSegment == null) {
+                throw new IllegalStateException("Not a segment file: " + newFile);
+            }
+            final int index = segments.indexOf(oldSegments.get(0));
+            if (index < 0 || !segments.containsAll(oldSegments)) {
+                // The segments have been deleted in the meantime
+                Files.delete(newFile);
+                return;
+            }
+            segments.removeAll(oldSegments);
+            segments.add(index, newSegment);
+            for (final TerrariaInstanceEventSegment oldSegment : oldSegments) {
+                if (!oldSegment.getFile().equals(newFile)) {
+                    Files.delete(oldSegment.getFile());
+                }
+            }
+        }
+
+        private @Nullable TerrariaInstanceEventSegment findSegment(final long id) {
+            int low = 0;
+            int high = segments.size() - 1;
+            @Nullable TerrariaInstanceEventSegment result = null;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                if (segments.get(middle).getFirstId() <= id) {
+                    result = segments.get(middle);
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return result;
+        }
+
+        private @Nullable TerrariaInstanceEventSegment getNewestSegment() {
+            return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        }
+    }
+}
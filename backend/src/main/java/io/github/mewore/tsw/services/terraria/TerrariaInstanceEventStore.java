@@ -0,0 +1,75 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+
+/**
+ * Where the events of instances are saved. Which implementation is used depends on
+ * {@code tsw.terraria.event-store.type}:
+ * <ul>
+ *     <li>{@code JDBC} (the default) - {@link TerrariaInstanceEventJdbcStore}, in the database</li>
+ *     <li>{@code SEGMENT_FILE} - {@link TerrariaInstanceEventSegmentStore}, in local files</li>
+ * </ul>
+ * <p>
+ * The IDs of the events of an instance increase in the order in which the events are saved.
+ */
+public interface TerrariaInstanceEventStore {
+
+    /**
+     * Save new events.
+     *
+     * @param events The events, which must not have IDs yet.
+     * @return The saved events, with their IDs, in the same order.
+     */
+    List<TerrariaInstanceEventEntity> saveAll(List<TerrariaInstanceEventEntity> events);
+
+    /**
+     * Get a page of the events of an instance.
+     *
+     * @param instance The instance.
+     * @param before   The ID before which to look for events, or {@code null} to get the newest ones.
+     * @param limit    The largest number of events to get.
+     * @param type     The type that the events should be of, or {@code null} to get events of any type.
+     * @return The events, from the oldest to the newest.
+     */
+    List<TerrariaInstanceEventEntity> getEvents(TerrariaInstanceEntity instance, @Nullable Long before, int limit,
+            @Nullable TerrariaInstanceEventType type);
+
+    /**
+     * Get specific events of an instance. The events that cannot be found are skipped.
+     *
+     * @param instance The instance.
+     * @param ids      The IDs of the events.
+     * @return The found events, in no particular order.
+     */
+    List<TerrariaInstanceEventEntity> getEventsByIds(TerrariaInstanceEntity instance, Collection<Long> ids);
+
+    /**
+     * Delete some of the events of an instance. This should be called until there are no events left.
+     *
+     * @param instance The instance.
+     * @param maxCount The largest number of events to delete (approximately, if the events are deleted in groups).
+     * @return The number of deleted events, which is 0 only if the instance has no events left.
+     */
+    int deleteEventBatch(TerrariaInstanceEntity instance, int maxCount);
+
+    /**
+     * Delete the events of all instances that are older than a specific time.
+     *
+     * @param expiryTime The time before which the events are deleted.
+     * @return The number of deleted events.
+     */
+    long deleteEventsBefore(Instant expiryTime);
+
+    /**
+     * @return Whether the events are saved in the database, so that they can be queried with SQL.
+     */
+    boolean isInDatabase();
+}
@@ -0,0 +1,405 @@
+package io.github.mewore.tsw.services.terraria;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.services.util.AsyncService;
+import io.github.mewore.tsw.services.util.DurationStatistics;
+import io.github.mewore.tsw.services.util.MetricsSource;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Saves the output events of instances in the background so that a slow database does not stall the processing of
+ * their output. The events of all instances are queued together and saved in batches, one transaction per batch,
+ * along with the output position of each instance in the batch.
+ * <p>
+ * The queue is bounded: when it is full, writing to it blocks until there is room, which slows down the reading of
+ * output instead of using up the memory. Everything that is left in the queue is saved on shutdown.
+ * <p>
+ * A batch that fails to be saved stays at the head of the queue and is retried with an increasing delay until it is
+ * saved, so a database outage only delays the events. A batch that cannot be saved at all (e.g. because one of its
+ * instances has been deleted) is instead split by instance so that only the events of the failing instances are given
+ * up on, and when the writer is shutting down a batch is given up on after a few attempts. The later events of those
+ * instances are then given up on as well, so that their saved output position stays before the lost events and their
+ * output is read again once they are tracked again (see {@link #resumeInstance}).
+ */
+@RequiredArgsConstructor
+@Service
+public class TerrariaInstanceEventWriter implements MetricsSource {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private static final int MAX_COMMIT_ATTEMPTS = 3;
+
+    private static final long MAX_COMMIT_RETRY_DELAY_MS = 60000;
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final TerrariaInstanceService terrariaInstanceService;
+
+    private final AsyncService asyncService;
+
+    private final BlockingQueue<PendingEvents> queue = new LinkedBlockingQueue<>();
+
+    private final Object commitLock = new Object();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * The instances whose events have been given up on. None of their later events are saved until they are resumed.
+     */
+    private final Set<Long> failedInstanceIds = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder committedEventCount = new LongAdder();
+
+    private final LongAdder droppedEventCount = new LongAdder();
+
+    private final DurationStatistics commitDuration = new DurationStatistics();
+
+    private final DurationStatistics backPressureDuration = new DurationStatistics();
+
+    /**
+     * The largest number of events that can wait to be saved.
+     */
+    @Value("${tsw.terraria.event-queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    /**
+     * The number of events after which a batch is committed; there may be more events in a batch if the events of
+     * a single write are more than this.
+     */
+    @Value("${tsw.terraria.event-batch-size:100}")
+    private int batchSize = 100;
+
+    /**
+     * The delay before retrying to save a batch for the first time. It is doubled after every failed attempt, up to a
+     * minute.
+     */
+    @Value("${tsw.terraria.event-commit-retry-delay-ms:1000}")
+    private long commitRetryDelayMs = 1000;
+
+    private @Nullable Semaphore queuePermits;
+
+    private long enqueuedWriteCount = 0;
+
+    private long processedWriteCount = 0;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Queue events to be saved, blocking while the queue is full.
+     *
+     * @param instance The instance that the events are of. Only its output position is saved along with the events.
+     * @param events   The events.
+     * @param onSaved  What to do once the events have been saved.
+     * @throws InterruptedException If interrupted while waiting for the queue to have room.
+     */
+    public void write(final TerrariaInstanceEntity instance, final List<TerrariaInstanceEventEntity> events,
+            final Runnable onSaved) throws InterruptedException {
+        final PendingEvents pendingEvents = new PendingEvents(instance.getId(), instance.getNextOutputBytePosition(),
+                events, onSaved, Math.max(1, Math.min(events.size(), queueCapacity)));
+        if (closed) {
+            logger.warn("Saving {} events of instance {} right away because the queue is closed", events.size(),
+                    instance.getUuid());
+            synchronized (commitLock) {
+                commit(List.of(pendingEvents));
+            }
+            return;
+        }
+        final Semaphore permits = getQueuePermits();
+        if (!permits.tryAcquire(pendingEvents.permitCount)) {
+            final long startNanos = System.nanoTime();
+            permits.acquire(pendingEvents.permitCount);
+            backPressureDuration.record(System.nanoTime() - startNanos);
+        }
+        synchronized (this) {
+            enqueuedWriteCount++;
+        }
+        queue.add(pendingEvents);
+        if (closed) {
+            // The queue may have been drained for the last time right before the events were added to it
+            drain();
+            return;
+        }
+        startIfNecessary();
+    }
+
+    /**
+     * Wait until everything that has been queued so far has been saved (or has failed to be saved).
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        final long targetCount;
+        synchronized (this) {
+            targetCount = enqueuedWriteCount;
+        }
+        if (closed) {
+            drain();
+        }
+        synchronized (this) {
+            while (processedWriteCount < targetCount) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Start saving the events of an instance again after some of them have been given up on. This should be done only
+     * once none of its events are queued anymore, right before its output is read again from its saved position.
+     *
+     * @param instance The instance.
+     */
+    public void resumeInstance(final TerrariaInstanceEntity instance) {
+        if (failedInstanceIds.remove(instance.getId())) {
+            logger.info("Resuming the saving of the events of instance {}", instance.getUuid());
+        }
+    }
+
+    /**
+     * @return The number of events that have been queued but not saved yet, including the ones that are being saved.
+     */
+    public int getQueuedEventCount() {
+        final @Nullable Semaphore permits = queuePermits;
+        return permits == null ? 0 : queueCapacity - permits.availablePermits();
+    }
+
+    @Override
+    public void writeMetrics(final PrometheusTextWriter writer) {
+        writer.gauge("tsw_instance_event_queue_events", "The number of instance events that have not been saved yet.",
+                getQueuedEventCount());
+        writer.gauge("tsw_instance_event_queue_capacity", "The largest number of instance events that can wait to "
+                + "be saved.", queueCapacity);
+        writer.counter("tsw_instance_event_committed_total", "The number of instance events that have been saved.",
+                committedEventCount.sum());
+        writer.counter("tsw_instance_event_dropped_total", "The number of instance events that have failed to be "
+                + "saved.", droppedEventCount.sum());
+        writer.durations("tsw_instance_event_commit_seconds", "The time it takes to save a batch of instance events.",
+                commitDuration);
+        writer.durations("tsw_instance_event_back_pressure_seconds", "The time spent waiting for the instance event "
+                + "queue to have room.", backPressureDuration);
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        closed = true;
+        drain();
+    }
+
+    private synchronized Semaphore getQueuePermits() {
+        @Nullable Semaphore result = queuePermits;
+        if (result == null) {
+            result = new Semaphore(queueCapacity, true);
+            queuePermits = result;
+        }
+        return result;
+    }
+
+    private void startIfNecessary() {
+        if (started.compareAndSet(false, true)) {
+            asyncService.runInThread(this::processQueue);
+        }
+    }
+
+    private void processQueue() {
+        try {
+            while (!closed) {
+                synchronized (commitLock) {
+                    final @Nullable PendingEvents first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        commitBatchStartingWith(first);
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            logger.warn("Interrupted while waiting for instance events to save", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Save everything in the queue on the current thread.
+     */
+    private void drain() {
+        synchronized (commitLock) {
+            @Nullable PendingEvents first;
+            while ((first = queue.poll()) != null) {
+                commitBatchStartingWith(first);
+            }
+        }
+    }
+
+    private void commitBatchStartingWith(final PendingEvents first) {
+        final List<PendingEvents> batch = new ArrayList<>();
+        batch.add(first);
+        int eventCount = first.events.size();
+        @Nullable PendingEvents next;
+        while (eventCount < batchSize && (next = queue.poll()) != null) {
+            batch.add(next);
+            eventCount += next.events.size();
+        }
+        commit(batch);
+        final @Nullable Semaphore permits = queuePermits;
+        if (permits != null) {
+            permits.release(batch.stream().mapToInt(pendingEvents -> pendingEvents.permitCount).sum());
+        }
+        synchronized (this) {
+            processedWriteCount += batch.size();
+            notifyAll();
+        }
+    }
+
+    private void commit(final List<PendingEvents> batch) {
+        final List<PendingEvents> savableBatch = new ArrayList<>(batch.size());
+        for (final PendingEvents pendingEvents : batch) {
+            if (failedInstanceIds.contains(pendingEvents.instanceId)) {
+                logger.warn("Dropping {} instance events of instance {} because some of its earlier ones have been "
+                        + "dropped", pendingEvents.events.size(), pendingEvents.instanceId);
+                droppedEventCount.add(pendingEvents.events.size());
+                continue;
+            }
+            savableBatch.add(pendingEvents);
+        }
+        if (savableBatch.isEmpty() || save(savableBatch)) {
+            return;
+        }
+        final Map<Long, List<PendingEvents>> batchByInstance = new LinkedHashMap<>();
+        for (final PendingEvents pendingEvents : savableBatch) {
+            batchByInstance.computeIfAbsent(pendingEvents.instanceId, id -> new ArrayList<>()).add(pendingEvents);
+        }
+        if (batchByInstance.size() == 1) {
+            drop(savableBatch);
+            return;
+        }
+        // The failure may be caused by only one of the instances, so the others should not lose their events too
+        for (final List<PendingEvents> instanceBatch : batchByInstance.values()) {
+            if (!save(instanceBatch)) {
+                drop(instanceBatch);
+            }
+        }
+    }
+
+    /**
+     * Save a batch in a single transaction. If it fails to be saved, it is retried with an increasing delay unless the
+     * failure is permanent (e.g. the instance has been deleted), in which case retrying would only block the queue.
+     * When the writer is closed, it is retried only a few times.
+     *
+     * @param batch The events to save.
+     * @return Whether the batch has been saved.
+     */
+    private boolean save(final List<PendingEvents> batch) {
+        final List<TerrariaInstanceEventEntity> events = new ArrayList<>();
+        final Map<Long, Long> outputPositions = new LinkedHashMap<>();
+        for (final PendingEvents pendingEvents : batch) {
+            events.addAll(pendingEvents.events);
+            outputPositions.put(pendingEvents.instanceId, pendingEvents.outputPosition);
+        }
+        long retryDelayMs = commitRetryDelayMs;
+        for (int attempt = 1; ; attempt++) {
+            final long startNanos = System.nanoTime();
+            try {
+                terrariaInstanceService.saveEventsAndOutputPositions(events, outputPositions);
+                commitDuration.record(System.nanoTime() - startNanos);
+                committedEventCount.add(events.size());
+                batch.forEach(PendingEvents::onSaved);
+                return true;
+            } catch (final RuntimeException e) {
+                logger.error(String.format("Failed to save %d instance events of instances %s (attempt %d)",
+                        events.size(), outputPositions.keySet(), attempt), e);
+                if (isPermanentFailure(e)) {
+                    return false;
+                }
+            }
+            if (closed ? attempt >= MAX_COMMIT_ATTEMPTS : !sleepBeforeRetrying(retryDelayMs)) {
+                return false;
+            }
+            retryDelayMs = Math.min(retryDelayMs * 2, MAX_COMMIT_RETRY_DELAY_MS);
+        }
+    }
+
+    /**
+     * A failure that saving the same events again cannot recover from, as opposed to the database being unreachable
+     * or a transaction being rolled back because of a deadlock or a timeout.
+     */
+    private static boolean isPermanentFailure(final RuntimeException e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException);
+    }
+
+    private void drop(final List<PendingEvents> batch) {
+        final Set<Long> instanceIds = new LinkedHashSet<>();
+        int eventCount = 0;
+        for (final PendingEvents pendingEvents : batch) {
+            instanceIds.add(pendingEvents.instanceId);
+            eventCount += pendingEvents.events.size();
+        }
+        logger.error("Dropping {} instance events of instances {}; their output will be read again from their last "
+                + "saved output position once they are tracked again", eventCount, instanceIds);
+        droppedEventCount.add(eventCount);
+        failedInstanceIds.addAll(instanceIds);
+    }
+
+    /**
+     * Wait before retrying to save a batch, or until the writer is closed so that it can be shut down quickly.
+     *
+     * @param delayMs The time to wait.
+     * @return Whether the batch should be retried, which is the case unless the thread has been interrupted.
+     */
+    private boolean sleepBeforeRetrying(final long delayMs) {
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        try {
+            long remainingMs;
+            while (!closed && (remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime())) > 0) {
+                Thread.sleep(Math.min(remainingMs, POLL_TIMEOUT_MS));
+            }
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class PendingEvents {
+
+        private final long instanceId;
+
+        private final long outputPosition;
+
+        private final List<TerrariaInstanceEventEntity> events;
+
+        private final Runnable savedCallback;
+
+        private final int permitCount;
+
+        private void onSaved() {
+            try {
+                savedCallback.run();
+            } catch (final RuntimeException e) {
+                logger.error("Failed to handle the saving of the events of instance " + instanceId, e);
+            }
+        }
+    }
+}
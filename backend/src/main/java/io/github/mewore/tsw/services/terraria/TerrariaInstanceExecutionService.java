@@ -2,6 +2,7 @@ package io.github.mewore.tsw.services.terraria;
 
 import java.time.Duration;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -9,13 +10,13 @@ import org.apache.logging.log4j.Logger;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.springframework.stereotype.Service;
 
-import io.github.mewore.tsw.events.Subscription;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceAction;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.models.terraria.world.TerrariaWorldEntity;
 import io.github.mewore.tsw.models.terraria.world.WorldDifficultyOption;
 import io.github.mewore.tsw.models.terraria.world.WorldSizeOption;
+import io.github.mewore.tsw.services.util.AsyncService;
 import io.github.mewore.tsw.services.util.FileService;
 import io.github.mewore.tsw.services.util.process.ProcessFailureException;
 import io.github.mewore.tsw.services.util.process.ProcessTimeoutException;
@@ -61,7 +62,9 @@ public class TerrariaInstanceExecutionService {
 
     private final FileService fileService;
 
-    TerrariaInstanceEntity bootUpInstance(TerrariaInstanceEntity instance)
+    private final AsyncService asyncService;
+
+    CompletableFuture<TerrariaInstanceEntity> bootUpInstance(TerrariaInstanceEntity instance)
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
 
         if (instance.getState() != TerrariaInstanceState.IDLE) {
@@ -70,19 +73,23 @@ public class TerrariaInstanceExecutionService {
 
         terrariaInstanceService.ensureInstanceHasNoOutputFile(instance);
 
-        try (final Subscription<TerrariaInstanceEntity> subscription = terrariaInstanceSubscriptionService.subscribe(
-                instance)) {
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, INSTANCE_BOOT_TIMEOUT,
+                        TerrariaInstanceState.WORLD_MENU);
+        try {
             instance.setNextOutputBytePosition(0L);
             instance = terrariaInstanceService.saveInstance(instance);
             terrariaInstanceOutputService.trackInstance(instance);
             tmuxService.dispatch(instance.getUuid().toString(), instance.getModLoaderServerFile(),
                     instance.getOutputFile());
-            return terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription,
-                    INSTANCE_BOOT_TIMEOUT, TerrariaInstanceState.WORLD_MENU);
+        } catch (final ProcessFailureException | ProcessTimeoutException | InterruptedException | RuntimeException e) {
+            stateFuture.cancel(false);
+            throw e;
         }
+        return stateFuture;
     }
 
-    TerrariaInstanceEntity goToModMenu(final TerrariaInstanceEntity instance)
+    CompletableFuture<TerrariaInstanceEntity> goToModMenu(final TerrariaInstanceEntity instance)
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
 
         if (instance.getState() != TerrariaInstanceState.WORLD_MENU) {
@@ -92,28 +99,36 @@ public class TerrariaInstanceExecutionService {
                 TerrariaInstanceState.MOD_MENU);
     }
 
-    TerrariaInstanceEntity setInstanceLoadedMods(TerrariaInstanceEntity instance)
+    CompletableFuture<TerrariaInstanceEntity> setInstanceLoadedMods(final TerrariaInstanceEntity instance)
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
 
         if (instance.getState() != TerrariaInstanceState.MOD_MENU) {
             throw new IllegalArgumentException("Cannot set the mods of an instance with state " + instance.getState());
         }
+        return setInstanceLoadedMods(instance, 0);
+    }
 
-        @Nullable Integer modOptionToEnter = terrariaInstanceService.getDesiredModOption(instance);
-        for (int attempt = 0; attempt < MAX_MOD_SETTING_ATTEMPTS && modOptionToEnter != null; attempt++) {
-            instance.setState(TerrariaInstanceState.CHANGING_MOD_STATE);
-            instance = terrariaInstanceService.saveInstance(instance);
-            instance = terrariaInstanceInputService.sendInputToInstance(instance, modOptionToEnter.toString(),
-                    DISABLE_OR_ENABLE_MOD_TIMEOUT, TerrariaInstanceState.MOD_MENU);
-            modOptionToEnter = terrariaInstanceService.getDesiredModOption(instance);
+    private CompletableFuture<TerrariaInstanceEntity> setInstanceLoadedMods(TerrariaInstanceEntity instance,
+            final int attempt) throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
+
+        final @Nullable Integer modOptionToEnter = terrariaInstanceService.getDesiredModOption(instance);
+        if (modOptionToEnter == null) {
+            return terrariaInstanceInputService.sendInputToInstance(instance, "r", RELOAD_MODS_TIMEOUT,
+                    TerrariaInstanceState.WORLD_MENU).thenApply(this::checkLoadedMods);
         }
-        if (modOptionToEnter != null) {
+        if (attempt >= MAX_MOD_SETTING_ATTEMPTS) {
             throw new RuntimeException(
                     "Failed to make the following mods enabled after " + MAX_MOD_SETTING_ATTEMPTS + " attempts: " +
                             instance.getModsToEnable().stream().sorted().collect(Collectors.joining(", ")));
         }
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, "r", RELOAD_MODS_TIMEOUT,
-                TerrariaInstanceState.WORLD_MENU);
+        instance.setState(TerrariaInstanceState.CHANGING_MOD_STATE);
+        instance = terrariaInstanceService.saveInstance(instance);
+        return then(terrariaInstanceInputService.sendInputToInstance(instance, modOptionToEnter.toString(),
+                        DISABLE_OR_ENABLE_MOD_TIMEOUT, TerrariaInstanceState.MOD_MENU),
+                changedInstance -> setInstanceLoadedMods(changedInstance, attempt + 1));
+    }
+
+    private TerrariaInstanceEntity checkLoadedMods(final TerrariaInstanceEntity instance) {
         if (instance.getLoadedMods().size() != instance.getModsToEnable().size()) {
             throw new RuntimeException(String.format(
                     "The mods of instance %s (%d: %s) are not exactly as many as the requested ones (%d: %s)",
@@ -125,7 +140,7 @@ public class TerrariaInstanceExecutionService {
         return instance;
     }
 
-    TerrariaInstanceEntity createWorld(TerrariaInstanceEntity instance)
+    CompletableFuture<TerrariaInstanceEntity> createWorld(final TerrariaInstanceEntity instance)
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
 
         if (instance.getState() != TerrariaInstanceState.WORLD_MENU) {
@@ -146,26 +161,31 @@ public class TerrariaInstanceExecutionService {
             throw new IllegalArgumentException("Cannot create a world with no set difficulty");
         }
 
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, "n", MENU_NAVIGATION_TIMEOUT,
-                TerrariaInstanceState.WORLD_SIZE_PROMPT);
-
-        final int sizeOptionKey = instance.getOptionKey(size.getOptionLabel());
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, String.valueOf(sizeOptionKey),
-                MENU_NAVIGATION_TIMEOUT, TerrariaInstanceState.WORLD_DIFFICULTY_PROMPT);
-
-        final int difficultyOptionKey = instance.getOptionKey(difficulty.getOptionLabel());
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, String.valueOf(difficultyOptionKey),
-                MENU_NAVIGATION_TIMEOUT, TerrariaInstanceState.WORLD_NAME_PROMPT);
-
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, world.getDisplayName(),
-                MENU_NAVIGATION_TIMEOUT.plus(WORLD_CREATION_TIMEOUT), TerrariaInstanceState.WORLD_MENU);
-        instance.setWorld(null);
-
-        terrariaWorldService.updateWorld(world, instance.getLoadedMods());
-        return terrariaInstanceService.saveInstance(instance);
+        final CompletableFuture<TerrariaInstanceEntity> sizePromptFuture =
+                terrariaInstanceInputService.sendInputToInstance(instance, "n", MENU_NAVIGATION_TIMEOUT,
+                        TerrariaInstanceState.WORLD_SIZE_PROMPT);
+
+        final CompletableFuture<TerrariaInstanceEntity> difficultyPromptFuture = then(sizePromptFuture,
+                currentInstance -> terrariaInstanceInputService.sendInputToInstance(currentInstance,
+                        String.valueOf(currentInstance.getOptionKey(size.getOptionLabel())), MENU_NAVIGATION_TIMEOUT,
+                        TerrariaInstanceState.WORLD_DIFFICULTY_PROMPT));
+
+        final CompletableFuture<TerrariaInstanceEntity> namePromptFuture = then(difficultyPromptFuture,
+                currentInstance -> terrariaInstanceInputService.sendInputToInstance(currentInstance,
+                        String.valueOf(currentInstance.getOptionKey(difficulty.getOptionLabel())),
+                        MENU_NAVIGATION_TIMEOUT, TerrariaInstanceState.WORLD_NAME_PROMPT));
+
+        return then(namePromptFuture,
+                currentInstance -> terrariaInstanceInputService.sendInputToInstance(currentInstance,
+                        world.getDisplayName(), MENU_NAVIGATION_TIMEOUT.plus(WORLD_CREATION_TIMEOUT),
+                        TerrariaInstanceState.WORLD_MENU)).thenApplyAsync(createdWorldInstance -> {
+            createdWorldInstance.setWorld(null);
+            terrariaWorldService.updateWorld(world, createdWorldInstance.getLoadedMods());
+            return terrariaInstanceService.saveInstance(createdWorldInstance);
+        }, asyncService::runInThread);
     }
 
-    TerrariaInstanceEntity runInstance(TerrariaInstanceEntity instance)
+    CompletableFuture<TerrariaInstanceEntity> runInstance(final TerrariaInstanceEntity instance)
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
 
         if (instance.getState() != TerrariaInstanceState.WORLD_MENU) {
@@ -186,58 +206,78 @@ public class TerrariaInstanceExecutionService {
                     worldMods == null ? "UNKNOWN" : String.join(", ", worldMods));
         }
 
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, String.valueOf(worldMenuOptionKey),
-                MENU_NAVIGATION_TIMEOUT, TerrariaInstanceState.MAX_PLAYERS_PROMPT);
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, instance.getMaxPlayers().toString(),
-                MENU_NAVIGATION_TIMEOUT, TerrariaInstanceState.PORT_PROMPT);
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, instance.getPort().toString(),
-                MENU_NAVIGATION_TIMEOUT, TerrariaInstanceState.AUTOMATICALLY_FORWARD_PORT_PROMPT);
-        instance = terrariaInstanceInputService.sendInputToInstance(instance,
-                instance.getAutomaticallyForwardPort() ? "y" : "n", MENU_NAVIGATION_TIMEOUT,
-                TerrariaInstanceState.PASSWORD_PROMPT);
-        instance = terrariaInstanceInputService.sendInputToInstance(instance, instance.getPassword(),
-                MENU_NAVIGATION_TIMEOUT.plus(INSTANCE_START_TIMEOUT), true, TerrariaInstanceState.RUNNING,
-                TerrariaInstanceState.PORT_CONFLICT);
-        instance.setPassword("");
-        if (instance.getState() == TerrariaInstanceState.PORT_CONFLICT) {
-            instance.setPendingAction(TerrariaInstanceAction.SHUT_DOWN);
-        }
-        return terrariaInstanceService.saveInstance(instance);
+        final CompletableFuture<TerrariaInstanceEntity> maxPlayersPromptFuture =
+                terrariaInstanceInputService.sendInputToInstance(instance, String.valueOf(worldMenuOptionKey),
+                        MENU_NAVIGATION_TIMEOUT, TerrariaInstanceState.MAX_PLAYERS_PROMPT);
+        final CompletableFuture<TerrariaInstanceEntity> portPromptFuture = then(maxPlayersPromptFuture,
+                currentInstance -> terrariaInstanceInputService.sendInputToInstance(currentInstance,
+                        currentInstance.getMaxPlayers().toString(), MENU_NAVIGATION_TIMEOUT,
+                        TerrariaInstanceState.PORT_PROMPT));
+        final CompletableFuture<TerrariaInstanceEntity> portForwardingPromptFuture = then(portPromptFuture,
+                currentInstance -> terrariaInstanceInputService.sendInputToInstance(currentInstance,
+                        currentInstance.getPort().toString(), MENU_NAVIGATION_TIMEOUT,
+                        TerrariaInstanceState.AUTOMATICALLY_FORWARD_PORT_PROMPT));
+        final CompletableFuture<TerrariaInstanceEntity> passwordPromptFuture = then(portForwardingPromptFuture,
+                currentInstance -> terrariaInstanceInputService.sendInputToInstance(currentInstance,
+                        currentInstance.getAutomaticallyForwardPort() ? "y" : "n", MENU_NAVIGATION_TIMEOUT,
+                        TerrariaInstanceState.PASSWORD_PROMPT));
+        return then(passwordPromptFuture,
+                currentInstance -> terrariaInstanceInputService.sendInputToInstance(currentInstance,
+                        currentInstance.getPassword(), MENU_NAVIGATION_TIMEOUT.plus(INSTANCE_START_TIMEOUT), true,
+                        TerrariaInstanceState.RUNNING, TerrariaInstanceState.PORT_CONFLICT)).thenApplyAsync(
+                runningInstance -> {
+                    runningInstance.setPassword("");
+                    if (runningInstance.getState() == TerrariaInstanceState.PORT_CONFLICT) {
+                        runningInstance.setPendingAction(TerrariaInstanceAction.SHUT_DOWN);
+                    }
+                    return terrariaInstanceService.saveInstance(runningInstance);
+                }, asyncService::runInThread);
     }
 
-    TerrariaInstanceEntity shutDownInstance(TerrariaInstanceEntity instance, final boolean save)
-            throws ProcessTimeoutException, InterruptedException, ProcessFailureException {
+    CompletableFuture<TerrariaInstanceEntity> shutDownInstance(final TerrariaInstanceEntity instance,
+            final boolean save) throws ProcessTimeoutException, InterruptedException, ProcessFailureException {
 
         if (!instance.getState().isActive()) {
             throw new IllegalArgumentException("Cannot shut down an instance with state " + instance.getState());
         }
 
         terrariaInstanceOutputService.getInstanceOutputTail(instance).stopReadingFile();
+        final CompletableFuture<TerrariaInstanceEntity> idleFuture;
         try {
             if (instance.getState() != TerrariaInstanceState.RUNNING) {
-                instance = terrariaInstanceInputService.sendBreakToInstance(instance, INSTANCE_EXIT_TIMEOUT,
+                idleFuture = terrariaInstanceInputService.sendBreakToInstance(instance, INSTANCE_EXIT_TIMEOUT,
                         TerrariaInstanceState.IDLE);
-                return instance;
-            }
-            final Set<String> loadedMods = instance.getLoadedMods();
-            instance = terrariaInstanceInputService.sendInputToInstance(instance, save ? "exit" : "exit-nosave",
-                    save ? INSTANCE_EXIT_TIMEOUT.plus(INSTANCE_SAVE_TIMEOUT) : INSTANCE_EXIT_TIMEOUT,
-                    TerrariaInstanceState.IDLE);
-            if (save) {
-                final @Nullable TerrariaWorldEntity world = instance.getWorld();
-                if (world == null) {
-                    logger.warn("The instance {} does not have a world despite actively running", instance.getUuid());
-                } else {
-                    terrariaWorldService.updateWorld(world, loadedMods);
-                }
+            } else {
+                final Set<String> loadedMods = instance.getLoadedMods();
+                idleFuture = terrariaInstanceInputService.sendInputToInstance(instance,
+                        save ? "exit" : "exit-nosave",
+                        save ? INSTANCE_EXIT_TIMEOUT.plus(INSTANCE_SAVE_TIMEOUT) : INSTANCE_EXIT_TIMEOUT,
+                        TerrariaInstanceState.IDLE).thenApplyAsync(idleInstance -> {
+                    if (save) {
+                        updateWorldOfStoppedInstance(idleInstance, loadedMods);
+                    }
+                    return idleInstance;
+                }, asyncService::runInThread);
             }
-            return instance;
-        } finally {
+        } catch (final ProcessTimeoutException | InterruptedException | ProcessFailureException | RuntimeException e) {
             terrariaInstanceOutputService.stopTrackingInstance(instance);
+            throw e;
         }
+        return idleFuture.whenCompleteAsync(
+                (idleInstance, exception) -> terrariaInstanceOutputService.stopTrackingInstance(instance),
+                asyncService::runInThread);
     }
 
-    TerrariaInstanceEntity terminateInstance(TerrariaInstanceEntity instance)
+    private void updateWorldOfStoppedInstance(final TerrariaInstanceEntity instance, final Set<String> loadedMods) {
+        final @Nullable TerrariaWorldEntity world = instance.getWorld();
+        if (world == null) {
+            logger.warn("The instance {} does not have a world despite actively running", instance.getUuid());
+        } else {
+            terrariaWorldService.updateWorld(world, loadedMods);
+        }
+    }
+
+    CompletableFuture<TerrariaInstanceEntity> terminateInstance(final TerrariaInstanceEntity instance)
             throws ProcessTimeoutException, InterruptedException, ProcessFailureException {
 
         if (!instance.getState().isActive()) {
@@ -248,7 +288,7 @@ public class TerrariaInstanceExecutionService {
             logger.warn("The instance {} is already not running while trying to terminate it", instance.getUuid());
             terrariaInstanceOutputService.stopTrackingInstance(instance);
             instance.setState(TerrariaInstanceState.IDLE);
-            return terrariaInstanceService.saveInstance(instance);
+            return CompletableFuture.completedFuture(terrariaInstanceService.saveInstance(instance));
         }
 
         if (!terrariaInstanceOutputService.isTrackingInstance(instance)) {
@@ -258,15 +298,42 @@ public class TerrariaInstanceExecutionService {
         }
 
         terrariaInstanceOutputService.getInstanceOutputTail(instance).stopReadingFile();
-        try (final Subscription<TerrariaInstanceEntity> subscription = terrariaInstanceSubscriptionService.subscribe(
-                instance)) {
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, INSTANCE_EXIT_TIMEOUT,
+                        TerrariaInstanceState.IDLE);
+        try {
             tmuxService.kill(instance.getUuid().toString());
-            instance = terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription,
-                    INSTANCE_EXIT_TIMEOUT, TerrariaInstanceState.IDLE);
-        } finally {
+        } catch (final ProcessTimeoutException | InterruptedException | ProcessFailureException | RuntimeException e) {
+            stateFuture.cancel(false);
             terrariaInstanceOutputService.stopTrackingInstance(instance);
+            throw e;
         }
-        return instance;
+        return stateFuture.whenCompleteAsync(
+                (idleInstance, exception) -> terrariaInstanceOutputService.stopTrackingInstance(instance),
+                asyncService::runInThread);
+    }
+
+    /**
+     * Continue with the next step once the previous one has completed. The step runs in a worker thread instead of
+     * the one that has completed the previous step, which is usually the thread that has published the new state of
+     * the instance.
+     *
+     * @param previous The future of the instance after the previous step.
+     * @param step     The next step.
+     * @return The future of the instance after the next step.
+     */
+    private CompletableFuture<TerrariaInstanceEntity> then(final CompletableFuture<TerrariaInstanceEntity> previous,
+            final InstanceStep step) {
+        return previous.thenComposeAsync(instance -> {
+            try {
+                return step.apply(instance);
+            } catch (final ProcessFailureException | ProcessTimeoutException e) {
+                return CompletableFuture.failedFuture(e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            }
+        }, asyncService::runInThread);
     }
 
     TerrariaInstanceEntity recreateInstance(final TerrariaInstanceEntity instance)
@@ -313,6 +380,13 @@ public class TerrariaInstanceExecutionService {
                             "anyway...", instance.getUuid());
         }
 
-        terrariaInstanceService.deleteInstance(instance);
+        terrariaInstanceService.deleteInstanceInBackground(instance);
+    }
+
+    @FunctionalInterface
+    private interface InstanceStep {
+
+        CompletableFuture<TerrariaInstanceEntity> apply(TerrariaInstanceEntity instance)
+                throws ProcessFailureException, ProcessTimeoutException, InterruptedException;
     }
 }
@@ -1,10 +1,10 @@
 package io.github.mewore.tsw.services.terraria;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.stereotype.Service;
 
-import io.github.mewore.tsw.events.Subscription;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
@@ -27,14 +27,14 @@ public class TerrariaInstanceInputService {
 
     private final TmuxService tmuxService;
 
-    public TerrariaInstanceEntity sendBreakToInstance(final TerrariaInstanceEntity instance,
+    public CompletableFuture<TerrariaInstanceEntity> sendBreakToInstance(final TerrariaInstanceEntity instance,
             final Duration timeout,
             final TerrariaInstanceState... expectedResultingStates)
             throws ProcessTimeoutException, InterruptedException, ProcessFailureException {
         return sendInputToInstance(instance, CTRL_C, timeout, false, expectedResultingStates);
     }
 
-    public TerrariaInstanceEntity sendInputToInstance(final TerrariaInstanceEntity instance,
+    public CompletableFuture<TerrariaInstanceEntity> sendInputToInstance(final TerrariaInstanceEntity instance,
             final String input,
             final Duration timeout,
             final TerrariaInstanceState... expectedResultingStates)
@@ -42,7 +42,21 @@ public class TerrariaInstanceInputService {
         return sendInputToInstance(instance, input, timeout, false, expectedResultingStates);
     }
 
-    public TerrariaInstanceEntity sendInputToInstance(final TerrariaInstanceEntity instance,
+    /**
+     * Send a line of input to an instance without waiting for its result.
+     *
+     * @param instance                The instance.
+     * @param input                   The line to send.
+     * @param timeout                 The longest time to wait for the instance to reach any of the expected states.
+     * @param obfuscateInput          Whether to hide the input in the event that is saved for it.
+     * @param expectedResultingStates The states that the instance should reach because of the input.
+     * @return The future of the instance in the first of the expected states that it reaches (see
+     * {@link TerrariaInstanceSubscriptionService#waitForInstanceState}).
+     * @throws ProcessTimeoutException If sending the input takes too long.
+     * @throws InterruptedException    If interrupted while sending the input.
+     * @throws ProcessFailureException If sending the input fails.
+     */
+    public CompletableFuture<TerrariaInstanceEntity> sendInputToInstance(final TerrariaInstanceEntity instance,
             final String input,
             final Duration timeout,
             final boolean obfuscateInput,
@@ -59,15 +73,18 @@ public class TerrariaInstanceInputService {
                 .build();
 
         terrariaInstanceService.saveEvent(instanceEvent);
-        try (final Subscription<TerrariaInstanceEntity> subscription = terrariaInstanceSubscriptionService.subscribe(
-                instance)) {
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, timeout, expectedResultingStates);
+        try {
             if (input.equals(CTRL_C)) {
                 tmuxService.sendCtrlC(instance.getUuid().toString());
             } else {
                 tmuxService.sendInput(instance.getUuid().toString(), fullInput);
             }
-            return terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription, timeout,
-                    expectedResultingStates);
+        } catch (final ProcessTimeoutException | InterruptedException | ProcessFailureException | RuntimeException e) {
+            stateFuture.cancel(false);
+            throw e;
         }
+        return stateFuture;
     }
 }
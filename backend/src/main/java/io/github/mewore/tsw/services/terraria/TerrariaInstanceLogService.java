@@ -0,0 +1,125 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.stereotype.Service;
+
+import io.github.mewore.tsw.exceptions.NotFoundException;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceLogFileModel;
+
+/**
+ * Finds the log files with the console output of instances: the current output file, the segments that it is rolled
+ * into when it grows too large ({@code <output file>.<number>}, see
+ * {@link io.github.mewore.tsw.services.util.FileTail#setRotationSize}) and the copies of it that are archived
+ * when the instance stops (see {@link io.github.mewore.tsw.services.util.process.TmuxService#dispatch}).
+ * <p>
+ * The files are only on the host of the instance, so they cannot be found by the other hosts.
+ */
+@Service
+public class TerrariaInstanceLogService {
+
+    private static final String COMPRESSED_EXTENSION = ".gz";
+
+    /**
+     * The segment number (if any) is in the first group.
+     */
+    private static Pattern getArchivedLogNamePattern(final TerrariaInstanceEntity instance) {
+        return Pattern.compile(
+                Pattern.quote(instance.getOutputFile().getName()) + "\\.(?:([0-9]{1,9})|[0-9T.-]+\\.log(?:" +
+                        Pattern.quote(COMPRESSED_EXTENSION) + ")?)");
+    }
+
+    /**
+     * @return The number of the segment, or -1 if the file is not a segment.
+     */
+    private static int getSegmentNumber(final Pattern archivedLogNamePattern, final File file) {
+        final Matcher matcher = archivedLogNamePattern.matcher(file.getName());
+        return matcher.matches() && matcher.group(1) != null ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private static TerrariaInstanceLogFileModel makeModel(final File file, final boolean current) {
+        return TerrariaInstanceLogFileModel.builder()
+                .name(file.getName())
+                .size(file.length())
+                .lastModified(Instant.ofEpochMilli(file.lastModified()))
+                .compressed(isCompressed(file))
+                .current(current)
+                .build();
+    }
+
+    /**
+     * Check whether a log file is compressed with gzip.
+     *
+     * @param file The log file.
+     * @return Whether the file is compressed.
+     */
+    public static boolean isCompressed(final File file) {
+        return file.getName().endsWith(COMPRESSED_EXTENSION);
+    }
+
+    /**
+     * Get the log files of an instance.
+     *
+     * @param instance The instance.
+     * @return The current log file (if there is one) followed by the archived ones, from the newest to the oldest.
+     */
+    public List<TerrariaInstanceLogFileModel> getLogFiles(final TerrariaInstanceEntity instance) {
+        final List<TerrariaInstanceLogFileModel> result = new ArrayList<>();
+        final File outputFile = instance.getOutputFile();
+        if (outputFile.isFile()) {
+            result.add(makeModel(outputFile, true));
+        }
+
+        final Pattern archivedLogNamePattern = getArchivedLogNamePattern(instance);
+        final File @Nullable [] archivedLogFiles = instance.getLocation()
+                .toFile()
+                .listFiles(file -> file.isFile() && archivedLogNamePattern.matcher(file.getName()).matches());
+        if (archivedLogFiles != null) {
+            // The segments keep being rolled while the instance is running, so they can be both older and newer than
+            // the archived logs. The files are ordered by when they were last written to instead of by their names.
+            Arrays.stream(archivedLogFiles)
+                    .sorted(Comparator.comparingLong(File::lastModified)
+                            .thenComparingInt(file -> getSegmentNumber(archivedLogNamePattern, file))
+                            .thenComparing(File::getName)
+                            .reversed())
+                    .forEach(file -> result.add(makeModel(file, false)));
+        }
+        return result;
+    }
+
+    /**
+     * Get a log file of an instance.
+     *
+     * @param instance The instance.
+     * @param name     The name of the log file, as returned by {@link #getLogFiles}.
+     * @return The log file.
+     * @throws NotFoundException If there is no log file with this name.
+     */
+    public File getLogFile(final TerrariaInstanceEntity instance, final String name) throws NotFoundException {
+        final File outputFile = instance.getOutputFile();
+        // Only the names of log files are accepted so that no other file can be reached
+        final @Nullable File file;
+        if (name.equals(outputFile.getName())) {
+            file = outputFile;
+        } else if (getArchivedLogNamePattern(instance).matcher(name).matches()) {
+            file = instance.getLocation().resolve(name).toFile();
+        } else {
+            file = null;
+        }
+        if (file == null || !file.isFile()) {
+            throw new NotFoundException(
+                    String.format("There is no log file \"%s\" of instance %s on this host", name,
+                            instance.getUuid()));
+        }
+        return file;
+    }
+}
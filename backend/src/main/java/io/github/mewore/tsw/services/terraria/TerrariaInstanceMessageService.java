@@ -25,6 +25,11 @@ public class TerrariaInstanceMessageService {
         messagingTemplate.convertAndSend("/topic/instances/" + instance.getId(), new TerrariaInstanceMessage(instance));
     }
 
+    void broadcastInstanceDeletionProgress(final TerrariaInstanceEntity instance, final long deletedEventCount) {
+        messagingTemplate.convertAndSend("/topic/instances/" + instance.getId(),
+                new TerrariaInstanceMessage(instance, deletedEventCount));
+    }
+
     public void broadcastInstanceDeletion(final TerrariaInstanceEntity instance) {
         messagingTemplate.send("/topic/instances/" + instance.getId() + "/deletion", new EmptyMessage());
     }
@@ -53,7 +53,7 @@ public enum TerrariaInstanceOutputEvent {
         this.sourceStates = Set.of(sourceStates);
     }
 
-    public boolean hasBeenReached(final TerrariaInstanceState sourceState, final String line) {
-        return sourceStates.contains(sourceState) && line.startsWith(linePrefix);
+    public TerrariaInstanceOutputTransition toTransition() {
+        return new TerrariaInstanceOutputTransition(targetState, linePrefix, sourceStates);
     }
 }
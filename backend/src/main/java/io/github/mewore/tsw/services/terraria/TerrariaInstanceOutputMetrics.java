@@ -0,0 +1,93 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.services.util.DurationStatistics;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+import lombok.Getter;
+
+/**
+ * Metrics of the processing of the output of a single instance.
+ */
+@Getter
+class TerrariaInstanceOutputMetrics {
+
+    private final UUID instanceUuid;
+
+    private final String instanceName;
+
+    private final File outputFile;
+
+    private final LongAdder byteCount = new LongAdder();
+
+    private final LongAdder lineCount = new LongAdder();
+
+    /**
+     * The number of output lines that have been collapsed into the summary of a run of repeated lines.
+     */
+    private final LongAdder suppressedLineCount = new LongAdder();
+
+    private final LongAdder flushCount = new LongAdder();
+
+    private final LongAdder flushedEventCount = new LongAdder();
+
+    /**
+     * The time it takes to save the instance and its events and broadcast them.
+     */
+    private final DurationStatistics flushDuration = new DurationStatistics();
+
+    /**
+     * The time from starting to read output until that output has been saved and broadcast.
+     */
+    private final DurationStatistics outputDelay = new DurationStatistics();
+
+    private volatile long savedPosition;
+
+    TerrariaInstanceOutputMetrics(final TerrariaInstanceEntity instance) {
+        instanceUuid = instance.getUuid();
+        instanceName = instance.getName();
+        outputFile = instance.getOutputFile();
+        savedPosition = instance.getNextOutputBytePosition();
+    }
+
+    void recordFlush(final int eventCount, final long savedPosition, final long startNanos,
+            final long outputSinceNanos) {
+        final long endNanos = System.nanoTime();
+        flushCount.increment();
+        flushedEventCount.add(eventCount);
+        flushDuration.record(endNanos - startNanos);
+        outputDelay.record(endNanos - outputSinceNanos);
+        this.savedPosition = savedPosition;
+    }
+
+    /**
+     * @return The number of bytes in the output file which have not been saved yet.
+     */
+    long getLag() {
+        return Math.max(0, outputFile.length() - savedPosition);
+    }
+
+    void write(final PrometheusTextWriter writer) {
+        final String[] labels = {"instance", instanceUuid.toString(), "name", instanceName};
+        writer.counter("tsw_instance_output_bytes_total", "The number of output bytes that have been read.",
+                byteCount.sum(), labels);
+        writer.counter("tsw_instance_output_lines_total", "The number of output lines that have been read.",
+                lineCount.sum(), labels);
+        writer.counter("tsw_instance_output_suppressed_lines_total",
+                "The number of repeated output lines that have been collapsed instead of saved.",
+                suppressedLineCount.sum(), labels);
+        writer.gauge("tsw_instance_output_lag_bytes", "The number of output bytes that have not been saved yet.",
+                getLag(), labels);
+        writer.counter("tsw_instance_output_flushes_total", "The number of times that output has been saved.",
+                flushCount.sum(), labels);
+        writer.counter("tsw_instance_output_flushed_events_total", "The number of output events that have been saved.",
+                flushedEventCount.sum(), labels);
+        writer.durations("tsw_instance_output_flush_seconds",
+                "The time it takes to save and broadcast a batch of output events.", flushDuration, labels);
+        writer.durations("tsw_instance_output_delay_seconds",
+                "The time from reading output until it has been saved and broadcast.", outputDelay, labels);
+    }
+}
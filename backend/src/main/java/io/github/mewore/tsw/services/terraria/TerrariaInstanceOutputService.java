@@ -1,20 +1,27 @@
 package io.github.mewore.tsw.services.terraria;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
@@ -22,25 +29,25 @@ import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
 import io.github.mewore.tsw.services.util.FileService;
 import io.github.mewore.tsw.services.util.FileTail;
 import io.github.mewore.tsw.services.util.FileTailEventConsumer;
+import io.github.mewore.tsw.services.util.MetricsSource;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+import io.github.mewore.tsw.services.util.RedactionRule;
+import io.github.mewore.tsw.services.util.StreamingLineDecoder;
 import io.github.mewore.tsw.services.util.process.ProcessFailureException;
 import io.github.mewore.tsw.services.util.process.ProcessTimeoutException;
 import io.github.mewore.tsw.services.util.process.TmuxService;
 import lombok.AccessLevel;
-import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Synchronized;
 
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 @Service
-public class TerrariaInstanceOutputService {
-
-    private static final Set<String> MOD_CLEAR_LINES = Set.of("Unloading mods...", "Finding Mods...",
-            "Instantiating Mods...");
-
-    private static final Pattern MOD_LOADING_PATTERN = Pattern.compile("^Loading: (.+ v[\\d.]+)$");
+public class TerrariaInstanceOutputService implements MetricsSource {
 
     private final Logger logger = LogManager.getLogger(getClass());
 
@@ -52,17 +59,73 @@ public class TerrariaInstanceOutputService {
 
     private final TmuxService tmuxService;
 
+    private final AsyncService asyncService;
+
+    private final TerrariaInstanceEventWriter terrariaInstanceEventWriter;
+
     private final Map<Long, FileTail> outputTailMap = new HashMap<>();
 
+    private final Map<Long, TerrariaOutputEventConsumer> outputConsumerMap = new HashMap<>();
+
+    private final Map<Long, TerrariaInstanceOutputMetrics> outputMetricsMap = new ConcurrentHashMap<>();
+
+    /**
+     * A file with additional state transitions (see {@link TerrariaInstanceOutputTransition#readTable}).
+     */
+    @Value("${tsw.terraria.output-transitions-file:}")
+    private String outputTransitionsFile = "";
+
+    private @Nullable TerrariaOutputLineClassifier lineClassifier;
+
+    /**
+     * The comma-separated kinds of sensitive information to hide from the output (see
+     * {@link TerrariaOutputRedaction}).
+     */
+    @Value("${tsw.terraria.output-redactions:IP_ADDRESS,STEAM_ID,PASSWORD}")
+    private String outputRedactions = "IP_ADDRESS,STEAM_ID,PASSWORD";
+
+    private @Nullable List<TerrariaOutputRedaction> enabledOutputRedactions;
+
+    /**
+     * The largest number of unread output bytes of a running instance that are processed. If there are more (e.g. after
+     * TSW has been down for a long time), only the last ones are read and the rest are skipped. Zero means that nothing
+     * is skipped.
+     */
+    @Value("${tsw.terraria.output-backlog-limit:0}")
+    private long outputBacklogLimit = 0;
+
+    /**
+     * The size in bytes that the output file of an instance should reach in order to be rolled into a numbered
+     * segment while the instance is running (see {@link FileTail#setRotationSize}). Zero means that it is never rolled.
+     */
+    @Value("${tsw.terraria.output-rotation-size:0}")
+    private long outputRotationSize = 0;
+
+    /**
+     * The number of the newest rolled segments of the output file of an instance to keep. The older ones are deleted.
+     * Zero means that all of them are kept.
+     */
+    @Value("${tsw.terraria.output-rotation-kept-segments:10}")
+    private int outputRotationKeptSegments = 10;
+
     public void trackInstance(final TerrariaInstanceEntity instance) {
         if (outputTailMap.containsKey(instance.getId())) {
             logger.warn("The instance {} is already being tracked", instance.getId());
             return;
         }
+        terrariaInstanceEventWriter.resumeInstance(instance);
         final long startPosition = instance.getNextOutputBytePosition();
-        final FileTailEventConsumer eventConsumer = new TerrariaOutputEventConsumer(instance);
+        final TerrariaInstanceOutputMetrics metrics = new TerrariaInstanceOutputMetrics(instance);
+        final TerrariaOutputEventConsumer eventConsumer = new TerrariaOutputEventConsumer(instance, getLineClassifier(),
+                getEnabledOutputRedactions(), metrics);
         final FileTail tail = fileService.tail(instance.getOutputFile(), startPosition, eventConsumer);
+        if (outputRotationSize > 0) {
+            tail.setRotationSize(outputRotationSize);
+            tail.setKeptSegmentCount(outputRotationKeptSegments);
+        }
         outputTailMap.put(instance.getId(), tail);
+        outputConsumerMap.put(instance.getId(), eventConsumer);
+        outputMetricsMap.put(instance.getId(), metrics);
     }
 
     public boolean isTrackingInstance(final TerrariaInstanceEntity instance) {
@@ -78,6 +141,12 @@ public class TerrariaInstanceOutputService {
         return result;
     }
 
+    /**
+     * Stop tracking the output of an instance. Its unsaved output is saved and everything queued for it is waited for,
+     * so nothing is saved for the instance after this (e.g. after it has been deleted).
+     *
+     * @param instance The instance.
+     */
     public void stopTrackingInstance(final TerrariaInstanceEntity instance) {
         final @Nullable FileTail tail = outputTailMap.get(instance.getId());
         if (tail == null) {
@@ -85,114 +154,447 @@ public class TerrariaInstanceOutputService {
             return;
         }
         tail.stop();
+        final @Nullable TerrariaOutputEventConsumer eventConsumer = outputConsumerMap.remove(instance.getId());
+        if (eventConsumer != null) {
+            eventConsumer.close();
+        }
         outputTailMap.remove(instance.getId());
+        outputMetricsMap.remove(instance.getId());
     }
 
-    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-    @Getter
-    private static class WorldMenuOption {
-
-        private static final Pattern WORLD_MENU_OPTION_PATTERN = Pattern.compile("^(\\d+)\t+([^\t]+)$");
-
-        private final String label;
-
-        private final int id;
+    @Override
+    public void writeMetrics(final PrometheusTextWriter writer) {
+        for (final TerrariaInstanceOutputMetrics metrics : outputMetricsMap.values()) {
+            metrics.write(writer);
+        }
+    }
 
-        public static @Nullable WorldMenuOption fromLine(final String line) {
-            final Matcher optionMatcher = WORLD_MENU_OPTION_PATTERN.matcher(line);
-            if (!optionMatcher.find()) {
-                return null;
+    private TerrariaOutputLineClassifier getLineClassifier() {
+        @Nullable TerrariaOutputLineClassifier result = lineClassifier;
+        if (result == null) {
+            List<TerrariaInstanceOutputTransition> additionalTransitions = Collections.emptyList();
+            if (!outputTransitionsFile.isEmpty()) {
+                try {
+                    additionalTransitions = TerrariaInstanceOutputTransition.readTable(Path.of(outputTransitionsFile));
+                    logger.info("Loaded {} additional output transitions from {}", additionalTransitions.size(),
+                            outputTransitionsFile);
+                } catch (final IOException | IllegalArgumentException e) {
+                    logger.error("Failed to load the output transitions in " + outputTransitionsFile, e);
+                }
             }
-            final @Nullable String firstGroup = optionMatcher.group(1);
-            final @Nullable String secondGroup = optionMatcher.group(2);
-            if (firstGroup == null || secondGroup == null) {
-                return null;
+            result = TerrariaOutputLineClassifier.withBuiltInTransitions(additionalTransitions);
+            lineClassifier = result;
+        }
+        return result;
+    }
+
+    private List<TerrariaOutputRedaction> getEnabledOutputRedactions() {
+        @Nullable List<TerrariaOutputRedaction> result = enabledOutputRedactions;
+        if (result == null) {
+            result = new ArrayList<>();
+            for (final String name : outputRedactions.split(",")) {
+                if (name.isBlank()) {
+                    continue;
+                }
+                try {
+                    result.add(TerrariaOutputRedaction.valueOf(name.trim()));
+                } catch (final IllegalArgumentException e) {
+                    logger.error("Unknown output redaction '{}'; it will be ignored", name.trim());
+                }
             }
-            return new WorldMenuOption(secondGroup, Integer.parseInt(firstGroup));
+            enabledOutputRedactions = result;
+        }
+        return result;
+    }
+
+    private Charset getOutputCharset(final TerrariaInstanceEntity instance) {
+        final @Nullable String charsetName = instance.getOutputCharset();
+        if (charsetName == null) {
+            return StandardCharsets.UTF_8;
         }
+        final Charset charset;
+        try {
+            charset = Charset.forName(charsetName);
+        } catch (final IllegalArgumentException e) {
+            logger.warn("The output charset '{}' of instance {} is not supported; falling back to UTF-8", charsetName,
+                    instance.getUuid());
+            return StandardCharsets.UTF_8;
+        }
+        if (!StreamingLineDecoder.supports(charset)) {
+            logger.warn("The output charset {} of instance {} cannot be split into lines; falling back to UTF-8",
+                    charset.name(), instance.getUuid());
+            return StandardCharsets.UTF_8;
+        }
+        return charset;
     }
 
-    @RequiredArgsConstructor
-    private class TerrariaOutputEventConsumer implements FileTailEventConsumer {
+    private class TerrariaOutputEventConsumer
+            implements FileTailEventConsumer, TerrariaOutputLineClassifier.LineHandler {
 
         private final Logger logger = LogManager.getLogger(getClass());
 
-        List<TerrariaInstanceEventEntity> events = new ArrayList<>();
+        private final StreamingLineDecoder lineDecoder;
+
+        private final TerrariaOutputLineClassifier lineClassifier;
+
+        private final List<RedactionRule> redactionRules;
 
-        private StringBuilder outputTextBuffer = new StringBuilder();
+        private final TerrariaInstanceOutputMetrics metrics;
+
+        private final TerrariaOutputRepeatAggregator repeatAggregator;
+
+        List<TerrariaInstanceEventEntity> events = new ArrayList<>();
 
         private @NonNull TerrariaInstanceEntity instance;
 
+        private boolean hasUnsavedOutput = false;
+
+        private boolean hasUnsavedInstanceChanges = false;
+
+        private long unsavedByteCount = 0;
+
+        private long unsavedSinceNanos = 0;
+
+        private long readStartNanos = 0;
+
+        private boolean isSkippingLine = false;
+
+        private @Nullable Future<?> scheduledFlush;
+
+        private @Nullable Future<?> scheduledRepeatSummary;
+
+        private boolean closed = false;
+
+        TerrariaOutputEventConsumer(final TerrariaInstanceEntity instance,
+                final TerrariaOutputLineClassifier lineClassifier,
+                final List<TerrariaOutputRedaction> redactions,
+                final TerrariaInstanceOutputMetrics metrics) {
+            this.instance = instance;
+            this.metrics = metrics;
+            this.lineClassifier = lineClassifier;
+            redactionRules = redactions.stream()
+                    .map(redaction -> redaction.makeRule(() -> this.instance))
+                    .collect(Collectors.toUnmodifiableList());
+            lineDecoder = new StreamingLineDecoder(getOutputCharset(instance), this::onLine);
+            lineDecoder.reset(instance.getNextOutputBytePosition());
+            repeatAggregator = new TerrariaOutputRepeatAggregator(
+                    TimeUnit.MILLISECONDS.toNanos(instance.getOutputRepeatWindowMillis()));
+        }
+
         @Override
+        @Synchronized
         public void onFileCreated() {
             onFileExistenceChanged(true);
         }
 
         @Override
+        @Synchronized
         public void onReadStarted() {
-            instance = terrariaInstanceRepository.getOne(instance.getId());
+            readStartNanos = System.nanoTime();
+            reloadInstance();
+        }
+
+        @Override
+        @Synchronized
+        public long chooseReadPosition(final long position, final long fileSize) {
+            if (outputBacklogLimit <= 0 || fileSize - position <= outputBacklogLimit ||
+                    instance.getState() != TerrariaInstanceState.RUNNING) {
+                return position;
+            }
+            final long newPosition = fileSize - outputBacklogLimit;
+            logger.warn("Skipping {} bytes of the output of instance {} in order to catch up with it",
+                    newPosition - position, instance.getUuid());
+            lineDecoder.reset(newPosition);
+            isSkippingLine = true;
+            markOutputAsUnsaved();
+            events.add(makeEvent(TerrariaInstanceEventType.OUTPUT_SKIPPED, Long.toString(newPosition - position)));
+            instance.setNextOutputBytePosition(newPosition);
+            return newPosition;
         }
 
+        /**
+         * Consume a chunk of output. When enough of it has accumulated, it is saved right away instead of at the end
+         * of the read, so a large backlog is processed in bounded steps, each of which is a checkpoint.
+         */
         @Override
-        public void onCharacter(final char character, final long position) {
-            if (character != '\n') {
-                outputTextBuffer.append(character);
+        @Synchronized
+        public void onChunk(final ByteBuffer chunk, final long position) {
+            if (closed) {
                 return;
             }
-            final String line = outputTextBuffer.toString();
-            outputTextBuffer = new StringBuilder();
+            markOutputAsUnsaved();
+            unsavedByteCount += chunk.remaining();
+            metrics.getByteCount().add(chunk.remaining());
+            lineDecoder.decode(chunk, position);
+            if (unsavedByteCount >= instance.getOutputFlushBytes() && !events.isEmpty()) {
+                flush();
+            }
+        }
+
+        private void markOutputAsUnsaved() {
+            if (!hasUnsavedOutput) {
+                hasUnsavedOutput = true;
+                unsavedSinceNanos = readStartNanos;
+            }
+        }
 
+        private void onLine(final String line, final long nextLinePosition) {
+            metrics.getLineCount().increment();
+            if (isSkippingLine) {
+                // The line has been cut by skipping the output before it
+                isSkippingLine = false;
+                instance.setNextOutputBytePosition(nextLinePosition);
+                return;
+            }
+            // Every line is applied to the state of the instance; only the plain output lines can be collapsed
             if (instance.getState() != TerrariaInstanceState.RUNNING && applyLineToInstance(line)) {
-                events.add(makeEvent(TerrariaInstanceEventType.IMPORTANT_OUTPUT, line));
+                finishRepeatedLines();
+                hasUnsavedInstanceChanges = true;
+                events.add(makeEvent(TerrariaInstanceEventType.IMPORTANT_OUTPUT, redact(line)));
                 events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, "\n"));
             } else if (instance.getState() == TerrariaInstanceState.PASSWORD_PROMPT && line.endsWith("%")) {
-                events.add(makeEvent(TerrariaInstanceEventType.DETAILED_OUTPUT, line + "\n"));
+                finishRepeatedLines();
+                events.add(makeEvent(TerrariaInstanceEventType.DETAILED_OUTPUT, redact(line) + "\n"));
             } else {
-                events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, line + "\n"));
+                addOutputLine(redact(line) + "\n");
+            }
+            instance.setNextOutputBytePosition(nextLinePosition);
+        }
+
+        private void addOutputLine(final String text) {
+            final List<String> texts = repeatAggregator.add(text, System.nanoTime());
+            if (texts.isEmpty()) {
+                metrics.getSuppressedLineCount().increment();
+                if (repeatAggregator.getRepeatCount() == 1) {
+                    scheduledRepeatSummary = asyncService.scheduleInThread(this::finishRepeatedLinesLater,
+                            Duration.ofMillis(instance.getOutputRepeatWindowMillis()));
+                }
+                return;
+            }
+            for (final String lineText : texts) {
+                events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, lineText));
+            }
+        }
+
+        private void finishRepeatedLines() {
+            final @Nullable String summary = repeatAggregator.finish();
+            if (summary != null) {
+                events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, summary));
+            }
+        }
+
+        /**
+         * Save the summary of a run of repeated lines once its window has passed, even if no more output arrives.
+         */
+        @Synchronized
+        private void finishRepeatedLinesLater() {
+            scheduledRepeatSummary = null;
+            if (closed) {
+                return;
+            }
+            final @Nullable String summary = repeatAggregator.finishIfExpired(System.nanoTime());
+            if (summary == null) {
+                return;
+            }
+            markOutputAsUnsaved();
+            events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, summary));
+            try {
+                reloadInstance();
+                flush();
+            } catch (final RuntimeException e) {
+                logger.error("Failed to save the repeated output of instance " + instance.getUuid(), e);
             }
-            instance.setNextOutputBytePosition(position + 1);
         }
 
         @Override
+        @Synchronized
         public void onReadFinished(final long endPosition) {
-            final String remainingText = outputTextBuffer.toString();
-            if (events.isEmpty() && remainingText.isEmpty()) {
+            if (closed) {
+                return;
+            }
+            final String remainingText = lineDecoder.getPendingText();
+            final @Nullable String expiredSummary = repeatAggregator.finishIfExpired(System.nanoTime());
+            if (expiredSummary != null) {
+                events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, expiredSummary));
+            }
+            if (events.isEmpty() && remainingText.isEmpty() && !hasUnsavedInstanceChanges) {
                 return;
             }
 
-            logger.info("Reached the end of the output file. Text:\n<{}>",
-                    events.stream().map(TerrariaInstanceEventEntity::getContent).collect(Collectors.joining()) +
-                            remainingText);
-
-            outputTextBuffer = new StringBuilder();
             if (!remainingText.isEmpty()) {
                 if (instance.getState() == TerrariaInstanceState.RUNNING) {
-                    events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, remainingText));
-                    instance.setNextOutputBytePosition(endPosition);
+                    finishRepeatedLines();
+                    events.add(makeEvent(TerrariaInstanceEventType.OUTPUT, redact(remainingText)));
+                    lineDecoder.clearPendingText();
+                    instance.setNextOutputBytePosition(lineDecoder.getDecodedPosition());
                 } else if (applyLineToInstanceState(remainingText)) {
-                    events.add(makeEvent(TerrariaInstanceEventType.IMPORTANT_OUTPUT, remainingText));
-                    instance.setNextOutputBytePosition(endPosition);
-                } else {
-                    outputTextBuffer = new StringBuilder(remainingText);
+                    finishRepeatedLines();
+                    hasUnsavedInstanceChanges = true;
+                    events.add(makeEvent(TerrariaInstanceEventType.IMPORTANT_OUTPUT, redact(remainingText)));
+                    lineDecoder.clearPendingText();
+                    instance.setNextOutputBytePosition(lineDecoder.getDecodedPosition());
                 }
             }
-            instance = terrariaInstanceService.saveInstanceAndEvents(instance, combineEvents());
-            events = new ArrayList<>();
+            markOutputAsUnsaved();
+            final long unsavedNanos = System.nanoTime() - unsavedSinceNanos;
+            final long maxUnsavedNanos = TimeUnit.MILLISECONDS.toNanos(instance.getOutputFlushIntervalMillis());
+            if (hasUnsavedInstanceChanges || unsavedByteCount >= instance.getOutputFlushBytes() ||
+                    unsavedNanos >= maxUnsavedNanos) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = asyncService.scheduleInThread(this::flushLater,
+                        Duration.ofNanos(maxUnsavedNanos - unsavedNanos));
+            }
+        }
+
+        /**
+         * The output file has been truncated or replaced (e.g. rolled into a segment) and is read from the start, so
+         * the output position of the instance starts from the beginning too.
+         */
+        @Override
+        @Synchronized
+        public void onFileReset() {
+            logger.info("The output file of instance {} has been reset", instance.getUuid());
+            lineDecoder.rebase(0);
+            markOutputAsUnsaved();
+            hasUnsavedInstanceChanges = true;
+            instance.setNextOutputBytePosition(0L);
         }
 
         @Override
+        @Synchronized
         public void onFileDeleted() {
             onFileExistenceChanged(false);
         }
 
+        /**
+         * Reload the instance so that changes made to it elsewhere are not overwritten. The output position, which is
+         * the only change that the instance can have which has not been saved yet (either because the output is
+         * unsaved or because it is still queued to be saved), is kept.
+         */
+        private void reloadInstance() {
+            final long outputPosition = instance.getNextOutputBytePosition();
+            instance = terrariaInstanceRepository.getOne(instance.getId());
+            instance.setNextOutputBytePosition(outputPosition);
+        }
+
+        @Synchronized
+        private void flushLater() {
+            scheduledFlush = null;
+            if (closed || !hasUnsavedOutput) {
+                return;
+            }
+            try {
+                reloadInstance();
+                flush();
+            } catch (final RuntimeException e) {
+                logger.error("Failed to save the output of instance " + instance.getUuid(), e);
+            }
+        }
+
+        /**
+         * Stop handling the output: cancel the scheduled saves, save the unsaved output right away and wait until all
+         * queued events have been saved. The output that is read after this is ignored; it is read again from the
+         * saved output position if the instance is tracked again.
+         */
+        @Synchronized
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelScheduledFlush();
+            final @Nullable Future<?> currentScheduledRepeatSummary = scheduledRepeatSummary;
+            if (currentScheduledRepeatSummary != null) {
+                currentScheduledRepeatSummary.cancel(false);
+                scheduledRepeatSummary = null;
+            }
+            finishRepeatedLines();
+            if (hasUnsavedOutput || !events.isEmpty()) {
+                try {
+                    reloadInstance();
+                    flush();
+                } catch (final RuntimeException e) {
+                    logger.error("Failed to save the remaining output of instance " + instance.getUuid(), e);
+                }
+            }
+            awaitQueuedEvents();
+        }
+
+        private void cancelScheduledFlush() {
+            final @Nullable Future<?> currentScheduledFlush = scheduledFlush;
+            if (currentScheduledFlush != null) {
+                currentScheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+
+        /**
+         * Save all unsaved output events of the instance at once. If the instance has changed in any way other than
+         * its output position, it is saved right away along with the events, after all of its queued events.
+         * Otherwise, the events and the output position are queued to be saved in the background.
+         */
+        private void flush() {
+            cancelScheduledFlush();
+            final List<TerrariaInstanceEventEntity> combinedEvents = combineEvents();
+            logger.debug("Saving {} bytes of the output of instance {} as {} events", unsavedByteCount,
+                    instance.getUuid(), combinedEvents.size());
+            final long startNanos = System.nanoTime();
+            final long outputSinceNanos = unsavedSinceNanos;
+            final long outputPosition = instance.getNextOutputBytePosition();
+            boolean isQueued = false;
+            if (!hasUnsavedInstanceChanges) {
+                try {
+                    terrariaInstanceEventWriter.write(instance, combinedEvents,
+                            () -> metrics.recordFlush(combinedEvents.size(), outputPosition, startNanos,
+                                    outputSinceNanos));
+                    isQueued = true;
+                } catch (final InterruptedException e) {
+                    logger.warn("Interrupted while queuing the output of instance {}; saving it right away",
+                            instance.getUuid());
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (!isQueued) {
+                awaitQueuedEvents();
+                instance = terrariaInstanceService.saveInstanceAndEvents(instance, combinedEvents);
+                metrics.recordFlush(combinedEvents.size(), instance.getNextOutputBytePosition(), startNanos,
+                        outputSinceNanos);
+            }
+            events = new ArrayList<>();
+            hasUnsavedOutput = false;
+            hasUnsavedInstanceChanges = false;
+            unsavedByteCount = 0;
+        }
+
+        /**
+         * Wait for the queued events to be saved so that they are not saved after (and the output position that they
+         * are queued with does not overwrite) anything that is about to be saved right away.
+         */
+        private void awaitQueuedEvents() {
+            try {
+                terrariaInstanceEventWriter.flush();
+            } catch (final InterruptedException e) {
+                logger.warn("Interrupted while waiting for the queued events of instance {} to be saved",
+                        instance.getUuid());
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Hide sensitive information in a line. Lines are redacted once, before they become events; the state of the
+         * instance is still determined by the original lines.
+         */
+        private String redact(final String line) {
+            String result = line;
+            for (final RedactionRule rule : redactionRules) {
+                result = rule.redact(result);
+            }
+            return result;
+        }
+
         private TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEventType type, final String text) {
-            final String fixedText =
-                    instance.getState() == TerrariaInstanceState.RUNNING && type == TerrariaInstanceEventType.OUTPUT
-                            ? text.replaceAll(
-                            "\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}:\\d{1,6} is connecting\\.\\.\\.",
-                            "[REDACTED IP] is connecting...")
-                            : text;
-            return TerrariaInstanceEventEntity.builder().type(type).content(fixedText).instance(instance).build();
+            return TerrariaInstanceEventEntity.builder().type(type).content(text).instance(instance).build();
         }
 
         private List<TerrariaInstanceEventEntity> combineEvents() {
@@ -219,76 +621,70 @@ public class TerrariaInstanceOutputService {
          * @param line The line to apply to the instance.
          */
         private boolean applyLineToInstance(final String line) {
-            return applyLineToInstanceState(line) || applyLineToInstanceMods(line) || applyLineToInstanceOptions(line);
+            return lineClassifier.classify(instance.getState(), line, this);
         }
 
         private boolean applyLineToInstanceState(final String line) {
-            final @Nullable TerrariaInstanceState newState = Arrays.stream(TerrariaInstanceOutputEvent.values())
-                    .filter(transition -> transition.hasBeenReached(instance.getState(), line))
-                    .findAny()
-                    .map(TerrariaInstanceOutputEvent::getTargetState)
-                    .orElse(null);
+            final @Nullable TerrariaInstanceState newState = lineClassifier.findTargetState(instance.getState(), line);
             if (newState == null) {
                 return false;
             }
+            onStateReached(newState);
+            return true;
+        }
+
+        @Override
+        public void onStateReached(final TerrariaInstanceState newState) {
             logger.info("Instance {} has transitioned from state {} into state {}", instance.getUuid(),
                     instance.getState(), newState);
             instance.setState(newState);
-            return true;
         }
 
-        private boolean applyLineToInstanceMods(final String line) {
-            if (MOD_CLEAR_LINES.contains(line)) {
-                logger.info("The mods of instance {} are now NONE.", instance.getUuid());
-                instance.setLoadedMods(Collections.emptySet());
-                return true;
-            }
-            final Matcher modMatcher = MOD_LOADING_PATTERN.matcher(line);
-            if (!modMatcher.find()) {
-                return false;
-            }
-            final @Nullable String modName = modMatcher.group(1);
-            if (modName == null) {
-                logger.warn("Expected to find a mod name in the following line: {}", line);
-                return false;
-            }
+        @Override
+        public void onModsCleared() {
+            logger.info("The mods of instance {} are now NONE.", instance.getUuid());
+            instance.setLoadedMods(Collections.emptySet());
+        }
+
+        @Override
+        public void onModLoaded(final String modName) {
             if ((modName.startsWith("ModLoader") && modName.endsWith("v" + instance.getModLoaderVersion())) ||
                     instance.getLoadedMods().contains(modName)) {
-                return true;
+                return;
             }
             final Set<String> newMods = new HashSet<>(instance.getLoadedMods());
             newMods.add(modName);
             logger.info("The mods of instance {} are now: {}", instance.getUuid(), String.join(", ", newMods));
             instance.setLoadedMods(newMods);
-            return true;
         }
 
-        private boolean applyLineToInstanceOptions(final String line) {
-            final @Nullable WorldMenuOption newOption = WorldMenuOption.fromLine(line);
-            if (newOption == null) {
-                return false;
-            }
-            final @Nullable String existingOptionLabel = instance.getPendingOptions().get(newOption.getId());
+        @Override
+        public void onMenuOption(final int id, final String label) {
+            final @Nullable String existingOptionLabel = instance.getPendingOptions().get(id);
             if (existingOptionLabel != null) {
-                if (newOption.getLabel().equals(existingOptionLabel)) {
-                    logger.warn("Option '{}) {}' is already known", newOption.getId(), newOption.getLabel());
-                    return true;
+                if (label.equals(existingOptionLabel)) {
+                    logger.warn("Option '{}) {}' is already known", id, label);
+                    return;
                 }
-                logger.warn("Overwriting the known option '{}) {}' with a new option '{}) {}'", newOption.getId(),
-                        existingOptionLabel, newOption.getId(), newOption.getLabel());
+                logger.warn("Overwriting the known option '{}) {}' with a new option '{}) {}'", id,
+                        existingOptionLabel, id, label);
             }
-            instance.acknowledgeMenuOption(newOption.getId(), newOption.getLabel());
+            instance.acknowledgeMenuOption(id, label);
             logger.debug("The numerical options of instance {} are now:\n{}", instance.getUuid(),
                     instance.getPendingOptions()
                             .entrySet()
                             .stream()
                             .map(entry -> entry.getKey() + "\t\t" + entry.getValue())
                             .collect(Collectors.joining("\n")));
-            return true;
         }
 
         private void onFileExistenceChanged(final boolean fileExists) {
+            if (hasUnsavedOutput) {
+                reloadInstance();
+                flush();
+            }
             instance = terrariaInstanceRepository.getOne(instance.getId());
+            lineDecoder.reset(0L);
             @Nullable Boolean hasSession = null;
             final TerrariaInstanceEventEntity.TerrariaInstanceEventEntityBuilder eventBuilder =
                     TerrariaInstanceEventEntity.builder()
@@ -307,6 +703,7 @@ public class TerrariaInstanceOutputService {
                 return;
             }
             final TerrariaInstanceEventEntity event;
+            awaitQueuedEvents();
             instance.setNextOutputBytePosition(0L);
             if (hasSession != null && hasSession == fileExists) {
                 instance.setState(fileExists ? TerrariaInstanceState.BOOTING_UP : TerrariaInstanceState.IDLE);
@@ -0,0 +1,81 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A transition of an instance from any of several states into another state, which happens when the instance outputs
+ * a line with a specific prefix.
+ */
+@RequiredArgsConstructor
+@Getter
+public class TerrariaInstanceOutputTransition {
+
+    private static final String COLUMN_SEPARATOR = "\t";
+
+    private static final String STATE_SEPARATOR = ",";
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private final TerrariaInstanceState targetState;
+
+    private final String linePrefix;
+
+    private final Set<TerrariaInstanceState> sourceStates;
+
+    /**
+     * Read a table of transitions from a file. Each line of the file that is neither blank nor a comment (starting
+     * with {@code #}) is a transition with three tab-separated columns: the target state, the comma-separated source
+     * states and the line prefix. For example:
+     * <pre>
+     * WORLD_MENU	BOOTING_UP,MOD_MENU	Choose World:
+     * </pre>
+     *
+     * @param file The file to read.
+     * @return The transitions in the file.
+     * @throws IOException              If reading the file fails.
+     * @throws IllegalArgumentException If any of the lines of the file is not a valid transition.
+     */
+    public static List<TerrariaInstanceOutputTransition> readTable(final Path file) throws IOException {
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        final List<TerrariaInstanceOutputTransition> result = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i);
+            if (line.isBlank() || line.startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            try {
+                result.add(parse(line));
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid transition on line %d of %s: %s", i + 1, file, e.getMessage()), e);
+            }
+        }
+        return result;
+    }
+
+    static TerrariaInstanceOutputTransition parse(final String line) {
+        final String[] columns = line.split(COLUMN_SEPARATOR, 3);
+        if (columns.length < 3 || columns[2].isEmpty()) {
+            throw new IllegalArgumentException("Expected a target state, source states and a line prefix");
+        }
+        final Set<TerrariaInstanceState> sourceStates = EnumSet.noneOf(TerrariaInstanceState.class);
+        Arrays.stream(columns[1].split(STATE_SEPARATOR))
+                .map(String::trim)
+                .map(TerrariaInstanceState::valueOf)
+                .forEach(sourceStates::add);
+        return new TerrariaInstanceOutputTransition(TerrariaInstanceState.valueOf(columns[0].trim()), columns[2],
+                sourceStates);
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.mewore.tsw.services.terraria;
 
 import javax.transaction.Transactional;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,22 +12,31 @@ import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import io.github.mewore.tsw.events.TerrariaInstanceApplicationEvent;
 import io.github.mewore.tsw.exceptions.InvalidRequestException;
 import io.github.mewore.tsw.exceptions.NotFoundException;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceAction;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceOutputConfiguration;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceRunConfiguration;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceUpdateModel;
 import io.github.mewore.tsw.models.terraria.world.TerrariaWorldEntity;
 import io.github.mewore.tsw.models.terraria.world.WorldCreationConfiguration;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
 import io.github.mewore.tsw.repositories.terraria.TerrariaWorldRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
+import io.github.mewore.tsw.services.util.StreamingLineDecoder;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -41,6 +51,10 @@ public class TerrariaInstanceService {
 
     private final TerrariaInstanceEventRepository terrariaInstanceEventRepository;
 
+    private final TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    private final TerrariaInstanceEventStore terrariaInstanceEventStore;
+
     private final ApplicationEventPublisher applicationEventPublisher;
 
     private final TerrariaWorldRepository terrariaWorldRepository;
@@ -49,6 +63,18 @@ public class TerrariaInstanceService {
 
     private final TerrariaInstanceDbNotificationService terrariaInstanceDbNotificationService;
 
+    private final TerrariaInstanceEventCache terrariaInstanceEventCache;
+
+    private final TerrariaInstanceEventSearchIndex terrariaInstanceEventSearchIndex;
+
+    private final AsyncService asyncService;
+
+    /**
+     * The largest number of events to delete in a single transaction when deleting an instance.
+     */
+    @Value("${tsw.terraria.event-deletion-batch-size:10000}")
+    private int eventDeletionBatchSize = 10000;
+
     public TerrariaInstanceEntity getInstance(final long instanceId) throws NotFoundException {
         return terrariaInstanceRepository.findById(instanceId)
                 .orElseThrow(() -> new NotFoundException("Could not find a Terraria instance with ID " + instanceId));
@@ -69,25 +95,88 @@ public class TerrariaInstanceService {
     @Transactional
     public TerrariaInstanceEntity saveInstanceAndEvents(final TerrariaInstanceEntity instance,
             final List<TerrariaInstanceEventEntity> events) {
-        final List<TerrariaInstanceEventEntity> savedEvents = terrariaInstanceEventRepository.saveAll(events);
+        final List<TerrariaInstanceEventEntity> savedEvents = terrariaInstanceEventStore.saveAll(events);
         for (final TerrariaInstanceEventEntity event : savedEvents) {
             terrariaInstanceMessageService.broadcastInstanceEventCreation(event);
         }
+        onEventsSaved(savedEvents);
         return saveInstance(instance);
     }
 
+    /**
+     * Save the events of any number of instances along with the output positions of the instances, without saving
+     * anything else about the instances.
+     *
+     * @param events          The events to save.
+     * @param outputPositions The next output byte position of each instance, by instance ID.
+     */
+    @Transactional
+    public void saveEventsAndOutputPositions(final List<TerrariaInstanceEventEntity> events,
+            final Map<Long, Long> outputPositions) {
+        final List<TerrariaInstanceEventEntity> savedEvents = terrariaInstanceEventStore.saveAll(events);
+        for (final Map.Entry<Long, Long> entry : outputPositions.entrySet()) {
+            terrariaInstanceRepository.updateNextOutputBytePosition(entry.getKey(), entry.getValue());
+        }
+        for (final TerrariaInstanceEventEntity event : savedEvents) {
+            terrariaInstanceMessageService.broadcastInstanceEventCreation(event);
+        }
+        onEventsSaved(savedEvents);
+    }
+
     @Transactional
     public TerrariaInstanceEntity saveInstanceAndEvent(final TerrariaInstanceEntity instance,
             final TerrariaInstanceEventEntity event) {
-        final TerrariaInstanceEventEntity savedEvent = terrariaInstanceEventRepository.save(event);
+        final TerrariaInstanceEventEntity savedEvent = terrariaInstanceEventStore.saveAll(List.of(event)).get(0);
         terrariaInstanceMessageService.broadcastInstanceEventCreation(savedEvent);
+        onEventsSaved(List.of(savedEvent));
         return saveInstance(instance);
     }
 
     @Transactional
     public void saveEvent(final TerrariaInstanceEventEntity event) {
-        final TerrariaInstanceEventEntity savedEvent = terrariaInstanceEventRepository.save(event);
+        final TerrariaInstanceEventEntity savedEvent = terrariaInstanceEventStore.saveAll(List.of(event)).get(0);
         terrariaInstanceMessageService.broadcastInstanceEventCreation(savedEvent);
+        onEventsSaved(List.of(savedEvent));
+    }
+
+    /**
+     * Replace events with a chunk that contains them.
+     *
+     * @param chunk    The chunk.
+     * @param eventIds The IDs of the events in the chunk.
+     */
+    @Transactional
+    public void saveEventChunk(final TerrariaInstanceEventChunkEntity chunk, final List<Long> eventIds) {
+        terrariaInstanceEventChunkRepository.save(chunk);
+        terrariaInstanceEventRepository.deleteByIdIn(eventIds);
+    }
+
+    /**
+     * Once the transaction in which the events have been saved is committed, add them to the cached and indexed events
+     * of their instances and let the other nodes know that their cached and indexed events of the instances are
+     * outdated.
+     *
+     * @param savedEvents The saved events.
+     */
+    private void onEventsSaved(final List<TerrariaInstanceEventEntity> savedEvents) {
+        final Runnable action = () -> {
+            terrariaInstanceEventCache.append(savedEvents);
+            terrariaInstanceEventSearchIndex.append(savedEvents);
+            savedEvents.stream()
+                    .map(event -> event.getInstance().getId())
+                    .distinct()
+                    .forEach(terrariaInstanceDbNotificationService::instanceEventsCreated);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     public void ensureInstanceHasNoOutputFile(final TerrariaInstanceEntity instance) {
@@ -125,6 +214,11 @@ public class TerrariaInstanceService {
             actionToApply = TerrariaInstanceAction.RUN_SERVER;
         }
 
+        final @Nullable TerrariaInstanceOutputConfiguration outputConfiguration = model.getOutputConfiguration();
+        if (outputConfiguration != null) {
+            applyOutputConfig(instance, outputConfiguration);
+        }
+
         final @Nullable WorldCreationConfiguration worldCreationConfig = model.getWorldCreationConfiguration();
         if (worldCreationConfig != null) {
             final String displayName = worldCreationConfig.getWorldDisplayName().trim();
@@ -166,6 +260,42 @@ public class TerrariaInstanceService {
         instance.setWorld(world);
     }
 
+    private static void applyOutputConfig(final TerrariaInstanceEntity instance,
+            final TerrariaInstanceOutputConfiguration outputConfiguration) throws InvalidRequestException {
+        final String charsetName = outputConfiguration.getCharset().trim();
+        final Charset charset;
+        try {
+            charset = Charset.forName(charsetName);
+        } catch (final IllegalArgumentException e) {
+            throw new InvalidRequestException("Unknown charset '" + charsetName + "'");
+        }
+        if (!StreamingLineDecoder.supports(charset)) {
+            throw new InvalidRequestException("The charset " + charset.name() + " cannot be used for the output");
+        }
+        final int flushIntervalMillis = validateOutputLimit("flush interval",
+                outputConfiguration.getFlushIntervalMillis(),
+                TerrariaInstanceOutputConfiguration.MAX_FLUSH_INTERVAL_MILLIS);
+        final int flushBytes = validateOutputLimit("flush byte count", outputConfiguration.getFlushBytes(),
+                TerrariaInstanceOutputConfiguration.MAX_FLUSH_BYTES);
+        final int repeatWindowMillis = validateOutputLimit("repeat window",
+                outputConfiguration.getRepeatWindowMillis(),
+                TerrariaInstanceOutputConfiguration.MAX_REPEAT_WINDOW_MILLIS);
+
+        instance.setOutputCharset(charset.name());
+        instance.setOutputFlushIntervalMillis(flushIntervalMillis);
+        instance.setOutputFlushBytes(flushBytes);
+        instance.setOutputRepeatWindowMillis(repeatWindowMillis);
+    }
+
+    private static int validateOutputLimit(final String name, final int value, final int max)
+            throws InvalidRequestException {
+        if (value < 0 || value > max) {
+            throw new InvalidRequestException(
+                    "The output " + name + " must be between 0 and " + max + " but it is " + value);
+        }
+        return value;
+    }
+
     private void applyPendingAction(final TerrariaInstanceEntity instance, final TerrariaInstanceAction actionToApply)
             throws InvalidRequestException {
         if (instance.getPendingAction() != null) {
@@ -179,13 +309,56 @@ public class TerrariaInstanceService {
         instance.setPendingAction(actionToApply);
     }
 
-    @Transactional
+    /**
+     * Mark an instance as being deleted and delete it in the background.
+     *
+     * @param instance The instance to delete.
+     * @return The instance, marked as being deleted.
+     */
+    public TerrariaInstanceEntity deleteInstanceInBackground(final TerrariaInstanceEntity instance) {
+        final TerrariaInstanceEntity deletingInstance;
+        if (instance.getState() == TerrariaInstanceState.DELETING) {
+            deletingInstance = instance;
+        } else {
+            instance.setState(TerrariaInstanceState.DELETING);
+            deletingInstance = saveInstance(instance);
+        }
+        asyncService.runInThread(() -> {
+            try {
+                deleteInstance(deletingInstance);
+            } catch (final RuntimeException e) {
+                logger.error("Failed to delete instance " + deletingInstance.getUuid(), e);
+                deletingInstance.setState(TerrariaInstanceState.BROKEN);
+                final @Nullable String message = e.getMessage();
+                deletingInstance.setError(message == null ? e.getClass().getSimpleName() : message);
+                saveInstance(deletingInstance);
+            }
+        });
+        return deletingInstance;
+    }
+
+    /**
+     * Delete the events of an instance in batches so that neither the events nor the locks on them pile up, and then
+     * delete the instance itself.
+     *
+     * @param instance The instance to delete.
+     */
     public void deleteInstance(final TerrariaInstanceEntity instance) {
         logger.info("Clearing instance {} events...", instance.getUuid());
-        final long deletedEventCount = terrariaInstanceEventRepository.deleteByInstance(instance);
+        long deletedEventCount = 0;
+        int batchDeletedEventCount;
+        do {
+            batchDeletedEventCount = terrariaInstanceEventStore.deleteEventBatch(instance, eventDeletionBatchSize);
+            if (batchDeletedEventCount > 0) {
+                deletedEventCount += batchDeletedEventCount;
+                terrariaInstanceMessageService.broadcastInstanceDeletionProgress(instance, deletedEventCount);
+            }
+        } while (batchDeletedEventCount > 0);
         logger.info("Deleted {} events of instance {}", deletedEventCount, instance.getUuid());
 
         terrariaInstanceRepository.delete(instance);
+        terrariaInstanceEventCache.invalidate(instance.getId());
+        terrariaInstanceEventSearchIndex.invalidate(instance.getId());
         logger.info("Done deleting instance {}", instance.getUuid());
         terrariaInstanceMessageService.broadcastInstanceDeletion(instance);
     }
@@ -3,8 +3,13 @@ package io.github.mewore.tsw.services.terraria;
 import javax.annotation.PostConstruct;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -15,10 +20,13 @@ import org.springframework.stereotype.Service;
 
 import io.github.mewore.tsw.events.Publisher;
 import io.github.mewore.tsw.events.Subscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 import io.github.mewore.tsw.events.TerrariaInstanceApplicationEvent;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
@@ -33,9 +41,16 @@ public class TerrariaInstanceSubscriptionService implements ApplicationListener<
 
     private final TerrariaInstanceMessageService terrariaInstanceMessageService;
 
+    private final AsyncService asyncService;
+
+    /**
+     * The futures of the instance states that are being waited for, by instance ID.
+     */
+    private final ConcurrentMap<Long, Set<InstanceStateWaiter>> waitersByInstanceId = new ConcurrentHashMap<>();
+
     @PostConstruct
     void setUp() {
-        instancePublisher.setTopicToValueMapper(terrariaInstanceRepository::getOne);
+        instancePublisher.setName("instances");
     }
 
     /**
@@ -51,6 +66,7 @@ public class TerrariaInstanceSubscriptionService implements ApplicationListener<
         logger.debug("Application event for the {} of instance {}", event.isNew() ? "creation" : "deletion",
                 instance.getId());
         instancePublisher.publish(instance.getId(), instance);
+        completeWaiters(instance);
 
         if (event.isNew()) {
             terrariaInstanceMessageService.broadcastInstanceCreation(event.getChangedInstance());
@@ -59,31 +75,113 @@ public class TerrariaInstanceSubscriptionService implements ApplicationListener<
         }
     }
 
-    public Subscription<TerrariaInstanceEntity> subscribe(final TerrariaInstanceEntity instance) {
-        return instancePublisher.subscribe(instance.getId());
-    }
-
+    /**
+     * Subscribe to the changes of all instances. When too many of them have not been taken yet, the oldest ones are
+     * discarded.
+     *
+     * @return The resulting subscription.
+     */
     public Subscription<TerrariaInstanceEntity> subscribeToAll() {
-        return instancePublisher.subscribe();
+        return instancePublisher.subscribe(SubscriptionOverflowPolicy.DROP_OLDEST);
     }
 
-    public TerrariaInstanceEntity waitForInstanceState(final TerrariaInstanceEntity instance,
-            final Subscription<TerrariaInstanceEntity> subscription,
+    /**
+     * Start waiting for an instance to reach any of several states. This should be done before doing whatever is
+     * supposed to change the state of the instance, so that the change cannot be missed.
+     * <p>
+     * The future is completed by the thread which publishes the change of the instance, or with an
+     * {@link IllegalStateException} if the timeout passes first. If the instance has not been seen to reach the desired
+     * states by then, its current state is fetched as a last resort in a worker thread. No thread is kept waiting;
+     * the work that follows should be chained to the future, preferably in a worker thread.
+     *
+     * @param instance      The instance to wait for.
+     * @param timeout       The longest time to wait for.
+     * @param desiredStates The states to wait for.
+     * @return The future of the instance in the first of the desired states that it reaches. Cancelling it stops the
+     * waiting.
+     */
+    public CompletableFuture<TerrariaInstanceEntity> waitForInstanceState(final TerrariaInstanceEntity instance,
             final Duration timeout,
-            final TerrariaInstanceState... desiredStates) throws IllegalStateException, InterruptedException {
-        final String desiredStateString = Arrays.stream(desiredStates)
-                .map(Objects::toString)
-                .collect(Collectors.joining("/"));
+            final TerrariaInstanceState... desiredStates) {
+        final InstanceStateWaiter waiter = new InstanceStateWaiter(instance, timeout, desiredStates);
         logger.debug("Waiting for instance {} to transition from {} to {}...", instance.getId(), instance.getState(),
-                desiredStateString);
-        final Set<TerrariaInstanceState> stateSet = Set.of(desiredStates);
-        final @Nullable TerrariaInstanceEntity result = subscription.waitFor(
-                newInstance -> stateSet.contains(newInstance.getState()), timeout);
-        if (result == null) {
-            throw new IllegalStateException(String.format(
+                waiter.getDesiredStateString());
+        waitersByInstanceId.compute(instance.getId(), (id, waiters) -> {
+            final Set<InstanceStateWaiter> result = waiters == null ? ConcurrentHashMap.newKeySet() : waiters;
+            result.add(waiter);
+            return result;
+        });
+        final @Nullable Future<?> timeoutFuture = asyncService.scheduleInThread(waiter::timeOut, timeout);
+        waiter.getFuture().whenComplete((result, exception) -> {
+            waitersByInstanceId.computeIfPresent(instance.getId(), (id, waiters) -> {
+                waiters.remove(waiter);
+                return waiters.isEmpty() ? null : waiters;
+            });
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+        });
+        return waiter.getFuture();
+    }
+
+    private void completeWaiters(final TerrariaInstanceEntity instance) {
+        final @Nullable Set<InstanceStateWaiter> waiters = waitersByInstanceId.get(instance.getId());
+        if (waiters != null) {
+            for (final InstanceStateWaiter waiter : waiters) {
+                waiter.complete(instance);
+            }
+        }
+    }
+
+    @Getter
+    private class InstanceStateWaiter {
+
+        private final CompletableFuture<TerrariaInstanceEntity> future = new CompletableFuture<>();
+
+        private final TerrariaInstanceEntity instance;
+
+        private final Duration timeout;
+
+        private final Set<TerrariaInstanceState> desiredStates;
+
+        private final String desiredStateString;
+
+        InstanceStateWaiter(final TerrariaInstanceEntity instance, final Duration timeout,
+                final TerrariaInstanceState[] desiredStates) {
+            this.instance = instance;
+            this.timeout = timeout;
+            this.desiredStates = desiredStates.length == 0
+                    ? EnumSet.noneOf(TerrariaInstanceState.class)
+                    : EnumSet.copyOf(Arrays.asList(desiredStates));
+            desiredStateString = Arrays.stream(desiredStates)
+                    .map(Objects::toString)
+                    .collect(Collectors.joining("/"));
+        }
+
+        void complete(final TerrariaInstanceEntity newInstance) {
+            if (desiredStates.contains(newInstance.getState())) {
+                future.complete(newInstance);
+            }
+        }
+
+        void timeOut() {
+            if (future.isDone()) {
+                return;
+            }
+            TerrariaInstanceState currentState = instance.getState();
+            try {
+                final @Nullable TerrariaInstanceEntity currentInstance =
+                        terrariaInstanceRepository.findById(instance.getId()).orElse(null);
+                if (currentInstance != null) {
+                    complete(currentInstance);
+                    currentState = currentInstance.getState();
+                }
+            } catch (final RuntimeException e) {
+                logger.warn("Failed to fetch the current state of instance " + instance.getUuid(), e);
+            }
+            future.completeExceptionally(new IllegalStateException(String.format(
                     "The instance %s did not reach the state(s) %s within a timeout of %s; instead, its state is %s.",
-                    instance.getUuid(), desiredStateString, timeout, instance.getState()));
+                    instance.getUuid(), desiredStateString, timeout, currentState)));
         }
-        return result;
     }
 }
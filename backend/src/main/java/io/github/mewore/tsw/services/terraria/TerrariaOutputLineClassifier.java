@@ -0,0 +1,197 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
+import io.github.mewore.tsw.services.util.PrefixTrie;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Classifies the output lines of an instance that is not running in a single pass over each line. The rules of each
+ * source state (state transitions and mod changes) are kept in a {@link PrefixTrie} of their own. If the prefixes of
+ * several rules match a line, the rule with the shortest prefix is applied; for rules with the same prefix, state
+ * transitions take precedence.
+ */
+public class TerrariaOutputLineClassifier {
+
+    private static final List<String> MOD_CLEAR_LINES = List.of("Unloading mods...", "Finding Mods...",
+            "Instantiating Mods...");
+
+    private static final String MOD_LOADING_PREFIX = "Loading: ";
+
+    private static final String MOD_VERSION_SEPARATOR = " v";
+
+    private static final int MAX_OPTION_ID_LENGTH = 9;
+
+    private final Map<TerrariaInstanceState, PrefixTrie<Rule>> rulesBySourceState =
+            new EnumMap<>(TerrariaInstanceState.class);
+
+    public TerrariaOutputLineClassifier(final Collection<TerrariaInstanceOutputTransition> transitions) {
+        for (final TerrariaInstanceState state : TerrariaInstanceState.values()) {
+            rulesBySourceState.put(state, new PrefixTrie<>());
+        }
+        for (final TerrariaInstanceOutputTransition transition : transitions) {
+            for (final TerrariaInstanceState sourceState : transition.getSourceStates()) {
+                rulesBySourceState.get(sourceState)
+                        .put(transition.getLinePrefix(), new Rule(RuleType.TRANSITION, transition.getTargetState()));
+            }
+        }
+        for (final PrefixTrie<Rule> rules : rulesBySourceState.values()) {
+            for (final String modClearLine : MOD_CLEAR_LINES) {
+                rules.put(modClearLine, new Rule(RuleType.MODS_CLEARED, null));
+            }
+            rules.put(MOD_LOADING_PREFIX, new Rule(RuleType.MOD_LOADED, null));
+        }
+    }
+
+    /**
+     * @param additionalTransitions Transitions in addition to the ones in {@link TerrariaInstanceOutputEvent}.
+     * @return A classifier with the built-in transitions and the specified additional ones.
+     */
+    public static TerrariaOutputLineClassifier withBuiltInTransitions(
+            final Collection<TerrariaInstanceOutputTransition> additionalTransitions) {
+        return new TerrariaOutputLineClassifier(Stream.concat(
+                Arrays.stream(TerrariaInstanceOutputEvent.values()).map(TerrariaInstanceOutputEvent::toTransition),
+                additionalTransitions.stream()).collect(Collectors.toList()));
+    }
+
+    /**
+     * Find the state that an instance transitions into when it outputs a line.
+     *
+     * @param sourceState The current state of the instance.
+     * @param line        The line.
+     * @return The new state of the instance, or {@code null} if the line does not cause a transition.
+     */
+    public @Nullable TerrariaInstanceState findTargetState(final TerrariaInstanceState sourceState,
+            final String line) {
+        final @Nullable Rule rule = rulesBySourceState.get(sourceState)
+                .findFirst(line, candidate -> candidate.type == RuleType.TRANSITION);
+        return rule == null ? null : rule.targetState;
+    }
+
+    /**
+     * Classify a line and pass what it means for the instance to a handler. At most one of the methods of the
+     * handler is called.
+     *
+     * @param sourceState The current state of the instance.
+     * @param line        The line.
+     * @param handler     The handler.
+     * @return Whether the line means anything for the instance.
+     */
+    public boolean classify(final TerrariaInstanceState sourceState, final String line, final LineHandler handler) {
+        final @Nullable Rule rule = rulesBySourceState.get(sourceState)
+                .findFirst(line, candidate -> candidate.matches(line));
+        if (rule != null) {
+            switch (rule.type) {
+                case TRANSITION:
+                    if (rule.targetState != null) {
+                        handler.onStateReached(rule.targetState);
+                    }
+                    return true;
+                case MODS_CLEARED:
+                    handler.onModsCleared();
+                    return true;
+                case MOD_LOADED:
+                    final @Nullable String modName = parseModName(line);
+                    if (modName != null) {
+                        handler.onModLoaded(modName);
+                        return true;
+                    }
+                    break;
+            }
+        }
+        return parseMenuOption(line, handler);
+    }
+
+    /**
+     * Parse a line like {@code Loading: SomeMod v1.2.3}, ignoring a trailing carriage return.
+     */
+    private static @Nullable String parseModName(final String line) {
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            end--;
+        }
+        final int separatorIndex = line.lastIndexOf(MOD_VERSION_SEPARATOR, end - 1);
+        final int versionStart = separatorIndex + MOD_VERSION_SEPARATOR.length();
+        if (separatorIndex <= MOD_LOADING_PREFIX.length() || versionStart >= end) {
+            return null;
+        }
+        for (int i = versionStart; i < end; i++) {
+            final char character = line.charAt(i);
+            if (character != '.' && (character < '0' || character > '9')) {
+                return null;
+            }
+        }
+        return line.substring(MOD_LOADING_PREFIX.length(), end);
+    }
+
+    /**
+     * Parse a line like {@code 1\t\tSome option}: a number, one or more tabs and a label without tabs.
+     */
+    private static boolean parseMenuOption(final String line, final LineHandler handler) {
+        int i = 0;
+        while (i < line.length() && line.charAt(i) >= '0' && line.charAt(i) <= '9') {
+            i++;
+        }
+        final int idEnd = i;
+        if (idEnd == 0 || idEnd > MAX_OPTION_ID_LENGTH) {
+            return false;
+        }
+        while (i < line.length() && line.charAt(i) == '\t') {
+            i++;
+        }
+        final int labelStart = i;
+        if (labelStart == idEnd || labelStart >= line.length() || line.indexOf('\t', labelStart) >= 0) {
+            return false;
+        }
+        handler.onMenuOption(Integer.parseInt(line.substring(0, idEnd)), line.substring(labelStart));
+        return true;
+    }
+
+    private enum RuleType {
+        TRANSITION,
+        MODS_CLEARED,
+        MOD_LOADED,
+    }
+
+    @RequiredArgsConstructor
+    private static class Rule {
+
+        private final RuleType type;
+
+        private final @Nullable TerrariaInstanceState targetState;
+
+        private boolean matches(final String line) {
+            switch (type) {
+                case MODS_CLEARED:
+                    return MOD_CLEAR_LINES.contains(line);
+                case MOD_LOADED:
+                    return parseModName(line) != null;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Receives what an output line means for an instance.
+     */
+    public interface LineHandler {
+
+        void onStateReached(final TerrariaInstanceState newState);
+
+        void onModsCleared();
+
+        void onModLoaded(final String modName);
+
+        void onMenuOption(final int id, final String label);
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.services.util.PatternRedactionRule;
+import io.github.mewore.tsw.services.util.RedactionRule;
+import io.github.mewore.tsw.services.util.TokenRedactionRule;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The kinds of sensitive information that can be hidden from the output of an instance before it is saved.
+ */
+@RequiredArgsConstructor
+public enum TerrariaOutputRedaction {
+
+    /**
+     * An IPv4 address with a port, e.g. in {@code 1.2.3.4:5678 is connecting...}.
+     */
+    IP_ADDRESS(new PatternRedactionRule(":", Pattern.compile("\\b\\d{1,3}(?:\\.\\d{1,3}){3}:\\d{1,6}\\b"),
+            "[REDACTED IP]")),
+
+    /**
+     * A 64-bit Steam ID, all of which start with the same digits.
+     */
+    STEAM_ID(new PatternRedactionRule("7656119", Pattern.compile("\\b7656119\\d{10}\\b"), "[REDACTED STEAM ID]")),
+
+    /**
+     * The password of the instance, if it is echoed back after being entered.
+     */
+    PASSWORD(null);
+
+    private static final String PASSWORD_REPLACEMENT = "[REDACTED PASSWORD]";
+
+    private final @Nullable RedactionRule sharedRule;
+
+    /**
+     * @param instance The instance whose output is to be redacted. It is retrieved anew for every line.
+     * @return The rule that hides this kind of information.
+     */
+    RedactionRule makeRule(final Supplier<TerrariaInstanceEntity> instance) {
+        final @Nullable RedactionRule rule = sharedRule;
+        if (rule != null) {
+            return rule;
+        }
+        return new TokenRedactionRule(() -> instance.get().getPassword(), PASSWORD_REPLACEMENT);
+    }
+}
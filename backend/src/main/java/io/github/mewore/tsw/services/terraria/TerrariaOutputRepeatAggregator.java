@@ -0,0 +1,130 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Collapses runs of repeated output lines (e.g. a warning that a mod prints hundreds of times per second) so that they
+ * do not each become an event. The first line of a run is let through as it is and the ones that follow it within the
+ * window are counted instead; when the run ends, a single line like <code>&lt;line&gt; (repeated 842&times;)</code> is
+ * let through in their place.
+ * <p>
+ * Lines are considered the same if they only differ in their numbers (e.g. coordinates or timestamps).
+ */
+class TerrariaOutputRepeatAggregator {
+
+    private final long windowNanos;
+
+    private final StringBuilder keyBuilder = new StringBuilder();
+
+    private @Nullable String runKey;
+
+    private String runLine = "";
+
+    private long runStartNanos = 0;
+
+    private long repeatCount = 0;
+
+    /**
+     * @param windowNanos The longest time that a run of repeated lines can last, counted from its first line. Zero
+     *                    means that lines are never collapsed.
+     */
+    TerrariaOutputRepeatAggregator(final long windowNanos) {
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Make the key by which repetitions are recognized: the line without its surrounding whitespace and with every
+     * sequence of digits replaced by a single {@code #}.
+     */
+    private String makeKey(final String line) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        keyBuilder.setLength(0);
+        boolean inNumber = false;
+        for (int i = start; i < end; i++) {
+            final char character = line.charAt(i);
+            if (character >= '0' && character <= '9') {
+                if (!inNumber) {
+                    keyBuilder.append('#');
+                    inNumber = true;
+                }
+            } else {
+                keyBuilder.append(character);
+                inNumber = false;
+            }
+        }
+        return keyBuilder.toString();
+    }
+
+    /**
+     * Add an output line.
+     *
+     * @param line     The line, including its line break.
+     * @param nowNanos The current {@link System#nanoTime()}.
+     * @return The lines to turn into events, in order; empty if the line is a repetition.
+     */
+    List<String> add(final String line, final long nowNanos) {
+        if (windowNanos <= 0) {
+            return List.of(line);
+        }
+        final String key = makeKey(line);
+        if (key.equals(runKey) && nowNanos - runStartNanos < windowNanos) {
+            repeatCount++;
+            return Collections.emptyList();
+        }
+        final List<String> result = new ArrayList<>(2);
+        final @Nullable String summary = finish();
+        if (summary != null) {
+            result.add(summary);
+        }
+        result.add(line);
+        runKey = key;
+        runLine = line;
+        runStartNanos = nowNanos;
+        return result;
+    }
+
+    /**
+     * End the current run if its window has passed.
+     *
+     * @param nowNanos The current {@link System#nanoTime()}.
+     * @return The summary of the repetitions in the run, or {@code null} if there is nothing to let through.
+     */
+    @Nullable String finishIfExpired(final long nowNanos) {
+        return runKey != null && nowNanos - runStartNanos >= windowNanos ? finish() : null;
+    }
+
+    /**
+     * End the current run, e.g. because a line which is not collapsed has arrived.
+     *
+     * @return The summary of the repetitions in the run, or {@code null} if there is nothing to let through.
+     */
+    @Nullable String finish() {
+        final long currentRepeatCount = repeatCount;
+        runKey = null;
+        repeatCount = 0;
+        if (currentRepeatCount == 0) {
+            return null;
+        }
+        final String lineBreak = runLine.endsWith("\n") ? "\n" : "";
+        return runLine.substring(0, runLine.length() - lineBreak.length()) +
+                String.format(" (repeated %d\u00d7)", currentRepeatCount) + lineBreak;
+    }
+
+    /**
+     * @return The number of repetitions that have been collapsed in the current run so far.
+     */
+    long getRepeatCount() {
+        return repeatCount;
+    }
+}
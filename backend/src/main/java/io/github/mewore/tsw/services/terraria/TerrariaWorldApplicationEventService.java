@@ -1,5 +1,7 @@
 package io.github.mewore.tsw.services.terraria;
 
+import javax.annotation.PostConstruct;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.event.EventListener;
@@ -21,6 +23,11 @@ public class TerrariaWorldApplicationEventService {
 
     private final TerrariaWorldMessageService terrariaWorldMessageService;
 
+    @PostConstruct
+    void setUp() {
+        worldDeletionPublisher.setName("world-deletions");
+    }
+
     /**
      * Acknowledge an event of the deletion of a world.
      *
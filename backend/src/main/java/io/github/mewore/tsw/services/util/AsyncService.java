@@ -5,6 +5,7 @@ import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -18,12 +19,37 @@ public class AsyncService {
 
     public final ExecutorService commonExecutor = Executors.newCachedThreadPool();
 
+    private final ScheduledExecutorService delayedExecutor = Executors.newSingleThreadScheduledExecutor();
+
     public Future<?> scheduleAtFixedRate(final Runnable command, final Duration initialDelay, final Duration period) {
 
         return new ScheduledThreadPoolExecutor(1).scheduleAtFixedRate(command, initialDelay.toMillis(),
                 period.toMillis(), TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Run a short task once after a delay. All such tasks share a single thread so they must not block.
+     *
+     * @param command The task to run.
+     * @param delay   The delay after which to run it.
+     * @return The future of the task, which can be used to cancel it.
+     */
+    public Future<?> schedule(final Runnable command, final Duration delay) {
+        return delayedExecutor.schedule(command, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Run a task once after a delay in a thread of the common executor, so unlike with {@link #schedule}, the task may
+     * block. The delay is still measured by the shared thread, which only hands the task over.
+     *
+     * @param command The task to run.
+     * @param delay   The delay after which to run it.
+     * @return The future of the handover, which can be used to cancel the task before it has been handed over.
+     */
+    public Future<?> scheduleInThread(final Runnable command, final Duration delay) {
+        return schedule(() -> runInThread(command), delay);
+    }
+
     public void runInThread(final Runnable target) {
         commonExecutor.submit(target);
     }
@@ -31,5 +57,6 @@ public class AsyncService {
     @PreDestroy
     void preDestroy() {
         commonExecutor.shutdownNow();
+        delayedExecutor.shutdown();
     }
 }
@@ -8,12 +8,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -40,7 +45,7 @@ public class FileService {
 
     private final Logger logger = LogManager.getLogger(getClass());
 
-    private final AsyncService asyncService;
+    private final FileWatchHub fileWatchHub;
 
     public boolean exists(final @NonNull File file) {
         return file.exists();
@@ -82,9 +87,30 @@ public class FileService {
         return new FileInputStream(file);
     }
 
+    /**
+     * Read a file compressed with gzip.
+     *
+     * @param file The file.
+     * @return A stream of the decompressed content of the file.
+     * @throws IOException If opening the file fails or it is not compressed with gzip.
+     */
+    public InputStream readCompressedFileInStream(final @NonNull File file) throws IOException {
+        final InputStream fileInputStream = readFileInStream(file);
+        try {
+            return new GZIPInputStream(fileInputStream);
+        } catch (final IOException e) {
+            fileInputStream.close();
+            throw e;
+        }
+    }
+
     public FileTail tail(final File file, final long startPosition, final FileTailEventConsumer eventConsumer) {
         final FileTail tail = new FileTail(file, startPosition, eventConsumer);
-        asyncService.runInThread(tail);
+        try {
+            fileWatchHub.register(tail);
+        } catch (final IOException | RuntimeException e) {
+            logger.error("Failed to start tailing file " + file.getAbsolutePath(), e);
+        }
         return tail;
     }
 
@@ -205,6 +231,35 @@ public class FileService {
         return outputStream.toByteArray();
     }
 
+    /**
+     * Write a part of a file to a stream. The bytes are copied through a buffer because the target is a stream and not
+     * a channel of a file or socket; sending a file without copying it (e.g. with {@code sendfile}) is up to the
+     * servlet container.
+     *
+     * @param file     The file.
+     * @param position The position in the file from which to start.
+     * @param count    The number of bytes to write. If the file ends earlier, only the bytes until its end are written.
+     * @param target   The stream to write to.
+     * @return The number of written bytes.
+     * @throws IOException If reading the file or writing to the stream fails.
+     */
+    public long transferTo(final @NonNull File file, final long position, final long count,
+            final @NonNull OutputStream target) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final WritableByteChannel targetChannel = Channels.newChannel(target);
+            long transferred = 0;
+            while (transferred < count) {
+                final long transferredNow = channel.transferTo(position + transferred, count - transferred,
+                        targetChannel);
+                if (transferredNow <= 0) {
+                    break;
+                }
+                transferred += transferredNow;
+            }
+            return transferred;
+        }
+    }
+
     public File[] listFilesWithExtensions(final @NonNull File directory, final @NonNull String... extensions) {
         final File[] result = directory.listFiles(pathname -> pathname.isFile() &&
                 Arrays.stream(extensions).anyMatch(extension -> pathname.getName().endsWith("." + extension)));
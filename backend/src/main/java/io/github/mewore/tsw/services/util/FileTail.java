@@ -1,71 +1,97 @@
 package io.github.mewore.tsw.services.util;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import lombok.RequiredArgsConstructor;
+import lombok.Getter;
 import lombok.Synchronized;
 
-@RequiredArgsConstructor
-public class FileTail implements Runnable {
+/**
+ * The tail of a single file. It does not watch the file by itself; instead, the {@link FileWatchHub} that it is
+ * registered in passes the events of the file to it.
+ * <p>
+ * The file is kept open between reads and its identity (its inode, where there is one) is tracked, so the tail notices
+ * when the file is truncated or replaced by another one (e.g. when it is rotated) and continues from the beginning of
+ * the current file without rereading anything. Whatever has been written to a file before it has been replaced or
+ * deleted is still read.
+ */
+public class FileTail {
 
-    private final File file;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_SEGMENT_NUMBER_LENGTH = 9;
 
-    private final long startPosition;
+    @Getter
+    private final File file;
 
     private final FileTailEventConsumer eventConsumer;
 
-    private Logger logger = LogManager.getLogger(getClass());
+    private final Logger logger;
 
     private long position;
 
+    private @Nullable ByteBuffer readBuffer;
+
+    private @Nullable FileChannel channel;
+
+    private @Nullable Object channelFileIdentity;
+
+    private int lastSegmentNumber = -1;
+
+    private volatile long rotationSize = 0;
+
+    private volatile int keptSegmentCount = 0;
+
     private volatile boolean shouldProcessEvents = true;
 
     private volatile boolean shouldReadFile = true;
 
-    @Override
-    public void run() {
+    private volatile @Nullable Runnable onStopped;
+
+    public FileTail(final File file, final long startPosition, final FileTailEventConsumer eventConsumer) {
+        this.file = file;
+        this.eventConsumer = eventConsumer;
         position = startPosition;
         logger = LogManager.getLogger(
                 String.format("%s of file %s", getClass().getSimpleName(), file.getAbsolutePath()));
-        final @Nullable File parent = file.getParentFile();
-        if (parent == null) {
-            logger.error("File {} does not have a parent! Cannot tail it.", file.getAbsolutePath());
-            return;
-        }
-        logger.info("Tailing file: {}", file.getAbsolutePath());
-        try (final WatchService watchService = FileSystems.getDefault().newWatchService()) {
-            if (file.exists()) {
-                readFile();
-            }
+    }
 
-            WatchKey watchKey = parent.toPath()
-                    .register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
-                            StandardWatchEventKinds.ENTRY_DELETE);
-            while (watchKey.isValid()) {
-                watchKey = watchService.take();
-                if (!shouldProcessEvents || !processEvents(watchKey) || !watchKey.reset()) {
-                    break;
-                }
-            }
-        } catch (final InterruptedException e) {
-            logger.warn("Interrupted while watching for changes to the file.", e);
-            Thread.currentThread().interrupt();
-        } catch (final IOException | RuntimeException e) {
-            logger.error("Encountered an unexpected exception while tailing the file.", e);
-        }
+    /**
+     * Roll the file into numbered segments ({@code <name>.1}, {@code <name>.2}, etc.) once all of it has been read and
+     * it has reached a specific size. The file is copied and then truncated, so whatever writes to it should append to
+     * it. If anything is written while the file is being copied, the rotation is retried after it has been read.
+     * Anything that is written in between checking the size of the file right after the copying and truncating it is
+     * lost, since the writer cannot be told to switch to another file.
+     *
+     * @param newRotationSize The size in bytes that the file should reach in order to be rolled, or 0 for it to never
+     *                        be rolled.
+     */
+    public void setRotationSize(final long newRotationSize) {
+        rotationSize = newRotationSize;
+    }
+
+    /**
+     * @param newKeptSegmentCount The number of the newest segments to keep when the file is rolled; the older ones are
+     *                            deleted. If it is 0, all segments are kept.
+     */
+    public void setKeptSegmentCount(final int newKeptSegmentCount) {
+        keptSegmentCount = newKeptSegmentCount;
     }
 
     /**
@@ -84,69 +110,268 @@ public class FileTail implements Runnable {
     @Synchronized
     public void stop() {
         shouldProcessEvents = false;
+        closeChannel();
+        final @Nullable Runnable currentOnStopped = onStopped;
+        onStopped = null;
+        if (currentOnStopped != null) {
+            currentOnStopped.run();
+        }
+    }
+
+    public boolean isStopped() {
+        return !shouldProcessEvents;
+    }
+
+    /**
+     * @param newOnStopped The action to run once when this tail is stopped.
+     */
+    void setOnStopped(final @Nullable Runnable newOnStopped) {
+        onStopped = newOnStopped;
     }
 
     /**
-     * Process the events of a watch key.
+     * Process an event of the file.
      *
-     * @param watchKey The watch key to process the events of.
-     * @return Whether watching should continue.
-     * @throws InterruptedException If a blocking operation is interrupted.
+     * @param kind The kind of the event.
      */
     @Synchronized
-    private boolean processEvents(final WatchKey watchKey) throws InterruptedException {
-        for (final WatchEvent<?> event : watchKey.pollEvents()) {
-            final Path eventPath = (Path) event.context();
-            if (eventPath == null || !eventPath.toString().equals(file.getName())) {
-                continue;
-            }
-            final WatchEvent.Kind<?> kind = event.kind();
-
-            try {
-                if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-                    logger.info("File '{}' has been CREATED.", file.getAbsolutePath());
-                    eventConsumer.onFileCreated();
-                    readFile();
-                } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-                    readFile();
-                } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
-                    logger.info("File '{}' has been DELETED.", file.getAbsolutePath());
-                    eventConsumer.onFileDeleted();
-                } else {
-                    logger.warn("Unexpected event kind encountered for file {}: {}", file.getAbsolutePath(),
-                            kind.name());
+    void processEvent(final WatchEvent.Kind<?> kind) {
+        if (!shouldProcessEvents) {
+            return;
+        }
+        try {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                logger.info("File '{}' has been CREATED.", file.getAbsolutePath());
+                if (channel != null && isReplaced()) {
+                    readOpenFile();
+                }
+                closeChannel();
+                position = 0;
+                eventConsumer.onFileCreated();
+                readFile();
+            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                readFile();
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                logger.info("File '{}' has been DELETED.", file.getAbsolutePath());
+                if (channel != null) {
+                    readOpenFile();
                 }
-            } catch (final RuntimeException e) {
-                logger.error("Encountered an exception while handling a [" + kind.name() + "] event of file " +
-                        file.getAbsolutePath(), e);
+                closeChannel();
+                eventConsumer.onFileDeleted();
+            } else {
+                logger.warn("Unexpected event kind encountered for file {}: {}", file.getAbsolutePath(), kind.name());
             }
+        } catch (final RuntimeException e) {
+            logger.error("Encountered an exception while handling a [" + kind.name() + "] event of file " +
+                    file.getAbsolutePath(), e);
         }
-        return true;
     }
 
     @Synchronized
-    private void readFile() throws InterruptedException {
+    private void readFile() {
         if (!shouldReadFile) {
             logger.info("Skipping reading file " + file.getAbsolutePath());
             return;
         }
-        try (final FileInputStream inputStream = new FileInputStream(file)) {
+        try {
+            FileChannel currentChannel = getChannel();
             eventConsumer.onReadStarted();
-            final long skippedBytes = inputStream.skip(position);
-            if (skippedBytes < position) {
-                logger.warn("Tried to skip {} bytes in the file {} but only {} were skipped!", position,
-                        file.getAbsolutePath(), skippedBytes);
+            final long fileSize = currentChannel.size();
+            if (fileSize < position) {
+                logger.warn("The file {} has been truncated from at least {} to {} bytes; reading it from the start",
+                        file.getAbsolutePath(), position, fileSize);
+                resetPosition();
+            } else {
+                final long readPosition = eventConsumer.chooseReadPosition(position, fileSize);
+                if (readPosition > position && readPosition <= fileSize) {
+                    logger.info("Skipping {} bytes of file {}", readPosition - position, file.getAbsolutePath());
+                    position = readPosition;
+                }
             }
-            int b = inputStream.read();
-            while (b >= 0) {
-                eventConsumer.onCharacter((char) b, position++);
-                b = inputStream.read();
+            readUntilEnd(currentChannel);
+            if (isReplaced()) {
+                logger.info("The file {} has been replaced; reading the new one from the start",
+                        file.getAbsolutePath());
+                closeChannel();
+                currentChannel = getChannel();
+                resetPosition();
+                readUntilEnd(currentChannel);
             }
-        } catch (final FileNotFoundException e) {
+            rotateIfNecessary(currentChannel);
+        } catch (final NoSuchFileException e) {
             logger.error("File not found!", e);
         } catch (final IOException | RuntimeException e) {
             logger.error("Encountered an IOException while reading the lines of file " + file.getAbsolutePath(), e);
         }
         eventConsumer.onReadFinished(position);
     }
+
+    /**
+     * Read the rest of the file that is currently open, even if it is no longer at the path of the tailed file.
+     */
+    private void readOpenFile() {
+        final @Nullable FileChannel currentChannel = channel;
+        if (currentChannel == null || !shouldReadFile) {
+            return;
+        }
+        try {
+            eventConsumer.onReadStarted();
+            readUntilEnd(currentChannel);
+        } catch (final IOException | RuntimeException e) {
+            logger.error("Encountered an exception while reading the rest of the previous file " +
+                    file.getAbsolutePath(), e);
+        }
+        eventConsumer.onReadFinished(position);
+    }
+
+    private void readUntilEnd(final FileChannel currentChannel) throws IOException {
+        currentChannel.position(position);
+        final ByteBuffer buffer = getReadBuffer();
+        buffer.clear();
+        while (currentChannel.read(buffer) > 0) {
+            buffer.flip();
+            final int chunkSize = buffer.remaining();
+            eventConsumer.onChunk(buffer, position);
+            position += chunkSize;
+            buffer.clear();
+        }
+    }
+
+    private void resetPosition() {
+        position = 0;
+        eventConsumer.onFileReset();
+    }
+
+    private FileChannel getChannel() throws IOException {
+        final @Nullable FileChannel currentChannel = channel;
+        if (currentChannel != null && currentChannel.isOpen()) {
+            return currentChannel;
+        }
+        final FileChannel newChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        channel = newChannel;
+        channelFileIdentity = getFileIdentity();
+        return newChannel;
+    }
+
+    private void closeChannel() {
+        final @Nullable FileChannel currentChannel = channel;
+        channel = null;
+        channelFileIdentity = null;
+        if (currentChannel == null) {
+            return;
+        }
+        try {
+            currentChannel.close();
+        } catch (final IOException e) {
+            logger.warn("Failed to close file " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return Whether the path of the tailed file leads to a different file than the one that is open.
+     */
+    private boolean isReplaced() {
+        final @Nullable Object fileIdentity = getFileIdentity();
+        return fileIdentity != null && channelFileIdentity != null && !fileIdentity.equals(channelFileIdentity);
+    }
+
+    /**
+     * @return The inode of the file (or its creation time on file systems without inodes), or {@code null} if the
+     * file does not exist.
+     */
+    private @Nullable Object getFileIdentity() {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            final @Nullable Object fileKey = attributes.fileKey();
+            return fileKey != null ? fileKey : attributes.creationTime();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    private void rotateIfNecessary(final FileChannel currentChannel) throws IOException {
+        final long currentRotationSize = rotationSize;
+        if (currentRotationSize <= 0 || position < currentRotationSize) {
+            return;
+        }
+        final Path segment = getNextSegmentPath();
+        try (final FileChannel writableChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            try (final FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                long copiedByteCount = 0;
+                while (copiedByteCount < position) {
+                    copiedByteCount += currentChannel.transferTo(copiedByteCount, position - copiedByteCount,
+                            segmentChannel);
+                }
+            }
+            // Checking the size and truncating right after each other keeps the window in which output can be lost
+            // as short as possible
+            if (writableChannel.size() != position) {
+                // More has been written in the meantime; try again once it has been read
+                Files.delete(segment);
+                return;
+            }
+            writableChannel.truncate(0);
+        }
+        lastSegmentNumber++;
+        logger.info("Rolled {} bytes of file {} into {}", position, file.getAbsolutePath(), segment);
+        resetPosition();
+        deleteOldSegments();
+    }
+
+    private Path getNextSegmentPath() throws IOException {
+        if (lastSegmentNumber < 0) {
+            lastSegmentNumber = findSegments().keySet().stream().max(Integer::compare).orElse(0);
+        }
+        return getSegmentPath(lastSegmentNumber + 1);
+    }
+
+    private void deleteOldSegments() throws IOException {
+        final int currentKeptSegmentCount = keptSegmentCount;
+        if (currentKeptSegmentCount <= 0) {
+            return;
+        }
+        for (final Map.Entry<Integer, Path> segment : findSegments().entrySet()) {
+            if (segment.getKey() <= lastSegmentNumber - currentKeptSegmentCount) {
+                Files.deleteIfExists(segment.getValue());
+                logger.info("Deleted old segment {}", segment.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return The existing segments of the file by their number.
+     */
+    private Map<Integer, Path> findSegments() throws IOException {
+        final Path filePath = file.toPath().toAbsolutePath();
+        final String segmentPrefix = filePath.getFileName() + ".";
+        final @Nullable Path directory = filePath.getParent();
+        final Map<Integer, Path> result = new HashMap<>();
+        if (directory == null) {
+            return result;
+        }
+        try (final DirectoryStream<Path> segments = Files.newDirectoryStream(directory, segmentPrefix + "[0-9]*")) {
+            for (final Path segment : segments) {
+                final String suffix = segment.getFileName().toString().substring(segmentPrefix.length());
+                if (suffix.length() <= MAX_SEGMENT_NUMBER_LENGTH && suffix.chars().allMatch(Character::isDigit)) {
+                    result.put(Integer.parseInt(suffix), segment);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Path getSegmentPath(final int segmentNumber) {
+        final Path filePath = file.toPath().toAbsolutePath();
+        return filePath.resolveSibling(filePath.getFileName() + "." + segmentNumber);
+    }
+
+    private ByteBuffer getReadBuffer() {
+        @Nullable ByteBuffer buffer = readBuffer;
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            readBuffer = buffer;
+        }
+        return buffer;
+    }
 }
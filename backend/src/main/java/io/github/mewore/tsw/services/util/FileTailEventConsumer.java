@@ -1,14 +1,42 @@
 package io.github.mewore.tsw.services.util;
 
+import java.nio.ByteBuffer;
+
 public interface FileTailEventConsumer {
 
     void onFileCreated();
 
     void onReadStarted();
 
-    void onCharacter(final char character, final long position);
+    /**
+     * Choose where to continue reading the file from, e.g. in order to skip a backlog that is too large to process.
+     * Called right after {@link #onReadStarted()}.
+     *
+     * @param position The position right after the last byte that has been read.
+     * @param fileSize The current size of the file.
+     * @return The position to read from, which must be between {@code position} and {@code fileSize}.
+     */
+    default long chooseReadPosition(final long position, final long fileSize) {
+        return position;
+    }
+
+    /**
+     * Consume a chunk of the tailed file. The buffer is reused by the tail after this method returns, so its contents
+     * must be copied if they are needed afterwards.
+     *
+     * @param chunk    The bytes that have been read, between the position and the limit of the buffer.
+     * @param position The position in the file of the first byte in the chunk.
+     */
+    void onChunk(final ByteBuffer chunk, final long position);
 
     void onReadFinished(final long position);
 
+    /**
+     * Called when the tailed file has been truncated or replaced by another file, after which it is read from the
+     * start. Any partial line at the end of what has been read so far stays incomplete.
+     */
+    default void onFileReset() {
+    }
+
     void onFileDeleted();
 }
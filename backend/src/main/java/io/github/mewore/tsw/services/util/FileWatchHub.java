@@ -0,0 +1,287 @@
+package io.github.mewore.tsw.services.util;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Watches all tailed files with a single {@link WatchService} and a single dispatcher thread. The events of each file
+ * are routed to its {@link FileTail} and processed on a bounded pool of worker threads, one event of a file at a time.
+ */
+@RequiredArgsConstructor
+@Service
+public class FileWatchHub implements MetricsSource {
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final AsyncService asyncService;
+
+    private final ConcurrentMap<Path, Registration> registrations = new ConcurrentHashMap<>();
+
+    private final Map<Path, DirectoryWatch> directoryWatches = new HashMap<>();
+
+    private final AtomicInteger queuedEventCount = new AtomicInteger();
+
+    /**
+     * The registrations that could not be passed to the worker pool because its queue was full. They are processed by
+     * the workers after they are done with their current task.
+     */
+    private final Queue<Registration> deferredRegistrations = new ConcurrentLinkedQueue<>();
+
+    @Getter
+    private final DurationStatistics readLatency = new DurationStatistics();
+
+    @Value("${tsw.file-watch.worker-threads:4}")
+    private int workerThreadCount = 4;
+
+    @Value("${tsw.file-watch.queue-capacity:1024}")
+    private int workerQueueCapacity = 1024;
+
+    private @Nullable WatchService watchService;
+
+    private @Nullable ThreadPoolExecutor workerPool;
+
+    /**
+     * Start passing the events of the file of a tail to it. If the file already exists, it is read right away.
+     *
+     * @param tail The tail to register.
+     * @throws IOException If watching the parent directory of the file fails.
+     */
+    public void register(final FileTail tail) throws IOException {
+        final Path filePath = normalize(tail.getFile());
+        final @Nullable Path directory = filePath.getParent();
+        if (directory == null) {
+            throw new IllegalArgumentException("File " + filePath + " does not have a parent! Cannot tail it.");
+        }
+        final Registration registration = new Registration(tail);
+        synchronized (directoryWatches) {
+            if (registrations.putIfAbsent(filePath, registration) != null) {
+                throw new IllegalStateException("The file " + filePath + " is already being tailed");
+            }
+            try {
+                watchDirectory(directory);
+            } catch (final IOException | RuntimeException e) {
+                registrations.remove(filePath);
+                throw e;
+            }
+        }
+        tail.setOnStopped(() -> unregister(filePath, registration));
+        logger.info("Tailing file: {}", filePath);
+        if (tail.getFile().exists()) {
+            schedule(registration, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+
+    public int getRegisteredFileCount() {
+        return registrations.size();
+    }
+
+    public int getQueuedEventCount() {
+        return queuedEventCount.get();
+    }
+
+    @Override
+    public void writeMetrics(final PrometheusTextWriter writer) {
+        writer.gauge("tsw_file_watch_files", "The number of files that are being tailed.", getRegisteredFileCount());
+        writer.gauge("tsw_file_watch_queued_events", "The number of file events waiting to be processed.",
+                getQueuedEventCount());
+        writer.durations("tsw_file_watch_event_seconds", "The time it takes to process a file event.", readLatency);
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        synchronized (directoryWatches) {
+            final @Nullable WatchService currentWatchService = watchService;
+            if (currentWatchService != null) {
+                try {
+                    currentWatchService.close();
+                } catch (final IOException e) {
+                    logger.error("Failed to close the watch service", e);
+                }
+            }
+            final @Nullable ThreadPoolExecutor currentWorkerPool = workerPool;
+            if (currentWorkerPool != null) {
+                currentWorkerPool.shutdownNow();
+            }
+        }
+    }
+
+    private void unregister(final Path filePath, final Registration registration) {
+        synchronized (directoryWatches) {
+            if (!registrations.remove(filePath, registration)) {
+                return;
+            }
+            final @Nullable Path directory = filePath.getParent();
+            final @Nullable DirectoryWatch directoryWatch = directory == null ? null : directoryWatches.get(directory);
+            if (directoryWatch != null && --directoryWatch.fileCount <= 0) {
+                directoryWatch.key.cancel();
+                directoryWatches.remove(directory);
+            }
+        }
+        while (registration.pendingEvents.poll() != null) {
+            queuedEventCount.decrementAndGet();
+        }
+        logger.info("Stopped tailing file: {}", filePath);
+    }
+
+    private void watchDirectory(final Path directory) throws IOException {
+        final @Nullable DirectoryWatch existingWatch = directoryWatches.get(directory);
+        if (existingWatch != null && existingWatch.key.isValid()) {
+            existingWatch.fileCount++;
+            return;
+        }
+        final WatchKey key = directory.register(getWatchService(), StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        final DirectoryWatch newWatch = new DirectoryWatch(key);
+        if (existingWatch != null) {
+            newWatch.fileCount += existingWatch.fileCount;
+        }
+        directoryWatches.put(directory, newWatch);
+    }
+
+    private WatchService getWatchService() throws IOException {
+        @Nullable WatchService currentWatchService = watchService;
+        if (currentWatchService == null) {
+            final WatchService newWatchService = FileSystems.getDefault().newWatchService();
+            currentWatchService = newWatchService;
+            watchService = newWatchService;
+            workerPool = new ThreadPoolExecutor(workerThreadCount, workerThreadCount, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(workerQueueCapacity));
+            asyncService.runInThread(() -> dispatchEvents(newWatchService));
+        }
+        return currentWatchService;
+    }
+
+    private void dispatchEvents(final WatchService currentWatchService) {
+        try {
+            while (true) {
+                final WatchKey key = currentWatchService.take();
+                final Path directory = (Path) key.watchable();
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    dispatchEvent(directory, event);
+                }
+                key.reset();
+            }
+        } catch (final InterruptedException e) {
+            logger.warn("Interrupted while watching for file changes", e);
+            Thread.currentThread().interrupt();
+        } catch (final ClosedWatchServiceException e) {
+            logger.info("The watch service has been closed");
+        }
+    }
+
+    private void dispatchEvent(final Path directory, final WatchEvent<?> event) {
+        final WatchEvent.Kind<?> kind = event.kind();
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            logger.warn("Some events in directory {} have been lost; rereading all tailed files in it", directory);
+            for (final Map.Entry<Path, Registration> entry : registrations.entrySet()) {
+                if (directory.equals(entry.getKey().getParent())) {
+                    schedule(entry.getValue(), StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+            }
+            return;
+        }
+        final @Nullable Object context = event.context();
+        if (!(context instanceof Path)) {
+            return;
+        }
+        final @Nullable Registration registration = registrations.get(directory.resolve((Path) context));
+        if (registration != null) {
+            schedule(registration, kind);
+        }
+    }
+
+    private void schedule(final Registration registration, final WatchEvent.Kind<?> kind) {
+        registration.pendingEvents.add(kind);
+        queuedEventCount.incrementAndGet();
+        final @Nullable ThreadPoolExecutor currentWorkerPool = workerPool;
+        if (currentWorkerPool == null || !registration.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            currentWorkerPool.execute(() -> processEvents(registration));
+        } catch (final RejectedExecutionException e) {
+            if (currentWorkerPool.isShutdown()) {
+                return;
+            }
+            // The registration stays scheduled, so its next events are only queued until a worker gets to it
+            deferredRegistrations.add(registration);
+        }
+    }
+
+    private void processEvents(final Registration firstRegistration) {
+        @Nullable Registration registration = firstRegistration;
+        while (registration != null) {
+            processRegistrationEvents(registration);
+            registration = deferredRegistrations.poll();
+        }
+    }
+
+    private void processRegistrationEvents(final Registration registration) {
+        do {
+            WatchEvent.@Nullable Kind<?> kind;
+            while ((kind = registration.pendingEvents.poll()) != null) {
+                queuedEventCount.decrementAndGet();
+                if (kind == StandardWatchEventKinds.ENTRY_MODIFY &&
+                        registration.pendingEvents.peek() == StandardWatchEventKinds.ENTRY_MODIFY) {
+                    // The next event reads the file until its end anyway
+                    continue;
+                }
+                final long startTime = System.nanoTime();
+                registration.tail.processEvent(kind);
+                readLatency.record(System.nanoTime() - startTime);
+            }
+            registration.scheduled.set(false);
+        } while (!registration.pendingEvents.isEmpty() && registration.scheduled.compareAndSet(false, true));
+    }
+
+    private static Path normalize(final File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    @RequiredArgsConstructor
+    private static class Registration {
+
+        private final FileTail tail;
+
+        private final Queue<WatchEvent.Kind<?>> pendingEvents = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    @RequiredArgsConstructor
+    private static class DirectoryWatch {
+
+        private final WatchKey key;
+
+        private int fileCount = 1;
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.mewore.tsw.services.util;
+
+/**
+ * A service which exposes metrics about itself.
+ */
+public interface MetricsSource {
+
+    /**
+     * Write the current values of the metrics of this service.
+     *
+     * @param writer The writer to write the metrics to.
+     */
+    void writeMetrics(final PrometheusTextWriter writer);
+}
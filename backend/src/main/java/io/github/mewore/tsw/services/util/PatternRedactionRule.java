@@ -0,0 +1,36 @@
+package io.github.mewore.tsw.services.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces all matches of a precompiled pattern. The pattern is only run on text which contains a literal that every
+ * match must contain, so most text is skipped after a simple search.
+ */
+public class PatternRedactionRule implements RedactionRule {
+
+    private final String requiredLiteral;
+
+    private final Pattern pattern;
+
+    private final String replacement;
+
+    /**
+     * @param requiredLiteral A literal which is contained in every match of the pattern.
+     * @param pattern         The pattern of the sensitive text.
+     * @param replacement     The literal text to replace every match with.
+     */
+    public PatternRedactionRule(final String requiredLiteral, final Pattern pattern, final String replacement) {
+        this.requiredLiteral = requiredLiteral;
+        this.pattern = pattern;
+        this.replacement = Matcher.quoteReplacement(replacement);
+    }
+
+    @Override
+    public String redact(final String text) {
+        if (!text.contains(requiredLiteral)) {
+            return text;
+        }
+        return pattern.matcher(text).replaceAll(replacement);
+    }
+}
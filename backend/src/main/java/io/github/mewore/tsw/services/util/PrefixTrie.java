@@ -0,0 +1,93 @@
+package io.github.mewore.tsw.services.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A trie of string prefixes, each of which has any number of values. Finding the values whose prefixes a string
+ * starts with takes a single pass over the string, regardless of the number of prefixes.
+ * <p>
+ * The trie is meant to be built once and then only read; it is not safe to add prefixes to it while it is being read.
+ *
+ * @param <T> The type of the values.
+ */
+public class PrefixTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Add a value for a prefix. The values of the same prefix are kept in the order that they have been added in.
+     *
+     * @param prefix The prefix.
+     * @param value  The value.
+     */
+    public void put(final String prefix, final T value) {
+        Node<T> node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrAddChild(prefix.charAt(i));
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * Find the first value that satisfies a condition among the values of all prefixes of a string, going from the
+     * shortest prefix to the longest one.
+     *
+     * @param text      The string.
+     * @param condition The condition that the value should satisfy.
+     * @return The value, or {@code null} if there is no such value.
+     */
+    public @Nullable T findFirst(final String text, final Predicate<T> condition) {
+        @Nullable Node<T> node = root;
+        int i = 0;
+        while (node != null) {
+            for (final T value : node.values) {
+                if (condition.test(value)) {
+                    return value;
+                }
+            }
+            if (i >= text.length()) {
+                return null;
+            }
+            node = node.getChild(text.charAt(i++));
+        }
+        return null;
+    }
+
+    private static class Node<T> {
+
+        private static final char[] NO_KEYS = new char[0];
+
+        private final List<T> values = new ArrayList<>(1);
+
+        private char[] childKeys = NO_KEYS;
+
+        private final List<Node<T>> children = new ArrayList<>(0);
+
+        private @Nullable Node<T> getChild(final char key) {
+            final int index = Arrays.binarySearch(childKeys, key);
+            return index < 0 ? null : children.get(index);
+        }
+
+        private Node<T> getOrAddChild(final char key) {
+            final int index = Arrays.binarySearch(childKeys, key);
+            if (index >= 0) {
+                return children.get(index);
+            }
+            final int insertionIndex = -index - 1;
+            final char[] newKeys = new char[childKeys.length + 1];
+            System.arraycopy(childKeys, 0, newKeys, 0, insertionIndex);
+            System.arraycopy(childKeys, insertionIndex, newKeys, insertionIndex + 1, childKeys.length - insertionIndex);
+            newKeys[insertionIndex] = key;
+            childKeys = newKeys;
+
+            final Node<T> child = new Node<>();
+            children.add(insertionIndex, child);
+            return child;
+        }
+    }
+}
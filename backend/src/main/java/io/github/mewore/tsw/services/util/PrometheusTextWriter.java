@@ -0,0 +1,142 @@
+package io.github.mewore.tsw.services.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Collects metrics and formats them in the Prometheus text exposition format. The samples of a metric are grouped
+ * under a single description regardless of the order in which they have been added.
+ */
+public class PrometheusTextWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Map<String, MetricFamily> families = new LinkedHashMap<>();
+
+    /**
+     * Add a sample of a value that only ever increases.
+     *
+     * @param name   The name of the metric, ending with {@code _total}.
+     * @param help   The description of the metric.
+     * @param value  The value.
+     * @param labels The names and values of the labels of the sample, alternating.
+     */
+    public void counter(final String name, final String help, final double value, final String... labels) {
+        getFamily(name, help, "counter").addSample(name, labels, value);
+    }
+
+    /**
+     * Add a sample of a value that can go up and down.
+     *
+     * @param name   The name of the metric.
+     * @param help   The description of the metric.
+     * @param value  The value.
+     * @param labels The names and values of the labels of the sample, alternating.
+     */
+    public void gauge(final String name, final String help, final double value, final String... labels) {
+        getFamily(name, help, "gauge").addSample(name, labels, value);
+    }
+
+    /**
+     * Add the count and sum of a series of durations as a summary, as well as its maximum as a separate gauge
+     * called {@code <name>_max}.
+     *
+     * @param name       The name of the metric, ending with {@code _seconds}.
+     * @param help       The description of the metric.
+     * @param statistics The durations.
+     * @param labels     The names and values of the labels of the sample, alternating.
+     */
+    public void durations(final String name, final String help, final DurationStatistics statistics,
+            final String... labels) {
+        final MetricFamily summary = getFamily(name, help, "summary");
+        summary.addSample(name + "_count", labels, statistics.getCount());
+        summary.addSample(name + "_sum", labels, statistics.getTotal().toNanos() / NANOS_PER_SECOND);
+        gauge(name + "_max", "The maximum of: " + help, statistics.getMax().toNanos() / NANOS_PER_SECOND, labels);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        for (final MetricFamily family : families.values()) {
+            result.append("# HELP ").append(family.name).append(' ').append(escapeHelp(family.help)).append('\n');
+            result.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (final String sample : family.samples) {
+                result.append(sample).append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    private MetricFamily getFamily(final String name, final String help, final String type) {
+        final @Nullable MetricFamily existingFamily = families.get(name);
+        if (existingFamily != null) {
+            if (!existingFamily.type.equals(type)) {
+                throw new IllegalArgumentException(
+                        String.format("Metric %s is a %s, not a %s", name, existingFamily.type, type));
+            }
+            return existingFamily;
+        }
+        final MetricFamily newFamily = new MetricFamily(name, help, type);
+        families.put(name, newFamily);
+        return newFamily;
+    }
+
+    private static String escapeHelp(final String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String escapeLabelValue(final String value) {
+        return escapeHelp(value).replace("\"", "\\\"");
+    }
+
+    private static String formatValue(final double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    @RequiredArgsConstructor
+    private static class MetricFamily {
+
+        private final String name;
+
+        private final String help;
+
+        private final String type;
+
+        private final List<String> samples = new ArrayList<>();
+
+        private void addSample(final String sampleName, final String[] labels, final double value) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Expected label names and values to alternate");
+            }
+            final StringBuilder sample = new StringBuilder(sampleName);
+            if (labels.length > 0) {
+                sample.append('{');
+                for (int i = 0; i < labels.length; i += 2) {
+                    if (i > 0) {
+                        sample.append(',');
+                    }
+                    sample.append(labels[i]).append("=\"").append(escapeLabelValue(labels[i + 1])).append('"');
+                }
+                sample.append('}');
+            }
+            samples.add(sample.append(' ').append(formatValue(value)).toString());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.mewore.tsw.services.util;
+
+/**
+ * A rule that hides sensitive parts of a piece of text.
+ */
+@FunctionalInterface
+public interface RedactionRule {
+
+    /**
+     * @param text The text to redact.
+     * @return The text with its sensitive parts replaced, or the same text if it does not contain any.
+     */
+    String redact(final String text);
+}
@@ -0,0 +1,194 @@
+package io.github.mewore.tsw.services.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes a stream of byte chunks into lines, keeping track of the exact byte position at which each line ends.
+ * Multibyte sequences that are split between two chunks are carried over to the next chunk. The decoder reuses its
+ * character buffer and line builder, so decoding allocates nothing but the resulting line strings.
+ * <p>
+ * Only charsets in which the byte {@code '\n'} cannot be part of a multibyte sequence (e.g. UTF-8 or any
+ * single-byte charset) are supported.
+ */
+public class StreamingLineDecoder {
+
+    private static final int CHAR_BUFFER_SIZE = 8192;
+
+    private static final int CARRY_OVER_CAPACITY = 16;
+
+    private final CharsetDecoder decoder;
+
+    private final LineConsumer lineConsumer;
+
+    private final CharBuffer charBuffer = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    private final ByteBuffer carryOver = ByteBuffer.allocate(CARRY_OVER_CAPACITY);
+
+    private final StringBuilder lineBuilder = new StringBuilder();
+
+    private long decodedPosition;
+
+    public StreamingLineDecoder(final Charset charset, final LineConsumer lineConsumer) {
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.lineConsumer = lineConsumer;
+    }
+
+    /**
+     * Check whether lines in a charset can be decoded, i.e. whether a line break is encoded as the single byte
+     * {@code '\n'}. This rules out charsets like UTF-16, but not multibyte charsets whose trailing bytes may happen to
+     * be {@code '\n'}, so the charset should still be a well-known ASCII-compatible one.
+     *
+     * @param charset The charset to check.
+     * @return Whether the charset is supported.
+     */
+    public static boolean supports(final Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        final byte[] lineBreak = "\n".getBytes(charset);
+        return lineBreak.length == 1 && lineBreak[0] == '\n';
+    }
+
+    /**
+     * Decode a chunk of bytes, passing every complete line to the line consumer. The chunk is consumed entirely.
+     *
+     * @param chunk         The bytes to decode, between the position and the limit of the buffer.
+     * @param chunkPosition The position in the stream of the first byte in the chunk.
+     */
+    public void decode(final ByteBuffer chunk, final long chunkPosition) {
+        final int origin = chunk.position();
+        final int end = chunk.limit();
+        int lineStart = origin;
+        for (int i = origin; i < end; i++) {
+            if (chunk.get(i) != '\n') {
+                continue;
+            }
+            decodeRange(chunk, lineStart, i, true);
+            chunk.limit(end);
+            decodedPosition = chunkPosition + (i - origin) + 1;
+            final String line = lineBuilder.toString();
+            lineBuilder.setLength(0);
+            lineConsumer.onLine(line, decodedPosition);
+            lineStart = i + 1;
+        }
+        decodeRange(chunk, lineStart, end, false);
+        chunk.limit(end);
+        chunk.position(end);
+        decodedPosition = chunkPosition + (end - origin) - carryOver.position();
+    }
+
+    /**
+     * @return The text after the last complete line, without any bytes of an incomplete character at the end.
+     */
+    public String getPendingText() {
+        return lineBuilder.toString();
+    }
+
+    /**
+     * Discard the text after the last complete line. An incomplete character at the end is kept so that it can be
+     * completed by the next chunk.
+     */
+    public void clearPendingText() {
+        lineBuilder.setLength(0);
+    }
+
+    /**
+     * @return The position in the stream right after the last byte that has been decoded into a character.
+     */
+    public long getDecodedPosition() {
+        return decodedPosition;
+    }
+
+    /**
+     * Discard all pending text and bytes and start decoding from the specified position.
+     *
+     * @param position The position in the stream that the next chunk will start from.
+     */
+    public void reset(final long position) {
+        lineBuilder.setLength(0);
+        carryOver.clear();
+        decoder.reset();
+        decodedPosition = position;
+    }
+
+    /**
+     * Continue decoding a different stream from the specified position (e.g. after a file has been replaced). The
+     * text after the last complete line is kept, but the bytes of an incomplete character at its end are discarded.
+     *
+     * @param position The position in the new stream that the next chunk will start from.
+     */
+    public void rebase(final long position) {
+        carryOver.clear();
+        decoder.reset();
+        decodedPosition = position;
+    }
+
+    private void decodeRange(final ByteBuffer chunk, final int from, final int to, final boolean isEndOfLine) {
+        chunk.limit(to);
+        chunk.position(from);
+        if (carryOver.position() > 0) {
+            completeCarriedOverCharacter(chunk, isEndOfLine);
+        }
+        decodeAll(chunk, isEndOfLine);
+        if (isEndOfLine) {
+            flushDecoder();
+        } else if (chunk.hasRemaining()) {
+            carryOver.put(chunk);
+        }
+    }
+
+    private void completeCarriedOverCharacter(final ByteBuffer chunk, final boolean isEndOfLine) {
+        while (chunk.hasRemaining() && carryOver.position() > 0 && carryOver.hasRemaining()) {
+            carryOver.put(chunk.get());
+            carryOver.flip();
+            decodeAll(carryOver, false);
+            carryOver.compact();
+        }
+        if (isEndOfLine && carryOver.position() > 0) {
+            carryOver.flip();
+            decodeAll(carryOver, true);
+            carryOver.clear();
+        }
+    }
+
+    private void decodeAll(final ByteBuffer input, final boolean isEndOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(input, charBuffer, isEndOfInput);
+            drainCharBuffer();
+        } while (result.isOverflow());
+    }
+
+    private void flushDecoder() {
+        while (decoder.flush(charBuffer).isOverflow()) {
+            drainCharBuffer();
+        }
+        drainCharBuffer();
+        decoder.reset();
+    }
+
+    private void drainCharBuffer() {
+        charBuffer.flip();
+        lineBuilder.append(charBuffer);
+        charBuffer.clear();
+    }
+
+    @FunctionalInterface
+    public interface LineConsumer {
+
+        /**
+         * Consume a decoded line.
+         *
+         * @param line             The line, without its trailing newline character.
+         * @param nextLinePosition The position in the stream right after the newline character of the line.
+         */
+        void onLine(final String line, final long nextLinePosition);
+    }
+}
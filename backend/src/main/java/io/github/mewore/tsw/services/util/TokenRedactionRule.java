@@ -0,0 +1,48 @@
+package io.github.mewore.tsw.services.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Replaces all occurrences of a secret which are not parts of longer words. The secret is retrieved anew for every
+ * piece of text so it can change over time.
+ */
+public class TokenRedactionRule implements RedactionRule {
+
+    private final Supplier<String> secretSupplier;
+
+    private final String replacement;
+
+    public TokenRedactionRule(final Supplier<String> secretSupplier, final String replacement) {
+        this.secretSupplier = secretSupplier;
+        this.replacement = replacement;
+    }
+
+    @Override
+    public String redact(final String text) {
+        final String secret = secretSupplier.get();
+        if (secret.isEmpty()) {
+            return text;
+        }
+        int index = text.indexOf(secret);
+        if (index < 0) {
+            return text;
+        }
+        final StringBuilder result = new StringBuilder(text.length());
+        int copiedUntil = 0;
+        while (index >= 0) {
+            final int end = index + secret.length();
+            if (isWordBoundary(text, index - 1) && isWordBoundary(text, end)) {
+                result.append(text, copiedUntil, index).append(replacement);
+                copiedUntil = end;
+                index = text.indexOf(secret, end);
+            } else {
+                index = text.indexOf(secret, index + 1);
+            }
+        }
+        return copiedUntil == 0 ? text : result.append(text, copiedUntil, text.length()).toString();
+    }
+
+    private static boolean isWordBoundary(final String text, final int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+}
@@ -7,6 +7,7 @@ import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import lombok.AccessLevel;
@@ -28,6 +29,12 @@ public class TmuxService {
 
     private final Logger logger = LogManager.getLogger(getClass());
 
+    /**
+     * Whether to compress the output files of programs with gzip when archiving them.
+     */
+    @Value("${tsw.terraria.compress-archived-logs:false}")
+    private boolean compressArchivedLogs = false;
+
     private static String characterToKeyParameter(final char character) {
         switch (character) {
             case ' ': {
@@ -51,14 +58,26 @@ public class TmuxService {
         }
     }
 
+    /**
+     * Run a program in a new tmux session, writing its output to a file. When the program exits, the output file is
+     * archived next to it with the current time in its name ({@code <output file>.<time>.log}, or
+     * {@code <output file>.<time>.log.gz} if archived logs are compressed) and deleted.
+     *
+     * @param sessionName The name of the tmux session.
+     * @param program     The program to run.
+     * @param outputFile  The file to write the output of the program to.
+     */
     public void dispatch(final String sessionName, final File program, final File outputFile)
             throws ProcessTimeoutException, InterruptedException, ProcessFailureException {
         final String outputFilePath = outputFile.getAbsolutePath();
+        final String archiveCommand = compressArchivedLogs
+                ? "gzip -c \\\"%s\\\" > \\\"%s.\\$(date -u +%%Y-%%m-%%dT%%H-%%M-%%S.%%N).log.gz\\\""
+                : "cp \\\"%s\\\" \\\"%s.\\$(date -u +%%Y-%%m-%%dT%%H-%%M-%%S.%%N).log\\\"";
         final String bashCommand = String.format(
                 "tmux new-session -d -s %s \"echo -n 'Working directory: ' && pwd && " +
-                        "trap 'cp \\\"%s\\\" \\\"%s.\\$(date -u +%%Y-%%m-%%dT%%H-%%M-%%S.%%N).log\\\"; rm \\\"%s\\\"'" +
-                        " EXIT && " + "'%s' 2>&1 | tee '%s';\"", sessionName, outputFilePath, outputFilePath,
-                outputFilePath, program.getAbsolutePath(), outputFilePath);
+                        "trap '" + archiveCommand + "; rm \\\"%s\\\"'" +
+                        " EXIT && : > '%s' && '%s' 2>&1 | tee -a '%s';\"", sessionName, outputFilePath,
+                outputFilePath, outputFilePath, outputFilePath, program.getAbsolutePath(), outputFilePath);
         final ProcessTracker processTracker = runAndTrackBashCommand(bashCommand);
         processTracker.runWithTimeout(NEW_SESSION_TIMEOUT);
         checkProcessStatus(processTracker.getProcess());
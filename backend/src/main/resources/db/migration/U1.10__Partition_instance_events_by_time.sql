@@ -0,0 +1,20 @@
+DROP VIEW IF EXISTS terraria_instance_event;
+
+CREATE TABLE terraria_instance_event (
+    id int8 NOT NULL,
+    type varchar(255) NOT NULL,
+    "timestamp" timestamp NOT NULL,
+    content varchar NOT NULL,
+    instance_id int8 NOT NULL,
+    CONSTRAINT terraria_instance_event_pkey PRIMARY KEY (id),
+    CONSTRAINT terraria_instance_event_instance_fkey FOREIGN KEY (instance_id) REFERENCES terraria_instance(id)
+);
+INSERT INTO terraria_instance_event (id, type, "timestamp", content, instance_id)
+    SELECT id, type, "timestamp", content, instance_id FROM terraria_instance_event_partitioned;
+-- Drops all of the partitions along with it
+DROP TABLE terraria_instance_event_partitioned;
+
+CREATE INDEX terraria_instance_event_instance_id_id_idx ON terraria_instance_event (instance_id, id);
+CREATE INDEX terraria_instance_event_instance_id_type_id_idx ON terraria_instance_event (instance_id, type, id);
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.10__Partition_instance_events_by_time.sql';
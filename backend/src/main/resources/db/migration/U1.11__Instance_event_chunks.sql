@@ -0,0 +1,4 @@
+DROP SEQUENCE IF EXISTS terraria_instance_event_chunk_id_seq;
+DROP TABLE IF EXISTS terraria_instance_event_chunk;
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.11__Instance_event_chunks.sql';
@@ -0,0 +1,3 @@
+DROP INDEX IF EXISTS terraria_instance_event_partitioned_lower_content_trgm_idx;
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.12__Instance_event_content_search_index.sql';
@@ -0,0 +1,3 @@
+ALTER TABLE terraria_instance DROP COLUMN output_repeat_window_millis;
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.13__Instance_output_repeat_aggregation.sql';
@@ -0,0 +1,3 @@
+ALTER TABLE terraria_instance DROP COLUMN output_charset;
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.6__Instance_output_charset.sql';
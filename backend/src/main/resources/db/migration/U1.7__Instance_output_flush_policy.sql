@@ -0,0 +1,4 @@
+ALTER TABLE terraria_instance DROP COLUMN output_flush_bytes;
+ALTER TABLE terraria_instance DROP COLUMN output_flush_interval_millis;
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.7__Instance_output_flush_policy.sql';
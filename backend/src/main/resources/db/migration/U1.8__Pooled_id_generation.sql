@@ -0,0 +1,11 @@
+-- The shared sequence has to continue after the IDs that have been generated by the per-table sequences
+SELECT setval('hibernate_sequence', GREATEST((SELECT last_value FROM hibernate_sequence),
+    (SELECT COALESCE(MAX(id), 0) FROM terraria_instance_event),
+    (SELECT COALESCE(MAX(id), 0) FROM terraria_instance),
+    (SELECT COALESCE(MAX(id), 0) FROM terraria_world)));
+
+DROP SEQUENCE IF EXISTS terraria_world_id_seq;
+DROP SEQUENCE IF EXISTS terraria_instance_id_seq;
+DROP SEQUENCE IF EXISTS terraria_instance_event_id_seq;
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.8__Pooled_id_generation.sql';
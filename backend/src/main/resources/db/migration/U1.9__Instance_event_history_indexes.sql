@@ -0,0 +1,4 @@
+DROP INDEX IF EXISTS terraria_instance_event_instance_id_type_id_idx;
+DROP INDEX IF EXISTS terraria_instance_event_instance_id_id_idx;
+
+DELETE FROM flyway_schema_history WHERE script = 'V1.9__Instance_event_history_indexes.sql';
@@ -0,0 +1,77 @@
+-- The events are moved into a table that is partitioned by month so that old events can be dropped a whole partition
+-- at a time. The existing table becomes the partition of everything up to the end of the current month (without
+-- copying it), and the application creates the partitions of the following months as time goes on.
+--
+-- The partitioned table is accessed through a simple (and thus updatable) view with the old name because the JDBC
+-- driver does not list partitioned tables, so Hibernate would not find the table when validating the schema.
+
+ALTER TABLE terraria_instance_event RENAME TO terraria_instance_event_legacy;
+ALTER TABLE terraria_instance_event_legacy
+    RENAME CONSTRAINT terraria_instance_event_pkey TO terraria_instance_event_legacy_pkey;
+ALTER TABLE terraria_instance_event_legacy
+    RENAME CONSTRAINT terraria_instance_event_instance_fkey TO terraria_instance_event_legacy_instance_fkey;
+ALTER INDEX terraria_instance_event_instance_id_id_idx RENAME TO terraria_instance_event_legacy_instance_id_id_idx;
+ALTER INDEX terraria_instance_event_instance_id_type_id_idx
+    RENAME TO terraria_instance_event_legacy_instance_id_type_id_idx;
+
+CREATE TABLE terraria_instance_event_partitioned (
+    id int8 NOT NULL,
+    type varchar(255) NOT NULL,
+    "timestamp" timestamp NOT NULL,
+    content varchar NOT NULL,
+    instance_id int8 NOT NULL,
+    CONSTRAINT terraria_instance_event_partitioned_pkey PRIMARY KEY (id, "timestamp"),
+    CONSTRAINT terraria_instance_event_partitioned_instance_fkey FOREIGN KEY (instance_id)
+        REFERENCES terraria_instance(id)
+) PARTITION BY RANGE ("timestamp");
+CREATE INDEX terraria_instance_event_partitioned_instance_id_id_idx
+    ON terraria_instance_event_partitioned (instance_id, id);
+CREATE INDEX terraria_instance_event_partitioned_instance_id_type_id_idx
+    ON terraria_instance_event_partitioned (instance_id, type, id);
+
+-- There is no default partition: any row in it would make creating the partition of its time fail later on, so
+-- instead the application always keeps the partitions of a few months ahead (`tsw.terraria.event-partitions-ahead`).
+DO $$
+DECLARE
+    -- The timestamps are saved in UTC
+    next_month timestamp := date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '1 month';
+    future_month timestamp;
+BEGIN
+    EXECUTE format('CREATE TABLE terraria_instance_event_%s PARTITION OF terraria_instance_event_partitioned '
+        'FOR VALUES FROM (%L) TO (%L)', to_char(next_month, '"y"YYYY"m"MM'), next_month,
+        next_month + INTERVAL '1 month');
+
+    -- Events from after the current month (e.g. saved while the clock was off) are moved into partitions of their own
+    -- because the legacy table cannot be attached while it contains them
+    FOR future_month IN
+        SELECT DISTINCT date_trunc('month', "timestamp") FROM terraria_instance_event_legacy
+            WHERE "timestamp" >= next_month + INTERVAL '1 month'
+    LOOP
+        EXECUTE format('CREATE TABLE terraria_instance_event_%s PARTITION OF terraria_instance_event_partitioned '
+            'FOR VALUES FROM (%L) TO (%L)', to_char(future_month, '"y"YYYY"m"MM'), future_month,
+            future_month + INTERVAL '1 month');
+    END LOOP;
+    WITH moved_event AS (
+        DELETE FROM terraria_instance_event_legacy WHERE "timestamp" >= next_month
+            RETURNING id, type, "timestamp", content, instance_id
+    )
+    INSERT INTO terraria_instance_event_partitioned (id, type, "timestamp", content, instance_id)
+        SELECT id, type, "timestamp", content, instance_id FROM moved_event;
+
+    -- The partition key has to be a part of the primary key
+    ALTER TABLE terraria_instance_event_legacy DROP CONSTRAINT terraria_instance_event_legacy_pkey;
+    ALTER TABLE terraria_instance_event_legacy
+        ADD CONSTRAINT terraria_instance_event_legacy_pkey PRIMARY KEY (id, "timestamp");
+
+    -- With a valid constraint which implies the bounds of the partition, attaching it does not have to scan the whole
+    -- table while holding an exclusive lock on it
+    EXECUTE format('ALTER TABLE terraria_instance_event_legacy ADD CONSTRAINT terraria_instance_event_legacy_bound_check '
+        'CHECK ("timestamp" < %L) NOT VALID', next_month);
+    ALTER TABLE terraria_instance_event_legacy VALIDATE CONSTRAINT terraria_instance_event_legacy_bound_check;
+    EXECUTE format('ALTER TABLE terraria_instance_event_partitioned ATTACH PARTITION terraria_instance_event_legacy '
+        'FOR VALUES FROM (MINVALUE) TO (%L)', next_month);
+    ALTER TABLE terraria_instance_event_legacy DROP CONSTRAINT terraria_instance_event_legacy_bound_check;
+END $$;
+
+CREATE VIEW terraria_instance_event AS
+    SELECT id, type, "timestamp", content, instance_id FROM terraria_instance_event_partitioned;
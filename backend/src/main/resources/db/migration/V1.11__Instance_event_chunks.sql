@@ -0,0 +1,25 @@
+-- Consecutive output events of an instance which have been packed together and compressed (see
+-- TerrariaInstanceEventChunkEntity). They are packed only if `tsw.terraria.event-compression.enabled` is set.
+
+CREATE TABLE terraria_instance_event_chunk (
+    id int8 NOT NULL,
+    instance_id int8 NOT NULL,
+    first_event_id int8 NOT NULL,
+    last_event_id int8 NOT NULL,
+    last_timestamp timestamp NOT NULL,
+    event_count int4 NOT NULL,
+    content_size int4 NOT NULL,
+    event_index bytea NOT NULL,
+    compressed_content bytea NOT NULL,
+    CONSTRAINT terraria_instance_event_chunk_pkey PRIMARY KEY (id),
+    CONSTRAINT terraria_instance_event_chunk_instance_fkey FOREIGN KEY (instance_id) REFERENCES terraria_instance(id)
+);
+CREATE INDEX terraria_instance_event_chunk_instance_id_first_event_id_idx
+    ON terraria_instance_event_chunk (instance_id, first_event_id);
+
+CREATE SEQUENCE IF NOT EXISTS terraria_instance_event_chunk_id_seq
+    INCREMENT BY 10
+    MINVALUE 1
+    MAXVALUE 9223372036854775807
+    START 1
+    NO CYCLE;
@@ -0,0 +1,8 @@
+-- Lets the lowercase content of the events be searched for any substring (with `lower(content) LIKE '%...%'`)
+-- without going through all of them. Trigram operator classes come from the pg_trgm extension, which is trusted (and so
+-- can be created by the owner of the database) since PostgreSQL 13.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX terraria_instance_event_partitioned_lower_content_trgm_idx
+    ON terraria_instance_event_partitioned USING gin (lower(content) gin_trgm_ops);
@@ -0,0 +1 @@
+ALTER TABLE terraria_instance ADD COLUMN output_repeat_window_millis int4 DEFAULT 0 NOT NULL;
@@ -0,0 +1 @@
+ALTER TABLE terraria_instance ADD COLUMN output_charset varchar(255) DEFAULT 'UTF-8' NOT NULL;
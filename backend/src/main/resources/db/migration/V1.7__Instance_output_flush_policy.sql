@@ -0,0 +1,2 @@
+ALTER TABLE terraria_instance ADD COLUMN output_flush_interval_millis int4 DEFAULT 100 NOT NULL;
+ALTER TABLE terraria_instance ADD COLUMN output_flush_bytes int4 DEFAULT 65536 NOT NULL;
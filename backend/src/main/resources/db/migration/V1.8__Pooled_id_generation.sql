@@ -0,0 +1,27 @@
+-- Each of these tables gets a sequence of its own which Hibernate uses with the pooled-lo optimizer: a single call to
+-- `nextval` reserves as many IDs as the sequence is incremented by. The existing IDs stay as they are; the sequences
+-- start right after the largest one.
+
+CREATE SEQUENCE IF NOT EXISTS terraria_instance_event_id_seq
+    INCREMENT BY 100
+    MINVALUE 1
+    MAXVALUE 9223372036854775807
+    START 1
+    NO CYCLE;
+SELECT setval('terraria_instance_event_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM terraria_instance_event;
+
+CREATE SEQUENCE IF NOT EXISTS terraria_instance_id_seq
+    INCREMENT BY 10
+    MINVALUE 1
+    MAXVALUE 9223372036854775807
+    START 1
+    NO CYCLE;
+SELECT setval('terraria_instance_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM terraria_instance;
+
+CREATE SEQUENCE IF NOT EXISTS terraria_world_id_seq
+    INCREMENT BY 10
+    MINVALUE 1
+    MAXVALUE 9223372036854775807
+    START 1
+    NO CYCLE;
+SELECT setval('terraria_world_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM terraria_world;
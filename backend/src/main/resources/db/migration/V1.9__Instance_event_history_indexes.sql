@@ -0,0 +1,5 @@
+-- The events of an instance are always read newest first, page by page (`WHERE instance_id = ? AND id < ? ORDER BY
+-- id DESC LIMIT ?`), so these indexes let a page be read without sorting all of the events of the instance.
+CREATE INDEX IF NOT EXISTS terraria_instance_event_instance_id_id_idx ON terraria_instance_event (instance_id, id);
+CREATE INDEX IF NOT EXISTS terraria_instance_event_instance_id_type_id_idx
+    ON terraria_instance_event (instance_id, type, id);
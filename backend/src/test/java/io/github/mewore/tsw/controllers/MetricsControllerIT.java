@@ -0,0 +1,97 @@
+package io.github.mewore.tsw.controllers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import io.github.mewore.tsw.config.TestConfig;
+import io.github.mewore.tsw.config.security.AuthorityRoles;
+import io.github.mewore.tsw.events.PublisherMonitor;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
+import io.github.mewore.tsw.models.OpenSubscriptionModel;
+import io.github.mewore.tsw.services.util.MetricsSource;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Import(TestConfig.class)
+@WebMvcTest(MetricsController.class)
+class MetricsControllerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private MetricsSource metricsSource;
+
+    @MockBean
+    private PublisherMonitor publisherMonitor;
+
+    @Test
+    void testGetMetrics() throws Exception {
+        doAnswer(invocation -> {
+            final PrometheusTextWriter writer = invocation.getArgument(0);
+            writer.counter("tsw_test_total", "A test counter.", 5, "instance", "a\"b");
+            writer.counter("tsw_test_total", "A test counter.", 1.5, "instance", "c");
+            writer.gauge("tsw_test_gauge", "A test gauge.", 2);
+            return null;
+        }).when(metricsSource).writeMetrics(any());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/metrics"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.content().contentType(PrometheusTextWriter.CONTENT_TYPE))
+                .andExpect(MockMvcResultMatchers.content()
+                        .string("# HELP tsw_test_total A test counter.\n" + "# TYPE tsw_test_total counter\n" +
+                                "tsw_test_total{instance=\"a\\\"b\"} 5\n" + "tsw_test_total{instance=\"c\"} 1.5\n" +
+                                "# HELP tsw_test_gauge A test gauge.\n" + "# TYPE tsw_test_gauge gauge\n" +
+                                "tsw_test_gauge 2\n"));
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_HOSTS})
+    @Test
+    void testGetOpenSubscriptions() throws Exception {
+        when(publisherMonitor.getOpenSubscriptions(Duration.ofSeconds(60))).thenReturn(List.of(
+                OpenSubscriptionModel.builder()
+                        .publisher("instances")
+                        .description("Subscription(1)")
+                        .overflowPolicy(SubscriptionOverflowPolicy.CONFLATE)
+                        .createdAt(Instant.ofEpochSecond(1))
+                        .creationSite(List.of("io.github.mewore.tsw.Class.method:10"))
+                        .size(2)
+                        .droppedValueCount(3)
+                        .build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/metrics/subscriptions").param("minAgeSeconds", "60"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].publisher").value("instances"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].description").value("Subscription(1)"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].overflowPolicy").value("CONFLATE"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].creationSite[0]")
+                        .value("io.github.mewore.tsw.Class.method:10"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].size").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].droppedValueCount").value(3));
+    }
+
+    @WithMockUser
+    @Test
+    void testGetOpenSubscriptions_noPermissions() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/metrics/subscriptions"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.FORBIDDEN.value()));
+        verify(publisherMonitor, never()).getOpenSubscriptions(any());
+    }
+}
@@ -1,12 +1,25 @@
 package io.github.mewore.tsw.controllers;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -19,13 +32,21 @@ import io.github.mewore.tsw.config.security.AuthorityRoles;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
-import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceLogFileModel;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventCache;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventStore;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventSearchService;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceLogService;
 import io.github.mewore.tsw.services.terraria.TerrariaInstanceService;
+import io.github.mewore.tsw.services.util.FileService;
 
 import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstance;
+import static org.hamcrest.Matchers.contains;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.verify;
@@ -42,7 +63,22 @@ class TerrariaInstanceControllerTest {
     private TerrariaInstanceService terrariaInstanceService;
 
     @MockBean
-    private TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+    private TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    @MockBean
+    private TerrariaInstanceEventCache terrariaInstanceEventCache;
+
+    @MockBean
+    private TerrariaInstanceEventSearchService terrariaInstanceEventSearchService;
+
+    @MockBean
+    private TerrariaInstanceLogService terrariaInstanceLogService;
+
+    @MockBean
+    private FileService fileService;
+
+    @TempDir
+    Path logDirectory;
 
     @Test
     void testGetInstanceDetails() throws Exception {
@@ -55,13 +91,184 @@ class TerrariaInstanceControllerTest {
                 .content("text")
                 .type(TerrariaInstanceEventType.OUTPUT)
                 .build();
-        when(terrariaInstanceEventRepository.findTop100ByInstanceOrderByIdDesc(instance)).thenReturn(
-                Collections.singletonList(event));
+        when(terrariaInstanceEventCache.getRecentEvents(instance)).thenReturn(Collections.singletonList(event));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8"))
                 .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()));
         verify(terrariaInstanceService, only()).getInstance(8L);
-        verify(terrariaInstanceEventRepository, only()).findTop100ByInstanceOrderByIdDesc(instance);
+        verify(terrariaInstanceEventCache, only()).getRecentEvents(instance);
+    }
+
+    @Test
+    void testGetInstanceEvents() throws Exception {
+        final TerrariaInstanceEntity instance = makeInstance();
+        when(terrariaInstanceService.getInstance(8L)).thenReturn(instance);
+        when(terrariaInstanceEventStore.getEvents(instance, null, 100, null)).thenReturn(
+                List.of(makeEvent(instance, 1L), makeEvent(instance, 2L)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/events"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id").value(contains(1, 2)));
+    }
+
+    @Test
+    void testGetInstanceEvents_beforeAndType() throws Exception {
+        final TerrariaInstanceEntity instance = makeInstance();
+        when(terrariaInstanceService.getInstance(8L)).thenReturn(instance);
+        when(terrariaInstanceEventStore.getEvents(instance, 50L, 10, TerrariaInstanceEventType.INPUT))
+                .thenReturn(List.of(makeEvent(instance, 5L)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/events")
+                .param("before", "50")
+                .param("limit", "10")
+                .param("type", "INPUT"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id").value(contains(5)));
+    }
+
+    @Test
+    void testGetInstanceEvents_invalidLimit() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/events").param("limit", "1001"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.BAD_REQUEST.value()));
+        verify(terrariaInstanceService, never()).getInstance(anyLong());
+    }
+
+    @Test
+    void testSearchInstanceEvents() throws Exception {
+        final TerrariaInstanceEntity instance = makeInstance();
+        when(terrariaInstanceService.getInstance(8L)).thenReturn(instance);
+        when(terrariaInstanceEventSearchService.search(same(instance), eq("joined"), argThat(
+                filter -> Set.of(TerrariaInstanceEventType.OUTPUT, TerrariaInstanceEventType.INPUT)
+                        .equals(filter.getTypes()) && Instant.parse("2021-08-01T00:00:00Z").equals(filter.getFrom()) &&
+                        Instant.parse("2021-09-01T00:00:00Z").equals(filter.getTo())), eq(50L), eq(10))).thenReturn(
+                List.of(makeEvent(instance, 5L), makeEvent(instance, 7L)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/events/search")
+                .param("query", "joined")
+                .param("type", "OUTPUT", "INPUT")
+                .param("from", "2021-08-01T00:00:00Z")
+                .param("to", "2021-09-01T00:00:00Z")
+                .param("before", "50")
+                .param("limit", "10"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id").value(contains(5, 7)));
+    }
+
+    @Test
+    void testSearchInstanceEvents_invalidLimit() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/events/search")
+                .param("query", "joined")
+                .param("limit", "0"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.BAD_REQUEST.value()));
+        verify(terrariaInstanceService, never()).getInstance(anyLong());
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
+    @Test
+    void testGetInstanceLogs() throws Exception {
+        final TerrariaInstanceEntity instance = makeInstance();
+        when(terrariaInstanceService.getInstance(8L)).thenReturn(instance);
+        when(terrariaInstanceLogService.getLogFiles(instance)).thenReturn(List.of(
+                TerrariaInstanceLogFileModel.builder().name("output.log").lastModified(Instant.EPOCH).build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].name").value(contains("output.log")));
+    }
+
+    @WithMockUser
+    @Test
+    void testGetInstanceLogs_noPermissions() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.FORBIDDEN.value()));
+        verify(terrariaInstanceService, never()).getInstance(anyLong());
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
+    @Test
+    void testDownloadInstanceLog() throws Exception {
+        final File file = mockLogFile("output.log", "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs/output.log"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_LENGTH, "10"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(MockMvcResultMatchers.header()
+                        .string(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=\"output.log\""));
+        verify(fileService).transferTo(eq(file), eq(0L), eq(10L), any());
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
+    @Test
+    void testDownloadInstanceLog_range() throws Exception {
+        final File file = mockLogFile("output.log", "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs/output.log")
+                .header(HttpHeaders.RANGE, "bytes=-4"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.PARTIAL_CONTENT.value()))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_LENGTH, "4"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_RANGE, "bytes 6-9/10"));
+        verify(fileService).transferTo(eq(file), eq(6L), eq(4L), any());
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
+    @Test
+    void testDownloadInstanceLog_unsatisfiableRange() throws Exception {
+        mockLogFile("output.log", "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs/output.log")
+                .header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+        verify(fileService, never()).transferTo(any(), anyLong(), anyLong(), any());
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
+    @Test
+    void testDownloadInstanceLog_sendfile() throws Exception {
+        final File file = mockLogFile("output.log", "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs/output.log")
+                .requestAttr("org.apache.tomcat.sendfile.support", true)
+                .header(HttpHeaders.RANGE, "bytes=2-4"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.PARTIAL_CONTENT.value()))
+                .andExpect(MockMvcResultMatchers.request()
+                        .attribute("org.apache.tomcat.sendfile.filename", file.getAbsolutePath()))
+                .andExpect(MockMvcResultMatchers.request().attribute("org.apache.tomcat.sendfile.start", 2L))
+                .andExpect(MockMvcResultMatchers.request().attribute("org.apache.tomcat.sendfile.end", 5L));
+        verify(fileService, never()).transferTo(any(), anyLong(), anyLong(), any());
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
+    @Test
+    void testDownloadInstanceLog_compressed() throws Exception {
+        final String name = "output.log.2021-08-15T10-00-00.000000000.log.gz";
+        final File file = mockLogFile(name, gzip("old output"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs/" + name)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(MockMvcResultMatchers.header()
+                        .string(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment;filename=\"output.log.2021-08-15T10-00-00.000000000.log\""));
+        verify(fileService).transferTo(eq(file), eq(0L), eq(file.length()), any());
+    }
+
+    @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
+    @Test
+    void testDownloadInstanceLog_compressedWithoutGzipSupport() throws Exception {
+        final String name = "output.log.2021-08-15T10-00-00.000000000.log.gz";
+        final File file = mockLogFile(name, gzip("old output"));
+        when(fileService.readCompressedFileInStream(file)).thenReturn(
+                new ByteArrayInputStream("old output".getBytes(StandardCharsets.UTF_8)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/terraria/instances/8/logs/" + name)
+                .header(HttpHeaders.RANGE, "bytes=0-1"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(MockMvcResultMatchers.content().string("old output"));
+        verify(fileService, never()).transferTo(any(), anyLong(), anyLong(), any());
     }
 
     @WithMockUser(authorities = {AuthorityRoles.MANAGE_TERRARIA})
@@ -83,4 +290,28 @@ class TerrariaInstanceControllerTest {
                 .content("{}")).andExpect(MockMvcResultMatchers.status().is(HttpStatus.FORBIDDEN.value()));
         verify(terrariaInstanceService, never()).updateInstance(anyLong(), any());
     }
-}
\ No newline at end of file
+
+    private static TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final long id) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(instance)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .build();
+    }
+
+    private static byte[] gzip(final String text) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return outputStream.toByteArray();
+    }
+
+    private File mockLogFile(final String name, final byte[] content) throws Exception {
+        final TerrariaInstanceEntity instance = makeInstance();
+        when(terrariaInstanceService.getInstance(8L)).thenReturn(instance);
+        final File file = Files.write(logDirectory.resolve(name), content).toFile();
+        when(terrariaInstanceLogService.getLogFile(instance, name)).thenReturn(file);
+        return file;
+    }
+}
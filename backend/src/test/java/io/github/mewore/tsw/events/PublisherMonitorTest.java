@@ -0,0 +1,54 @@
+package io.github.mewore.tsw.events;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.mewore.tsw.models.OpenSubscriptionModel;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublisherMonitorTest {
+
+    private final PublisherMonitor publisherMonitor = new PublisherMonitor();
+
+    @Test
+    void testWriteMetrics() {
+        final QueuePublisher<Integer, Integer> publisher = new QueuePublisher<>();
+        publisher.setName("test");
+        publisher.registerIn(publisherMonitor);
+        publisher.publish(1, 1);
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        publisherMonitor.writeMetrics(writer);
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_publisher_published_values_total{publisher=\"test\"} 1\n"), metrics);
+    }
+
+    @Test
+    void testGetOpenSubscriptions() {
+        final QueuePublisher<Integer, Integer> publisher = new QueuePublisher<>();
+        publisher.setName("test");
+        publisher.registerIn(publisherMonitor);
+        final Subscription<Integer> oldSubscription = publisher.subscribe(1, SubscriptionOverflowPolicy.CONFLATE);
+        final Subscription<Integer> newSubscription = publisher.subscribe();
+        publisher.publish(1, 1);
+
+        final List<OpenSubscriptionModel> result = publisherMonitor.getOpenSubscriptions(Duration.ZERO);
+        assertEquals(2, result.size());
+        assertEquals("test", result.get(0).getPublisher());
+        assertEquals("Subscription(1)", result.get(0).getDescription());
+        assertSame(SubscriptionOverflowPolicy.CONFLATE, result.get(0).getOverflowPolicy());
+        assertEquals(1, result.get(0).getSize());
+        assertEquals("Subscription(GENERIC)", result.get(1).getDescription());
+        assertEquals(List.of(), publisherMonitor.getOpenSubscriptions(Duration.ofHours(1)));
+
+        oldSubscription.close();
+        newSubscription.close();
+        assertEquals(List.of(), publisherMonitor.getOpenSubscriptions(Duration.ZERO));
+    }
+}
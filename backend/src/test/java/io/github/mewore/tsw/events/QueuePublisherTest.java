@@ -1,13 +1,18 @@
 package io.github.mewore.tsw.events;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class QueuePublisherTest {
 
@@ -87,4 +92,147 @@ class QueuePublisherTest {
             assertEquals(2, subscription.waitFor(value -> true, Duration.ZERO));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSubscribe_conflate() throws InterruptedException {
+        final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+        try (final Subscription<Integer> subscription = publisher.subscribe(1, SubscriptionOverflowPolicy.CONFLATE)) {
+            for (int i = 0; i < 20; i++) {
+                publisher.publish(1, i);
+            }
+            assertEquals(19, subscription.waitFor(value -> true, Duration.ZERO));
+            assertNull(subscription.waitFor(value -> true, Duration.ZERO));
+        }
+    }
+
+    @Test
+    void testSubscribe_generic_dropOldest() throws InterruptedException {
+        final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+        try (final Subscription<Integer> subscription = publisher.subscribe(SubscriptionOverflowPolicy.DROP_OLDEST)) {
+            for (int i = 0; i < 20; i++) {
+                publisher.publish(i, i);
+            }
+            assertEquals(10, subscription.waitFor(value -> true, Duration.ZERO));
+        }
+    }
+
+    @Test
+    void testSubscribeToTopicEvents_twoSubscriptions() throws InterruptedException {
+        final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+        try (final Subscription<PublisherTopicEvent<Integer>> topicSubscription = publisher.subscribeToTopicEvents()) {
+            final Subscription<Integer> subscription = publisher.subscribe(1);
+            final Subscription<Integer> otherSubscription = publisher.subscribe(1);
+            subscription.close();
+            subscription.close();
+
+            final PublisherTopicEvent<Integer> event = topicSubscription.waitFor(unused -> true, Duration.ZERO);
+            assertNotNull(event);
+            assertSame(PublisherTopicEvent.Type.TOPIC_CREATED, event.getType());
+            assertNull(topicSubscription.waitFor(unused -> true, Duration.ZERO));
+
+            otherSubscription.close();
+            final PublisherTopicEvent<Integer> deletionEvent = topicSubscription.waitFor(unused -> true,
+                    Duration.ZERO);
+            assertNotNull(deletionEvent);
+            assertSame(PublisherTopicEvent.Type.TOPIC_DELETED, deletionEvent.getType());
+        }
+    }
+
+    @Test
+    void testSubscribeToTopicEvents_concurrent() throws InterruptedException {
+        final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+        try (final Subscription<PublisherTopicEvent<Integer>> topicSubscription = publisher.subscribeToTopicEvents()) {
+            final List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                threads.add(new Thread(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        publisher.subscribe(1).close();
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (final Thread thread : threads) {
+                thread.join(10000L);
+            }
+
+            PublisherTopicEvent.Type expectedType = PublisherTopicEvent.Type.TOPIC_CREATED;
+            PublisherTopicEvent<Integer> event;
+            int eventCount = 0;
+            while ((event = topicSubscription.waitFor(unused -> true, Duration.ZERO)) != null) {
+                assertSame(expectedType, event.getType());
+                expectedType = expectedType == PublisherTopicEvent.Type.TOPIC_CREATED
+                        ? PublisherTopicEvent.Type.TOPIC_DELETED
+                        : PublisherTopicEvent.Type.TOPIC_CREATED;
+                eventCount++;
+            }
+            assertTrue(eventCount > 0);
+            assertSame(PublisherTopicEvent.Type.TOPIC_CREATED, expectedType, "The last event should be a deletion");
+        }
+    }
+
+    @Test
+    void testPublish_dispatchExecutor() throws InterruptedException {
+        final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+        final List<Runnable> tasks = new ArrayList<>();
+        publisher.setDispatchExecutor(tasks::add);
+        try (final Subscription<Integer> subscription = publisher.subscribe(1);
+             final Subscription<Integer> genericSubscription = publisher.subscribe()) {
+            publisher.publish(1, 1);
+            assertNull(subscription.waitFor(value -> true, Duration.ZERO));
+            assertEquals(1, tasks.size());
+
+            tasks.get(0).run();
+            assertEquals(1, subscription.waitFor(value -> true, Duration.ZERO));
+            assertEquals(1, genericSubscription.waitFor(value -> true, Duration.ZERO));
+        }
+    }
+
+    @Test
+    void testPublish_dispatchExecutor_noSubscriptions() {
+        final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+        final List<Runnable> tasks = new ArrayList<>();
+        publisher.setDispatchExecutor(tasks::add);
+        publisher.publish(1, 1);
+        assertEquals(List.of(), tasks);
+    }
+
+    @Test
+    void testWriteMetrics() throws InterruptedException {
+        final QueuePublisher<Integer, Integer> publisher = new QueuePublisher<>();
+        publisher.setName("test");
+        try (final Subscription<Integer> subscription = publisher.subscribe(1, SubscriptionOverflowPolicy.CONFLATE);
+             final Subscription<Integer> ignored = publisher.subscribe(1)) {
+            publisher.publish(1, 1);
+            publisher.publish(1, 2);
+            publisher.publish(2, 3);
+            assertEquals(2, subscription.take());
+
+            final PrometheusTextWriter writer = new PrometheusTextWriter();
+            publisher.writeMetrics(writer);
+            final String metrics = writer.toString();
+            assertTrue(metrics.contains("tsw_publisher_published_values_total{publisher=\"test\"} 3\n"), metrics);
+            assertTrue(metrics.contains("tsw_publisher_delivered_values_total{publisher=\"test\"} 4\n"), metrics);
+            assertTrue(metrics.contains("tsw_publisher_dropped_values_total{publisher=\"test\"} 1\n"), metrics);
+            assertTrue(metrics.contains("tsw_publisher_queue_residence_seconds_count{publisher=\"test\"} 1\n"),
+                    metrics);
+            assertTrue(metrics.contains("tsw_publisher_generic_subscriptions{publisher=\"test\"} 0\n"), metrics);
+            assertTrue(metrics.contains("tsw_publisher_topic_subscriptions{publisher=\"test\",topic=\"1\"} 2\n"),
+                    metrics);
+        }
+    }
+
+    @Test
+    void testGetOpenSubscriptions() {
+        final QueuePublisher<Integer, Integer> publisher = new QueuePublisher<>();
+        final Subscription<Integer> subscription = publisher.subscribe(1);
+        final Subscription<Integer> genericSubscription = publisher.subscribe();
+        final Subscription<PublisherTopicEvent<Integer>> topicEventSubscription = publisher.subscribeToTopicEvents();
+        assertEquals(List.of(subscription, genericSubscription, topicEventSubscription),
+                publisher.getOpenSubscriptions());
+
+        subscription.close();
+        genericSubscription.close();
+        topicEventSubscription.close();
+        assertEquals(List.of(), publisher.getOpenSubscriptions());
+    }
+}
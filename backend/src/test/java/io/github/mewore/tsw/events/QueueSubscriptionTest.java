@@ -1,6 +1,7 @@
 package io.github.mewore.tsw.events;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
@@ -127,6 +128,127 @@ class QueueSubscriptionTest {
         }
     }
 
+    @Test
+    void testAccept_statistics() {
+        final SubscriptionStatistics statistics = new SubscriptionStatistics();
+        try (final QueueSubscription<Integer> subscription = new QueueSubscription<>(
+                SubscriptionOverflowPolicy.DROP_NEWEST, statistics, DO_NOTHING, logger, null)) {
+            for (int i = 0; i <= 10; i++) {
+                subscription.accept(i);
+            }
+        }
+        assertEquals(10L, statistics.getDeliveredValueCount().sum());
+        assertEquals(1L, statistics.getDroppedValueCount().sum());
+    }
+
+    @Test
+    void testAccept_dropOldest() throws InterruptedException {
+        try (final QueueSubscription<Integer> subscription = new QueueSubscription<>(
+                SubscriptionOverflowPolicy.DROP_OLDEST, DO_NOTHING, logger, null)) {
+            for (int i = 0; i <= 10; i++) {
+                subscription.accept(i);
+            }
+            assertEquals(1, subscription.take());
+            assertEquals(10, subscription.waitFor(value -> value == 10, Duration.ZERO));
+            assertEquals(1L, subscription.getDroppedValueCount());
+            assertEquals(10, subscription.getMaxSize());
+        }
+    }
+
+    @Test
+    void testAccept_block() throws InterruptedException {
+        try (final QueueSubscription<Integer> subscription = new QueueSubscription<>(SubscriptionOverflowPolicy.BLOCK,
+                DO_NOTHING, logger, null)) {
+            for (int i = 0; i < 10; i++) {
+                subscription.accept(i);
+            }
+            final Thread thread = new Thread(() -> subscription.accept(10));
+            thread.start();
+            thread.join(100L);
+            assertTrue(thread.isAlive());
+
+            assertEquals(0, subscription.take());
+            thread.join(10000L);
+            assertFalse(thread.isAlive());
+            assertEquals(10, subscription.waitFor(value -> value == 10, Duration.ZERO));
+            assertEquals(0L, subscription.getDroppedValueCount());
+        }
+    }
+
+    @Test
+    void testAccept_unbounded() throws InterruptedException {
+        try (final QueueSubscription<Integer> subscription = new QueueSubscription<>(
+                SubscriptionOverflowPolicy.UNBOUNDED, DO_NOTHING, logger, null)) {
+            for (int i = 0; i < 2000; i++) {
+                subscription.accept(i);
+            }
+            assertEquals(2000, subscription.size());
+            assertEquals(2000, subscription.getMaxSize());
+            assertEquals(0, subscription.take());
+            assertEquals(1999, subscription.waitFor(value -> value == 1999, Duration.ZERO));
+            assertEquals(0L, subscription.getDroppedValueCount());
+        }
+    }
+
+    @Test
+    void testAccept_conflate() throws InterruptedException {
+        try (final QueueSubscription<Integer> subscription = new QueueSubscription<>(
+                SubscriptionOverflowPolicy.CONFLATE, DO_NOTHING, logger, null)) {
+            for (int i = 0; i <= 20; i++) {
+                subscription.accept(i);
+            }
+            assertEquals(1, subscription.size());
+            assertEquals(20, subscription.take());
+            assertEquals(0, subscription.size());
+            assertNull(subscription.waitFor(unused -> true, Duration.ZERO));
+            assertEquals(20L, subscription.getDroppedValueCount());
+            assertEquals(1, subscription.getMaxSize());
+        }
+    }
+
+    @Test
+    void testWaitFor_conflate() throws InterruptedException {
+        try (final QueueSubscription<Integer> subscription = new QueueSubscription<>(
+                SubscriptionOverflowPolicy.CONFLATE, DO_NOTHING, logger, null)) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    Thread.sleep(50L);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                subscription.accept(0);
+                subscription.accept(1);
+            });
+            thread.start();
+            assertEquals(1, subscription.waitFor(value -> value == 1, Duration.ofSeconds(10)));
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void testTake_conflate() throws InterruptedException {
+        try (final QueueSubscription<Integer> subscription = new QueueSubscription<>(
+                SubscriptionOverflowPolicy.CONFLATE, DO_NOTHING, logger, null)) {
+            final AtomicInteger result = new AtomicInteger(0);
+            final Thread thread = new Thread(() -> {
+                try {
+                    result.set(subscription.take());
+                } catch (final InterruptedException e) {
+                    fail("Interrupted while taking element", e);
+                }
+            });
+            thread.start();
+            thread.join(50L);
+            subscription.accept(1);
+            thread.join(10000L);
+            if (thread.isAlive()) {
+                thread.interrupt();
+                fail("Still taking a value");
+            }
+            assertEquals(1, result.get());
+        }
+    }
+
     @Test
     void testWaitFor_afterClosed() throws InterruptedException {
         try (final ManagedSubscription<Integer> subscription = new QueueSubscription<>(DO_NOTHING, logger, null)) {
@@ -173,4 +295,30 @@ class QueueSubscriptionTest {
         subscription.close();
         assertFalse(subscription.isOpen());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetCreationSite() {
+        QueueSubscription.setCreationSiteCaptured(true);
+        try {
+            final QueueSubscription<Integer> subscription = new QueueSubscription<>(DO_NOTHING, logger, null);
+            assertFalse(subscription.getCreationSite().isEmpty());
+            assertTrue(subscription.getCreationSite()
+                    .stream()
+                    .noneMatch(frame -> frame.startsWith(QueueSubscription.class.getPackageName() + ".")));
+        } finally {
+            QueueSubscription.setCreationSiteCaptured(false);
+        }
+    }
+
+    @Test
+    void testGetCreationSite_notCaptured() {
+        final QueueSubscription<Integer> subscription = new QueueSubscription<>(DO_NOTHING, logger, null);
+        assertEquals(List.of(), subscription.getCreationSite());
+    }
+
+    @Test
+    void testGetDescription() {
+        final QueueSubscription<Integer> subscription = new QueueSubscription<>(DO_NOTHING, logger, null);
+        assertEquals(logger.getName(), subscription.getDescription());
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.mewore.tsw.events;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.mewore.tsw.services.util.DurationStatistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimestampedQueueTest {
+
+    private final DurationStatistics residenceTime = new DurationStatistics();
+
+    @Test
+    void testOffer() throws InterruptedException {
+        final TimestampedQueue<Integer> queue = new TimestampedQueue<>(2, residenceTime);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+        assertEquals(2, queue.size());
+
+        assertEquals(1, queue.take());
+        assertEquals(2, queue.take());
+        assertEquals(0, queue.size());
+        assertEquals(2, residenceTime.getCount());
+    }
+
+    @Test
+    void testOffer_timeout() throws InterruptedException {
+        final TimestampedQueue<Integer> queue = new TimestampedQueue<>(1, residenceTime);
+        assertTrue(queue.offer(1, 1, TimeUnit.MILLISECONDS));
+        assertFalse(queue.offer(2, 1, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.take());
+    }
+
+    @Test
+    void testOfferReplacingOldest() throws InterruptedException {
+        final TimestampedQueue<Integer> queue = new TimestampedQueue<>(2, residenceTime);
+        assertFalse(queue.offerReplacingOldest(1));
+        assertFalse(queue.offerReplacingOldest(2));
+        assertTrue(queue.offerReplacingOldest(3));
+
+        assertEquals(2, queue.take());
+        assertEquals(3, queue.take());
+        assertEquals(2, residenceTime.getCount());
+    }
+
+    @Test
+    void testOffer_unbounded() throws InterruptedException {
+        final TimestampedQueue<Integer> queue = new TimestampedQueue<>(Integer.MAX_VALUE, residenceTime);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.offer(i));
+            if (i % 3 == 0) {
+                assertEquals(i / 3, queue.take());
+            }
+        }
+        for (int i = 34; i < 100; i++) {
+            assertEquals(i, queue.take());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testPoll_timeout() throws InterruptedException {
+        final TimestampedQueue<Integer> queue = new TimestampedQueue<>(1, residenceTime);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+        assertEquals(0, residenceTime.getCount());
+    }
+}
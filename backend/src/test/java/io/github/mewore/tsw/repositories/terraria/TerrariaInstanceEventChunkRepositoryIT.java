@@ -0,0 +1,126 @@
+package io.github.mewore.tsw.repositories.terraria;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import io.github.mewore.tsw.models.HostEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.repositories.HostRepository;
+
+import static io.github.mewore.tsw.models.HostFactory.makeHost;
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceBuilder;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+class TerrariaInstanceEventChunkRepositoryIT {
+
+    @Autowired
+    private TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    @Autowired
+    private TerrariaInstanceRepository terrariaInstanceRepository;
+
+    @Autowired
+    private HostRepository hostRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final byte[] content = new byte[100000];
+        Arrays.fill(content, (byte) 1);
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 1L, 5L, content));
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 10L, 15L, content));
+        entityManager.flush();
+        entityManager.clear();
+
+        final TerrariaInstanceEventChunkEntity chunk = terrariaInstanceEventChunkRepository
+                .findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(instance, 10L)
+                .orElseThrow();
+        assertEquals(1L, chunk.getFirstEventId());
+        assertArrayEquals(content, chunk.getCompressedContent());
+        assertTrue(terrariaInstanceEventChunkRepository
+                .findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(instance, 1L)
+                .isEmpty());
+    }
+
+    @Test
+    void findSearchCandidates() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final Instant now = Instant.now();
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 1L, 5L, new byte[0], now.minusSeconds(100)));
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 6L, 7L, new byte[0], now));
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 8L, 9L, new byte[0], now));
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 10L, 11L, new byte[0], now));
+
+        final List<TerrariaInstanceEventChunkEntity> result = terrariaInstanceEventChunkRepository
+                .findSearchCandidates(instance, 10L, now.minusSeconds(50), PageRequest.of(0, 5));
+        assertEquals(List.of(8L, 6L), result.stream()
+                .map(TerrariaInstanceEventChunkEntity::getFirstEventId)
+                .collect(Collectors.toUnmodifiableList()));
+    }
+
+    @Test
+    void deleteByInstanceId() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final TerrariaInstanceEntity otherInstance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().id(null).uuid(UUID.randomUUID()).host(host).build());
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 1L, 5L, new byte[0]));
+        terrariaInstanceEventChunkRepository.save(makeChunk(otherInstance, 6L, 7L, new byte[0]));
+
+        assertEquals(1, terrariaInstanceEventChunkRepository.deleteByInstanceId(instance.getId()));
+        assertEquals(1, terrariaInstanceEventChunkRepository.count());
+    }
+
+    @Test
+    void deleteByLastTimestampBefore() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final Instant now = Instant.now();
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 1L, 5L, new byte[0], now.minusSeconds(100)));
+        terrariaInstanceEventChunkRepository.save(makeChunk(instance, 6L, 7L, new byte[0], now));
+
+        assertEquals(1, terrariaInstanceEventChunkRepository.deleteByLastTimestampBefore(now.minusSeconds(50)));
+        assertEquals(1, terrariaInstanceEventChunkRepository.count());
+    }
+
+    private static TerrariaInstanceEventChunkEntity makeChunk(final TerrariaInstanceEntity instance,
+            final long firstEventId, final long lastEventId, final byte[] content) {
+        return makeChunk(instance, firstEventId, lastEventId, content, Instant.now());
+    }
+
+    private static TerrariaInstanceEventChunkEntity makeChunk(final TerrariaInstanceEntity instance,
+            final long firstEventId, final long lastEventId, final byte[] content, final Instant lastTimestamp) {
+        return TerrariaInstanceEventChunkEntity.builder()
+                .instance(instance)
+                .firstEventId(firstEventId)
+                .lastEventId(lastEventId)
+                .lastTimestamp(lastTimestamp)
+                .eventCount(2)
+                .contentSize(content.length)
+                .eventIndex(new byte[0])
+                .compressedContent(content)
+                .build();
+    }
+}
@@ -1,10 +1,19 @@
 package io.github.mewore.tsw.repositories.terraria;
 
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
 import io.github.mewore.tsw.models.HostEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
@@ -15,8 +24,9 @@ import io.github.mewore.tsw.repositories.HostRepository;
 import static io.github.mewore.tsw.models.HostFactory.makeHost;
 import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceBuilder;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 class TerrariaInstanceEventRepositoryIT {
 
     @Autowired
@@ -28,8 +38,11 @@ class TerrariaInstanceEventRepositoryIT {
     @Autowired
     private HostRepository hostRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     @Test
-    void deleteByInstance() {
+    void deleteBatchByInstanceId() {
         final HostEntity host = hostRepository.save(makeHost());
         final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
                 makeInstanceBuilder().host(host).build());
@@ -37,13 +50,23 @@ class TerrariaInstanceEventRepositoryIT {
         terrariaInstanceEventRepository.save(makeEvent(instance));
         terrariaInstanceEventRepository.save(makeEvent(instance));
 
-        assertEquals(3, terrariaInstanceEventRepository.findAll().size());
-        assertEquals(3L, terrariaInstanceEventRepository.deleteByInstance(instance));
-        assertEquals(0, terrariaInstanceEventRepository.findAll().size());
+        final TerrariaInstanceEntity otherInstance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().id(null).uuid(UUID.randomUUID()).host(host).build());
+        terrariaInstanceEventRepository.save(makeEvent(otherInstance));
+
+        assertEquals(4, terrariaInstanceEventRepository.findAll().size());
+        assertEquals(2, terrariaInstanceEventRepository.deleteBatchByInstanceId(instance.getId(), 2));
+        assertEquals(1, terrariaInstanceEventRepository.deleteBatchByInstanceId(instance.getId(), 2));
+        assertEquals(0, terrariaInstanceEventRepository.deleteBatchByInstanceId(instance.getId(), 2));
+        entityManager.clear();
+        assertEquals(List.of(otherInstance.getId()), terrariaInstanceEventRepository.findAll()
+                .stream()
+                .map(event -> event.getInstance().getId())
+                .collect(Collectors.toUnmodifiableList()));
     }
 
     @Test
-    void findTop100ByInstanceOrderByIdAsc() {
+    void findByInstanceOrderByIdDesc() {
         final HostEntity host = hostRepository.save(makeHost());
         final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
                 makeInstanceBuilder().host(host).build());
@@ -51,15 +74,153 @@ class TerrariaInstanceEventRepositoryIT {
                 List.of(makeEvent(instance), makeEvent(instance), makeEvent(instance)));
 
         final List<TerrariaInstanceEventEntity> loadedEvents =
-                terrariaInstanceEventRepository.findTop100ByInstanceOrderByIdDesc(
-                instance);
+                terrariaInstanceEventRepository.findByInstanceOrderByIdDesc(instance, PageRequest.of(0, 100));
 
         assertEquals(3, loadedEvents.size());
         assertEquals(List.of(events.get(2).getId(), events.get(1).getId(), events.get(0).getId()),
                 List.of(loadedEvents.get(0).getId(), loadedEvents.get(1).getId(), loadedEvents.get(2).getId()));
     }
 
+    @Test
+    void findByInstanceAndIdLessThanOrderByIdDesc() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final List<TerrariaInstanceEventEntity> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            events.add(makeEvent(instance));
+        }
+        terrariaInstanceEventRepository.saveAll(events);
+
+        final List<TerrariaInstanceEventEntity> firstPage = terrariaInstanceEventRepository.findByInstanceOrderByIdDesc(
+                instance, PageRequest.of(0, 2));
+        assertEquals(List.of(events.get(4).getId(), events.get(3).getId()),
+                List.of(firstPage.get(0).getId(), firstPage.get(1).getId()));
+
+        final List<TerrariaInstanceEventEntity> secondPage =
+                terrariaInstanceEventRepository.findByInstanceAndIdLessThanOrderByIdDesc(instance,
+                        firstPage.get(1).getId(), PageRequest.of(0, 2));
+        assertEquals(List.of(events.get(2).getId(), events.get(1).getId()),
+                List.of(secondPage.get(0).getId(), secondPage.get(1).getId()));
+    }
+
+    @Test
+    void findByInstanceAndTypeAndIdLessThanOrderByIdDesc() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final List<TerrariaInstanceEventEntity> events = terrariaInstanceEventRepository.saveAll(
+                List.of(makeEvent(instance, TerrariaInstanceEventType.INPUT), makeEvent(instance),
+                        makeEvent(instance, TerrariaInstanceEventType.INPUT), makeEvent(instance)));
+
+        final List<TerrariaInstanceEventEntity> loadedEvents =
+                terrariaInstanceEventRepository.findByInstanceAndTypeAndIdLessThanOrderByIdDesc(instance,
+                        TerrariaInstanceEventType.INPUT, events.get(3).getId(), PageRequest.of(0, 10));
+
+        assertEquals(List.of(events.get(2).getId(), events.get(0).getId()),
+                List.of(loadedEvents.get(0).getId(), loadedEvents.get(1).getId()));
+    }
+
+    @Test
+    void findIdsByTimestampBefore() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final Instant now = Instant.now();
+        final List<TerrariaInstanceEventEntity> events = terrariaInstanceEventRepository.saveAll(
+                List.of(makeEvent(instance, now.minusSeconds(300)), makeEvent(instance, now.minusSeconds(200)),
+                        makeEvent(instance, now)));
+
+        final List<Long> expiredEventIds = terrariaInstanceEventRepository.findIdsByTimestampBefore(
+                now.minusSeconds(100), PageRequest.of(0, 10));
+        assertEquals(List.of(events.get(0).getId(), events.get(1).getId()), expiredEventIds);
+
+        assertEquals(2, terrariaInstanceEventRepository.deleteByIdIn(expiredEventIds));
+        entityManager.clear();
+        assertEquals(List.of(events.get(2).getId()), terrariaInstanceEventRepository.findAll()
+                .stream()
+                .map(TerrariaInstanceEventEntity::getId)
+                .collect(Collectors.toUnmodifiableList()));
+    }
+
+    @Test
+    void searchByContent() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        final Instant now = Instant.now();
+        final List<TerrariaInstanceEventEntity> events = terrariaInstanceEventRepository.saveAll(
+                List.of(makeEvent(instance, "Progress: 50%", now.minusSeconds(300)),
+                        makeEvent(instance, "Progress: 500", now.minusSeconds(200)),
+                        makeEvent(instance, "PROGRESS: 100%", now.minusSeconds(100)),
+                        makeEvent(instance, "progress: 75%", now)));
+
+        final List<TerrariaInstanceEventEntity> foundEvents = terrariaInstanceEventRepository.searchByContent(
+                instance, "%0\\%%", Set.of(TerrariaInstanceEventType.OUTPUT), now.minusSeconds(300), now,
+                Long.MAX_VALUE, PageRequest.of(0, 10));
+        assertEquals(List.of(events.get(2).getId(), events.get(0).getId()), foundEvents.stream()
+                .map(TerrariaInstanceEventEntity::getId)
+                .collect(Collectors.toUnmodifiableList()));
+
+        assertEquals(List.of(events.get(0).getId()), terrariaInstanceEventRepository.searchByContent(instance,
+                        "%progress%", Set.of(TerrariaInstanceEventType.OUTPUT), now.minusSeconds(300), now,
+                        events.get(1).getId(), PageRequest.of(0, 10))
+                .stream()
+                .map(TerrariaInstanceEventEntity::getId)
+                .collect(Collectors.toUnmodifiableList()));
+        assertTrue(terrariaInstanceEventRepository.searchByContent(instance, "%progress%",
+                Set.of(TerrariaInstanceEventType.INPUT), now.minusSeconds(300), now.plusSeconds(1), Long.MAX_VALUE,
+                PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void saveAll_pooledIds() {
+        final HostEntity host = hostRepository.save(makeHost());
+        final TerrariaInstanceEntity instance = terrariaInstanceRepository.save(
+                makeInstanceBuilder().host(host).build());
+        entityManager.flush();
+        final Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        final List<TerrariaInstanceEventEntity> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(makeEvent(instance));
+        }
+        final List<TerrariaInstanceEventEntity> savedEvents = terrariaInstanceEventRepository.saveAll(events);
+        entityManager.flush();
+
+        // At most two calls to `nextval` (depending on where the current block of IDs ends) and one batch insert
+        assertTrue(statistics.getPrepareStatementCount() <= 3,
+                "Expected at most 3 statements but there were " + statistics.getPrepareStatementCount());
+        assertEquals(100L, savedEvents.get(99).getId() - savedEvents.get(0).getId() + 1);
+    }
+
     private TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance) {
-        return TerrariaInstanceEventEntity.builder().instance(instance).type(TerrariaInstanceEventType.OUTPUT).build();
+        return makeEvent(instance, TerrariaInstanceEventType.OUTPUT);
+    }
+
+    private TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance,
+            final TerrariaInstanceEventType type) {
+        return TerrariaInstanceEventEntity.builder().instance(instance).type(type).build();
+    }
+
+    private TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final Instant timestamp) {
+        return TerrariaInstanceEventEntity.builder()
+                .instance(instance)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final String content,
+            final Instant timestamp) {
+        return TerrariaInstanceEventEntity.builder()
+                .instance(instance)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .content(content)
+                .timestamp(timestamp)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -50,7 +50,7 @@ class TerrariaInstanceRepositoryIT {
 
     private static TerrariaInstanceEntity.TerrariaInstanceEntityBuilder makeInstance(final HostEntity host,
             final UUID uuid) {
-        return TerrariaInstanceFactory.makeInstanceBuilder().uuid(uuid).host(host);
+        return TerrariaInstanceFactory.makeInstanceBuilder().id(null).uuid(uuid).host(host);
     }
 
     @Test
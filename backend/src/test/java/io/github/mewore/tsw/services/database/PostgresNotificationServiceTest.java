@@ -23,6 +23,7 @@ import io.github.mewore.tsw.events.FakeSubscription;
 import io.github.mewore.tsw.events.Publisher;
 import io.github.mewore.tsw.events.PublisherTopicEvent;
 import io.github.mewore.tsw.events.Subscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 import io.github.mewore.tsw.services.util.async.InterruptableRunnable;
 import io.github.mewore.tsw.services.util.async.LifecycleThreadPool;
 
@@ -208,20 +209,28 @@ class PostgresNotificationServiceTest {
 
     @Test
     void testSubscribeRaw() {
-        when(publisher.subscribe("channel")).thenReturn(subscription);
+        when(publisher.subscribe("channel", SubscriptionOverflowPolicy.DROP_NEWEST)).thenReturn(subscription);
         assertSame(subscription, postgresNotificationService.subscribeRaw("channel"));
     }
 
+    @Test
+    void testSubscribe_overflowPolicy() throws InterruptedException {
+        when(publisher.subscribe("channel", SubscriptionOverflowPolicy.UNBOUNDED)).thenReturn(
+                new FakeSubscription<>("1"));
+        assertEquals(1L, postgresNotificationService.subscribe("channel", new TypeReference<Long>() {
+        }, SubscriptionOverflowPolicy.UNBOUNDED).take());
+    }
+
     @Test
     void testSubscribe() throws InterruptedException {
-        when(publisher.subscribe("channel")).thenReturn(new FakeSubscription<>("[1]"));
+        when(publisher.subscribe("channel", SubscriptionOverflowPolicy.DROP_NEWEST)).thenReturn(new FakeSubscription<>("[1]"));
         assertEquals(List.of(1), postgresNotificationService.subscribe("channel", new TypeReference<List<Integer>>() {
         }).take());
     }
 
     @Test
     void testSubscribe_error() {
-        when(publisher.subscribe("channel")).thenReturn(new FakeSubscription<>("invalid"));
+        when(publisher.subscribe("channel", SubscriptionOverflowPolicy.DROP_NEWEST)).thenReturn(new FakeSubscription<>("invalid"));
         final Exception exception = assertThrows(RuntimeException.class,
                 () -> postgresNotificationService.subscribe("channel", new TypeReference<List<Integer>>() {
                 }).take());
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -107,11 +108,14 @@ class TerrariaInstanceActionServiceTest {
         final File outputFile = mock(File.class);
         when(outputFile.exists()).thenReturn(true);
         when(instance.getOutputFile()).thenReturn(outputFile);
+        final TerrariaInstanceEntity deletingInstance = mock(TerrariaInstanceEntity.class);
+        when(deletingInstance.getState()).thenReturn(TerrariaInstanceState.DELETING);
         when(terrariaInstanceRepository.findByHostUuid(HOST_UUID)).thenReturn(
-                Arrays.asList(inactiveInstance, instanceWithoutOutputFile, instance));
+                Arrays.asList(inactiveInstance, instanceWithoutOutputFile, instance, deletingInstance));
 
         terrariaInstanceActionService.setUp();
         verify(terrariaInstanceOutputService).trackInstance(instance);
+        verify(terrariaInstanceService, only()).deleteInstanceInBackground(deletingInstance);
         verify(lifecycleThreadPool, only()).run(any(InterruptableRunnable.class));
     }
 
@@ -190,7 +194,8 @@ class TerrariaInstanceActionServiceTest {
     void testCheckInstances_bootUp() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.IDLE,
                 TerrariaInstanceAction.BOOT_UP);
-        when(terrariaInstanceExecutionService.bootUpInstance(instance)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.bootUpInstance(instance)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
@@ -201,7 +206,8 @@ class TerrariaInstanceActionServiceTest {
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.WORLD_MENU,
                 TerrariaInstanceAction.GO_TO_MOD_MENU);
-        when(terrariaInstanceExecutionService.goToModMenu(instance)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.goToModMenu(instance)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
@@ -212,7 +218,8 @@ class TerrariaInstanceActionServiceTest {
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.MOD_MENU,
                 TerrariaInstanceAction.SET_LOADED_MODS);
-        when(terrariaInstanceExecutionService.setInstanceLoadedMods(instance)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.setInstanceLoadedMods(instance)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
@@ -222,7 +229,8 @@ class TerrariaInstanceActionServiceTest {
     void testCheckInstances_runServer() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.WORLD_MENU,
                 TerrariaInstanceAction.RUN_SERVER);
-        when(terrariaInstanceExecutionService.runInstance(instance)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.runInstance(instance)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
@@ -233,7 +241,8 @@ class TerrariaInstanceActionServiceTest {
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.WORLD_MENU,
                 TerrariaInstanceAction.CREATE_WORLD);
-        when(terrariaInstanceExecutionService.createWorld(instance)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.createWorld(instance)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
@@ -243,7 +252,8 @@ class TerrariaInstanceActionServiceTest {
     void testCheckInstances_shutDown() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.WORLD_MENU,
                 TerrariaInstanceAction.SHUT_DOWN);
-        when(terrariaInstanceExecutionService.shutDownInstance(instance, true)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.shutDownInstance(instance, true)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
@@ -254,7 +264,8 @@ class TerrariaInstanceActionServiceTest {
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.RUNNING,
                 TerrariaInstanceAction.SHUT_DOWN_NO_SAVE);
-        when(terrariaInstanceExecutionService.shutDownInstance(instance, false)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.shutDownInstance(instance, false)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
@@ -264,7 +275,8 @@ class TerrariaInstanceActionServiceTest {
     void testCheckInstances_terminate() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = preparePendingAction(TerrariaInstanceState.WORLD_MENU,
                 TerrariaInstanceAction.TERMINATE);
-        when(terrariaInstanceExecutionService.terminateInstance(instance)).thenReturn(instance);
+        when(terrariaInstanceExecutionService.terminateInstance(instance)).thenReturn(
+                CompletableFuture.completedFuture(instance));
 
         runCheckInstances();
         assertNull(instance.getError());
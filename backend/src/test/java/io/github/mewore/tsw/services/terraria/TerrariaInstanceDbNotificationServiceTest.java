@@ -1,5 +1,6 @@
 package io.github.mewore.tsw.services.terraria;
 
+import java.time.Duration;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
@@ -13,10 +14,12 @@ import org.springframework.context.ApplicationEventPublisher;
 
 import io.github.mewore.tsw.events.FakeSubscription;
 import io.github.mewore.tsw.events.NullSubscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 import io.github.mewore.tsw.events.TerrariaInstanceApplicationEvent;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
 import io.github.mewore.tsw.services.database.DatabaseNotificationService;
+import io.github.mewore.tsw.services.util.AsyncService;
 import io.github.mewore.tsw.services.util.async.InterruptableRunnable;
 import io.github.mewore.tsw.services.util.async.LifecycleThreadPool;
 
@@ -27,6 +30,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -48,6 +52,15 @@ class TerrariaInstanceDbNotificationServiceTest {
     @Mock
     private LifecycleThreadPool lifecycleThreadPool;
 
+    @Mock
+    private TerrariaInstanceEventCache terrariaInstanceEventCache;
+
+    @Mock
+    private TerrariaInstanceEventSearchIndex terrariaInstanceEventSearchIndex;
+
+    @Mock
+    private AsyncService asyncService;
+
     @Captor
     private ArgumentCaptor<TerrariaInstanceApplicationEvent> instanceUpdatedEventCaptor;
 
@@ -57,6 +70,12 @@ class TerrariaInstanceDbNotificationServiceTest {
     @Captor
     private ArgumentCaptor<InterruptableRunnable> updateThreadCaptor;
 
+    @Captor
+    private ArgumentCaptor<InterruptableRunnable> eventCreationThreadCaptor;
+
+    @Captor
+    private ArgumentCaptor<Runnable> notificationCaptor;
+
     @Test
     void testSetUp_nullSubscription() {
         when(databaseNotificationService.subscribe(eq("terraria_instance_creations"), any())).thenReturn(
@@ -72,7 +91,8 @@ class TerrariaInstanceDbNotificationServiceTest {
                 new FakeSubscription<>(8L));
 
         terrariaInstanceDbNotificationService.setUp();
-        verify(lifecycleThreadPool, only()).run(creationThreadCaptor.capture(), updateThreadCaptor.capture());
+        verify(lifecycleThreadPool, only()).run(creationThreadCaptor.capture(), updateThreadCaptor.capture(),
+                eventCreationThreadCaptor.capture());
         final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
         when(terrariaInstanceRepository.findById(8L)).thenReturn(Optional.of(instance));
 
@@ -86,7 +106,8 @@ class TerrariaInstanceDbNotificationServiceTest {
         when(databaseNotificationService.subscribe(eq("terraria_instance_creations"), any())).thenReturn(
                 new FakeSubscription<>(8L));
         terrariaInstanceDbNotificationService.setUp();
-        verify(lifecycleThreadPool, only()).run(creationThreadCaptor.capture(), updateThreadCaptor.capture());
+        verify(lifecycleThreadPool, only()).run(creationThreadCaptor.capture(), updateThreadCaptor.capture(),
+                eventCreationThreadCaptor.capture());
         when(terrariaInstanceRepository.findById(8L)).thenReturn(Optional.empty());
 
         creationThreadCaptor.getValue().run();
@@ -101,7 +122,8 @@ class TerrariaInstanceDbNotificationServiceTest {
                 new FakeSubscription<>(8L));
 
         terrariaInstanceDbNotificationService.setUp();
-        verify(lifecycleThreadPool, only()).run(creationThreadCaptor.capture(), updateThreadCaptor.capture());
+        verify(lifecycleThreadPool, only()).run(creationThreadCaptor.capture(), updateThreadCaptor.capture(),
+                eventCreationThreadCaptor.capture());
         final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
         when(terrariaInstanceRepository.findById(8L)).thenReturn(Optional.of(instance));
 
@@ -110,6 +132,49 @@ class TerrariaInstanceDbNotificationServiceTest {
         assertSame(instance, instanceUpdatedEventCaptor.getValue().getChangedInstance());
     }
 
+    @Test
+    void testWaitForInstanceEventNotification() throws InterruptedException {
+        when(databaseNotificationService.subscribe(eq("terraria_instance_creations"), any())).thenReturn(
+                new FakeSubscription<>(1L));
+        when(databaseNotificationService.subscribe(eq("terraria_instance_updates"), any())).thenReturn(
+                new FakeSubscription<>(1L));
+        when(databaseNotificationService.subscribe(eq("terraria_instance_event_creations"), any(),
+                eq(SubscriptionOverflowPolicy.UNBOUNDED))).thenReturn(new FakeSubscription<>(8L));
+
+        terrariaInstanceDbNotificationService.setUp();
+        verify(lifecycleThreadPool, only()).run(creationThreadCaptor.capture(), updateThreadCaptor.capture(),
+                eventCreationThreadCaptor.capture());
+
+        eventCreationThreadCaptor.getValue().run();
+        verify(terrariaInstanceEventCache, only()).invalidate(8L);
+        verify(terrariaInstanceEventSearchIndex, only()).invalidate(8L);
+    }
+
+    @Test
+    void testInstanceEventsCreated() {
+        terrariaInstanceDbNotificationService.instanceEventsCreated(1L);
+        terrariaInstanceDbNotificationService.instanceEventsCreated(1L);
+        verify(asyncService, only()).scheduleInThread(notificationCaptor.capture(), eq(Duration.ofMillis(1000)));
+        verify(databaseNotificationService, never()).trySend(any(), any());
+
+        notificationCaptor.getValue().run();
+        verify(databaseNotificationService, only()).trySend("terraria_instance_event_creations", 1L);
+
+        terrariaInstanceDbNotificationService.instanceEventsCreated(1L);
+        verify(asyncService, times(2)).scheduleInThread(any(), any());
+    }
+
+    @Test
+    void testInstanceEventsCreated_differentInstances() {
+        terrariaInstanceDbNotificationService.instanceEventsCreated(1L);
+        terrariaInstanceDbNotificationService.instanceEventsCreated(2L);
+        verify(asyncService, times(2)).scheduleInThread(notificationCaptor.capture(), any());
+
+        notificationCaptor.getAllValues().forEach(Runnable::run);
+        verify(databaseNotificationService).trySend("terraria_instance_event_creations", 1L);
+        verify(databaseNotificationService).trySend("terraria_instance_event_creations", 2L);
+    }
+
     @Test
     void testInstanceCreated() {
         terrariaInstanceDbNotificationService.instanceCreated(makeInstanceWithId(1L));
@@ -0,0 +1,125 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TerrariaInstanceEventCacheTest {
+
+    @InjectMocks
+    private TerrariaInstanceEventCache terrariaInstanceEventCache;
+
+    @Mock
+    private TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    private static TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final long id) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(instance)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .content("event " + id)
+                .build();
+    }
+
+    private static List<Long> getIds(final List<TerrariaInstanceEventEntity> events) {
+        return events.stream().map(TerrariaInstanceEventEntity::getId).collect(Collectors.toUnmodifiableList());
+    }
+
+    @Test
+    void testGetRecentEvents() {
+        final TerrariaInstanceEntity instance = makeInstanceWithId(1L);
+        when(terrariaInstanceEventStore.getEvents(instance, null, 100, null)).thenReturn(
+                new ArrayList<>(List.of(makeEvent(instance, 1L), makeEvent(instance, 2L))));
+
+        assertEquals(List.of(1L, 2L), getIds(terrariaInstanceEventCache.getRecentEvents(instance)));
+        assertEquals(List.of(1L, 2L), getIds(terrariaInstanceEventCache.getRecentEvents(instance)));
+        verify(terrariaInstanceEventStore).getEvents(instance, null, 100, null);
+    }
+
+    @Test
+    void testAppend() {
+        ReflectionTestUtils.setField(terrariaInstanceEventCache, "eventsPerInstance", 3);
+        final TerrariaInstanceEntity instance = makeInstanceWithId(1L);
+        final TerrariaInstanceEntity otherInstance = makeInstanceWithId(2L);
+        when(terrariaInstanceEventStore.getEvents(instance, null, 3, null)).thenReturn(
+                new ArrayList<>(List.of(makeEvent(instance, 1L), makeEvent(instance, 2L))));
+        terrariaInstanceEventCache.getRecentEvents(instance);
+
+        terrariaInstanceEventCache.append(
+                List.of(makeEvent(instance, 3L), makeEvent(otherInstance, 4L), makeEvent(instance, 5L)));
+        assertEquals(List.of(2L, 3L, 5L), getIds(terrariaInstanceEventCache.getRecentEvents(instance)));
+    }
+
+    @Test
+    void testAppend_whileLoading() {
+        final TerrariaInstanceEntity instance = makeInstanceWithId(1L);
+        when(terrariaInstanceEventStore.getEvents(instance, null, 100, null)).then(invocation -> {
+            terrariaInstanceEventCache.append(List.of(makeEvent(instance, 2L), makeEvent(instance, 3L)));
+            return new ArrayList<>(List.of(makeEvent(instance, 1L), makeEvent(instance, 2L)));
+        });
+
+        assertEquals(List.of(1L, 2L, 3L), getIds(terrariaInstanceEventCache.getRecentEvents(instance)));
+    }
+
+    @Test
+    void testInvalidate() {
+        final TerrariaInstanceEntity instance = makeInstanceWithId(1L);
+        when(terrariaInstanceEventStore.getEvents(instance, null, 100, null)).thenReturn(
+                new ArrayList<>(List.of(makeEvent(instance, 1L))));
+        terrariaInstanceEventCache.getRecentEvents(instance);
+
+        terrariaInstanceEventCache.invalidate(1L);
+        terrariaInstanceEventCache.getRecentEvents(instance);
+        verify(terrariaInstanceEventStore, times(2)).getEvents(instance, null, 100, null);
+    }
+
+    @Test
+    void testEviction() {
+        // Enough for the events of two instances but not three
+        ReflectionTestUtils.setField(terrariaInstanceEventCache, "maxBytes", 400L);
+        final TerrariaInstanceEntity firstInstance = makeInstanceWithId(1L);
+        final TerrariaInstanceEntity secondInstance = makeInstanceWithId(2L);
+        final TerrariaInstanceEntity thirdInstance = makeInstanceWithId(3L);
+        for (final TerrariaInstanceEntity instance : List.of(firstInstance, secondInstance, thirdInstance)) {
+            when(terrariaInstanceEventStore.getEvents(instance, null, 100, null)).then(
+                    invocation -> new ArrayList<>(List.of(makeEvent(instance, instance.getId()))));
+        }
+
+        terrariaInstanceEventCache.getRecentEvents(firstInstance);
+        terrariaInstanceEventCache.getRecentEvents(secondInstance);
+        terrariaInstanceEventCache.getRecentEvents(firstInstance);
+        terrariaInstanceEventCache.getRecentEvents(thirdInstance);
+
+        // The second instance has been viewed the least recently
+        terrariaInstanceEventCache.getRecentEvents(firstInstance);
+        terrariaInstanceEventCache.getRecentEvents(secondInstance);
+        verify(terrariaInstanceEventStore).getEvents(firstInstance, null, 100, null);
+        verify(terrariaInstanceEventStore, times(2)).getEvents(secondInstance, null, 100, null);
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        terrariaInstanceEventCache.writeMetrics(writer);
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_instance_event_cache_instances 2\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_event_cache_evictions_total 2\n"), metrics);
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TerrariaInstanceEventChunkCodecTest {
+
+    private static final TerrariaInstanceEntity INSTANCE = makeInstanceWithId(1L);
+
+    private static TerrariaInstanceEventEntity makeEvent(final long id, final String content) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(INSTANCE)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .timestamp(Instant.ofEpochSecond(1000 + id, 123456789))
+                .content(content)
+                .build();
+    }
+
+    private static List<String> getContents(final List<TerrariaInstanceEventEntity> events) {
+        return events.stream().map(TerrariaInstanceEventEntity::getContent).collect(Collectors.toUnmodifiableList());
+    }
+
+    @Test
+    void testPack() {
+        final List<TerrariaInstanceEventEntity> events = List.of(makeEvent(3L, "Hello"), makeEvent(5L, ", "),
+                makeEvent(8L, "wörld\n".repeat(1000)));
+        final TerrariaInstanceEventChunkEntity chunk = TerrariaInstanceEventChunkCodec.pack(events);
+        assertSame(INSTANCE, chunk.getInstance());
+        assertEquals(3L, chunk.getFirstEventId());
+        assertEquals(8L, chunk.getLastEventId());
+        assertEquals(Instant.ofEpochSecond(1008, 123456789), chunk.getLastTimestamp());
+        assertEquals(3, chunk.getEventCount());
+        assertEquals(7007, chunk.getContentSize());
+        assertTrue(chunk.getCompressedContent().length < 1000,
+                "The content is not compressed: " + chunk.getCompressedContent().length + " bytes");
+
+        final List<TerrariaInstanceEventEntity> unpackedEvents = TerrariaInstanceEventChunkCodec.unpackBefore(chunk,
+                Long.MAX_VALUE);
+        assertEquals(List.of(3L, 5L, 8L), unpackedEvents.stream()
+                .map(TerrariaInstanceEventEntity::getId)
+                .collect(Collectors.toUnmodifiableList()));
+        assertEquals(getContents(events), getContents(unpackedEvents));
+        assertEquals(Instant.ofEpochSecond(1005, 123456789), unpackedEvents.get(1).getTimestamp());
+        assertSame(TerrariaInstanceEventType.OUTPUT, unpackedEvents.get(1).getType());
+    }
+
+    @Test
+    void testUnpackBefore() {
+        final TerrariaInstanceEventChunkEntity chunk = TerrariaInstanceEventChunkCodec.pack(
+                List.of(makeEvent(3L, "a"), makeEvent(5L, "b"), makeEvent(8L, "c")));
+        assertEquals(List.of("a", "b"), getContents(TerrariaInstanceEventChunkCodec.unpackBefore(chunk, 8L)));
+        assertEquals(List.of(), getContents(TerrariaInstanceEventChunkCodec.unpackBefore(chunk, 3L)));
+    }
+
+    @Test
+    void testPack_empty() {
+        assertThrows(IllegalArgumentException.class, () -> TerrariaInstanceEventChunkCodec.pack(List.of()));
+    }
+}
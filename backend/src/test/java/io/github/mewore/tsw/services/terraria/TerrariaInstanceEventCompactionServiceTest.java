@@ -0,0 +1,144 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TerrariaInstanceEventCompactionServiceTest {
+
+    private static final Instant NOW = Instant.parse("2021-08-15T12:00:00Z");
+
+    private static final Instant PACKED_BEFORE = Instant.parse("2021-08-15T11:00:00Z");
+
+    @InjectMocks
+    private TerrariaInstanceEventCompactionService terrariaInstanceEventCompactionService;
+
+    @Mock
+    private TerrariaInstanceRepository terrariaInstanceRepository;
+
+    @Mock
+    private TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+
+    @Mock
+    private TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    @Mock
+    private TerrariaInstanceService terrariaInstanceService;
+
+    @Mock
+    private AsyncService asyncService;
+
+    @Captor
+    private ArgumentCaptor<TerrariaInstanceEventChunkEntity> chunkCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<Long>> eventIdCaptor;
+
+    private static TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final long id) {
+        return makeEvent(instance, id, Instant.EPOCH);
+    }
+
+    private static TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final long id,
+            final Instant timestamp) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(instance)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .content("0123456789")
+                .timestamp(timestamp)
+                .build();
+    }
+
+    @Test
+    void testCompact() {
+        ReflectionTestUtils.setField(terrariaInstanceEventCompactionService, "chunkBytes", 20);
+        final TerrariaInstanceEntity instance = makeInstanceWithId(1L);
+        when(terrariaInstanceRepository.findAll()).thenReturn(List.of(instance));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                instance, Long.MAX_VALUE)).thenReturn(Optional.of(TerrariaInstanceEventChunkEntity.builder()
+                .instance(instance)
+                .lastEventId(10L)
+                .lastTimestamp(Instant.EPOCH)
+                .build()));
+        when(terrariaInstanceEventRepository.findByInstanceAndTypeAndIdGreaterThanAndTimestampBeforeOrderByIdAsc(
+                instance, TerrariaInstanceEventType.OUTPUT, 10L, PACKED_BEFORE, PageRequest.of(0, 1000))).thenReturn(
+                List.of(makeEvent(instance, 11L), makeEvent(instance, 12L), makeEvent(instance, 14L)));
+
+        terrariaInstanceEventCompactionService.compact(NOW);
+        verify(terrariaInstanceService, times(2)).saveEventChunk(chunkCaptor.capture(), eventIdCaptor.capture());
+        assertEquals(List.of(List.of(11L, 12L), List.of(14L)), eventIdCaptor.getAllValues());
+        assertEquals(11L, chunkCaptor.getAllValues().get(0).getFirstEventId());
+        assertEquals(12L, chunkCaptor.getAllValues().get(0).getLastEventId());
+        assertEquals(14L, chunkCaptor.getAllValues().get(1).getFirstEventId());
+    }
+
+    @Test
+    void testCompact_recentPartialChunk() {
+        ReflectionTestUtils.setField(terrariaInstanceEventCompactionService, "chunkBytes", 20);
+        final TerrariaInstanceEntity instance = makeInstanceWithId(1L);
+        when(terrariaInstanceRepository.findAll()).thenReturn(List.of(instance));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                instance, Long.MAX_VALUE)).thenReturn(Optional.empty());
+        when(terrariaInstanceEventRepository.findByInstanceAndTypeAndIdGreaterThanAndTimestampBeforeOrderByIdAsc(
+                instance, TerrariaInstanceEventType.OUTPUT, 0L, PACKED_BEFORE, PageRequest.of(0, 1000))).thenReturn(
+                List.of(makeEvent(instance, 1L), makeEvent(instance, 2L),
+                        makeEvent(instance, 3L, NOW.minus(Duration.ofHours(2)))));
+
+        terrariaInstanceEventCompactionService.compact(NOW);
+        verify(terrariaInstanceService).saveEventChunk(any(), eventIdCaptor.capture());
+        assertEquals(List.of(1L, 2L), eventIdCaptor.getValue());
+    }
+
+    @Test
+    void testCompact_deleting() {
+        when(terrariaInstanceRepository.findAll()).thenReturn(
+                List.of(makeInstanceWithState(TerrariaInstanceState.DELETING)));
+        terrariaInstanceEventCompactionService.compact(NOW);
+        verifyNoInteractions(terrariaInstanceEventRepository, terrariaInstanceService);
+    }
+
+    @Test
+    void testSetUp_disabled() {
+        terrariaInstanceEventCompactionService.setUp();
+        verify(asyncService, never()).scheduleAtFixedRate(any(), any(), any());
+    }
+
+    @Test
+    void testSetUp_enabled() {
+        ReflectionTestUtils.setField(terrariaInstanceEventCompactionService, "enabled", true);
+        terrariaInstanceEventCompactionService.setUp();
+        verify(asyncService).scheduleAtFixedRate(any(), any(), any());
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import io.github.mewore.tsw.models.HostEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.repositories.HostRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
+
+import static io.github.mewore.tsw.models.HostFactory.makeHost;
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceBuilder;
+
+@DataJpaTest
+class TerrariaInstanceEventJdbcStoreIT extends TerrariaInstanceEventStoreConformanceTest {
+
+    @Autowired
+    private HostRepository hostRepository;
+
+    @Autowired
+    private TerrariaInstanceRepository terrariaInstanceRepository;
+
+    @Autowired
+    private TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+
+    @Autowired
+    private TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    private TerrariaInstanceEventJdbcStore terrariaInstanceEventJdbcStore;
+
+    private HostEntity host;
+
+    @BeforeEach
+    void setUp() {
+        terrariaInstanceEventJdbcStore = new TerrariaInstanceEventJdbcStore(terrariaInstanceEventRepository,
+                terrariaInstanceEventChunkRepository);
+        host = hostRepository.save(makeHost());
+    }
+
+    @Override
+    TerrariaInstanceEventStore getStore() {
+        return terrariaInstanceEventJdbcStore;
+    }
+
+    @Override
+    TerrariaInstanceEntity createInstance() {
+        return terrariaInstanceRepository.save(
+                makeInstanceBuilder().id(null).uuid(UUID.randomUUID()).host(host).build());
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TerrariaInstanceEventJdbcStoreTest {
+
+    private static final TerrariaInstanceEntity INSTANCE = makeInstanceWithId(1L);
+
+    @InjectMocks
+    private TerrariaInstanceEventJdbcStore terrariaInstanceEventJdbcStore;
+
+    @Mock
+    private TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+
+    @Mock
+    private TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    private static TerrariaInstanceEventEntity makeEvent(final long id, final TerrariaInstanceEventType type) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(INSTANCE)
+                .type(type)
+                .content("event " + id)
+                .build();
+    }
+
+    private static TerrariaInstanceEventChunkEntity makeChunk(final long... eventIds) {
+        final List<TerrariaInstanceEventEntity> events = new ArrayList<>();
+        for (final long eventId : eventIds) {
+            events.add(makeEvent(eventId, TerrariaInstanceEventType.OUTPUT));
+        }
+        return TerrariaInstanceEventChunkCodec.pack(events);
+    }
+
+    private static List<Long> getIds(final List<TerrariaInstanceEventEntity> events) {
+        return events.stream().map(TerrariaInstanceEventEntity::getId).collect(Collectors.toUnmodifiableList());
+    }
+
+    @Test
+    void testGetEvents() {
+        when(terrariaInstanceEventRepository.findByInstanceOrderByIdDesc(INSTANCE, PageRequest.of(0, 5))).thenReturn(
+                List.of(makeEvent(10L, TerrariaInstanceEventType.INPUT),
+                        makeEvent(6L, TerrariaInstanceEventType.INPUT)));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                INSTANCE, Long.MAX_VALUE)).thenReturn(Optional.of(makeChunk(5L, 7L, 8L)));
+        // Not needed for the page, so it should not be unpacked
+        final TerrariaInstanceEventChunkEntity olderChunk = TerrariaInstanceEventChunkEntity.builder()
+                .instance(INSTANCE)
+                .firstEventId(1L)
+                .lastEventId(3L)
+                .lastTimestamp(Instant.EPOCH)
+                .eventCount(3)
+                .compressedContent(new byte[0])
+                .build();
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                INSTANCE, 5L)).thenReturn(Optional.of(olderChunk));
+
+        assertEquals(List.of(5L, 6L, 7L, 8L, 10L),
+                getIds(terrariaInstanceEventJdbcStore.getEvents(INSTANCE, null, 5, null)));
+    }
+
+    @Test
+    void testGetEvents_beforeAndOutputType() {
+        when(terrariaInstanceEventRepository.findByInstanceAndTypeAndIdLessThanOrderByIdDesc(INSTANCE,
+                TerrariaInstanceEventType.OUTPUT, 7L, PageRequest.of(0, 10))).thenReturn(
+                List.of(makeEvent(4L, TerrariaInstanceEventType.OUTPUT)));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                INSTANCE, 7L)).thenReturn(Optional.of(makeChunk(5L, 7L, 8L)));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                INSTANCE, 5L)).thenReturn(Optional.of(makeChunk(1L, 2L, 3L)));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                INSTANCE, 1L)).thenReturn(Optional.empty());
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), getIds(
+                terrariaInstanceEventJdbcStore.getEvents(INSTANCE, 7L, 10, TerrariaInstanceEventType.OUTPUT)));
+    }
+
+    @Test
+    void testGetEvents_otherType() {
+        when(terrariaInstanceEventRepository.findByInstanceAndTypeOrderByIdDesc(INSTANCE,
+                TerrariaInstanceEventType.INPUT, PageRequest.of(0, 10))).thenReturn(
+                List.of(makeEvent(6L, TerrariaInstanceEventType.INPUT),
+                        makeEvent(2L, TerrariaInstanceEventType.INPUT)));
+
+        assertEquals(List.of(2L, 6L), getIds(
+                terrariaInstanceEventJdbcStore.getEvents(INSTANCE, null, 10, TerrariaInstanceEventType.INPUT)));
+        verify(terrariaInstanceEventChunkRepository, never())
+                .findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(any(), anyLong());
+    }
+
+    @Test
+    void testGetEventsByIds() {
+        final List<Long> ids = List.of(2L, 3L, 5L, 8L, 9L, 10L);
+        when(terrariaInstanceEventRepository.findAllById(ids)).thenReturn(
+                List.of(makeEvent(10L, TerrariaInstanceEventType.INPUT)));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                INSTANCE, 10L)).thenReturn(Optional.of(makeChunk(5L, 7L, 8L)));
+        when(terrariaInstanceEventChunkRepository.findFirstByInstanceAndFirstEventIdLessThanOrderByFirstEventIdDesc(
+                INSTANCE, 4L)).thenReturn(Optional.of(makeChunk(1L, 2L, 3L)));
+
+        assertEquals(List.of(10L, 8L, 5L, 3L, 2L),
+                getIds(terrariaInstanceEventJdbcStore.getEventsByIds(INSTANCE, ids)));
+    }
+
+    @Test
+    void testDeleteEventBatch() {
+        when(terrariaInstanceEventRepository.deleteBatchByInstanceId(1L, 100)).thenReturn(100);
+
+        assertEquals(100, terrariaInstanceEventJdbcStore.deleteEventBatch(INSTANCE, 100));
+        verify(terrariaInstanceEventChunkRepository, never()).deleteByInstanceId(anyLong());
+    }
+
+    @Test
+    void testDeleteEventBatch_none() {
+        when(terrariaInstanceEventRepository.deleteBatchByInstanceId(1L, 100)).thenReturn(0);
+
+        assertEquals(0, terrariaInstanceEventJdbcStore.deleteEventBatch(INSTANCE, 100));
+        verify(terrariaInstanceEventChunkRepository).deleteByInstanceId(1L);
+    }
+
+    @Test
+    void testDeleteEventsBefore() {
+        final Instant expiryTime = Instant.ofEpochSecond(100L);
+        when(terrariaInstanceEventRepository.findIdsByTimestampBefore(expiryTime, PageRequest.of(0, 1000)))
+                .thenReturn(List.of(1L, 2L), List.of());
+        when(terrariaInstanceEventRepository.deleteByIdIn(List.of(1L, 2L))).thenReturn(2);
+
+        assertEquals(2L, terrariaInstanceEventJdbcStore.deleteEventsBefore(expiryTime));
+        verify(terrariaInstanceEventChunkRepository).deleteByLastTimestampBefore(expiryTime);
+    }
+}
@@ -0,0 +1,216 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventRetentionService.EventPartition;
+import io.github.mewore.tsw.services.util.AsyncService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TerrariaInstanceEventRetentionServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2021, 8, 15, 12, 0);
+
+    @InjectMocks
+    private TerrariaInstanceEventRetentionService terrariaInstanceEventRetentionService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private AsyncService asyncService;
+
+    @Mock
+    private TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    @Mock
+    private TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    private static List<String> getNames(final List<EventPartition> partitions) {
+        return partitions.stream().map(EventPartition::getName).collect(Collectors.toUnmodifiableList());
+    }
+
+    @Test
+    void testParsePartition() {
+        final EventPartition partition = TerrariaInstanceEventRetentionService.parsePartition("partition",
+                "FOR VALUES FROM ('2021-08-01 00:00:00') TO ('2021-09-01 00:00:00')");
+        assertEquals(LocalDateTime.of(2021, 8, 1, 0, 0), partition.getStart());
+        assertEquals(LocalDateTime.of(2021, 9, 1, 0, 0), partition.getEnd());
+    }
+
+    @Test
+    void testParsePartition_unbounded() {
+        final EventPartition partition = TerrariaInstanceEventRetentionService.parsePartition("partition",
+                "FOR VALUES FROM (MINVALUE) TO ('2021-09-01 00:00:00'::timestamp without time zone)");
+        assertNull(partition.getStart());
+        assertEquals(LocalDateTime.of(2021, 9, 1, 0, 0), partition.getEnd());
+    }
+
+    @Test
+    void testParsePartition_default() {
+        assertNull(TerrariaInstanceEventRetentionService.parsePartition("partition", "DEFAULT"));
+    }
+
+    @Test
+    void testGetMissingPartitions() {
+        final List<EventPartition> existingPartitions = List.of(
+                new EventPartition("terraria_instance_event_legacy", null, LocalDateTime.of(2021, 9, 1, 0, 0)));
+        assertEquals(List.of("terraria_instance_event_y2021m09", "terraria_instance_event_y2021m10"),
+                getNames(TerrariaInstanceEventRetentionService.getMissingPartitions(existingPartitions, NOW, 2)));
+    }
+
+    @Test
+    void testGetExpiredPartitions() {
+        final List<EventPartition> existingPartitions = List.of(
+                new EventPartition("legacy", null, LocalDateTime.of(2021, 7, 1, 0, 0)),
+                new EventPartition("july", LocalDateTime.of(2021, 7, 1, 0, 0), LocalDateTime.of(2021, 8, 1, 0, 0)),
+                new EventPartition("august", LocalDateTime.of(2021, 8, 1, 0, 0), LocalDateTime.of(2021, 9, 1, 0, 0)));
+        assertEquals(List.of("legacy", "july"), getNames(
+                TerrariaInstanceEventRetentionService.getExpiredPartitions(existingPartitions,
+                        LocalDateTime.of(2021, 8, 1, 0, 0))));
+    }
+
+    @Test
+    void testMaintain_notPartitioned() throws SQLException {
+        ReflectionTestUtils.setField(terrariaInstanceEventRetentionService, "retentionDays", 30);
+        mockDatabaseProduct("H2");
+        final Instant expiryTime = Instant.parse("2021-07-16T12:00:00Z");
+        when(terrariaInstanceEventStore.deleteEventsBefore(expiryTime)).thenReturn(3L);
+
+        terrariaInstanceEventRetentionService.maintain(NOW);
+        verify(terrariaInstanceEventStore).deleteEventsBefore(expiryTime);
+        verifyNoInteractions(terrariaInstanceEventChunkRepository);
+    }
+
+    @Test
+    void testMaintain_notPartitioned_noRetention() throws SQLException {
+        mockDatabaseProduct("H2");
+        terrariaInstanceEventRetentionService.maintain(NOW);
+        verifyNoInteractions(terrariaInstanceEventStore, terrariaInstanceEventChunkRepository);
+    }
+
+    @Test
+    void testMaintain_partitioned_dropFailure() throws SQLException {
+        ReflectionTestUtils.setField(terrariaInstanceEventRetentionService, "retentionDays", 30);
+        final Connection connection = mockDatabaseProduct("PostgreSQL");
+        mockQuery(connection, "pg_partitioned_table", mock(ResultSet.class), true);
+        final ResultSet lockResult = mockQuery(connection, "pg_try_advisory_lock", mock(ResultSet.class), true);
+        when(lockResult.getBoolean(1)).thenReturn(true);
+        final ResultSet partitionResult = mockQuery(connection, "pg_inherits", mock(ResultSet.class), true, true,
+                false);
+        when(partitionResult.getString(1)).thenReturn("terraria_instance_event_legacy",
+                "terraria_instance_event_y2021m08");
+        when(partitionResult.getString(2)).thenReturn("FOR VALUES FROM (MINVALUE) TO ('2021-07-01 00:00:00')",
+                "FOR VALUES FROM ('2021-08-01 00:00:00') TO ('2021-09-01 00:00:00')");
+        final PreparedStatement unlockStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(contains("pg_advisory_unlock"))).thenReturn(unlockStatement);
+        final Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.execute(anyString())).then(invocation -> {
+            if (invocation.<String>getArgument(0).contains(" DETACH PARTITION ")) {
+                throw new SQLException("Oh no");
+            }
+            return false;
+        });
+
+        terrariaInstanceEventRetentionService.maintain(NOW);
+        final InOrder inOrder = inOrder(statement, unlockStatement);
+        inOrder.verify(statement).execute(
+                "ALTER TABLE terraria_instance_event_partitioned DETACH PARTITION terraria_instance_event_legacy");
+        inOrder.verify(statement).execute(startsWith("CREATE TABLE IF NOT EXISTS terraria_instance_event_y2021m09 "));
+        inOrder.verify(statement).execute(startsWith("CREATE TABLE IF NOT EXISTS terraria_instance_event_y2021m10 "));
+        inOrder.verify(unlockStatement).execute();
+        verify(statement, never()).execute(startsWith("DROP TABLE"));
+    }
+
+    @Test
+    void testMaintain_partitioned_archiveFailure(@TempDir final Path archiveDirectory) throws SQLException {
+        ReflectionTestUtils.setField(terrariaInstanceEventRetentionService, "retentionDays", 30);
+        ReflectionTestUtils.setField(terrariaInstanceEventRetentionService, "archiveDirectory",
+                archiveDirectory.toString());
+        final Connection connection = mockDatabaseProduct("PostgreSQL");
+        mockQuery(connection, "pg_partitioned_table", mock(ResultSet.class), true);
+        final ResultSet lockResult = mockQuery(connection, "pg_try_advisory_lock", mock(ResultSet.class), true);
+        when(lockResult.getBoolean(1)).thenReturn(true);
+        final ResultSet partitionResult = mockQuery(connection, "pg_inherits", mock(ResultSet.class), true, false);
+        when(partitionResult.getString(1)).thenReturn("terraria_instance_event_legacy");
+        when(partitionResult.getString(2)).thenReturn("FOR VALUES FROM (MINVALUE) TO ('2021-07-01 00:00:00')");
+        when(connection.prepareStatement(contains("pg_advisory_unlock"))).thenReturn(mock(PreparedStatement.class));
+        when(connection.getAutoCommit()).thenReturn(true);
+        final Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(startsWith("SELECT id, instance_id"))).thenThrow(new SQLException("Oh no"));
+
+        terrariaInstanceEventRetentionService.maintain(NOW);
+        final InOrder inOrder = inOrder(connection);
+        inOrder.verify(connection).setAutoCommit(false);
+        inOrder.verify(connection).rollback();
+        inOrder.verify(connection).setAutoCommit(true);
+        verify(connection, never()).commit();
+        assertFalse(Files.exists(archiveDirectory.resolve("terraria_instance_event_legacy.csv.gz.tmp")));
+        assertFalse(Files.exists(archiveDirectory.resolve("terraria_instance_event_legacy.csv.gz")));
+        verify(statement, never()).execute(contains("terraria_instance_event_legacy"));
+    }
+
+    @Test
+    void testSetUp() {
+        terrariaInstanceEventRetentionService.setUp();
+        verify(asyncService).scheduleAtFixedRate(any(), any(), any());
+        verify(jdbcTemplate, never()).execute(any(ConnectionCallback.class));
+    }
+
+    private static ResultSet mockQuery(final Connection connection, final String sqlPart, final ResultSet resultSet,
+            final Boolean hasRow, final Boolean... hasMoreRows) throws SQLException {
+        final PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(contains(sqlPart))).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(hasRow, hasMoreRows);
+        return resultSet;
+    }
+
+    private Connection mockDatabaseProduct(final String productName) throws SQLException {
+        final Connection connection = mock(Connection.class);
+        final DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn(productName);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).then(
+                invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+        return connection;
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventSearchFilter;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TerrariaInstanceEventSearchIndexTest {
+
+    private static final TerrariaInstanceEntity INSTANCE = makeInstanceWithId(1L);
+
+    private static final TerrariaInstanceEventSearchFilter NO_FILTER = TerrariaInstanceEventSearchFilter.builder()
+            .build();
+
+    @InjectMocks
+    private TerrariaInstanceEventSearchIndex terrariaInstanceEventSearchIndex;
+
+    @Mock
+    private TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    private static TerrariaInstanceEventEntity makeEvent(final long id, final TerrariaInstanceEventType type,
+            final String content) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(INSTANCE)
+                .type(type)
+                .timestamp(Instant.ofEpochSecond(id))
+                .content(content)
+                .build();
+    }
+
+    private static TerrariaInstanceEventEntity makeEvent(final long id, final String content) {
+        return makeEvent(id, TerrariaInstanceEventType.OUTPUT, content);
+    }
+
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("player", "1", "has", "joined"),
+                TerrariaInstanceEventSearchIndex.tokenize("  Player-1 has JOINED.\n"));
+    }
+
+    @Test
+    void testFindCandidates() throws InterruptedException {
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, null, 1000, null)).thenReturn(
+                List.of(makeEvent(1L, "Player has joined."), makeEvent(2L, "Player has left."),
+                        makeEvent(4L, "Another player has joined.")));
+
+        assertEquals(List.of(4L, 1L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "ayer Has JOIN", NO_FILTER, Long.MAX_VALUE,
+                        10));
+        assertEquals(List.of(4L, 2L, 1L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "player", NO_FILTER, Long.MAX_VALUE, 10));
+        assertEquals(List.of(4L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "player", NO_FILTER, Long.MAX_VALUE, 1));
+        assertEquals(List.of(2L, 1L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "player", NO_FILTER, 4L, 10));
+        assertEquals(List.of(),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "nobody", NO_FILTER, Long.MAX_VALUE, 10));
+        // The index is built only once
+        verify(terrariaInstanceEventStore).getEvents(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void testFindCandidates_filter() throws InterruptedException {
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, null, 1000, null)).thenReturn(
+                List.of(makeEvent(1L, "save"), makeEvent(2L, TerrariaInstanceEventType.INPUT, "save"),
+                        makeEvent(3L, "save"), makeEvent(4L, "save")));
+
+        final TerrariaInstanceEventSearchFilter filter = TerrariaInstanceEventSearchFilter.builder()
+                .types(Set.of(TerrariaInstanceEventType.OUTPUT))
+                .from(Instant.ofEpochSecond(1L))
+                .to(Instant.ofEpochSecond(4L))
+                .build();
+        assertEquals(List.of(3L, 1L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "save", filter, Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void testFindCandidates_multiplePages() throws InterruptedException {
+        final TerrariaInstanceEventEntity[] newerEvents = new TerrariaInstanceEventEntity[1000];
+        for (int i = 0; i < newerEvents.length; i++) {
+            newerEvents[i] = makeEvent(i + 2, "line " + (i + 2));
+        }
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, null, 1000, null)).thenReturn(
+                List.of(newerEvents));
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, 2L, 1000, null)).thenReturn(
+                List.of(makeEvent(1L, "line 1")));
+
+        assertEquals(List.of(1001L, 1000L, 999L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "line", NO_FILTER, Long.MAX_VALUE, 3));
+        assertEquals(List.of(2L, 1L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "line", NO_FILTER, 3L, 10));
+        assertEquals(List.of(1L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "line 1", NO_FILTER, 2L, 10));
+    }
+
+    @Test
+    void testFindCandidates_failure() {
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, null, 1000, null)).thenThrow(
+                new IllegalStateException("oops"));
+
+        assertThrows(IllegalStateException.class,
+                () -> terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "line", NO_FILTER, Long.MAX_VALUE,
+                        10));
+        assertThrows(IllegalStateException.class,
+                () -> terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "line", NO_FILTER, Long.MAX_VALUE,
+                        10));
+        // The failed index is not kept
+        verify(terrariaInstanceEventStore, times(2)).getEvents(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void testAppend() throws InterruptedException {
+        // Not indexed yet, so it is ignored
+        terrariaInstanceEventSearchIndex.append(List.of(makeEvent(1L, "ignored")));
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, null, 1000, null)).thenReturn(
+                List.of(makeEvent(2L, "loaded")));
+        assertEquals(List.of(), terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "ignored", NO_FILTER,
+                Long.MAX_VALUE, 10));
+
+        terrariaInstanceEventSearchIndex.append(List.of(makeEvent(3L, "appended")));
+        assertEquals(List.of(3L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "append", NO_FILTER, Long.MAX_VALUE, 10));
+        assertEquals(List.of(3L, 2L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "ed", NO_FILTER, Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void testInvalidate() throws InterruptedException {
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, null, 1000, null)).thenReturn(
+                List.of(makeEvent(1L, "old")), List.of(makeEvent(1L, "old"), makeEvent(2L, "new")));
+        assertEquals(List.of(),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "new", NO_FILTER, Long.MAX_VALUE, 10));
+
+        terrariaInstanceEventSearchIndex.invalidate(1L);
+        assertEquals(List.of(2L),
+                terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "new", NO_FILTER, Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void testWriteMetrics() throws InterruptedException {
+        when(terrariaInstanceEventStore.getEvents(INSTANCE, null, 1000, null)).thenReturn(
+                List.of(makeEvent(1L, "a b"), makeEvent(2L, "b c")));
+        terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "b", NO_FILTER, Long.MAX_VALUE, 10);
+
+        final PrometheusTextWriter writer = mock(PrometheusTextWriter.class);
+        terrariaInstanceEventSearchIndex.writeMetrics(writer);
+        verify(writer).gauge(eq("tsw_instance_event_search_index_instances"), any(), eq(1.0));
+        verify(writer).gauge(eq("tsw_instance_event_search_index_events"), any(), eq(2.0));
+        verify(writer).gauge(eq("tsw_instance_event_search_index_tokens"), any(), eq(3.0));
+    }
+}
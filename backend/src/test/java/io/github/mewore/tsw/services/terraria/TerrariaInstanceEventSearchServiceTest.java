@@ -0,0 +1,202 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.github.mewore.tsw.exceptions.InvalidRequestException;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventSearchFilter;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
+import io.github.mewore.tsw.services.terraria.TerrariaInstanceEventSearchService.SearchMode;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TerrariaInstanceEventSearchServiceTest {
+
+    private static final TerrariaInstanceEntity INSTANCE = makeInstanceWithId(1L);
+
+    private static final TerrariaInstanceEventSearchFilter NO_FILTER = TerrariaInstanceEventSearchFilter.builder()
+            .build();
+
+    @InjectMocks
+    private TerrariaInstanceEventSearchService terrariaInstanceEventSearchService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TerrariaInstanceEventRepository terrariaInstanceEventRepository;
+
+    @Mock
+    private TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    @Mock
+    private TerrariaInstanceEventStore terrariaInstanceEventStore;
+
+    @Mock
+    private TerrariaInstanceEventSearchIndex terrariaInstanceEventSearchIndex;
+
+    private static TerrariaInstanceEventEntity makeEvent(final long id, final String content) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(INSTANCE)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .content(content)
+                .build();
+    }
+
+    private static TerrariaInstanceEventEntity makeEvent(final long id, final String content,
+            final long epochSecond) {
+        return TerrariaInstanceEventEntity.builder()
+                .id(id)
+                .instance(INSTANCE)
+                .type(TerrariaInstanceEventType.OUTPUT)
+                .timestamp(Instant.ofEpochSecond(epochSecond))
+                .content(content)
+                .build();
+    }
+
+    private static List<Long> getIds(final List<TerrariaInstanceEventEntity> events) {
+        return events.stream().map(TerrariaInstanceEventEntity::getId).collect(Collectors.toUnmodifiableList());
+    }
+
+    @Test
+    void testSearch_tooShort() {
+        final Exception exception = assertThrows(InvalidRequestException.class,
+                () -> terrariaInstanceEventSearchService.search(INSTANCE, "ab", NO_FILTER, null, 10));
+        assertEquals("The query must be at least 3 characters long", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate, terrariaInstanceEventRepository, terrariaInstanceEventSearchIndex);
+    }
+
+    @Test
+    void testSearch_database() throws SQLException, InvalidRequestException, InterruptedException {
+        when(terrariaInstanceEventStore.isInDatabase()).thenReturn(true);
+        mockDatabaseProduct("PostgreSQL");
+        when(terrariaInstanceEventRepository.searchByContent(INSTANCE, "%50\\%\\_done%",
+                EnumSet.allOf(TerrariaInstanceEventType.class), Instant.EPOCH, Instant.parse("9999-12-31T23:59:59Z"),
+                Long.MAX_VALUE, PageRequest.of(0, 10))).thenReturn(
+                List.of(makeEvent(3L, "50%_done"), makeEvent(2L, "50%_DONE")));
+
+        assertEquals(List.of(2L, 3L),
+                getIds(terrariaInstanceEventSearchService.search(INSTANCE, "50%_Done", NO_FILTER, null, 10)));
+        verifyNoInteractions(terrariaInstanceEventSearchIndex);
+    }
+
+    @Test
+    void testSearch_database_filter() throws InvalidRequestException, InterruptedException {
+        when(terrariaInstanceEventStore.isInDatabase()).thenReturn(true);
+        ReflectionTestUtils.setField(terrariaInstanceEventSearchService, "mode", SearchMode.DATABASE);
+        final TerrariaInstanceEventSearchFilter filter = TerrariaInstanceEventSearchFilter.builder()
+                .types(Set.of(TerrariaInstanceEventType.INPUT))
+                .from(Instant.ofEpochSecond(1L))
+                .to(Instant.ofEpochSecond(2L))
+                .build();
+        when(terrariaInstanceEventRepository.searchByContent(INSTANCE, "%save%", filter.getTypes(),
+                filter.getFrom(), filter.getTo(), 8L, PageRequest.of(0, 10))).thenReturn(List.of());
+
+        assertEquals(List.of(), terrariaInstanceEventSearchService.search(INSTANCE, "save", filter, 8L, 10));
+        verifyNoInteractions(jdbcTemplate, terrariaInstanceEventChunkRepository);
+    }
+
+    @Test
+    void testSearch_database_chunks() throws InvalidRequestException, InterruptedException {
+        when(terrariaInstanceEventStore.isInDatabase()).thenReturn(true);
+        ReflectionTestUtils.setField(terrariaInstanceEventSearchService, "mode", SearchMode.DATABASE);
+        final Instant from = Instant.ofEpochSecond(100L);
+        final TerrariaInstanceEventSearchFilter filter = TerrariaInstanceEventSearchFilter.builder()
+                .from(from)
+                .to(Instant.ofEpochSecond(200L))
+                .build();
+        when(terrariaInstanceEventRepository.searchByContent(INSTANCE, "%joined%",
+                EnumSet.allOf(TerrariaInstanceEventType.class), from, filter.getTo(), 40L,
+                PageRequest.of(0, 3))).thenReturn(List.of(makeEvent(30L, "joined")));
+        final List<TerrariaInstanceEventChunkEntity> chunks = List.of(
+                TerrariaInstanceEventChunkCodec.pack(List.of(makeEvent(20L, "joined", 150L),
+                        makeEvent(21L, "left", 150L), makeEvent(22L, "JOINED", 150L),
+                        makeEvent(23L, "joined", 250L))),
+                TerrariaInstanceEventChunkCodec.pack(List.of(makeEvent(10L, "joined", 150L))));
+        when(terrariaInstanceEventChunkRepository.findSearchCandidates(INSTANCE, 40L, from,
+                PageRequest.of(0, 10))).thenReturn(chunks);
+
+        assertEquals(List.of(20L, 22L, 30L),
+                getIds(terrariaInstanceEventSearchService.search(INSTANCE, "joined", filter, 40L, 3)));
+    }
+
+    @Test
+    void testSearch_memory() throws SQLException, InvalidRequestException, InterruptedException {
+        when(terrariaInstanceEventStore.isInDatabase()).thenReturn(true);
+        mockDatabaseProduct("H2");
+        final List<Long> firstCandidateIds = new ArrayList<>();
+        final List<TerrariaInstanceEventEntity> firstCandidates = new ArrayList<>();
+        for (long id = 200; id > 100; id--) {
+            firstCandidateIds.add(id);
+            // Only some of the candidates contain the whole query
+            firstCandidates.add(makeEvent(id, id % 10 == 0 ? "Player has joined" : "Has the player joined?"));
+        }
+        when(terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "player HAS", NO_FILTER, Long.MAX_VALUE,
+                100)).thenReturn(firstCandidateIds);
+        when(terrariaInstanceEventStore.getEventsByIds(INSTANCE, firstCandidateIds)).thenReturn(
+                firstCandidates);
+        when(terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "player HAS", NO_FILTER, 101L,
+                100)).thenReturn(List.of(50L, 40L));
+        when(terrariaInstanceEventStore.getEventsByIds(INSTANCE, List.of(50L, 40L))).thenReturn(
+                new ArrayList<>(List.of(makeEvent(40L, "player has left"), makeEvent(50L, "Player has joined"))));
+
+        assertEquals(List.of(40L, 50L, 110L, 120L, 130L, 140L, 150L, 160L, 170L, 180L, 190L, 200L),
+                getIds(terrariaInstanceEventSearchService.search(INSTANCE, "player HAS", NO_FILTER, null, 20)));
+        verify(terrariaInstanceEventRepository, never()).searchByContent(any(), any(), any(), any(), any(),
+                any(Long.class), any());
+    }
+
+    @Test
+    void testSearch_memory_limit() throws InvalidRequestException, InterruptedException {
+        ReflectionTestUtils.setField(terrariaInstanceEventSearchService, "mode", SearchMode.MEMORY);
+        when(terrariaInstanceEventSearchIndex.findCandidates(INSTANCE, "joined", NO_FILTER, 8L, 100)).thenReturn(
+                List.of(7L, 6L, 5L));
+        when(terrariaInstanceEventStore.getEventsByIds(INSTANCE, List.of(7L, 6L, 5L))).thenReturn(
+                new ArrayList<>(List.of(makeEvent(5L, "joined"), makeEvent(6L, "joined"), makeEvent(7L, "joined"))));
+
+        assertEquals(List.of(6L, 7L),
+                getIds(terrariaInstanceEventSearchService.search(INSTANCE, "joined", NO_FILTER, 8L, 2)));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private void mockDatabaseProduct(final String productName) throws SQLException {
+        final Connection connection = mock(Connection.class);
+        final DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn(productName);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).then(
+                invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+    }
+}
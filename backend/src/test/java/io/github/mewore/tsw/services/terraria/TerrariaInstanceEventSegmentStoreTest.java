@@ -0,0 +1,205 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.services.util.AsyncService;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TerrariaInstanceEventSegmentStoreTest extends TerrariaInstanceEventStoreConformanceTest {
+
+    private final AsyncService asyncService = mock(AsyncService.class);
+
+    private TerrariaInstanceEventSegmentStore store;
+
+    private long nextInstanceId = 1;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = openStore(1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.preDestroy();
+    }
+
+    private TerrariaInstanceEventSegmentStore openStore(final int segmentBytes) throws IOException {
+        final TerrariaInstanceEventSegmentStore result = new TerrariaInstanceEventSegmentStore(asyncService);
+        ReflectionTestUtils.setField(result, "directory", directory.toString());
+        ReflectionTestUtils.setField(result, "segmentBytes", segmentBytes);
+        result.setUp();
+        return result;
+    }
+
+    private void reopenStore() throws IOException {
+        store.preDestroy();
+        store = openStore(1024);
+    }
+
+    private List<String> getSegmentNames(final TerrariaInstanceEntity instance) throws IOException {
+        try (final Stream<Path> files = Files.list(directory.resolve(String.valueOf(instance.getId())))) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toUnmodifiableList());
+        }
+    }
+
+    @Override
+    TerrariaInstanceEventStore getStore() {
+        return store;
+    }
+
+    @Override
+    TerrariaInstanceEntity createInstance() {
+        return makeInstanceWithId(nextInstanceId++);
+    }
+
+    @Test
+    void testSetUp() {
+        verify(asyncService, times(2)).scheduleAtFixedRate(any(), any(), any());
+        assertFalse(store.isInDatabase());
+    }
+
+    @Test
+    void testReopen() throws IOException {
+        final TerrariaInstanceEntity instance = createInstance();
+        final List<TerrariaInstanceEventEntity> events = saveEvents(instance, 100);
+        reopenStore();
+
+        assertEquals(getContents(events), getContents(store.getEvents(instance, null, 1000, null)));
+        final long newId = store.saveAll(List.of(makeEvent(instance, "new"))).get(0).getId();
+        assertTrue(newId > events.get(99).getId());
+    }
+
+    @Test
+    void testReopen_tornWrite() throws IOException {
+        final TerrariaInstanceEntity instance = createInstance();
+        store.saveAll(List.of(makeEvent(instance, "first"), makeEvent(instance, "second")));
+        store.preDestroy();
+        final List<String> segmentNames = getSegmentNames(instance);
+        assertEquals(1, segmentNames.size());
+        final Path segmentFile = directory.resolve(String.valueOf(instance.getId())).resolve(segmentNames.get(0));
+        // Damage the second event as if it had not been written completely
+        final byte[] content = Files.readAllBytes(segmentFile);
+        final int damagedPosition = new String(content, StandardCharsets.ISO_8859_1).indexOf("second");
+        try (final RandomAccessFile file = new RandomAccessFile(segmentFile.toFile(), "rw")) {
+            file.seek(damagedPosition);
+            file.write('S');
+        }
+
+        store = openStore(1024);
+        assertEquals(List.of("first"), getContents(store.getEvents(instance, null, 10, null)));
+        store.saveAll(List.of(makeEvent(instance, "third")));
+        assertEquals(List.of("first", "third"), getContents(store.getEvents(instance, null, 10, null)));
+    }
+
+    @Test
+    void testSaveAll_rollsSegments() throws IOException {
+        final TerrariaInstanceEntity instance = createInstance();
+        final List<TerrariaInstanceEventEntity> events = saveEvents(instance, 100);
+        store.saveAll(List.of(makeEvent(instance, "x".repeat(2000))));
+
+        final List<String> segmentNames = getSegmentNames(instance);
+        assertTrue(segmentNames.size() > 2);
+        assertTrue(segmentNames.get(0).matches("\\d+-\\d+\\.segment"));
+        assertEquals(101, store.getEvents(instance, null, 1000, null).size());
+        assertEquals(List.of("event 50"),
+                getContents(store.getEventsByIds(instance, List.of(events.get(50).getId()))));
+    }
+
+    @Test
+    void testCompact() throws IOException {
+        final TerrariaInstanceEntity instance = createInstance();
+        final List<TerrariaInstanceEventEntity> events = saveEvents(instance, 100);
+        store.preDestroy();
+        store = openStore(8192);
+        final int segmentCount = getSegmentNames(instance).size();
+
+        store.compact();
+        final List<String> segmentNames = getSegmentNames(instance);
+        assertTrue(segmentNames.size() < segmentCount);
+        assertEquals(getContents(events), getContents(store.getEvents(instance, null, 1000, null)));
+        assertEquals(List.of("event 30"),
+                getContents(store.getEventsByIds(instance, List.of(events.get(30).getId()))));
+
+        reopenStore();
+        assertEquals(segmentNames, getSegmentNames(instance));
+        assertEquals(getContents(events), getContents(store.getEvents(instance, null, 1000, null)));
+    }
+
+    @Test
+    void testReopen_interruptedCompaction() throws IOException {
+        final TerrariaInstanceEntity instance = createInstance();
+        final List<TerrariaInstanceEventEntity> events = saveEvents(instance, 100);
+        final List<String> segmentNames = getSegmentNames(instance);
+        store.preDestroy();
+        final Path instanceDirectory = directory.resolve(String.valueOf(instance.getId()));
+        // Merge the first two segments without deleting them
+        final Path firstSegment = instanceDirectory.resolve(segmentNames.get(0));
+        final Path secondSegment = instanceDirectory.resolve(segmentNames.get(1));
+        final String mergedName = segmentNames.get(0).split("-")[0] + "-" + segmentNames.get(1).split("-")[1];
+        Files.write(instanceDirectory.resolve(mergedName),
+                (Files.readString(firstSegment, StandardCharsets.ISO_8859_1) +
+                        Files.readString(secondSegment, StandardCharsets.ISO_8859_1)).getBytes(
+                        StandardCharsets.ISO_8859_1));
+        Files.writeString(instanceDirectory.resolve("1-2.segment.tmp"), "garbage");
+
+        store = openStore(1024);
+        assertEquals(getContents(events), getContents(store.getEvents(instance, null, 1000, null)));
+        final List<String> newSegmentNames = getSegmentNames(instance);
+        assertEquals(segmentNames.size() - 1, newSegmentNames.size());
+        assertTrue(newSegmentNames.contains(mergedName));
+    }
+
+    @Test
+    void testDeleteEventsBefore_segments() throws IOException {
+        final TerrariaInstanceEntity instance = createInstance();
+        saveEvents(instance, 100);
+        final int segmentCount = getSegmentNames(instance).size();
+
+        assertEquals(50L, store.deleteEventsBefore(Instant.ofEpochSecond(1050L)));
+        assertTrue(getSegmentNames(instance).size() < segmentCount);
+        final List<TerrariaInstanceEventEntity> remainingEvents = store.getEvents(instance, null, 1000, null);
+        assertEquals(50, remainingEvents.size());
+        assertEquals("event 50", remainingEvents.get(0).getContent());
+
+        reopenStore();
+        assertEquals(getContents(remainingEvents), getContents(store.getEvents(instance, null, 1000, null)));
+    }
+
+    @Test
+    void testDeleteEventBatch_removesDirectory() {
+        final TerrariaInstanceEntity instance = createInstance();
+        saveEvents(instance, 100);
+
+        while (store.deleteEventBatch(instance, 1000) > 0) {
+            assertTrue(Files.isDirectory(directory.resolve(String.valueOf(instance.getId()))));
+        }
+        assertFalse(Files.exists(directory.resolve(String.valueOf(instance.getId()))));
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The behaviour that every {@link TerrariaInstanceEventStore} should have.
+ * <p>
+ * The tests are transactional here because Spring only looks for the annotation on the class that declares them, so
+ * the transaction of {@code @DataJpaTest} would not apply to them. Outside of Spring tests, this has no effect.
+ */
+@Transactional
+abstract class TerrariaInstanceEventStoreConformanceTest {
+
+    abstract TerrariaInstanceEventStore getStore();
+
+    abstract TerrariaInstanceEntity createInstance();
+
+    static TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final String content) {
+        return makeEvent(instance, content, TerrariaInstanceEventType.OUTPUT, Instant.ofEpochSecond(1000L));
+    }
+
+    static TerrariaInstanceEventEntity makeEvent(final TerrariaInstanceEntity instance, final String content,
+            final TerrariaInstanceEventType type, final Instant timestamp) {
+        return TerrariaInstanceEventEntity.builder()
+                .instance(instance)
+                .content(content)
+                .type(type)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    static List<String> getContents(final List<TerrariaInstanceEventEntity> events) {
+        return events.stream().map(TerrariaInstanceEventEntity::getContent).collect(Collectors.toUnmodifiableList());
+    }
+
+    List<TerrariaInstanceEventEntity> saveEvents(final TerrariaInstanceEntity instance, final int count) {
+        final List<TerrariaInstanceEventEntity> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(makeEvent(instance, "event " + i,
+                    i % 3 == 0 ? TerrariaInstanceEventType.INPUT : TerrariaInstanceEventType.OUTPUT,
+                    Instant.ofEpochSecond(1000L + i)));
+        }
+        return getStore().saveAll(events);
+    }
+
+    @Test
+    void testSaveAll() {
+        final TerrariaInstanceEntity instance = createInstance();
+        final TerrariaInstanceEntity otherInstance = createInstance();
+        final List<TerrariaInstanceEventEntity> savedEvents = getStore().saveAll(
+                List.of(makeEvent(instance, "first"), makeEvent(otherInstance, "other"),
+                        makeEvent(instance, "second")));
+
+        assertEquals(List.of("first", "other", "second"), getContents(savedEvents));
+        assertTrue(savedEvents.get(0).getId() < savedEvents.get(2).getId());
+        assertEquals(instance, savedEvents.get(0).getInstance());
+        assertEquals(List.of("first", "second"), getContents(getStore().getEvents(instance, null, 10, null)));
+        assertEquals(List.of("other"), getContents(getStore().getEvents(otherInstance, null, 10, null)));
+    }
+
+    @Test
+    void testSaveAll_idsIncreaseBetweenSaves() {
+        final TerrariaInstanceEntity instance = createInstance();
+        final long firstId = getStore().saveAll(List.of(makeEvent(instance, "first"))).get(0).getId();
+        final long secondId = getStore().saveAll(List.of(makeEvent(instance, "second"))).get(0).getId();
+        assertTrue(firstId < secondId);
+    }
+
+    @Test
+    void testGetEvents() {
+        final TerrariaInstanceEntity instance = createInstance();
+        final List<TerrariaInstanceEventEntity> events = saveEvents(instance, 10);
+
+        final List<TerrariaInstanceEventEntity> newestEvents = getStore().getEvents(instance, null, 3, null);
+        assertEquals(List.of("event 7", "event 8", "event 9"), getContents(newestEvents));
+        assertEquals(events.get(9).getId(), newestEvents.get(2).getId());
+        assertEquals(TerrariaInstanceEventType.INPUT, newestEvents.get(2).getType());
+        assertEquals(Instant.ofEpochSecond(1009L), newestEvents.get(2).getTimestamp());
+
+        assertEquals(List.of("event 4", "event 5", "event 6"),
+                getContents(getStore().getEvents(instance, events.get(7).getId(), 3, null)));
+        assertEquals(List.of("event 0", "event 1"),
+                getContents(getStore().getEvents(instance, events.get(2).getId(), 3, null)));
+    }
+
+    @Test
+    void testGetEvents_type() {
+        final TerrariaInstanceEntity instance = createInstance();
+        final List<TerrariaInstanceEventEntity> events = saveEvents(instance, 10);
+
+        assertEquals(List.of("event 0", "event 3", "event 6", "event 9"),
+                getContents(getStore().getEvents(instance, null, 10, TerrariaInstanceEventType.INPUT)));
+        assertEquals(List.of("event 4", "event 5", "event 7"), getContents(
+                getStore().getEvents(instance, events.get(8).getId(), 3, TerrariaInstanceEventType.OUTPUT)));
+    }
+
+    @Test
+    void testGetEvents_none() {
+        assertEquals(List.of(), getStore().getEvents(createInstance(), null, 10, null));
+    }
+
+    @Test
+    void testGetEventsByIds() {
+        final TerrariaInstanceEntity instance = createInstance();
+        final List<TerrariaInstanceEventEntity> events = saveEvents(instance, 10);
+        final long missingId = events.get(9).getId() + 1000;
+
+        assertEquals(Set.of("event 1", "event 5", "event 9"), Set.copyOf(getContents(
+                getStore().getEventsByIds(instance,
+                        List.of(events.get(9).getId(), events.get(1).getId(), missingId, events.get(5).getId())))));
+    }
+
+    @Test
+    void testDeleteEventBatch() {
+        final TerrariaInstanceEntity instance = createInstance();
+        final TerrariaInstanceEntity otherInstance = createInstance();
+        saveEvents(instance, 10);
+        saveEvents(otherInstance, 2);
+
+        int deletedEventCount = 0;
+        int batchCount = 0;
+        int lastBatchSize;
+        while ((lastBatchSize = getStore().deleteEventBatch(instance, 4)) > 0) {
+            deletedEventCount += lastBatchSize;
+            assertTrue(++batchCount <= 10, "The events should be deleted within 10 batches");
+        }
+        assertEquals(10, deletedEventCount);
+        assertEquals(List.of(), getStore().getEvents(instance, null, 10, null));
+        assertEquals(2, getStore().getEvents(otherInstance, null, 10, null).size());
+    }
+
+    @Test
+    void testDeleteEventsBefore() {
+        final TerrariaInstanceEntity instance = createInstance();
+        saveEvents(instance, 10);
+
+        assertEquals(4L, getStore().deleteEventsBefore(Instant.ofEpochSecond(1004L)));
+        assertEquals(List.of("event 4", "event 5", "event 6", "event 7", "event 8", "event 9"),
+                getContents(getStore().getEvents(instance, null, 10, null)));
+        assertEquals(0L, getStore().deleteEventsBefore(Instant.ofEpochSecond(1004L)));
+    }
+}
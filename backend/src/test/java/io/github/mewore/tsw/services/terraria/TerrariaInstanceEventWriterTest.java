@@ -0,0 +1,248 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.services.util.AsyncService;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TerrariaInstanceEventWriterTest {
+
+    private static final long TIMEOUT_MS = 10000L;
+
+    private final AsyncService asyncService = mock(AsyncService.class);
+
+    private final TerrariaInstanceService terrariaInstanceService = mock(TerrariaInstanceService.class);
+
+    private final TerrariaInstanceEventWriter terrariaInstanceEventWriter = new TerrariaInstanceEventWriter(
+            terrariaInstanceService, asyncService);
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            new Thread(invocation.<Runnable>getArgument(0)).start();
+            return null;
+        }).when(asyncService).runInThread(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        terrariaInstanceEventWriter.preDestroy();
+    }
+
+    private static TerrariaInstanceEntity makeInstance(final long id, final long outputPosition) {
+        final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
+        when(instance.getId()).thenReturn(id);
+        when(instance.getNextOutputBytePosition()).thenReturn(outputPosition);
+        return instance;
+    }
+
+    @Test
+    void testWrite() throws InterruptedException {
+        final CountDownLatch commitLatch = new CountDownLatch(1);
+        doAnswer(invocation -> commitLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).when(terrariaInstanceService)
+                .saveEventsAndOutputPositions(any(), any());
+        final TerrariaInstanceEventEntity firstEvent = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity secondEvent = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity thirdEvent = mock(TerrariaInstanceEventEntity.class);
+        final Runnable onSaved = mock(Runnable.class);
+
+        // The first write is committed alone while the others are queued and then committed together
+        terrariaInstanceEventWriter.write(makeInstance(1L, 5L), List.of(firstEvent), onSaved);
+        verify(terrariaInstanceService, timeout(TIMEOUT_MS)).saveEventsAndOutputPositions(List.of(firstEvent),
+                Map.of(1L, 5L));
+        terrariaInstanceEventWriter.write(makeInstance(2L, 10L), List.of(secondEvent), onSaved);
+        terrariaInstanceEventWriter.write(makeInstance(1L, 20L), List.of(thirdEvent), onSaved);
+        assertEquals(3, terrariaInstanceEventWriter.getQueuedEventCount());
+        commitLatch.countDown();
+
+        terrariaInstanceEventWriter.flush();
+        verify(terrariaInstanceService).saveEventsAndOutputPositions(List.of(secondEvent, thirdEvent),
+                Map.of(2L, 10L, 1L, 20L));
+        verify(onSaved, timeout(TIMEOUT_MS).times(3)).run();
+        assertEquals(0, terrariaInstanceEventWriter.getQueuedEventCount());
+    }
+
+    @Test
+    void testWrite_backPressure() throws InterruptedException, ExecutionException, TimeoutException {
+        ReflectionTestUtils.setField(terrariaInstanceEventWriter, "queueCapacity", 1);
+        final CountDownLatch commitLatch = new CountDownLatch(1);
+        doAnswer(invocation -> commitLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).when(terrariaInstanceService)
+                .saveEventsAndOutputPositions(any(), any());
+        final TerrariaInstanceEntity instance = makeInstance(1L, 0L);
+        final TerrariaInstanceEventEntity event = mock(TerrariaInstanceEventEntity.class);
+
+        terrariaInstanceEventWriter.write(instance, List.of(event), () -> {
+        });
+        verify(terrariaInstanceService, timeout(TIMEOUT_MS)).saveEventsAndOutputPositions(any(), any());
+        final CompletableFuture<Void> secondWrite = CompletableFuture.runAsync(() -> {
+            try {
+                terrariaInstanceEventWriter.write(instance, List.of(event), () -> {
+                });
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThrowsTimeout(secondWrite);
+        assertFalse(secondWrite.isDone());
+
+        commitLatch.countDown();
+        secondWrite.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    void testPreDestroy() throws InterruptedException {
+        final TerrariaInstanceEventEntity event = mock(TerrariaInstanceEventEntity.class);
+        terrariaInstanceEventWriter.write(makeInstance(1L, 5L), List.of(event), () -> {
+        });
+        terrariaInstanceEventWriter.preDestroy();
+        verify(terrariaInstanceService).saveEventsAndOutputPositions(List.of(event), Map.of(1L, 5L));
+    }
+
+    @Test
+    void testWrite_closed_failure() throws InterruptedException {
+        terrariaInstanceEventWriter.preDestroy();
+        doThrow(new IllegalStateException("oops")).when(terrariaInstanceService)
+                .saveEventsAndOutputPositions(any(), any());
+        final Runnable onSaved = mock(Runnable.class);
+        terrariaInstanceEventWriter.write(makeInstance(1L, 5L), List.of(mock(TerrariaInstanceEventEntity.class)),
+                onSaved);
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        terrariaInstanceEventWriter.writeMetrics(writer);
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_instance_event_dropped_total 1\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_event_committed_total 0\n"), metrics);
+        verify(onSaved, never()).run();
+    }
+
+    @Test
+    void testWrite_retry() throws InterruptedException {
+        ReflectionTestUtils.setField(terrariaInstanceEventWriter, "commitRetryDelayMs", 1L);
+        final TerrariaInstanceEventEntity event = mock(TerrariaInstanceEventEntity.class);
+        doThrow(new IllegalStateException("oops")).doThrow(new IllegalStateException("oops"))
+                .doNothing()
+                .when(terrariaInstanceService)
+                .saveEventsAndOutputPositions(any(), any());
+        final Runnable onSaved = mock(Runnable.class);
+
+        terrariaInstanceEventWriter.write(makeInstance(1L, 5L), List.of(event), onSaved);
+        terrariaInstanceEventWriter.flush();
+        verify(terrariaInstanceService, times(3)).saveEventsAndOutputPositions(List.of(event), Map.of(1L, 5L));
+        verify(onSaved).run();
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        terrariaInstanceEventWriter.writeMetrics(writer);
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_instance_event_dropped_total 0\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_event_committed_total 1\n"), metrics);
+    }
+
+    @Test
+    void testWrite_closed_failure_laterEvents() throws InterruptedException {
+        terrariaInstanceEventWriter.preDestroy();
+        final TerrariaInstanceEventEntity failedEvent = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity laterEvent = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity otherInstanceEvent = mock(TerrariaInstanceEventEntity.class);
+        doThrow(new IllegalStateException("oops")).when(terrariaInstanceService)
+                .saveEventsAndOutputPositions(List.of(failedEvent), Map.of(1L, 5L));
+        final Runnable onSaved = mock(Runnable.class);
+
+        terrariaInstanceEventWriter.write(makeInstance(1L, 5L), List.of(failedEvent), onSaved);
+        terrariaInstanceEventWriter.write(makeInstance(1L, 10L), List.of(laterEvent), onSaved);
+        verify(terrariaInstanceService, never()).saveEventsAndOutputPositions(List.of(laterEvent), Map.of(1L, 10L));
+        verify(onSaved, never()).run();
+
+        terrariaInstanceEventWriter.write(makeInstance(2L, 3L), List.of(otherInstanceEvent), onSaved);
+        verify(terrariaInstanceService).saveEventsAndOutputPositions(List.of(otherInstanceEvent), Map.of(2L, 3L));
+        verify(onSaved).run();
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        terrariaInstanceEventWriter.writeMetrics(writer);
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_instance_event_dropped_total 2\n"), metrics);
+    }
+
+    @Test
+    void testWrite_permanentFailure() throws InterruptedException {
+        final AtomicReference<Runnable> queueProcessor = new AtomicReference<>();
+        doAnswer(invocation -> {
+            queueProcessor.set(invocation.getArgument(0));
+            return null;
+        }).when(asyncService).runInThread(any());
+        final TerrariaInstanceEventEntity failedEvent = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity otherInstanceEvent = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity laterEvent = mock(TerrariaInstanceEventEntity.class);
+        doThrow(new DataIntegrityViolationException("oops")).when(terrariaInstanceService)
+                .saveEventsAndOutputPositions(List.of(failedEvent, otherInstanceEvent), Map.of(1L, 5L, 2L, 3L));
+        doThrow(new DataIntegrityViolationException("oops")).when(terrariaInstanceService)
+                .saveEventsAndOutputPositions(List.of(failedEvent), Map.of(1L, 5L));
+        final Runnable onFailedSaved = mock(Runnable.class);
+        final Runnable onOtherInstanceSaved = mock(Runnable.class);
+        final Runnable onLaterSaved = mock(Runnable.class);
+
+        final TerrariaInstanceEntity failedInstance = makeInstance(1L, 5L);
+        terrariaInstanceEventWriter.write(failedInstance, List.of(failedEvent), onFailedSaved);
+        terrariaInstanceEventWriter.write(makeInstance(2L, 3L), List.of(otherInstanceEvent), onOtherInstanceSaved);
+        new Thread(queueProcessor.get()).start();
+        terrariaInstanceEventWriter.flush();
+        verify(terrariaInstanceService).saveEventsAndOutputPositions(List.of(failedEvent), Map.of(1L, 5L));
+        verify(terrariaInstanceService).saveEventsAndOutputPositions(List.of(otherInstanceEvent), Map.of(2L, 3L));
+        verify(onFailedSaved, never()).run();
+        verify(onOtherInstanceSaved).run();
+
+        terrariaInstanceEventWriter.write(makeInstance(1L, 10L), List.of(laterEvent), onLaterSaved);
+        terrariaInstanceEventWriter.flush();
+        verify(onLaterSaved, never()).run();
+
+        terrariaInstanceEventWriter.resumeInstance(failedInstance);
+        terrariaInstanceEventWriter.write(makeInstance(1L, 10L), List.of(laterEvent), onLaterSaved);
+        terrariaInstanceEventWriter.flush();
+        verify(terrariaInstanceService).saveEventsAndOutputPositions(List.of(laterEvent), Map.of(1L, 10L));
+        verify(onLaterSaved).run();
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        terrariaInstanceEventWriter.writeMetrics(writer);
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_instance_event_dropped_total 2\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_event_committed_total 2\n"), metrics);
+    }
+
+    private static void assertThrowsTimeout(final CompletableFuture<Void> future) {
+        try {
+            future.get(100, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            return;
+        } catch (final InterruptedException | ExecutionException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("The future has completed");
+    }
+}
@@ -5,8 +5,11 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -15,14 +18,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import io.github.mewore.tsw.events.FakeSubscription;
-import io.github.mewore.tsw.events.Subscription;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceAction;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.models.terraria.world.TerrariaWorldEntity;
 import io.github.mewore.tsw.models.terraria.world.WorldDifficultyOption;
 import io.github.mewore.tsw.models.terraria.world.WorldSizeOption;
+import io.github.mewore.tsw.services.util.AsyncService;
 import io.github.mewore.tsw.services.util.FileService;
 import io.github.mewore.tsw.services.util.FileTail;
 import io.github.mewore.tsw.services.util.process.ProcessFailureException;
@@ -39,6 +41,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
@@ -73,6 +76,9 @@ class TerrariaInstanceExecutionServiceTest {
     @Mock
     private FileService fileService;
 
+    @Mock
+    private AsyncService asyncService;
+
     @Captor
     private ArgumentCaptor<String> stringCaptor;
 
@@ -82,6 +88,25 @@ class TerrariaInstanceExecutionServiceTest {
     @Captor
     private ArgumentCaptor<Duration> durationCaptor;
 
+    private static TerrariaInstanceEntity await(final CompletableFuture<TerrariaInstanceEntity> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(asyncService).runInThread(any());
+    }
+
     private static TerrariaWorldEntity makeWorldForInstance(final TerrariaInstanceEntity instance) {
         return makeWorldForInstance(instance, "World");
     }
@@ -102,13 +127,13 @@ class TerrariaInstanceExecutionServiceTest {
     void testStartInstance() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
         instance.setNextOutputBytePosition(10L);
-        final Subscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>();
-        when(terrariaInstanceSubscriptionService.subscribe(instance)).thenReturn(subscription);
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture = new CompletableFuture<>();
+        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(1),
+                TerrariaInstanceState.WORLD_MENU)).thenReturn(stateFuture);
         when(terrariaInstanceService.saveInstance(instance)).thenAnswer(invocation -> invocation.getArgument(0));
-        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription, Duration.ofMinutes(1),
-                TerrariaInstanceState.WORLD_MENU)).thenReturn(instance);
+        stateFuture.complete(instance);
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.bootUpInstance(instance);
+        final TerrariaInstanceEntity result = await(terrariaInstanceExecutionService.bootUpInstance(instance));
 
         assertEquals(0L, instance.getNextOutputBytePosition());
         verify(terrariaInstanceService).ensureInstanceHasNoOutputFile(instance);
@@ -122,7 +147,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testStartInstance_incorrectState() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.BROKEN);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.bootUpInstance(instance));
+                () -> await(terrariaInstanceExecutionService.bootUpInstance(instance)));
         assertEquals("Cannot start an instance with state BROKEN", exception.getMessage());
     }
 
@@ -130,9 +155,9 @@ class TerrariaInstanceExecutionServiceTest {
     void testGoToModMenu() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
         when(terrariaInstanceInputService.sendInputToInstance(instance, "m", Duration.ofSeconds(10),
-                TerrariaInstanceState.MOD_MENU)).thenReturn(instance);
+                TerrariaInstanceState.MOD_MENU)).thenReturn(CompletableFuture.completedFuture(instance));
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.goToModMenu(instance);
+        final TerrariaInstanceEntity result = await(terrariaInstanceExecutionService.goToModMenu(instance));
         assertSame(instance, result);
     }
 
@@ -140,7 +165,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testGoToModMenu_incorrectState() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.goToModMenu(instance));
+                () -> await(terrariaInstanceExecutionService.goToModMenu(instance)));
         assertEquals("Cannot go to the mod menu while in state IDLE", exception.getMessage());
     }
 
@@ -155,9 +180,10 @@ class TerrariaInstanceExecutionServiceTest {
 
         when(terrariaInstanceService.saveInstance(instance)).thenReturn(instance);
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), any())).thenReturn(
-                instance);
+                CompletableFuture.completedFuture(instance));
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.setInstanceLoadedMods(instance);
+        final TerrariaInstanceEntity result =
+                await(terrariaInstanceExecutionService.setInstanceLoadedMods(instance));
         assertSame(instance, result);
 
         verify(terrariaInstanceInputService, times(3)).sendInputToInstance(same(instance), stringCaptor.capture(),
@@ -179,10 +205,10 @@ class TerrariaInstanceExecutionServiceTest {
 
         when(terrariaInstanceService.saveInstance(instance)).thenReturn(instance);
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), any())).thenReturn(
-                instance);
+                CompletableFuture.completedFuture(instance));
 
         final Exception exception = assertThrows(RuntimeException.class,
-                () -> terrariaInstanceExecutionService.setInstanceLoadedMods(instance));
+                () -> await(terrariaInstanceExecutionService.setInstanceLoadedMods(instance)));
         assertEquals("Failed to make the following mods enabled after 100 attempts: Mod1", exception.getMessage());
         verify(terrariaInstanceInputService, times(100)).sendInputToInstance(same(instance), any(), any(), any());
         verify(terrariaInstanceInputService, never()).sendInputToInstance(any(), eq("r"), any(), any());
@@ -197,10 +223,10 @@ class TerrariaInstanceExecutionServiceTest {
         when(terrariaInstanceService.getDesiredModOption(instance)).thenReturn(null);
 
         when(terrariaInstanceInputService.sendInputToInstance(instance, "r", Duration.ofMinutes(2),
-                TerrariaInstanceState.WORLD_MENU)).thenReturn(instance);
+                TerrariaInstanceState.WORLD_MENU)).thenReturn(CompletableFuture.completedFuture(instance));
 
         final Exception exception = assertThrows(RuntimeException.class,
-                () -> terrariaInstanceExecutionService.setInstanceLoadedMods(instance));
+                () -> await(terrariaInstanceExecutionService.setInstanceLoadedMods(instance)));
         assertEquals("The mods of instance " + INSTANCE_UUID + " (2: Mod1 v1, Mod2 v1) " +
                 "are not exactly as many as the requested ones (0: )", exception.getMessage());
     }
@@ -209,7 +235,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testSetInstanceLoadedMods_incorrectState() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.setInstanceLoadedMods(instance));
+                () -> await(terrariaInstanceExecutionService.setInstanceLoadedMods(instance)));
         assertEquals("Cannot set the mods of an instance with state IDLE", exception.getMessage());
     }
 
@@ -228,7 +254,7 @@ class TerrariaInstanceExecutionServiceTest {
             instance.acknowledgeMenuOption(2, "Medium");
             instance.acknowledgeMenuOption(3, "Large");
             instance.setState(TerrariaInstanceState.WORLD_SIZE_PROMPT);
-            return instance;
+            return CompletableFuture.completedFuture(instance);
         });
 
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), eq("2"), any(),
@@ -236,24 +262,24 @@ class TerrariaInstanceExecutionServiceTest {
             instance.acknowledgeMenuOption(1, "Normal");
             instance.acknowledgeMenuOption(2, "Expert");
             instance.setState(TerrariaInstanceState.WORLD_DIFFICULTY_PROMPT);
-            return instance;
+            return CompletableFuture.completedFuture(instance);
         });
 
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), eq("1"), any(),
                 same(TerrariaInstanceState.WORLD_NAME_PROMPT))).thenAnswer(invocation -> {
             instance.setState(TerrariaInstanceState.WORLD_NAME_PROMPT);
-            return instance;
+            return CompletableFuture.completedFuture(instance);
         });
 
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), eq("Some World"), any(),
                 same(TerrariaInstanceState.WORLD_MENU))).thenAnswer(invocation -> {
             instance.setState(TerrariaInstanceState.WORLD_MENU);
-            return instance;
+            return CompletableFuture.completedFuture(instance);
         });
 
         when(terrariaInstanceService.saveInstance(instance)).thenReturn(instance);
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.createWorld(instance);
+        final TerrariaInstanceEntity result = await(terrariaInstanceExecutionService.createWorld(instance));
         assertSame(instance, result);
 
         verify(terrariaInstanceInputService, times(4)).sendInputToInstance(same(instance), stringCaptor.capture(),
@@ -268,7 +294,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testCreateWorld_incorrectState() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.createWorld(instance));
+                () -> await(terrariaInstanceExecutionService.createWorld(instance)));
         assertEquals("Cannot create a world with an instance with state IDLE", exception.getMessage());
     }
 
@@ -276,7 +302,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testCreateWorld_noWorld() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.createWorld(instance));
+                () -> await(terrariaInstanceExecutionService.createWorld(instance)));
         assertEquals("Cannot create a world with an instance that does not have an assigned world",
                 exception.getMessage());
     }
@@ -287,7 +313,7 @@ class TerrariaInstanceExecutionServiceTest {
         makeWorldForInstance(instance, "Some World");
 
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.createWorld(instance));
+                () -> await(terrariaInstanceExecutionService.createWorld(instance)));
         assertEquals("Cannot create a world with no set size", exception.getMessage());
     }
 
@@ -298,7 +324,7 @@ class TerrariaInstanceExecutionServiceTest {
         world.setSize(WorldSizeOption.MEDIUM);
 
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.createWorld(instance));
+                () -> await(terrariaInstanceExecutionService.createWorld(instance)));
         assertEquals("Cannot create a world with no set difficulty", exception.getMessage());
     }
 
@@ -318,12 +344,12 @@ class TerrariaInstanceExecutionServiceTest {
         makeWorldForInstance(instance, "World2");
 
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), any())).thenReturn(
-                instance);
+                CompletableFuture.completedFuture(instance));
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), eq(true),
-                any())).thenReturn(instance);
+                any())).thenReturn(CompletableFuture.completedFuture(instance));
         when(terrariaInstanceService.saveInstance(instance)).thenReturn(instance);
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.runInstance(instance);
+        final TerrariaInstanceEntity result = await(terrariaInstanceExecutionService.runInstance(instance));
         assertSame(instance, result);
 
         verify(terrariaInstanceInputService, times(4)).sendInputToInstance(same(instance), stringCaptor.capture(),
@@ -352,12 +378,12 @@ class TerrariaInstanceExecutionServiceTest {
         makeWorldForInstance(instance, "World1");
 
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), any())).thenReturn(
-                instance);
+                CompletableFuture.completedFuture(instance));
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), anyBoolean(),
-                any())).thenReturn(instance);
+                any())).thenReturn(CompletableFuture.completedFuture(instance));
         when(terrariaInstanceService.saveInstance(instance)).thenReturn(instance);
 
-        terrariaInstanceExecutionService.runInstance(instance);
+        await(terrariaInstanceExecutionService.runInstance(instance));
         verify(terrariaInstanceInputService).sendInputToInstance(same(instance), eq("y"), any(), any());
     }
 
@@ -372,15 +398,15 @@ class TerrariaInstanceExecutionServiceTest {
         makeWorldForInstance(instance, "World1");
 
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), any())).thenReturn(
-                instance);
+                CompletableFuture.completedFuture(instance));
 
         final TerrariaInstanceEntity instanceWithConflict = makeInstanceWithState(TerrariaInstanceState.PORT_CONFLICT);
         when(terrariaInstanceInputService.sendInputToInstance(same(instance), any(), any(), anyBoolean(),
-                any())).thenReturn(instanceWithConflict);
+                any())).thenReturn(CompletableFuture.completedFuture(instanceWithConflict));
 
         when(terrariaInstanceService.saveInstance(instanceWithConflict)).thenReturn(instanceWithConflict);
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.runInstance(instance);
+        final TerrariaInstanceEntity result = await(terrariaInstanceExecutionService.runInstance(instance));
         assertSame(instanceWithConflict, result);
         assertSame(TerrariaInstanceAction.SHUT_DOWN, result.getPendingAction());
     }
@@ -389,7 +415,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testRunInstance_incorrectState() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.runInstance(instance));
+                () -> await(terrariaInstanceExecutionService.runInstance(instance)));
         assertEquals("Cannot run an instance with state IDLE", exception.getMessage());
     }
 
@@ -397,7 +423,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testRunInstance_noWorld() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.runInstance(instance));
+                () -> await(terrariaInstanceExecutionService.runInstance(instance)));
         assertEquals("Cannot run an instance that does not have an assigned world!", exception.getMessage());
     }
 
@@ -406,7 +432,7 @@ class TerrariaInstanceExecutionServiceTest {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
         instance.setWorld(makeWorld());
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.runInstance(instance));
+                () -> await(terrariaInstanceExecutionService.runInstance(instance)));
         assertEquals("Cannot run an instance that does not have any options!", exception.getMessage());
     }
 
@@ -421,16 +447,17 @@ class TerrariaInstanceExecutionServiceTest {
 
         final TerrariaInstanceEntity awaitedInstance = mock(TerrariaInstanceEntity.class);
         when(terrariaInstanceInputService.sendInputToInstance(instance, "exit", Duration.ofSeconds(90),
-                TerrariaInstanceState.IDLE)).thenReturn(awaitedInstance);
+                TerrariaInstanceState.IDLE)).thenReturn(CompletableFuture.completedFuture(awaitedInstance));
         when(awaitedInstance.getWorld()).thenReturn(world);
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.shutDownInstance(instance, true);
+        final TerrariaInstanceEntity result =
+                await(terrariaInstanceExecutionService.shutDownInstance(instance, true));
         assertSame(awaitedInstance, result);
 
         verify(tail).stopReadingFile();
 
         verify(terrariaWorldService, only()).updateWorld(world, instance.getLoadedMods());
-        verify(terrariaInstanceOutputService).stopTrackingInstance(awaitedInstance);
+        verify(terrariaInstanceOutputService).stopTrackingInstance(instance);
     }
 
     @Test
@@ -439,9 +466,9 @@ class TerrariaInstanceExecutionServiceTest {
 
         when(terrariaInstanceOutputService.getInstanceOutputTail(instance)).thenReturn(mock(FileTail.class));
         when(terrariaInstanceInputService.sendInputToInstance(instance, "exit", Duration.ofSeconds(90),
-                TerrariaInstanceState.IDLE)).thenReturn(instance);
+                TerrariaInstanceState.IDLE)).thenReturn(CompletableFuture.completedFuture(instance));
 
-        terrariaInstanceExecutionService.shutDownInstance(instance, true);
+        await(terrariaInstanceExecutionService.shutDownInstance(instance, true));
         verify(terrariaWorldService, never()).updateWorld(any(), any());
     }
 
@@ -454,9 +481,9 @@ class TerrariaInstanceExecutionServiceTest {
         when(terrariaInstanceOutputService.getInstanceOutputTail(instance)).thenReturn(mock(FileTail.class));
 
         when(terrariaInstanceInputService.sendInputToInstance(instance, "exit-nosave", Duration.ofSeconds(30),
-                TerrariaInstanceState.IDLE)).thenReturn(instance);
+                TerrariaInstanceState.IDLE)).thenReturn(CompletableFuture.completedFuture(instance));
 
-        terrariaInstanceExecutionService.shutDownInstance(instance, false);
+        await(terrariaInstanceExecutionService.shutDownInstance(instance, false));
 
         assertEquals(Collections.emptySet(), world.getMods());
         verify(terrariaWorldService, never()).updateWorld(any(), any());
@@ -472,21 +499,22 @@ class TerrariaInstanceExecutionServiceTest {
 
         final TerrariaInstanceEntity awaitedInstance = mock(TerrariaInstanceEntity.class);
         when(terrariaInstanceInputService.sendBreakToInstance(instance, Duration.ofSeconds(30),
-                TerrariaInstanceState.IDLE)).thenReturn(awaitedInstance);
+                TerrariaInstanceState.IDLE)).thenReturn(CompletableFuture.completedFuture(awaitedInstance));
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.shutDownInstance(instance, true);
+        final TerrariaInstanceEntity result =
+                await(terrariaInstanceExecutionService.shutDownInstance(instance, true));
         assertSame(awaitedInstance, result);
 
         verify(terrariaInstanceInputService, never()).sendInputToInstance(any(), any(), any(), any());
         verify(terrariaWorldService, never()).updateWorld(any(), any());
-        verify(terrariaInstanceOutputService).stopTrackingInstance(awaitedInstance);
+        verify(terrariaInstanceOutputService).stopTrackingInstance(instance);
     }
 
     @Test
     void testShutDownInstance_inactiveState() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.shutDownInstance(instance, true));
+                () -> await(terrariaInstanceExecutionService.shutDownInstance(instance, true)));
         assertEquals("Cannot shut down an instance with state IDLE", exception.getMessage());
     }
 
@@ -500,19 +528,19 @@ class TerrariaInstanceExecutionServiceTest {
         final FileTail tail = mock(FileTail.class);
         when(terrariaInstanceOutputService.getInstanceOutputTail(instance)).thenReturn(tail);
 
-        final Subscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>();
-        when(terrariaInstanceSubscriptionService.subscribe(instance)).thenReturn(subscription);
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture = new CompletableFuture<>();
+        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofSeconds(30),
+                TerrariaInstanceState.IDLE)).thenReturn(stateFuture);
 
         final TerrariaInstanceEntity awaitedInstance = mock(TerrariaInstanceEntity.class);
-        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription, Duration.ofSeconds(30),
-                TerrariaInstanceState.IDLE)).thenReturn(awaitedInstance);
+        stateFuture.complete(awaitedInstance);
 
-        final TerrariaInstanceEntity result = terrariaInstanceExecutionService.terminateInstance(instance);
+        final TerrariaInstanceEntity result = await(terrariaInstanceExecutionService.terminateInstance(instance));
         assertSame(awaitedInstance, result);
 
         verify(tail).stopReadingFile();
         verify(tmuxService).kill(INSTANCE_UUID.toString());
-        verify(terrariaInstanceOutputService).stopTrackingInstance(awaitedInstance);
+        verify(terrariaInstanceOutputService).stopTrackingInstance(instance);
     }
 
     @Test
@@ -524,18 +552,18 @@ class TerrariaInstanceExecutionServiceTest {
         when(terrariaInstanceOutputService.isTrackingInstance(instance)).thenReturn(false);
         when(terrariaInstanceOutputService.getInstanceOutputTail(instance)).thenReturn(mock(FileTail.class));
 
-        final Subscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>();
-        when(terrariaInstanceSubscriptionService.subscribe(instance)).thenReturn(subscription);
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture = new CompletableFuture<>();
+        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofSeconds(30),
+                TerrariaInstanceState.IDLE)).thenReturn(stateFuture);
 
         final TerrariaInstanceEntity awaitedInstance = mock(TerrariaInstanceEntity.class);
-        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription, Duration.ofSeconds(30),
-                TerrariaInstanceState.IDLE)).thenReturn(awaitedInstance);
+        stateFuture.complete(awaitedInstance);
 
-        terrariaInstanceExecutionService.terminateInstance(instance);
+        await(terrariaInstanceExecutionService.terminateInstance(instance));
 
         verify(terrariaInstanceOutputService).trackInstance(instance);
         verify(tmuxService).kill(INSTANCE_UUID.toString());
-        verify(terrariaInstanceOutputService).stopTrackingInstance(awaitedInstance);
+        verify(terrariaInstanceOutputService).stopTrackingInstance(instance);
     }
 
     @Test
@@ -544,7 +572,7 @@ class TerrariaInstanceExecutionServiceTest {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
         when(tmuxService.hasSession(INSTANCE_UUID.toString())).thenReturn(false);
 
-        terrariaInstanceExecutionService.terminateInstance(instance);
+        await(terrariaInstanceExecutionService.terminateInstance(instance));
         verify(terrariaInstanceService).saveInstance(instance);
         assertSame(TerrariaInstanceState.IDLE, instance.getState());
         verify(terrariaInstanceOutputService).stopTrackingInstance(instance);
@@ -554,7 +582,7 @@ class TerrariaInstanceExecutionServiceTest {
     void testTerminateInstance_inactiveState() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
         final Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> terrariaInstanceExecutionService.terminateInstance(instance));
+                () -> await(terrariaInstanceExecutionService.terminateInstance(instance)));
         assertEquals("Cannot terminate an instance with state IDLE", exception.getMessage());
     }
 
@@ -606,7 +634,7 @@ class TerrariaInstanceExecutionServiceTest {
 
         terrariaInstanceExecutionService.deleteInstance(instance);
         verify(terrariaInstanceOutputService).stopTrackingInstance(instance);
-        verify(terrariaInstanceService).deleteInstance(instance);
+        verify(terrariaInstanceService).deleteInstanceInBackground(instance);
     }
 
     @Test
@@ -1,6 +1,7 @@
 package io.github.mewore.tsw.services.terraria;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,8 +11,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import io.github.mewore.tsw.events.FakeSubscription;
-import io.github.mewore.tsw.events.Subscription;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
@@ -24,8 +23,10 @@ import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeI
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.verify;
@@ -52,9 +53,9 @@ class TerrariaInstanceInputServiceTest {
     @Test
     void testSendBreakToInstance() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = makeInstance();
-        when(terrariaInstanceSubscriptionService.subscribe(instance)).thenReturn(new FakeSubscription<>());
-        when(terrariaInstanceSubscriptionService.waitForInstanceState(same(instance), any(), any(), any())).thenReturn(
-                instance);
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture = new CompletableFuture<>();
+        when(terrariaInstanceSubscriptionService.waitForInstanceState(same(instance), any(), any())).thenReturn(
+                stateFuture);
 
         terrariaInstanceInputService.sendBreakToInstance(instance, Duration.ofMinutes(10), TerrariaInstanceState.IDLE);
         verify(terrariaInstanceService).saveEvent(eventCaptor.capture());
@@ -65,16 +66,13 @@ class TerrariaInstanceInputServiceTest {
     @Test
     void testSendInputToInstance() throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = makeInstance();
-        final Subscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>();
-        when(terrariaInstanceSubscriptionService.subscribe(instance)).thenReturn(subscription);
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture = new CompletableFuture<>();
+        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(10),
+                TerrariaInstanceState.IDLE)).thenReturn(stateFuture);
 
-        final TerrariaInstanceEntity awaitedInstance = mock(TerrariaInstanceEntity.class);
-        when(terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription, Duration.ofMinutes(10),
-                TerrariaInstanceState.IDLE)).thenReturn(awaitedInstance);
-
-        final TerrariaInstanceEntity result = terrariaInstanceInputService.sendInputToInstance(instance, "input",
-                Duration.ofMinutes(10), TerrariaInstanceState.IDLE);
-        assertSame(awaitedInstance, result);
+        final CompletableFuture<TerrariaInstanceEntity> result = terrariaInstanceInputService.sendInputToInstance(
+                instance, "input", Duration.ofMinutes(10), TerrariaInstanceState.IDLE);
+        assertSame(stateFuture, result);
 
         verify(terrariaInstanceService).saveEvent(eventCaptor.capture());
         assertEquals("input\n", eventCaptor.getValue().getContent());
@@ -85,9 +83,9 @@ class TerrariaInstanceInputServiceTest {
     void testSendInputToInstance_obfuscated()
             throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
         final TerrariaInstanceEntity instance = makeInstance();
-        when(terrariaInstanceSubscriptionService.subscribe(instance)).thenReturn(new FakeSubscription<>());
-        when(terrariaInstanceSubscriptionService.waitForInstanceState(same(instance), any(), any(), any())).thenReturn(
-                instance);
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture = new CompletableFuture<>();
+        when(terrariaInstanceSubscriptionService.waitForInstanceState(same(instance), any(), any())).thenReturn(
+                stateFuture);
 
         terrariaInstanceInputService.sendInputToInstance(instance, "sensitive input", Duration.ofMinutes(10), true,
                 TerrariaInstanceState.IDLE);
@@ -96,6 +94,22 @@ class TerrariaInstanceInputServiceTest {
         verify(tmuxService, only()).sendInput(INSTANCE_UUID.toString(), "sensitive input\n");
     }
 
+    @Test
+    void testSendInputToInstance_failure()
+            throws ProcessFailureException, ProcessTimeoutException, InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstance();
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture = new CompletableFuture<>();
+        when(terrariaInstanceSubscriptionService.waitForInstanceState(same(instance), any(), any())).thenReturn(
+                stateFuture);
+        final ProcessFailureException failure = mock(ProcessFailureException.class);
+        doThrow(failure).when(tmuxService).sendInput(INSTANCE_UUID.toString(), "input\n");
+
+        assertSame(failure, assertThrows(ProcessFailureException.class,
+                () -> terrariaInstanceInputService.sendInputToInstance(instance, "input", Duration.ofMinutes(10),
+                        TerrariaInstanceState.IDLE)));
+        assertTrue(stateFuture.isCancelled());
+    }
+
     @Test
     void testSendInputToInstance_newline() {
         final TerrariaInstanceEntity instance = makeInstance();
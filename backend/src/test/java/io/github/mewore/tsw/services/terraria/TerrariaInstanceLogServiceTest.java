@@ -0,0 +1,119 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.mewore.tsw.exceptions.NotFoundException;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceLogFileModel;
+
+import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TerrariaInstanceLogServiceTest {
+
+    private static final String OLD_LOG_NAME = "output.log.2021-08-01T10-00-00.000000000.log";
+
+    private static final String NEW_LOG_NAME = "output.log.2021-08-15T10-00-00.000000000.log.gz";
+
+    private static final String OLD_SEGMENT_NAME = "output.log.9";
+
+    private static final String NEW_SEGMENT_NAME = "output.log.10";
+
+    private final TerrariaInstanceLogService terrariaInstanceLogService = new TerrariaInstanceLogService();
+
+    private TerrariaInstanceEntity instance;
+
+    @TempDir
+    Path instanceDirectory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        instance = makeInstance();
+        instance.setLocation(instanceDirectory);
+        writeLog(OLD_LOG_NAME, "old", 1000L);
+        writeLog(OLD_SEGMENT_NAME, "old segment", 2000L);
+        writeLog(NEW_LOG_NAME, "newer", 3000L);
+        writeLog(NEW_SEGMENT_NAME, "new segment", 4000L);
+        Files.writeString(instanceDirectory.resolve("output.log.txt"), "not a log");
+        Files.createDirectory(instanceDirectory.resolve("output.log.2021-08-20T10-00-00.000000000.log"));
+    }
+
+    private void writeLog(final String name, final String content, final long lastModifiedSeconds)
+            throws IOException {
+        final Path file = instanceDirectory.resolve(name);
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(lastModifiedSeconds, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testGetLogFiles() throws IOException {
+        Files.writeString(instanceDirectory.resolve("output.log"), "current");
+
+        final List<TerrariaInstanceLogFileModel> logFiles = terrariaInstanceLogService.getLogFiles(instance);
+        assertEquals(List.of("output.log", NEW_SEGMENT_NAME, NEW_LOG_NAME, OLD_SEGMENT_NAME, OLD_LOG_NAME),
+                logFiles.stream().map(TerrariaInstanceLogFileModel::getName).collect(Collectors.toUnmodifiableList()));
+        assertTrue(logFiles.get(0).isCurrent());
+        assertFalse(logFiles.get(0).isCompressed());
+        assertEquals(7L, logFiles.get(0).getSize());
+        assertFalse(logFiles.get(1).isCurrent());
+        assertFalse(logFiles.get(1).isCompressed());
+        assertTrue(logFiles.get(2).isCompressed());
+    }
+
+    @Test
+    void testGetLogFiles_noCurrentLog() {
+        assertEquals(List.of(NEW_SEGMENT_NAME, NEW_LOG_NAME, OLD_SEGMENT_NAME, OLD_LOG_NAME),
+                terrariaInstanceLogService.getLogFiles(instance)
+                .stream()
+                .map(TerrariaInstanceLogFileModel::getName)
+                .collect(Collectors.toUnmodifiableList()));
+    }
+
+    @Test
+    void testGetLogFile() throws NotFoundException {
+        final File file = terrariaInstanceLogService.getLogFile(instance, NEW_LOG_NAME);
+        assertEquals(instanceDirectory.resolve(NEW_LOG_NAME).toFile(), file);
+        assertTrue(TerrariaInstanceLogService.isCompressed(file));
+    }
+
+    @Test
+    void testGetLogFiles_sameTime() throws IOException {
+        writeLog(OLD_SEGMENT_NAME, "old segment", 4000L);
+        writeLog(OLD_LOG_NAME, "old", 4000L);
+
+        assertEquals(List.of(NEW_SEGMENT_NAME, OLD_SEGMENT_NAME, OLD_LOG_NAME, NEW_LOG_NAME),
+                terrariaInstanceLogService.getLogFiles(instance)
+                        .stream()
+                        .map(TerrariaInstanceLogFileModel::getName)
+                        .collect(Collectors.toUnmodifiableList()));
+    }
+
+    @Test
+    void testGetLogFile_segment() throws NotFoundException {
+        final File file = terrariaInstanceLogService.getLogFile(instance, NEW_SEGMENT_NAME);
+        assertEquals(instanceDirectory.resolve(NEW_SEGMENT_NAME).toFile(), file);
+        assertFalse(TerrariaInstanceLogService.isCompressed(file));
+    }
+
+    @Test
+    void testGetLogFile_notLog() {
+        assertThrows(NotFoundException.class, () -> terrariaInstanceLogService.getLogFile(instance, "output.log.txt"));
+        assertThrows(NotFoundException.class,
+                () -> terrariaInstanceLogService.getLogFile(instance, "../output.log.2021-08-01T10-00-00.log"));
+        assertThrows(NotFoundException.class, () -> terrariaInstanceLogService.getLogFile(instance, "output.log"));
+    }
+}
@@ -22,6 +22,7 @@ import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 
 import static io.github.mewore.tsw.models.HostFactory.makeHostBuilder;
 import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceBuilder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -78,6 +79,19 @@ class TerrariaInstanceMessageServiceTest {
         assertSame(instance.getOptions(), sentMessage.getOptions());
     }
 
+    @Test
+    void testBroadcastInstanceDeletionProgress() {
+        final TerrariaInstanceEntity instance = makeInstanceBuilder().id(8L)
+                .state(TerrariaInstanceState.DELETING)
+                .build();
+
+        terrariaInstanceMessageService.broadcastInstanceDeletionProgress(instance, 100L);
+        verify(messagingTemplate).convertAndSend(eq("/topic/instances/8"), instanceMessageCaptor.capture());
+        final TerrariaInstanceMessage sentMessage = instanceMessageCaptor.getValue();
+        assertSame(TerrariaInstanceState.DELETING, sentMessage.getState());
+        assertEquals(100L, sentMessage.getDeletedEventCount());
+    }
+
     @Test
     void testBroadcastInstanceDeletion() {
         terrariaInstanceMessageService.broadcastInstanceDeletion(makeInstanceBuilder().id(8L).build());
@@ -1,10 +1,14 @@
 package io.github.mewore.tsw.services.terraria;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -13,17 +17,21 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
 import io.github.mewore.tsw.services.util.FileService;
 import io.github.mewore.tsw.services.util.FileTail;
 import io.github.mewore.tsw.services.util.FileTailEventConsumer;
+import io.github.mewore.tsw.services.util.PrometheusTextWriter;
 import io.github.mewore.tsw.services.util.process.ProcessFailureException;
 import io.github.mewore.tsw.services.util.process.ProcessTimeoutException;
 import io.github.mewore.tsw.services.util.process.TmuxService;
@@ -41,7 +49,10 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -64,15 +75,30 @@ class TerrariaInstanceOutputServiceTest {
     @Mock
     private TmuxService tmuxService;
 
+    @Mock
+    private AsyncService asyncService;
+
+    @Mock
+    private TerrariaInstanceEventWriter terrariaInstanceEventWriter;
+
     @Captor
     private ArgumentCaptor<FileTailEventConsumer> tailEventConsumerCaptor;
 
     @Captor
     private ArgumentCaptor<List<TerrariaInstanceEventEntity>> instanceEventCaptor;
 
+    @Captor
+    private ArgumentCaptor<List<TerrariaInstanceEventEntity>> writtenEventCaptor;
+
     @Captor
     private ArgumentCaptor<TerrariaInstanceEventEntity> singleInstanceEventCaptor;
 
+    @Captor
+    private ArgumentCaptor<Runnable> runnableCaptor;
+
+    @Captor
+    private ArgumentCaptor<Duration> durationCaptor;
+
     @Test
     void testTrackInstance() {
         final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
@@ -88,6 +114,19 @@ class TerrariaInstanceOutputServiceTest {
         assertSame(tail, terrariaInstanceOutputService.getInstanceOutputTail(instance));
     }
 
+    @Test
+    void testTrackInstance_rotation() {
+        ReflectionTestUtils.setField(terrariaInstanceOutputService, "outputRotationSize", 1000L);
+        final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
+        when(instance.getId()).thenReturn(INSTANCE_ID);
+        final FileTail tail = mock(FileTail.class);
+        when(fileService.tail(any(), anyLong(), any())).thenReturn(tail);
+
+        terrariaInstanceOutputService.trackInstance(instance);
+        verify(tail).setRotationSize(1000L);
+        verify(tail).setKeptSegmentCount(10);
+    }
+
     @Test
     void testGetInstanceOutputTail_notTracked() {
         final Exception exception = assertThrows(IllegalStateException.class,
@@ -105,6 +144,46 @@ class TerrariaInstanceOutputServiceTest {
         assertFalse(terrariaInstanceOutputService.isTrackingInstance(instance));
     }
 
+    @Test
+    void testStopTrackingInstance_unsavedOutput() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = trackWithFlushPolicy(instance, 100, 1000);
+        final Future<?> scheduledFlush = mock(Future.class);
+        doReturn(scheduledFlush).when(asyncService).scheduleInThread(any(), any());
+
+        simulateText(tail, "a\n");
+        verify(asyncService).scheduleInThread(runnableCaptor.capture(), any());
+        terrariaInstanceOutputService.stopTrackingInstance(instance);
+        verify(scheduledFlush).cancel(false);
+        final InOrder inOrder = inOrder(terrariaInstanceEventWriter);
+        inOrder.verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(), any());
+        inOrder.verify(terrariaInstanceEventWriter).flush();
+        assertEquals("OUTPUT<a\n>", serializeEvents(instanceEventCaptor.getValue()));
+
+        runnableCaptor.getValue().run();
+        simulateText(tail, "b\n");
+        verify(terrariaInstanceEventWriter).write(any(), any(), any());
+    }
+
+    @Test
+    void testStopTrackingInstance_repeatedLines() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        instance.setOutputRepeatWindowMillis(60000);
+        final FileTailEventConsumer tail = track(instance);
+        final Future<?> scheduledRepeatSummary = mock(Future.class);
+        doReturn(scheduledRepeatSummary).when(asyncService).scheduleInThread(any(), any());
+
+        simulateText(tail, "Warning at 1\nWarning at 2\n");
+        verify(asyncService).scheduleInThread(runnableCaptor.capture(), any());
+        terrariaInstanceOutputService.stopTrackingInstance(instance);
+        verify(scheduledRepeatSummary).cancel(false);
+        verify(terrariaInstanceEventWriter, times(2)).write(same(instance), instanceEventCaptor.capture(), any());
+        assertEquals("OUTPUT<Warning at 1 (repeated 1×)\n>", serializeEvents(instanceEventCaptor.getValue()));
+
+        runnableCaptor.getValue().run();
+        verify(terrariaInstanceEventWriter, times(2)).write(any(), any(), any());
+    }
+
     @Test
     void testStopTrackingInstance_notTracked() {
         terrariaInstanceOutputService.stopTrackingInstance(makeInstance());
@@ -199,22 +278,248 @@ class TerrariaInstanceOutputServiceTest {
     }
 
     @Test
-    void testTrack_events() {
+    void testTrack_events() throws InterruptedException {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.BOOTING_UP);
         final FileTailEventConsumer tail = track(instance);
         when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
         final String[] textParts = new String[]{"\t\tOption1\n2\t\tOpt", "ion2\n", "Choose World:   \n",
                 "\n\nType a " + "command:", "a"};
         simulateText(tail, textParts);
-        verify(terrariaInstanceService, times(5)).saveInstanceAndEvents(any(), instanceEventCaptor.capture());
+        verify(terrariaInstanceService, times(3)).saveInstanceAndEvents(any(), instanceEventCaptor.capture());
+        final List<List<TerrariaInstanceEventEntity>> eventCalls = instanceEventCaptor.getAllValues();
+        verify(terrariaInstanceEventWriter, times(2)).write(same(instance), writtenEventCaptor.capture(), any());
+        final List<List<TerrariaInstanceEventEntity>> writtenEvents = writtenEventCaptor.getAllValues();
+
+        assertEquals("OUTPUT<\t\tOption1\n>", serializeEvents(writtenEvents.get(0)));
+        assertEquals("IMPORTANT_OUTPUT<2\t\tOption2> OUTPUT<\n>", serializeEvents(eventCalls.get(0)));
+        assertEquals("IMPORTANT_OUTPUT<Choose World:   > OUTPUT<\n>", serializeEvents(eventCalls.get(1)));
+        assertEquals("OUTPUT<\n\n> IMPORTANT_OUTPUT<Type a command:>", serializeEvents(eventCalls.get(2)));
+        assertEquals("", serializeEvents(writtenEvents.get(1)));
+    }
+
+    @Test
+    void testTrack_events_nonAscii() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = track(instance);
+        final byte[] bytes = "<Игрок> здравей ✓\n".getBytes(StandardCharsets.UTF_8);
+
+        tail.onReadStarted();
+        tail.onChunk(ByteBuffer.wrap(bytes, 0, 5), 0);
+        tail.onChunk(ByteBuffer.wrap(bytes, 5, bytes.length - 5), 5);
+        tail.onReadFinished(bytes.length);
+
+        verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(), any());
+        assertEquals("OUTPUT<<Игрок> здравей ✓\n>", serializeEvents(instanceEventCaptor.getValue()));
+        assertEquals(bytes.length, instance.getNextOutputBytePosition());
+    }
+
+    @Test
+    void testTrack_flushLater() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = trackWithFlushPolicy(instance, 100, 1000);
+        doReturn(mock(Future.class)).when(asyncService).scheduleInThread(any(), any());
+
+        simulateText(tail, "a\n", "b\n", "c");
+        verify(terrariaInstanceEventWriter, never()).write(any(), any(), any());
+        verify(asyncService).scheduleInThread(runnableCaptor.capture(), durationCaptor.capture());
+        assertTrue(durationCaptor.getValue().compareTo(Duration.ofMillis(100)) <= 0);
+
+        runnableCaptor.getValue().run();
+        verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(),
+                runnableCaptor.capture());
+        assertEquals("OUTPUT<a\nb\nc>", serializeEvents(instanceEventCaptor.getValue()));
+        assertEquals(5L, instance.getNextOutputBytePosition());
+        runnableCaptor.getValue().run();
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        terrariaInstanceOutputService.writeMetrics(writer);
+        final String labels = "{instance=\"" + INSTANCE_UUID + "\",name=\"Instance Name\"}";
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_instance_output_bytes_total" + labels + " 5\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_output_lines_total" + labels + " 2\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_output_flushes_total" + labels + " 1\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_output_flushed_events_total" + labels + " 1\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_output_delay_seconds_count" + labels + " 1\n"), metrics);
+    }
+
+    @Test
+    void testTrack_flushLater_nothingToSave() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = trackWithFlushPolicy(instance, 100, 1000);
+        doReturn(mock(Future.class)).when(asyncService).scheduleInThread(any(), any());
+        when(terrariaInstanceService.saveInstanceAndEvent(same(instance), any())).thenReturn(instance);
+
+        simulateText(tail, "a\n");
+        verify(asyncService).scheduleInThread(runnableCaptor.capture(), any());
+        tail.onFileDeleted();
+        verify(terrariaInstanceEventWriter).write(same(instance), any(), any());
+
+        runnableCaptor.getValue().run();
+        verify(terrariaInstanceEventWriter).write(same(instance), any(), any());
+    }
+
+    @Test
+    void testTrack_flushOnByteLimit() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = trackWithFlushPolicy(instance, 100, 4);
+        doReturn(mock(Future.class)).when(asyncService).scheduleInThread(any(), any());
+
+        simulateText(tail, "a\n", "b\n", "c\n");
+        verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(), any());
+        assertEquals("OUTPUT<a\nb\n>", serializeEvents(instanceEventCaptor.getValue()));
+    }
+
+    @Test
+    void testTrack_checkpoints() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = trackWithFlushPolicy(instance, 100, 4);
+
+        tail.onReadStarted();
+        tail.onChunk(ByteBuffer.wrap("a\nb\nc".getBytes(StandardCharsets.UTF_8)), 0);
+        tail.onChunk(ByteBuffer.wrap("\nd\ne\n".getBytes(StandardCharsets.UTF_8)), 5);
+        tail.onReadFinished(10);
+
+        verify(terrariaInstanceEventWriter, times(2)).write(same(instance), instanceEventCaptor.capture(), any());
         final List<List<TerrariaInstanceEventEntity>> eventCalls = instanceEventCaptor.getAllValues();
+        assertEquals("OUTPUT<a\nb\n>", serializeEvents(eventCalls.get(0)));
+        assertEquals("OUTPUT<c\nd\ne\n>", serializeEvents(eventCalls.get(1)));
+        assertEquals(10L, instance.getNextOutputBytePosition());
+    }
+
+    @Test
+    void testTrack_fileReset() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = track(instance);
+        when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
 
-        assertEquals(5, eventCalls.size());
-        assertEquals("OUTPUT<\t\tOption1\n>", serializeEvents(eventCalls.get(0)));
-        assertEquals("IMPORTANT_OUTPUT<2\t\tOption2> OUTPUT<\n>", serializeEvents(eventCalls.get(1)));
-        assertEquals("IMPORTANT_OUTPUT<Choose World:   > OUTPUT<\n>", serializeEvents(eventCalls.get(2)));
-        assertEquals("OUTPUT<\n\n> IMPORTANT_OUTPUT<Type a command:>", serializeEvents(eventCalls.get(3)));
-        assertEquals("", serializeEvents(eventCalls.get(4)));
+        tail.onReadStarted();
+        tail.onChunk(ByteBuffer.wrap("a\nb".getBytes(StandardCharsets.UTF_8)), 0);
+        tail.onFileReset();
+        tail.onChunk(ByteBuffer.wrap("c\nd\n".getBytes(StandardCharsets.UTF_8)), 0);
+        tail.onReadFinished(4);
+
+        verify(terrariaInstanceService).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
+        assertEquals("OUTPUT<a\nbc\nd\n>", serializeEvents(instanceEventCaptor.getValue()));
+        assertEquals(4L, instance.getNextOutputBytePosition());
+    }
+
+    @Test
+    void testTrack_fileReset_noNewOutput() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        instance.setNextOutputBytePosition(100L);
+        final FileTailEventConsumer tail = track(instance);
+        when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
+
+        tail.onReadStarted();
+        tail.onFileReset();
+        tail.onReadFinished(0);
+
+        verify(terrariaInstanceService).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
+        assertEquals("", serializeEvents(instanceEventCaptor.getValue()));
+        assertEquals(0L, instance.getNextOutputBytePosition());
+    }
+
+    @Test
+    void testTrack_skipBacklog() throws InterruptedException {
+        ReflectionTestUtils.setField(terrariaInstanceOutputService, "outputBacklogLimit", 10L);
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        final FileTailEventConsumer tail = track(instance);
+
+        tail.onReadStarted();
+        assertEquals(90L, tail.chooseReadPosition(0, 100));
+        tail.onChunk(ByteBuffer.wrap("ut line\nnext\n".getBytes(StandardCharsets.UTF_8)), 90);
+        tail.onReadFinished(103);
+
+        verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(), any());
+        assertEquals("OUTPUT_SKIPPED<90> OUTPUT<next\n>", serializeEvents(instanceEventCaptor.getValue()));
+        assertEquals(103L, instance.getNextOutputBytePosition());
+    }
+
+    @Test
+    void testTrack_skipBacklog_notRunning() {
+        ReflectionTestUtils.setField(terrariaInstanceOutputService, "outputBacklogLimit", 10L);
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.BOOTING_UP);
+        final FileTailEventConsumer tail = track(instance);
+
+        tail.onReadStarted();
+        assertEquals(0L, tail.chooseReadPosition(0, 100));
+    }
+
+    @Test
+    void testTrack_flushOnStateChange() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.BOOTING_UP);
+        final FileTailEventConsumer tail = trackWithFlushPolicy(instance, 100, 1000);
+        when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
+
+        simulateText(tail, "a\n", "Choose World: ");
+        final InOrder inOrder = inOrder(terrariaInstanceEventWriter, terrariaInstanceService);
+        inOrder.verify(terrariaInstanceEventWriter).flush();
+        inOrder.verify(terrariaInstanceService).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
+        assertEquals("OUTPUT<a\n> IMPORTANT_OUTPUT<Choose World: >",
+                serializeEvents(instanceEventCaptor.getValue()));
+        assertSame(TerrariaInstanceState.WORLD_MENU, instance.getState());
+    }
+
+    @Test
+    void testTrack_redaction() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        instance.setPassword("secret");
+        final FileTailEventConsumer tail = track(instance);
+
+        simulateText(tail, "123.45.67.89:12345 is connecting...\n" + "Player 76561197960287930 has joined.\n" +
+                "Password: secret\n" + "Version 1.4.3.6, secretive\n");
+        verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(), any());
+        assertEquals("OUTPUT<[REDACTED IP] is connecting...\n" + "Player [REDACTED STEAM ID] has joined.\n" +
+                "Password: [REDACTED PASSWORD]\n" + "Version 1.4.3.6, secretive\n>",
+                serializeEvents(instanceEventCaptor.getValue()));
+    }
+
+    @Test
+    void testTrack_redaction_stateIsDetectedFromOriginalLine() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.PASSWORD_PROMPT);
+        instance.setPassword("port");
+        final FileTailEventConsumer tail = track(instance);
+        when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
+
+        simulateText(tail, "Listening on port 7777\n");
+        assertSame(TerrariaInstanceState.RUNNING, instance.getState());
+        verify(terrariaInstanceService).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
+        assertEquals("IMPORTANT_OUTPUT<Listening on [REDACTED PASSWORD] 7777> OUTPUT<\n>",
+                serializeEvents(instanceEventCaptor.getValue()));
+    }
+
+    @Test
+    void testTrack_repeatedLines() throws InterruptedException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        instance.setOutputRepeatWindowMillis(60000);
+        final FileTailEventConsumer tail = track(instance);
+
+        simulateText(tail, "Warning at 1\nWarning at 2\nWarning at 3\nOther\n");
+        verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(), any());
+        assertEquals("OUTPUT<Warning at 1\nWarning at 1 (repeated 2×)\nOther\n>",
+                serializeEvents(instanceEventCaptor.getValue()));
+        verify(asyncService).scheduleInThread(any(), eq(Duration.ofMillis(60000)));
+
+        final PrometheusTextWriter writer = new PrometheusTextWriter();
+        terrariaInstanceOutputService.writeMetrics(writer);
+        final String labels = "{instance=\"" + INSTANCE_UUID + "\",name=\"Instance Name\"}";
+        final String metrics = writer.toString();
+        assertTrue(metrics.contains("tsw_instance_output_lines_total" + labels + " 4\n"), metrics);
+        assertTrue(metrics.contains("tsw_instance_output_suppressed_lines_total" + labels + " 2\n"), metrics);
+    }
+
+    @Test
+    void testTrack_repeatedLines_stateIsDetectedFromEveryLine() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.BOOTING_UP);
+        instance.setOutputRepeatWindowMillis(60000);
+        final FileTailEventConsumer tail = track(instance);
+        when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
+
+        simulateText(tail, "Loading\nLoading\nChoose World: ");
+        assertSame(TerrariaInstanceState.WORLD_MENU, instance.getState());
+        verify(terrariaInstanceService).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
+        assertEquals("OUTPUT<Loading\nLoading (repeated 1×)\n> IMPORTANT_OUTPUT<Choose World: >",
+                serializeEvents(instanceEventCaptor.getValue()));
     }
 
     @Test
@@ -263,41 +568,39 @@ class TerrariaInstanceOutputServiceTest {
     void testTrack_mods_unloadingMods_running() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
         instance.setLoadedMods(Set.of("Mod v1"));
-        when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
 
         simulateText(track(instance), "Unloading mods...\nUnloading mods...");
         assertEquals(Set.of("Mod v1"), instance.getLoadedMods());
     }
 
     @Test
-    void testTrack_events_detailed() {
+    void testTrack_events_detailed() throws InterruptedException {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.PASSWORD_PROMPT);
         final FileTailEventConsumer tail = track(instance);
-        when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
         final String[] textParts = new String[]{"a: 5%\n" + "b\nc\n" + "d: 10%\ne: 1%"};
         simulateText(tail, textParts);
-        verify(terrariaInstanceService).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
+        verify(terrariaInstanceEventWriter).write(same(instance), instanceEventCaptor.capture(), any());
         final List<TerrariaInstanceEventEntity> events = iterableToList(instanceEventCaptor.getValue());
         assertEquals("DETAILED_OUTPUT<a: 5%\n> OUTPUT<b\nc\n> DETAILED_OUTPUT<d: 10%\n>", serializeEvents(events));
     }
 
     @Test
-    void testTrack_events_startingServer() {
+    void testTrack_events_startingServer() throws InterruptedException {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.PASSWORD_PROMPT);
         final FileTailEventConsumer tail = track(instance);
         when(terrariaInstanceService.saveInstanceAndEvents(same(instance), any())).thenReturn(instance);
         final String[] textParts = new String[]{"Starting server...\n", "Server started\nRunning one update...\n\n\n"
                 , "Listening on", " port 7777", "\n"};
         simulateText(tail, textParts);
-        verify(terrariaInstanceService, times(5)).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
-        final List<List<TerrariaInstanceEventEntity>> eventCalls = instanceEventCaptor.getAllValues();
-
-        assertEquals(5, eventCalls.size());
-        assertEquals("OUTPUT<Starting server...\n>", serializeEvents(eventCalls.get(0)));
-        assertEquals("OUTPUT<Server started\nRunning one update...\n\n\n>", serializeEvents(eventCalls.get(1)));
-        assertEquals("", serializeEvents(eventCalls.get(2)));
-        assertEquals("IMPORTANT_OUTPUT<Listening on port 7777>", serializeEvents(eventCalls.get(3)));
-        assertEquals("OUTPUT<\n>", serializeEvents(eventCalls.get(4)));
+        verify(terrariaInstanceService).saveInstanceAndEvents(same(instance), instanceEventCaptor.capture());
+        verify(terrariaInstanceEventWriter, times(4)).write(same(instance), writtenEventCaptor.capture(), any());
+        final List<List<TerrariaInstanceEventEntity>> writtenEvents = writtenEventCaptor.getAllValues();
+
+        assertEquals("OUTPUT<Starting server...\n>", serializeEvents(writtenEvents.get(0)));
+        assertEquals("OUTPUT<Server started\nRunning one update...\n\n\n>", serializeEvents(writtenEvents.get(1)));
+        assertEquals("", serializeEvents(writtenEvents.get(2)));
+        assertEquals("IMPORTANT_OUTPUT<Listening on port 7777>", serializeEvents(instanceEventCaptor.getValue()));
+        assertEquals("OUTPUT<\n>", serializeEvents(writtenEvents.get(3)));
     }
 
     @Test
@@ -393,6 +696,13 @@ class TerrariaInstanceOutputServiceTest {
     }
 
     private FileTailEventConsumer track(final TerrariaInstanceEntity initialInstance) {
+        return trackWithFlushPolicy(initialInstance, 0, Integer.MAX_VALUE);
+    }
+
+    private FileTailEventConsumer trackWithFlushPolicy(final TerrariaInstanceEntity initialInstance,
+            final int flushIntervalMillis, final int flushBytes) {
+        initialInstance.setOutputFlushIntervalMillis(flushIntervalMillis);
+        initialInstance.setOutputFlushBytes(flushBytes);
         terrariaInstanceOutputService.trackInstance(initialInstance);
         when(terrariaInstanceRepository.getOne(INSTANCE_ID)).thenReturn(initialInstance);
         verify(fileService).tail(any(), anyLong(), tailEventConsumerCaptor.capture());
@@ -403,9 +713,9 @@ class TerrariaInstanceOutputServiceTest {
         long position = 0;
         for (final String textPart : textParts) {
             tailEventConsumer.onReadStarted();
-            for (int i = 0; i < textPart.length(); i++) {
-                tailEventConsumer.onCharacter(textPart.charAt(i), position++);
-            }
+            final byte[] bytes = textPart.getBytes(StandardCharsets.UTF_8);
+            tailEventConsumer.onChunk(ByteBuffer.wrap(bytes), position);
+            position += bytes.length;
             tailEventConsumer.onReadFinished(position);
         }
     }
@@ -2,6 +2,7 @@ package io.github.mewore.tsw.services.terraria;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -21,7 +22,9 @@ import io.github.mewore.tsw.exceptions.InvalidRequestException;
 import io.github.mewore.tsw.exceptions.NotFoundException;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceAction;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventChunkEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEventEntity;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceOutputConfiguration;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceRunConfiguration;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceUpdateModel;
@@ -29,9 +32,11 @@ import io.github.mewore.tsw.models.terraria.world.TerrariaWorldEntity;
 import io.github.mewore.tsw.models.terraria.world.WorldCreationConfiguration;
 import io.github.mewore.tsw.models.terraria.world.WorldDifficultyOption;
 import io.github.mewore.tsw.models.terraria.world.WorldSizeOption;
+import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventChunkRepository;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceEventRepository;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
 import io.github.mewore.tsw.repositories.terraria.TerrariaWorldRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
 
 import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithState;
 import static io.github.mewore.tsw.models.terraria.TerrariaWorldFactory.makeWorld;
@@ -47,6 +52,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -62,6 +68,12 @@ class TerrariaInstanceServiceTest {
     @Mock
     private TerrariaInstanceEventRepository terrariaInstanceEventRepository;
 
+    @Mock
+    private TerrariaInstanceEventChunkRepository terrariaInstanceEventChunkRepository;
+
+    @Mock
+    private TerrariaInstanceEventStore terrariaInstanceEventStore;
+
     @Mock
     private ApplicationEventPublisher applicationEventPublisher;
 
@@ -74,9 +86,21 @@ class TerrariaInstanceServiceTest {
     @Mock
     private TerrariaInstanceDbNotificationService terrariaInstanceDbNotificationService;
 
+    @Mock
+    private TerrariaInstanceEventCache terrariaInstanceEventCache;
+
+    @Mock
+    private TerrariaInstanceEventSearchIndex terrariaInstanceEventSearchIndex;
+
+    @Mock
+    private AsyncService asyncService;
+
     @Captor
     private ArgumentCaptor<ApplicationEvent> applicationEventCaptor;
 
+    @Captor
+    private ArgumentCaptor<Runnable> backgroundTaskCaptor;
+
     private static TerrariaInstanceEntity makeInstanceAtModMenu(final String... options) {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
         for (int i = 0; i < options.length; i++) {
@@ -86,6 +110,14 @@ class TerrariaInstanceServiceTest {
         return instance;
     }
 
+    private static TerrariaInstanceEventEntity makeEventOfInstance(final long instanceId) {
+        final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
+        when(instance.getId()).thenReturn(instanceId);
+        final TerrariaInstanceEventEntity event = mock(TerrariaInstanceEventEntity.class);
+        when(event.getInstance()).thenReturn(instance);
+        return event;
+    }
+
     @Test
     void testGetInstance() throws NotFoundException {
         final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
@@ -133,18 +165,20 @@ class TerrariaInstanceServiceTest {
     void testSaveInstanceAndEvents() {
         final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
         when(instance.getId()).thenReturn(null);
-        final TerrariaInstanceEventEntity event = mock(TerrariaInstanceEventEntity.class);
-        final TerrariaInstanceEventEntity secondEvent = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity event = makeEventOfInstance(8L);
+        final TerrariaInstanceEventEntity secondEvent = makeEventOfInstance(8L);
         final List<TerrariaInstanceEventEntity> events = List.of(event, secondEvent);
-        when(terrariaInstanceEventRepository.saveAll(events)).thenReturn(events);
+        when(terrariaInstanceEventStore.saveAll(events)).thenReturn(events);
 
         final TerrariaInstanceEntity savedInstance = mock(TerrariaInstanceEntity.class);
         when(terrariaInstanceRepository.save(instance)).thenReturn(savedInstance);
 
         final TerrariaInstanceEntity result = terrariaInstanceService.saveInstanceAndEvents(instance, events);
         assertSame(savedInstance, result);
-        verify(terrariaInstanceEventRepository).saveAll(events);
-        verify(terrariaInstanceDbNotificationService, only()).instanceCreated(savedInstance);
+        verify(terrariaInstanceEventStore).saveAll(events);
+        verify(terrariaInstanceDbNotificationService).instanceCreated(savedInstance);
+        verify(terrariaInstanceDbNotificationService).instanceEventsCreated(8L);
+        verify(terrariaInstanceEventCache).append(events);
         verify(terrariaInstanceMessageService).broadcastInstanceEventCreation(event);
         verify(terrariaInstanceMessageService).broadcastInstanceEventCreation(secondEvent);
         verify(applicationEventPublisher).publishEvent(applicationEventCaptor.capture());
@@ -152,19 +186,36 @@ class TerrariaInstanceServiceTest {
                 ((TerrariaInstanceApplicationEvent) applicationEventCaptor.getValue()).getChangedInstance());
     }
 
+    @Test
+    void testSaveEventsAndOutputPositions() {
+        final TerrariaInstanceEventEntity event = makeEventOfInstance(1L);
+        final List<TerrariaInstanceEventEntity> events = List.of(event);
+        when(terrariaInstanceEventStore.saveAll(events)).thenReturn(events);
+
+        terrariaInstanceService.saveEventsAndOutputPositions(events, Map.of(1L, 10L));
+        verify(terrariaInstanceRepository).updateNextOutputBytePosition(1L, 10L);
+        verify(terrariaInstanceMessageService).broadcastInstanceEventCreation(event);
+        verify(terrariaInstanceEventCache).append(events);
+        verify(terrariaInstanceDbNotificationService).instanceEventsCreated(1L);
+        verify(terrariaInstanceDbNotificationService, never()).instanceUpdated(any());
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
     @Test
     void testSaveInstanceAndEvent() {
         final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
         when(instance.getId()).thenReturn(null);
-        final TerrariaInstanceEventEntity event = mock(TerrariaInstanceEventEntity.class);
+        final TerrariaInstanceEventEntity event = makeEventOfInstance(8L);
         final TerrariaInstanceEntity savedInstance = mock(TerrariaInstanceEntity.class);
         when(terrariaInstanceRepository.save(instance)).thenReturn(savedInstance);
-        when(terrariaInstanceEventRepository.save(event)).thenReturn(event);
+        when(terrariaInstanceEventStore.saveAll(List.of(event))).thenReturn(List.of(event));
 
         final TerrariaInstanceEntity result = terrariaInstanceService.saveInstanceAndEvent(instance, event);
         assertSame(savedInstance, result);
-        verify(terrariaInstanceEventRepository).save(event);
-        verify(terrariaInstanceDbNotificationService, only()).instanceCreated(savedInstance);
+        verify(terrariaInstanceEventStore).saveAll(List.of(event));
+        verify(terrariaInstanceDbNotificationService).instanceCreated(savedInstance);
+        verify(terrariaInstanceDbNotificationService).instanceEventsCreated(8L);
+        verify(terrariaInstanceEventCache).append(List.of(event));
         verify(terrariaInstanceMessageService).broadcastInstanceEventCreation(event);
         verify(applicationEventPublisher).publishEvent(applicationEventCaptor.capture());
         assertSame(savedInstance,
@@ -174,12 +225,23 @@ class TerrariaInstanceServiceTest {
     @Test
     void testSaveEvent() {
         final TerrariaInstanceEventEntity event = mock(TerrariaInstanceEventEntity.class);
-        final TerrariaInstanceEventEntity savedEvent = mock(TerrariaInstanceEventEntity.class);
-        when(terrariaInstanceEventRepository.save(event)).thenReturn(savedEvent);
+        final TerrariaInstanceEventEntity savedEvent = makeEventOfInstance(8L);
+        when(terrariaInstanceEventStore.saveAll(List.of(event))).thenReturn(List.of(savedEvent));
 
         terrariaInstanceService.saveEvent(event);
-        verify(terrariaInstanceEventRepository).save(event);
+        verify(terrariaInstanceEventStore).saveAll(List.of(event));
         verify(terrariaInstanceMessageService).broadcastInstanceEventCreation(savedEvent);
+        verify(terrariaInstanceEventCache).append(List.of(savedEvent));
+        verify(terrariaInstanceEventSearchIndex).append(List.of(savedEvent));
+        verify(terrariaInstanceDbNotificationService).instanceEventsCreated(8L);
+    }
+
+    @Test
+    void testSaveEventChunk() {
+        final TerrariaInstanceEventChunkEntity chunk = mock(TerrariaInstanceEventChunkEntity.class);
+        terrariaInstanceService.saveEventChunk(chunk, List.of(1L, 2L));
+        verify(terrariaInstanceEventChunkRepository).save(chunk);
+        verify(terrariaInstanceEventRepository).deleteByIdIn(List.of(1L, 2L));
     }
 
     @Test
@@ -383,14 +445,109 @@ class TerrariaInstanceServiceTest {
         assertEquals(WorldDifficultyOption.NORMAL, world.getDifficulty());
     }
 
+    @Test
+    void testUpdateInstance_outputConfiguration() throws NotFoundException, InvalidRequestException {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        when(terrariaInstanceRepository.findById(8L)).thenReturn(Optional.of(instance));
+        when(terrariaInstanceRepository.save(instance)).thenReturn(instance);
+
+        final TerrariaInstanceEntity result = terrariaInstanceService.updateInstance(8L,
+                TerrariaInstanceUpdateModel.builder()
+                        .outputConfiguration(new TerrariaInstanceOutputConfiguration(" latin1 ", 200, 1024, 5000))
+                        .build());
+        assertSame(instance, result);
+        assertNull(result.getPendingAction());
+        assertEquals("ISO-8859-1", result.getOutputCharset());
+        assertEquals(200, result.getOutputFlushIntervalMillis());
+        assertEquals(1024, result.getOutputFlushBytes());
+        assertEquals(5000, result.getOutputRepeatWindowMillis());
+    }
+
+    @Test
+    void testUpdateInstance_outputConfiguration_unknownCharset() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        when(terrariaInstanceRepository.findById(8L)).thenReturn(Optional.of(instance));
+
+        final Exception exception = assertThrows(InvalidRequestException.class,
+                () -> terrariaInstanceService.updateInstance(8L, TerrariaInstanceUpdateModel.builder()
+                        .outputConfiguration(new TerrariaInstanceOutputConfiguration("nonexistent", 100, 65536, 0))
+                        .build()));
+        assertEquals("Unknown charset 'nonexistent'", exception.getMessage());
+    }
+
+    @Test
+    void testUpdateInstance_outputConfiguration_unsupportedCharset() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        when(terrariaInstanceRepository.findById(8L)).thenReturn(Optional.of(instance));
+
+        final Exception exception = assertThrows(InvalidRequestException.class,
+                () -> terrariaInstanceService.updateInstance(8L, TerrariaInstanceUpdateModel.builder()
+                        .outputConfiguration(new TerrariaInstanceOutputConfiguration("UTF-16", 100, 65536, 0))
+                        .build()));
+        assertEquals("The charset UTF-16 cannot be used for the output", exception.getMessage());
+        assertEquals("UTF-8", instance.getOutputCharset());
+    }
+
+    @Test
+    void testUpdateInstance_outputConfiguration_limitOutOfBounds() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.RUNNING);
+        when(terrariaInstanceRepository.findById(8L)).thenReturn(Optional.of(instance));
+
+        final Exception exception = assertThrows(InvalidRequestException.class,
+                () -> terrariaInstanceService.updateInstance(8L, TerrariaInstanceUpdateModel.builder()
+                        .outputConfiguration(new TerrariaInstanceOutputConfiguration("UTF-8", 100, 65536, -1))
+                        .build()));
+        assertEquals("The output repeat window must be between 0 and 3600000 but it is -1", exception.getMessage());
+        assertEquals(0, instance.getOutputRepeatWindowMillis());
+    }
+
     @Test
     public void testDeleteInstance() {
         final TerrariaInstanceEntity instance = mock(TerrariaInstanceEntity.class);
+        when(instance.getId()).thenReturn(8L);
+
+        when(terrariaInstanceEventStore.deleteEventBatch(instance, 10000)).thenReturn(10000, 5, 0);
 
         terrariaInstanceService.deleteInstance(instance);
-        verify(terrariaInstanceEventRepository, only()).deleteByInstance(instance);
+        verify(terrariaInstanceEventStore, times(3)).deleteEventBatch(instance, 10000);
+        verify(terrariaInstanceMessageService).broadcastInstanceDeletionProgress(instance, 10000L);
+        verify(terrariaInstanceMessageService).broadcastInstanceDeletionProgress(instance, 10005L);
         verify(terrariaInstanceRepository, only()).delete(instance);
-        verify(terrariaInstanceMessageService, only()).broadcastInstanceDeletion(instance);
+        verify(terrariaInstanceEventCache, only()).invalidate(8L);
+        verify(terrariaInstanceEventSearchIndex, only()).invalidate(8L);
+        verify(terrariaInstanceMessageService).broadcastInstanceDeletion(instance);
+    }
+
+    @Test
+    void testDeleteInstanceInBackground() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
+        final TerrariaInstanceEntity savedInstance = makeInstanceWithState(TerrariaInstanceState.DELETING);
+        when(terrariaInstanceRepository.save(instance)).thenReturn(savedInstance);
+
+        assertSame(savedInstance, terrariaInstanceService.deleteInstanceInBackground(instance));
+        assertSame(TerrariaInstanceState.DELETING, instance.getState());
+        verify(asyncService).runInThread(backgroundTaskCaptor.capture());
+
+        backgroundTaskCaptor.getValue().run();
+        verify(terrariaInstanceEventStore).deleteEventBatch(savedInstance, 10000);
+        verify(terrariaInstanceRepository).delete(savedInstance);
+    }
+
+    @Test
+    void testDeleteInstanceInBackground_failure() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.DELETING);
+        when(terrariaInstanceEventStore.deleteEventBatch(instance, 10000)).thenThrow(
+                new IllegalStateException("oops"));
+        when(terrariaInstanceRepository.save(instance)).thenReturn(instance);
+
+        assertSame(instance, terrariaInstanceService.deleteInstanceInBackground(instance));
+        verify(asyncService).runInThread(backgroundTaskCaptor.capture());
+
+        backgroundTaskCaptor.getValue().run();
+        assertSame(TerrariaInstanceState.BROKEN, instance.getState());
+        assertEquals("oops", instance.getError());
+        verify(terrariaInstanceRepository).save(instance);
+        verify(terrariaInstanceRepository, never()).delete(any());
     }
 
     @Test
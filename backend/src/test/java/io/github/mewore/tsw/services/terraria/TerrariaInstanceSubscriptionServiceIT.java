@@ -1,6 +1,7 @@
 package io.github.mewore.tsw.services.terraria;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +15,7 @@ import io.github.mewore.tsw.events.Subscription;
 import io.github.mewore.tsw.events.TerrariaInstanceApplicationEvent;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory;
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
 
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -21,7 +23,6 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 @Import(TestConfig.class)
 @SpringBootTest
@@ -42,25 +43,17 @@ class TerrariaInstanceSubscriptionServiceIT {
     private ApplicationEventPublisher eventPublisher;
 
     @Test
-    void test() throws InterruptedException {
-        try (final Subscription<TerrariaInstanceEntity> subscription = terrariaInstanceSubscriptionService.subscribe(
-                TerrariaInstanceFactory.makeInstanceWithId(INSTANCE_ID))) {
-            final TerrariaInstanceEntity instance = TerrariaInstanceFactory.makeInstanceWithId(INSTANCE_ID);
-            eventPublisher.publishEvent(new TerrariaInstanceApplicationEvent(instance, true));
-            assertSame(instance, subscription.waitFor(unusedInstance -> true, Duration.ZERO));
-            verify(terrariaInstanceRepository, never()).getOne(anyLong());
-            verify(terrariaInstanceMessageService, only()).broadcastInstanceCreation(instance);
-        }
-    }
-
-    @Test
-    void test_fallback() throws InterruptedException {
-        try (final Subscription<TerrariaInstanceEntity> subscription = terrariaInstanceSubscriptionService.subscribe(
-                TerrariaInstanceFactory.makeInstanceWithId(INSTANCE_ID))) {
-            final TerrariaInstanceEntity instance = TerrariaInstanceFactory.makeInstanceWithId(INSTANCE_ID);
-            when(terrariaInstanceRepository.getOne(INSTANCE_ID)).thenReturn(instance);
-            assertSame(instance, subscription.waitFor(unusedInstance -> true, Duration.ZERO));
-        }
+    void test() {
+        final CompletableFuture<TerrariaInstanceEntity> stateFuture =
+                terrariaInstanceSubscriptionService.waitForInstanceState(
+                        TerrariaInstanceFactory.makeInstanceWithId(INSTANCE_ID), Duration.ofMinutes(1),
+                        TerrariaInstanceState.WORLD_MENU);
+        final TerrariaInstanceEntity instance = TerrariaInstanceFactory.makeInstanceWithId(INSTANCE_ID);
+        instance.setState(TerrariaInstanceState.WORLD_MENU);
+        eventPublisher.publishEvent(new TerrariaInstanceApplicationEvent(instance, true));
+        assertSame(instance, stateFuture.getNow(null));
+        verify(terrariaInstanceRepository, never()).findById(anyLong());
+        verify(terrariaInstanceMessageService, only()).broadcastInstanceCreation(instance);
     }
 
     @Test
@@ -1,7 +1,10 @@
 package io.github.mewore.tsw.services.terraria;
 
 import java.time.Duration;
-import java.util.function.Function;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,22 +17,29 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import io.github.mewore.tsw.events.FakeSubscription;
 import io.github.mewore.tsw.events.Publisher;
 import io.github.mewore.tsw.events.Subscription;
+import io.github.mewore.tsw.events.SubscriptionOverflowPolicy;
 import io.github.mewore.tsw.events.TerrariaInstanceApplicationEvent;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceEntity;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory;
 import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
 import io.github.mewore.tsw.repositories.terraria.TerrariaInstanceRepository;
+import io.github.mewore.tsw.services.util.AsyncService;
 
 import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithId;
 import static io.github.mewore.tsw.models.terraria.TerrariaInstanceFactory.makeInstanceWithState;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,17 +57,17 @@ class TerrariaInstanceSubscriptionServiceTest {
     @Mock
     private TerrariaInstanceMessageService terrariaInstanceMessageService;
 
+    @Mock
+    private AsyncService asyncService;
+
     @Captor
-    private ArgumentCaptor<Function<Long, TerrariaInstanceEntity>> valueSupplierCaptor;
+    private ArgumentCaptor<Runnable> runnableCaptor;
 
     @Test
     void testSetUp() {
         terrariaInstanceSubscriptionService.setUp();
-        verify(publisher, only()).setTopicToValueMapper(valueSupplierCaptor.capture());
-
-        final TerrariaInstanceEntity fetchedInstance = mock(TerrariaInstanceEntity.class);
-        when(terrariaInstanceRepository.getOne(1L)).thenReturn(fetchedInstance);
-        assertSame(fetchedInstance, valueSupplierCaptor.getValue().apply(1L));
+        verify(publisher).setName("instances");
+        verifyNoMoreInteractions(publisher);
     }
 
     @SuppressWarnings("deprecation")
@@ -79,44 +89,109 @@ class TerrariaInstanceSubscriptionServiceTest {
     }
 
     @Test
-    void testSubscribe() {
+    void testSubscribeToAll() {
         final Subscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>();
-        when(publisher.subscribe(1L)).thenReturn(subscription);
+        when(publisher.subscribe(SubscriptionOverflowPolicy.DROP_OLDEST)).thenReturn(subscription);
 
-        final Subscription<TerrariaInstanceEntity> result = terrariaInstanceSubscriptionService.subscribe(
-                makeInstanceWithId(1));
+        final Subscription<TerrariaInstanceEntity> result = terrariaInstanceSubscriptionService.subscribeToAll();
         assertSame(subscription, result);
     }
 
+    @SuppressWarnings("deprecation")
     @Test
-    void testSubscribeToAll() {
-        final Subscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>();
-        when(publisher.subscribe()).thenReturn(subscription);
+    void testWaitForInstanceState() {
+        final Future<?> timeoutFuture = mock(Future.class);
+        doReturn(timeoutFuture).when(asyncService).scheduleInThread(any(), eq(Duration.ofMinutes(1)));
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
 
-        final Subscription<TerrariaInstanceEntity> result = terrariaInstanceSubscriptionService.subscribeToAll();
-        assertSame(subscription, result);
+        final CompletableFuture<TerrariaInstanceEntity> result =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(1),
+                        TerrariaInstanceState.WORLD_MENU, TerrariaInstanceState.BOOTING_UP);
+        terrariaInstanceSubscriptionService.onApplicationEvent(new TerrariaInstanceApplicationEvent(instance, false));
+        assertFalse(result.isDone());
+
+        final TerrariaInstanceEntity bootingUpInstance = makeInstanceWithState(TerrariaInstanceState.BOOTING_UP);
+        terrariaInstanceSubscriptionService.onApplicationEvent(
+                new TerrariaInstanceApplicationEvent(bootingUpInstance, false));
+        assertSame(bootingUpInstance, result.getNow(null));
+        verify(timeoutFuture).cancel(false);
     }
 
+    @SuppressWarnings("deprecation")
     @Test
-    void testWaitForInstanceState() throws InterruptedException {
+    void testWaitForInstanceState_otherInstance() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
-        final FakeSubscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>(instance);
-
-        terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription, Duration.ofMinutes(1),
-                TerrariaInstanceState.IDLE);
-        assertEquals(Duration.ofMinutes(1), subscription.getLastTimeout());
+        final CompletableFuture<TerrariaInstanceEntity> result =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(1),
+                        TerrariaInstanceState.WORLD_MENU);
+
+        final TerrariaInstanceEntity otherInstance = makeInstanceWithId(2);
+        otherInstance.setState(TerrariaInstanceState.WORLD_MENU);
+        terrariaInstanceSubscriptionService.onApplicationEvent(
+                new TerrariaInstanceApplicationEvent(otherInstance, false));
+        assertFalse(result.isDone());
     }
 
+    @SuppressWarnings("deprecation")
     @Test
-    void testWaitForInstanceState_waitForStateFailed() {
+    void testWaitForInstanceState_cancelled() {
         final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
-        final FakeSubscription<TerrariaInstanceEntity> subscription = new FakeSubscription<>(instance);
+        final CompletableFuture<TerrariaInstanceEntity> result =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(1),
+                        TerrariaInstanceState.WORLD_MENU);
+        result.cancel(false);
+
+        final TerrariaInstanceEntity worldMenuInstance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
+        terrariaInstanceSubscriptionService.onApplicationEvent(
+                new TerrariaInstanceApplicationEvent(worldMenuInstance, false));
+        assertTrue(result.isCancelled());
+    }
 
-        final Exception exception = assertThrows(IllegalStateException.class,
-                () -> terrariaInstanceSubscriptionService.waitForInstanceState(instance, subscription,
-                        Duration.ofMinutes(1), TerrariaInstanceState.WORLD_MENU, TerrariaInstanceState.BOOTING_UP));
+    @Test
+    void testWaitForInstanceState_timeout() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
+        final CompletableFuture<TerrariaInstanceEntity> result =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(1),
+                        TerrariaInstanceState.WORLD_MENU, TerrariaInstanceState.BOOTING_UP);
+        when(terrariaInstanceRepository.findById(instance.getId())).thenReturn(Optional.of(instance));
+        runTimeout();
+
+        final Throwable exception = assertThrows(CompletionException.class, result::join).getCause();
+        assertTrue(exception instanceof IllegalStateException);
         assertEquals("The instance " + TerrariaInstanceFactory.INSTANCE_UUID +
                 " did not reach the state(s) WORLD_MENU/BOOTING_UP " +
                 "within a timeout of PT1M; instead, its state is IDLE.", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWaitForInstanceState_timeout_fallback() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
+        final CompletableFuture<TerrariaInstanceEntity> result =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(1),
+                        TerrariaInstanceState.WORLD_MENU);
+        final TerrariaInstanceEntity currentInstance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
+        when(terrariaInstanceRepository.findById(instance.getId())).thenReturn(Optional.of(currentInstance));
+        runTimeout();
+
+        assertSame(currentInstance, result.getNow(null));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    void testWaitForInstanceState_duplicateStates() {
+        final TerrariaInstanceEntity instance = makeInstanceWithState(TerrariaInstanceState.IDLE);
+        final CompletableFuture<TerrariaInstanceEntity> result =
+                terrariaInstanceSubscriptionService.waitForInstanceState(instance, Duration.ofMinutes(1),
+                        TerrariaInstanceState.WORLD_MENU, TerrariaInstanceState.WORLD_MENU);
+
+        final TerrariaInstanceEntity worldMenuInstance = makeInstanceWithState(TerrariaInstanceState.WORLD_MENU);
+        terrariaInstanceSubscriptionService.onApplicationEvent(
+                new TerrariaInstanceApplicationEvent(worldMenuInstance, false));
+        assertSame(worldMenuInstance, result.getNow(null));
+    }
+
+    private void runTimeout() {
+        verify(asyncService).scheduleInThread(runnableCaptor.capture(), any());
+        runnableCaptor.getValue().run();
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.github.mewore.tsw.models.terraria.TerrariaInstanceState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class TerrariaOutputLineClassifierTest {
+
+    private final TerrariaOutputLineClassifier classifier =
+            TerrariaOutputLineClassifier.withBuiltInTransitions(Collections.emptyList());
+
+    @Mock
+    private TerrariaOutputLineClassifier.LineHandler handler;
+
+    @Test
+    void testFindTargetState() {
+        for (final TerrariaInstanceOutputEvent event : TerrariaInstanceOutputEvent.values()) {
+            final TerrariaInstanceOutputTransition transition = event.toTransition();
+            for (final TerrariaInstanceState sourceState : transition.getSourceStates()) {
+                assertSame(event.getTargetState(),
+                        classifier.findTargetState(sourceState, transition.getLinePrefix() + " "));
+            }
+        }
+        assertNull(classifier.findTargetState(TerrariaInstanceState.BROKEN, "Choose World: "));
+        assertNull(classifier.findTargetState(TerrariaInstanceState.BOOTING_UP, "Choose"));
+    }
+
+    @Test
+    void testClassify_transition() {
+        assertTrue(classifier.classify(TerrariaInstanceState.BOOTING_UP, "Choose World: ", handler));
+        verify(handler).onStateReached(TerrariaInstanceState.WORLD_MENU);
+    }
+
+    @Test
+    void testClassify_modsCleared() {
+        assertTrue(classifier.classify(TerrariaInstanceState.BOOTING_UP, "Finding Mods...", handler));
+        verify(handler).onModsCleared();
+    }
+
+    @Test
+    void testClassify_modsCleared_notExact() {
+        assertFalse(classifier.classify(TerrariaInstanceState.BOOTING_UP, "Finding Mods... and more", handler));
+        verifyNoInteractions(handler);
+    }
+
+    @Test
+    void testClassify_modLoaded() {
+        assertTrue(classifier.classify(TerrariaInstanceState.BOOTING_UP, "Loading: Some Mod v1.2.3", handler));
+        verify(handler).onModLoaded("Some Mod v1.2.3");
+    }
+
+    @Test
+    void testClassify_modLoaded_carriageReturn() {
+        assertTrue(classifier.classify(TerrariaInstanceState.BOOTING_UP, "Loading: Mod v1\r", handler));
+        verify(handler).onModLoaded("Mod v1");
+    }
+
+    @Test
+    void testClassify_modLoaded_invalid() {
+        for (final String line : List.of("Loading: Mod", "Loading: Mod v", "Loading: Mod v1a", "Loading:  v1",
+                "Loading: ")) {
+            assertFalse(classifier.classify(TerrariaInstanceState.BOOTING_UP, line, handler), line);
+        }
+        verifyNoInteractions(handler);
+    }
+
+    @Test
+    void testClassify_menuOption() {
+        assertTrue(classifier.classify(TerrariaInstanceState.WORLD_MENU, "12\t\tSome World", handler));
+        verify(handler).onMenuOption(12, "Some World");
+    }
+
+    @Test
+    void testClassify_menuOption_invalid() {
+        for (final String line : List.of("12 Some World", "12\t\t", "12\tA\tB", "\tA", "1234567890\tA")) {
+            assertFalse(classifier.classify(TerrariaInstanceState.WORLD_MENU, line, handler), line);
+        }
+        verifyNoInteractions(handler);
+    }
+
+    @Test
+    void testAdditionalTransitions(@TempDir final Path directory) throws IOException {
+        final Path tableFile = directory.resolve("transitions.tsv");
+        Files.writeString(tableFile,
+                "# A comment\n\nMOD_MENU\tBOOTING_UP, WORLD_MENU\tNew mod prompt:\n");
+        final List<TerrariaInstanceOutputTransition> transitions =
+                TerrariaInstanceOutputTransition.readTable(tableFile);
+        assertEquals(1, transitions.size());
+        assertEquals(Set.of(TerrariaInstanceState.BOOTING_UP, TerrariaInstanceState.WORLD_MENU),
+                transitions.get(0).getSourceStates());
+
+        final TerrariaOutputLineClassifier extendedClassifier =
+                TerrariaOutputLineClassifier.withBuiltInTransitions(transitions);
+        assertSame(TerrariaInstanceState.MOD_MENU,
+                extendedClassifier.findTargetState(TerrariaInstanceState.BOOTING_UP, "New mod prompt: "));
+        assertSame(TerrariaInstanceState.WORLD_MENU,
+                extendedClassifier.findTargetState(TerrariaInstanceState.BOOTING_UP, "Choose World: "));
+    }
+
+    @Test
+    void testAdditionalTransitions_invalid(@TempDir final Path directory) throws IOException {
+        final Path tableFile = directory.resolve("transitions.tsv");
+        Files.writeString(tableFile, "MOD_MENU\tBOOTING_UP\tPrompt:\nNOT_A_STATE\tBOOTING_UP\tPrompt:\n");
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> TerrariaInstanceOutputTransition.readTable(tableFile));
+        assertTrue(exception.getMessage().startsWith("Invalid transition on line 2 of "));
+    }
+}
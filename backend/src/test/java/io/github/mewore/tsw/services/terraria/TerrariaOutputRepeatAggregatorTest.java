@@ -0,0 +1,79 @@
+package io.github.mewore.tsw.services.terraria;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TerrariaOutputRepeatAggregatorTest {
+
+    private static final long WINDOW_NANOS = 1000L;
+
+    private final TerrariaOutputRepeatAggregator aggregator = new TerrariaOutputRepeatAggregator(WINDOW_NANOS);
+
+    @Test
+    void testAdd() {
+        assertEquals(List.of("a\n"), aggregator.add("a\n", 0));
+        assertEquals(List.of(), aggregator.add("a\n", 10));
+        assertEquals(List.of(), aggregator.add("a\n", 20));
+        assertEquals(2L, aggregator.getRepeatCount());
+        assertEquals(List.of("a (repeated 2×)\n", "b\n"), aggregator.add("b\n", 30));
+        assertEquals(0L, aggregator.getRepeatCount());
+    }
+
+    @Test
+    void testAdd_nearIdentical() {
+        assertEquals(List.of("Tile at 12, 34\n"), aggregator.add("Tile at 12, 34\n", 0));
+        assertEquals(List.of(), aggregator.add("Tile at 5, 678\n", 10));
+        assertEquals("Tile at 12, 34 (repeated 1×)\n", aggregator.finish());
+    }
+
+    @Test
+    void testAdd_differentWhitespaceAround() {
+        assertEquals(List.of("  Item 1x2\r\n"), aggregator.add("  Item 1x2\r\n", 0));
+        assertEquals(List.of(), aggregator.add("Item 33x4\n", 10));
+        assertEquals(List.of("Item 3 x4\n"), aggregator.add("Item 3 x4\n", 20).subList(1, 2));
+    }
+
+    @Test
+    void testAdd_differentLine() {
+        assertEquals(List.of("a\n"), aggregator.add("a\n", 0));
+        assertEquals(List.of("b\n"), aggregator.add("b\n", 10));
+        assertEquals(List.of("a\n"), aggregator.add("a\n", 20));
+    }
+
+    @Test
+    void testAdd_windowPassed() {
+        aggregator.add("a\n", 0);
+        aggregator.add("a\n", 10);
+        assertEquals(List.of("a (repeated 1×)\n", "a\n"), aggregator.add("a\n", WINDOW_NANOS));
+        assertEquals(List.of(), aggregator.add("a\n", WINDOW_NANOS + 10));
+    }
+
+    @Test
+    void testAdd_disabled() {
+        final TerrariaOutputRepeatAggregator disabledAggregator = new TerrariaOutputRepeatAggregator(0);
+        assertEquals(List.of("a\n"), disabledAggregator.add("a\n", 0));
+        assertEquals(List.of("a\n"), disabledAggregator.add("a\n", 0));
+        assertNull(disabledAggregator.finish());
+    }
+
+    @Test
+    void testFinishIfExpired() {
+        aggregator.add("a\n", 0);
+        aggregator.add("a\n", 10);
+        assertNull(aggregator.finishIfExpired(WINDOW_NANOS - 1));
+        assertEquals("a (repeated 1×)\n", aggregator.finishIfExpired(WINDOW_NANOS));
+        assertNull(aggregator.finishIfExpired(WINDOW_NANOS * 2));
+        assertEquals(List.of("a\n"), aggregator.add("a\n", WINDOW_NANOS * 2));
+    }
+
+    @Test
+    void testFinish_noRepetitions() {
+        aggregator.add("a\n", 0);
+        assertNull(aggregator.finish());
+        assertEquals(List.of("a\n"), aggregator.add("a\n", 10));
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.mewore.tsw.services.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class FileTailTest {
+
+    @TempDir
+    Path directory;
+
+    private Path filePath;
+
+    private RecordingConsumer consumer;
+
+    private FileTail tail;
+
+    @BeforeEach
+    void setUp() {
+        filePath = directory.resolve("output.log");
+        consumer = spy(new RecordingConsumer());
+        tail = new FileTail(filePath.toFile(), 0L, consumer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tail.stop();
+    }
+
+    @Test
+    void testModify() throws IOException {
+        Files.writeString(filePath, "abc");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        Files.writeString(filePath, "de", StandardOpenOption.APPEND);
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+
+        assertEquals("abcde", consumer.text.toString());
+        verify(consumer).onReadFinished(5L);
+        verify(consumer, never()).onFileReset();
+    }
+
+    @Test
+    void testModify_truncated() throws IOException {
+        Files.writeString(filePath, "abcdef");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        Files.writeString(filePath, "gh");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+
+        assertEquals("abcdef|gh", consumer.text.toString());
+        verify(consumer).onReadFinished(2L);
+    }
+
+    @Test
+    void testModify_replaced() throws IOException {
+        Files.writeString(filePath, "abc");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        Files.writeString(filePath, "de", StandardOpenOption.APPEND);
+        final Path newFile = Files.writeString(directory.resolve("output.log.new"), "fghij");
+        Files.move(newFile, filePath, StandardCopyOption.REPLACE_EXISTING);
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+
+        assertEquals("abcde|fghij", consumer.text.toString());
+        verify(consumer).onReadFinished(5L);
+    }
+
+    @Test
+    void testDelete_readsTheRestOfTheFile() throws IOException {
+        Files.writeString(filePath, "abc");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        Files.writeString(filePath, "de", StandardOpenOption.APPEND);
+        Files.delete(filePath);
+        tail.processEvent(StandardWatchEventKinds.ENTRY_DELETE);
+
+        assertEquals("abcde", consumer.text.toString());
+        final InOrder inOrder = inOrder(consumer);
+        inOrder.verify(consumer).onReadFinished(5L);
+        inOrder.verify(consumer).onFileDeleted();
+    }
+
+    @Test
+    void testCreate_startsFromTheBeginning() throws IOException {
+        Files.writeString(filePath, "abc");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        Files.delete(filePath);
+        tail.processEvent(StandardWatchEventKinds.ENTRY_DELETE);
+        Files.writeString(filePath, "d");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_CREATE);
+
+        assertEquals("abcd", consumer.text.toString());
+        verify(consumer).onFileCreated();
+        verify(consumer).onReadFinished(1L);
+    }
+
+    @Test
+    void testRotation() throws IOException {
+        tail.setRotationSize(4L);
+        Files.writeString(filePath, "abc");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        assertFalse(Files.exists(directory.resolve("output.log.1")));
+
+        Files.writeString(filePath, "de", StandardOpenOption.APPEND);
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        assertEquals("abcde", Files.readString(directory.resolve("output.log.1")));
+        assertEquals(0L, Files.size(filePath));
+        verify(consumer).onReadFinished(0L);
+
+        Files.writeString(filePath, "fghi", StandardOpenOption.APPEND);
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+        assertEquals("fghi", Files.readString(directory.resolve("output.log.2")));
+        assertEquals("abcde|fghi|", consumer.text.toString());
+    }
+
+    @Test
+    void testRotation_existingSegments() throws IOException {
+        Files.writeString(directory.resolve("output.log.7"), "old");
+        Files.writeString(directory.resolve("output.log.2021-01-01T00-00-00.000000000.log"), "old");
+        tail.setRotationSize(1L);
+        Files.writeString(filePath, "abc");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+
+        assertEquals("abc", Files.readString(directory.resolve("output.log.8")));
+    }
+
+    @Test
+    void testRotation_deleteOldSegments() throws IOException {
+        Files.writeString(directory.resolve("output.log.1"), "old");
+        Files.writeString(directory.resolve("output.log.2"), "old");
+        tail.setRotationSize(1L);
+        tail.setKeptSegmentCount(2);
+        Files.writeString(filePath, "abc");
+        tail.processEvent(StandardWatchEventKinds.ENTRY_MODIFY);
+
+        assertFalse(Files.exists(directory.resolve("output.log.1")));
+        assertEquals("old", Files.readString(directory.resolve("output.log.2")));
+        assertEquals("abc", Files.readString(directory.resolve("output.log.3")));
+    }
+
+    /**
+     * Records the text of the file, with a {@code |} wherever the file has been reset.
+     */
+    static class RecordingConsumer implements FileTailEventConsumer {
+
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void onFileCreated() {
+        }
+
+        @Override
+        public void onReadStarted() {
+        }
+
+        @Override
+        public void onChunk(final ByteBuffer chunk, final long position) {
+            text.append(StandardCharsets.UTF_8.decode(chunk));
+        }
+
+        @Override
+        public void onReadFinished(final long position) {
+        }
+
+        @Override
+        public void onFileReset() {
+            text.append('|');
+        }
+
+        @Override
+        public void onFileDeleted() {
+        }
+    }
+}
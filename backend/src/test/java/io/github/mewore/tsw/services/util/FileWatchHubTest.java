@@ -0,0 +1,132 @@
+package io.github.mewore.tsw.services.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class FileWatchHubTest {
+
+    private static final long EVENT_TIMEOUT_MS = 10000L;
+
+    private final AsyncService asyncService = new AsyncService();
+
+    private final FileWatchHub fileWatchHub = new FileWatchHub(asyncService);
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        fileWatchHub.preDestroy();
+        asyncService.preDestroy();
+    }
+
+    @Test
+    void testRegister_existingFile() throws IOException {
+        final File file = Files.writeString(directory.resolve("output.log"), "abc").toFile();
+        final FileTailEventConsumer consumer = mock(FileTailEventConsumer.class);
+        fileWatchHub.register(new FileTail(file, 1L, consumer));
+        assertEquals(1, fileWatchHub.getRegisteredFileCount());
+
+        verify(consumer, timeout(EVENT_TIMEOUT_MS).atLeastOnce()).onChunk(any(), eq(1L));
+        verify(consumer, timeout(EVENT_TIMEOUT_MS).atLeastOnce()).onReadFinished(3L);
+    }
+
+    @Test
+    void testRegister_createdAndModified() throws IOException {
+        final Path filePath = directory.resolve("output.log");
+        final FileTailEventConsumer consumer = mock(FileTailEventConsumer.class);
+        final FileTailEventConsumer otherConsumer = mock(FileTailEventConsumer.class);
+        fileWatchHub.register(new FileTail(filePath.toFile(), 0L, consumer));
+        fileWatchHub.register(new FileTail(directory.resolve("other.log").toFile(), 0L, otherConsumer));
+        assertEquals(2, fileWatchHub.getRegisteredFileCount());
+
+        Files.writeString(filePath, "abc");
+        verify(consumer, timeout(EVENT_TIMEOUT_MS)).onFileCreated();
+        verify(consumer, timeout(EVENT_TIMEOUT_MS).atLeastOnce()).onReadFinished(3L);
+
+        Files.writeString(filePath, "de", StandardOpenOption.APPEND);
+        verify(consumer, timeout(EVENT_TIMEOUT_MS).atLeastOnce()).onChunk(any(), eq(3L));
+        verify(consumer, timeout(EVENT_TIMEOUT_MS).atLeastOnce()).onReadFinished(5L);
+
+        Files.delete(filePath);
+        verify(consumer, timeout(EVENT_TIMEOUT_MS)).onFileDeleted();
+    }
+
+    @Test
+    void testStop() throws IOException {
+        final FileTail tail = new FileTail(directory.resolve("output.log").toFile(), 0L,
+                mock(FileTailEventConsumer.class));
+        fileWatchHub.register(tail);
+        assertEquals(1, fileWatchHub.getRegisteredFileCount());
+
+        tail.stop();
+        assertEquals(0, fileWatchHub.getRegisteredFileCount());
+        assertEquals(0, fileWatchHub.getQueuedEventCount());
+    }
+
+    @Test
+    void testRegister_alreadyTailed() throws IOException {
+        final File file = directory.resolve("output.log").toFile();
+        fileWatchHub.register(new FileTail(file, 0L, mock(FileTailEventConsumer.class)));
+
+        final FileTail otherTail = new FileTail(file, 0L, mock(FileTailEventConsumer.class));
+        final Exception exception = assertThrows(IllegalStateException.class,
+                () -> fileWatchHub.register(otherTail));
+        assertEquals("The file " + file.toPath().toAbsolutePath() + " is already being tailed",
+                exception.getMessage());
+    }
+
+    @Test
+    void testRegister_workerQueueFull() throws IOException, InterruptedException {
+        ReflectionTestUtils.setField(fileWatchHub, "workerThreadCount", 1);
+        ReflectionTestUtils.setField(fileWatchHub, "workerQueueCapacity", 1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final FileTailEventConsumer blockedConsumer = mock(FileTailEventConsumer.class);
+        doAnswer(invocation -> releaseLatch.await(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS)).when(blockedConsumer)
+                .onReadStarted();
+        final FileTailEventConsumer queuedConsumer = mock(FileTailEventConsumer.class);
+        final FileTailEventConsumer deferredConsumer = mock(FileTailEventConsumer.class);
+        final AtomicReference<Thread> deferredConsumerThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            deferredConsumerThread.set(Thread.currentThread());
+            return null;
+        }).when(deferredConsumer).onReadFinished(anyLong());
+
+        fileWatchHub.register(new FileTail(Files.writeString(directory.resolve("a.log"), "a").toFile(), 0L,
+                blockedConsumer));
+        verify(blockedConsumer, timeout(EVENT_TIMEOUT_MS)).onReadStarted();
+        fileWatchHub.register(new FileTail(Files.writeString(directory.resolve("b.log"), "b").toFile(), 0L,
+                queuedConsumer));
+        fileWatchHub.register(new FileTail(Files.writeString(directory.resolve("c.log"), "c").toFile(), 0L,
+                deferredConsumer));
+        verify(deferredConsumer, never()).onReadFinished(anyLong());
+
+        releaseLatch.countDown();
+        verify(queuedConsumer, timeout(EVENT_TIMEOUT_MS).atLeastOnce()).onReadFinished(1L);
+        verify(deferredConsumer, timeout(EVENT_TIMEOUT_MS).atLeastOnce()).onReadFinished(1L);
+        assertNotSame(Thread.currentThread(), deferredConsumerThread.get());
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.mewore.tsw.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PrefixTrieTest {
+
+    @Test
+    void testFindFirst() {
+        final PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("abc", "long");
+        trie.put("ab", "short");
+        trie.put("b", "other");
+
+        assertEquals("short", trie.findFirst("abcd", value -> true));
+        assertEquals("long", trie.findFirst("abcd", value -> value.equals("long")));
+        assertEquals("other", trie.findFirst("b", value -> true));
+        assertNull(trie.findFirst("a", value -> true));
+        assertNull(trie.findFirst("", value -> true));
+    }
+
+    @Test
+    void testFindFirst_emptyPrefix() {
+        final PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("", "empty");
+        assertEquals("empty", trie.findFirst("", value -> true));
+        assertEquals("empty", trie.findFirst("anything", value -> true));
+    }
+
+    @Test
+    void testFindFirst_samePrefix() {
+        final PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("a", "first");
+        trie.put("a", "second");
+        assertEquals("first", trie.findFirst("a", value -> true));
+        assertEquals("second", trie.findFirst("a", value -> value.startsWith("s")));
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.mewore.tsw.services.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingLineDecoderTest {
+
+    private final List<String> lines = new ArrayList<>();
+
+    private final StreamingLineDecoder decoder = new StreamingLineDecoder(StandardCharsets.UTF_8,
+            (line, nextLinePosition) -> lines.add(line + "@" + nextLinePosition));
+
+    @Test
+    void testDecode() {
+        decoder.decode(ByteBuffer.wrap("a\nbc\nd".getBytes(StandardCharsets.UTF_8)), 0);
+        assertEquals(List.of("a@2", "bc@5"), lines);
+        assertEquals("d", decoder.getPendingText());
+        assertEquals(6, decoder.getDecodedPosition());
+    }
+
+    @Test
+    void testDecode_multibyteSplitBetweenChunks() {
+        final byte[] bytes = "Пример ✓\n".getBytes(StandardCharsets.UTF_8);
+        long position = 10;
+        decoder.reset(position);
+        for (final byte b : bytes) {
+            decoder.decode(ByteBuffer.wrap(new byte[]{b}), position++);
+        }
+        assertEquals(List.of("Пример ✓@" + (10 + bytes.length)), lines);
+        assertEquals("", decoder.getPendingText());
+    }
+
+    @Test
+    void testDecode_incompleteCharacterAtEnd() {
+        final byte[] bytes = "ab✓".getBytes(StandardCharsets.UTF_8);
+        decoder.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1), 0);
+        assertEquals("ab", decoder.getPendingText());
+        assertEquals(2, decoder.getDecodedPosition());
+
+        decoder.clearPendingText();
+        decoder.decode(ByteBuffer.wrap(new byte[]{bytes[bytes.length - 1], '\n'}), bytes.length - 1);
+        assertEquals(List.of("✓@" + (bytes.length + 1)), lines);
+    }
+
+    @Test
+    void testDecode_malformedInput() {
+        decoder.decode(ByteBuffer.wrap(new byte[]{'a', (byte) 0xE2, (byte) 0x9C, '\n', 'b', '\n'}), 0);
+        assertEquals(List.of("a�@4", "b@6"), lines);
+    }
+
+    @Test
+    void testDecode_bufferOffset() {
+        final ByteBuffer chunk = ByteBuffer.wrap("xxa\nb".getBytes(StandardCharsets.UTF_8));
+        chunk.position(2);
+        decoder.decode(chunk, 100);
+        assertEquals(List.of("a@102"), lines);
+        assertEquals(5, chunk.position());
+        assertEquals(103, decoder.getDecodedPosition());
+    }
+
+    @Test
+    void testSupports() {
+        assertTrue(StreamingLineDecoder.supports(StandardCharsets.UTF_8));
+        assertTrue(StreamingLineDecoder.supports(StandardCharsets.ISO_8859_1));
+        assertFalse(StreamingLineDecoder.supports(StandardCharsets.UTF_16));
+    }
+}
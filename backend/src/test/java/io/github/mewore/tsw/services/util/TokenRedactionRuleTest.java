@@ -0,0 +1,33 @@
+package io.github.mewore.tsw.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TokenRedactionRuleTest {
+
+    private static final String REPLACEMENT = "[SECRET]";
+
+    @Test
+    void testRedact() {
+        final RedactionRule rule = new TokenRedactionRule(() -> "pass", REPLACEMENT);
+        assertEquals("[SECRET]", rule.redact("pass"));
+        assertEquals("Password: [SECRET], again: [SECRET].", rule.redact("Password: pass, again: pass."));
+    }
+
+    @Test
+    void testRedact_partOfWord() {
+        final RedactionRule rule = new TokenRedactionRule(() -> "pass", REPLACEMENT);
+        final String text = "password bypass passpass";
+        assertSame(text, rule.redact(text));
+        assertEquals("passpass [SECRET]", rule.redact("passpass pass"));
+    }
+
+    @Test
+    void testRedact_emptySecret() {
+        final RedactionRule rule = new TokenRedactionRule(() -> "", REPLACEMENT);
+        final String text = "text";
+        assertSame(text, rule.redact(text));
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.mewore.tsw.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The cost of publishing a value to many subscriptions of the same topic. The subscriptions are never drained, so
+ * after the first few values this measures how they deal with an overflow, which is what a publisher has to go through
+ * when its subscribers are slower than it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PublishBenchmark {
+
+    private static final int TOPIC = 1;
+
+    private static final int OTHER_TOPIC = 2;
+
+    @Param({"1", "10", "100", "1000"})
+    private int subscriberCount;
+
+    @Param({"DROP_NEWEST", "DROP_OLDEST", "CONFLATE"})
+    private SubscriptionOverflowPolicy overflowPolicy;
+
+    private final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+
+    private final List<Subscription<Integer>> subscriptions = new ArrayList<>();
+
+    private int nextValue = 0;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < subscriberCount; i++) {
+            subscriptions.add(publisher.subscribe(TOPIC, overflowPolicy));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.forEach(Subscription::close);
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public void publish() {
+        publisher.publish(TOPIC, nextValue++);
+    }
+
+    @Benchmark
+    public void publishToOtherTopic() {
+        publisher.publish(OTHER_TOPIC, nextValue++);
+    }
+}
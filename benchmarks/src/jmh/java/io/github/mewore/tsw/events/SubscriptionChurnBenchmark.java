@@ -0,0 +1,68 @@
+package io.github.mewore.tsw.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * The cost of opening a subscription and closing it right away, like the services do when they wait for a single
+ * value. Unless other subscriptions keep it open, the topic is created and deleted every time as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SubscriptionChurnBenchmark {
+
+    private static final int TOPIC = 1;
+
+    /**
+     * The number of subscriptions which stay open for the same topic, so that the topic does not get created and
+     * deleted.
+     */
+    @Param({"0", "10"})
+    private int otherSubscriptionCount;
+
+    private final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+
+    private final List<Subscription<?>> otherSubscriptions = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < otherSubscriptionCount; i++) {
+            otherSubscriptions.add(publisher.subscribe(TOPIC));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        otherSubscriptions.forEach(Subscription::close);
+        otherSubscriptions.clear();
+    }
+
+    @Benchmark
+    public void subscribeAndClose() {
+        publisher.subscribe(TOPIC).close();
+    }
+
+    @Benchmark
+    public void subscribeToAllAndClose() {
+        publisher.subscribe().close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void subscribeAndClose_concurrent() {
+        publisher.subscribe(TOPIC).close();
+    }
+}
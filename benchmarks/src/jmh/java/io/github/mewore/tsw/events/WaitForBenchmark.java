@@ -0,0 +1,105 @@
+package io.github.mewore.tsw.events;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The cost of waiting for a value that matches a predicate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WaitForBenchmark {
+
+    private static final int TOPIC = 1;
+
+    private static final int MATCHING_VALUE = 1;
+
+    private static final int MISMATCHING_VALUE = -1;
+
+    private static final Predicate<Integer> PREDICATE = value -> value > 0;
+
+    /**
+     * Some values that do not match the predicate have to be skipped first, optionally through a chain of mapped
+     * subscriptions. The matching value is always the last one, so every invocation leaves the subscription empty.
+     */
+    @Benchmark
+    public Integer waitFor(final PublishedValuesState state) throws InterruptedException {
+        for (int i = 0; i < state.skippedValueCount; i++) {
+            state.publisher.publish(TOPIC, MISMATCHING_VALUE);
+        }
+        state.publisher.publish(TOPIC, MATCHING_VALUE);
+        return state.subscription.waitFor(PREDICATE, Duration.ZERO);
+    }
+
+    /**
+     * No values have been published, so the topic-to-value mapper of the publisher is used.
+     */
+    @Benchmark
+    public Integer waitFor_fallback(final FallbackState state) throws InterruptedException {
+        return state.subscription.waitFor(PREDICATE, Duration.ZERO);
+    }
+
+    @State(Scope.Benchmark)
+    public static class PublishedValuesState {
+
+        /**
+         * The number of values to skip. Less than the capacity of the queue of a subscription so that none are
+         * dropped.
+         */
+        @Param({"0", "1", "9"})
+        private int skippedValueCount;
+
+        /**
+         * The number of times the subscription is mapped to another one.
+         */
+        @Param({"0", "1", "3"})
+        private int mappingCount;
+
+        private final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+
+        private Subscription<Integer> subscription;
+
+        @Setup
+        public void setUp() {
+            subscription = publisher.subscribe(TOPIC);
+            for (int i = 0; i < mappingCount; i++) {
+                subscription = subscription.map(value -> value);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            subscription.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FallbackState {
+
+        private final Publisher<Integer, Integer> publisher = new QueuePublisher<>();
+
+        private Subscription<Integer> subscription;
+
+        @Setup
+        public void setUp() {
+            publisher.setTopicToValueMapper(topic -> MATCHING_VALUE);
+            subscription = publisher.subscribe(TOPIC);
+        }
+
+        @TearDown
+        public void tearDown() {
+            subscription.close();
+        }
+    }
+}
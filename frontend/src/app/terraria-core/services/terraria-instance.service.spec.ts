@@ -66,6 +66,10 @@ describe('TerrariaInstanceService', () => {
             expect(service.canDelete({ state: 'RUNNING' } as TerrariaInstanceEntity)).toBeFalse();
         });
 
+        it('should return false for instances that are being deleted', () => {
+            expect(service.canDelete({ state: 'DELETING' } as TerrariaInstanceEntity)).toBeFalse();
+        });
+
         it('should return false for undefined instances', () => {
             expect(service.canDelete(undefined)).toBeFalse();
         });
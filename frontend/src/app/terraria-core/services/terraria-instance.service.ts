@@ -47,7 +47,7 @@ export class TerrariaInstanceServiceImpl implements TerrariaInstanceService {
     }
 
     canDelete(instance: TerrariaInstanceEntity | undefined): boolean {
-        return !!instance && !this.isActive(instance);
+        return !!instance && !this.isActive(instance) && instance.state !== 'DELETING';
     }
 
     async delete(instance: TerrariaInstanceEntity | undefined): Promise<TerrariaInstanceEntity | undefined> {
@@ -338,6 +338,15 @@ export class TerrariaInstancePageComponent implements AfterViewInit, OnDestroy {
                     content: event.content,
                 };
             }
+            case 'OUTPUT_SKIPPED': {
+                return {
+                    id: event.id,
+                    className: 'output-skipped yellow',
+                    content: this.translateService.instant('terraria.instance.events.' + event.type, {
+                        size: event.content,
+                    }),
+                };
+            }
             case 'ERROR':
             case 'TSW_INTERRUPTED':
             case 'INVALID_INSTANCE': {